@@ -0,0 +1,102 @@
+package jerco.network;
+
+import java.util.Arrays;
+
+/**
+ * Состояние связей сети при перколяции по связям: открытость каждой связи
+ * хранится одним битом в массиве {@code long[]}. Связь задается номером из
+ * {@link CsrGraph#getEdgeIds()}, объекты связей не создаются.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class BondState {
+    /**
+     * Количество связей.
+     */
+    private final int size;
+
+    private final long[] open;
+
+    /**
+     * Создает состояние для заданного количества связей. Все связи закрыты.
+     *
+     * @param size
+     */
+    public BondState(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size = " + size + " < 0");
+        }
+        this.size = size;
+        this.open = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Возвращает количество связей.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает количество 64-битных слов в битовом массиве.
+     *
+     * @return
+     */
+    public int words() {
+        return open.length;
+    }
+
+    public boolean isOpen(int edge) {
+        return (open[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    public void setOpen(int edge, boolean value) {
+        if (value) {
+            open[edge >>> 6] |= 1L << edge;
+        } else {
+            open[edge >>> 6] &= ~(1L << edge);
+        }
+    }
+
+    /**
+     * Записывает открытость 64 связей, начиная со связи word * 64. Биты за
+     * последней связью отбрасываются.
+     *
+     * @param word
+     * @param bits
+     */
+    public void setOpenWord(int word, long bits) {
+        final int tail = size - (word << 6);
+        if (tail < 64) {
+            bits &= (1L << tail) - 1;
+        }
+        open[word] = bits;
+    }
+
+    public long getOpenWord(int word) {
+        return open[word];
+    }
+
+    /**
+     * Возвращает количество открытых связей.
+     *
+     * @return
+     */
+    public int openCount() {
+        int count = 0;
+        for (long bits : open) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Закрывает все связи.
+     */
+    public void reset() {
+        Arrays.fill(open, 0);
+    }
+}
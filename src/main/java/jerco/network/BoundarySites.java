@@ -0,0 +1,219 @@
+package jerco.network;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Узлы сети, принадлежащие границам. Хранит индексы таких узлов и маску
+ * границы каждого из них: каждой границе сети сопоставлен один бит, поэтому
+ * набор границ, которых касается кластер, задается одним числом.
+ * <p>
+ * Используется алгоритмами поиска кластеров, которые работают с индексами
+ * узлов и не создают объектов {@link Cluster}.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class BoundarySites {
+    /**
+     * Максимальное количество границ сети.
+     */
+    public static final int MAX_BOUNDS = Integer.SIZE;
+
+    /**
+     * Границы сети по возрастанию. Номер границы в массиве равен номеру ее
+     * бита в маске.
+     */
+    private final int[] bounds;
+
+    private final int[] sites;
+
+    private final int[] masks;
+
+    private BoundarySites(Set<Integer> netBounds, int[] sites, int[] siteBounds) {
+        if (netBounds.size() > MAX_BOUNDS) {
+            throw new IllegalArgumentException("Сеть имеет больше "
+                    + MAX_BOUNDS + " границ");
+        }
+        this.bounds = new int[netBounds.size()];
+        int count = 0;
+        for (int bound : new TreeSet<Integer>(netBounds)) {
+            bounds[count++] = bound;
+        }
+
+        this.sites = sites;
+        this.masks = new int[sites.length];
+        for (int k = 0; k < sites.length; k++) {
+            masks[k] = mask(siteBounds[k]);
+        }
+    }
+
+    /**
+     * Собирает узлы границ по состоянию уплотненной сети.
+     *
+     * @param state
+     * @return
+     */
+    public static BoundarySites of(NetState state) {
+        Set<Integer> netBounds = new TreeSet<Integer>();
+        int count = 0;
+        for (int i = 0; i < state.size(); i++) {
+            if (state.isInBound(i)) {
+                netBounds.add(state.getBound(i));
+                count++;
+            }
+        }
+
+        int[] sites = new int[count];
+        int[] siteBounds = new int[count];
+        count = 0;
+        for (int i = 0; i < state.size(); i++) {
+            if (state.isInBound(i)) {
+                sites[count] = i;
+                siteBounds[count++] = state.getBound(i);
+            }
+        }
+        return new BoundarySites(netBounds, sites, siteBounds);
+    }
+
+    /**
+     * Собирает узлы границ решетки с неявной структурой. Просматриваются
+     * только крайние слои и крайние узлы слоев.
+     *
+     * @param topology
+     * @return
+     */
+    public static BoundarySites of(StencilTopology topology) {
+        int count = collect(topology, null, null);
+        int[] sites = new int[count];
+        int[] siteBounds = new int[count];
+        collect(topology, sites, siteBounds);
+        return new BoundarySites(topology.getBounds(), sites, siteBounds);
+    }
+
+    /**
+     * Перебирает узлы границ решетки и, если массивы заданы, записывает в них
+     * индексы и номера границ узлов.
+     *
+     * @return количество узлов границ
+     */
+    private static int collect(StencilTopology topology, int[] sites,
+            int[] siteBounds) {
+        int count = 0;
+        final int height = topology.getHeight();
+        for (int row = 0; row < height; row++) {
+            int rowWidth = topology.rowWidth(row);
+            boolean edgeRow = row == 0 || row == height - 1;
+            for (int column = 0; column < rowWidth; column++) {
+                if (!edgeRow && column > 0 && column < rowWidth - 1) {
+                    // Внутренние узлы слоя границам не принадлежат
+                    column = rowWidth - 2;
+                    continue;
+                }
+                int bound = topology.bound(row, column);
+                if (bound != StencilTopology.NO_BOUND) {
+                    if (sites != null) {
+                        sites[count] = topology.index(row, column);
+                        siteBounds[count] = bound;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает маску границы. Для границы, которой нет в сети,
+     * возвращается 0.
+     *
+     * @param bound
+     *            номер границы
+     * @return
+     */
+    public int mask(int bound) {
+        for (int k = 0; k < bounds.length; k++) {
+            if (bounds[k] == bound) {
+                return 1 << k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает маску, в которой установлены биты всех границ сети.
+     *
+     * @return
+     */
+    public int fullMask() {
+        return bounds.length == MAX_BOUNDS ? -1 : (1 << bounds.length) - 1;
+    }
+
+    /**
+     * Возвращает множество границ, биты которых установлены в маске.
+     *
+     * @param mask
+     * @return
+     */
+    public Set<Integer> bounds(int mask) {
+        Set<Integer> result = new TreeSet<Integer>();
+        for (int k = 0; k < bounds.length; k++) {
+            if ((mask & (1 << k)) != 0) {
+                result.add(bounds[k]);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Возвращает множество границ сети.
+     *
+     * @return
+     */
+    public Set<Integer> getBounds() {
+        Set<Integer> result = new TreeSet<Integer>();
+        for (int bound : bounds) {
+            result.add(bound);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Возвращает количество границ сети.
+     *
+     * @return
+     */
+    public int boundsCount() {
+        return bounds.length;
+    }
+
+    /**
+     * Возвращает количество узлов, принадлежащих границам.
+     *
+     * @return
+     */
+    public int size() {
+        return sites.length;
+    }
+
+    /**
+     * Возвращает индекс k-го узла границы.
+     *
+     * @param k
+     * @return
+     */
+    public int site(int k) {
+        return sites[k];
+    }
+
+    /**
+     * Возвращает маску границы k-го узла.
+     *
+     * @param k
+     * @return
+     */
+    public int siteMask(int k) {
+        return masks[k];
+    }
+}
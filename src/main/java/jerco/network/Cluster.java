@@ -37,9 +37,16 @@ public class Cluster implements Iterable<Node>, Comparable<Cluster> {
     private List<Node> nodes = new ArrayList<Node>();
 
     /**
-     * Множестов границ, узлов из которых имеет кластер.
+     * Границы с номерами от 0 до 63, узлы из которых имеет кластер: бит с
+     * номером границы установлен, если кластер ее касается.
      */
-    private Set<Integer> bounds = new HashSet<Integer>();
+    private long boundsMask;
+
+    /**
+     * Остальные границы, узлы из которых имеет кластер. Создается только для
+     * сетей с номерами границ вне диапазона маски.
+     */
+    private Set<Integer> otherBounds;
 
     /**
      * Создает кластер. Кластер всегда состоит из одного узла.
@@ -54,6 +61,14 @@ public class Cluster implements Iterable<Node>, Comparable<Cluster> {
         addToCluster(node);
     }
 
+    /**
+     * Создает пустой кластер. Применяется алгоритмами поиска кластеров,
+     * которые сами гарантируют корректность добавляемых узлов (см.
+     * {@link #append(Node)}).
+     */
+    Cluster() {
+    }
+
     /**
      * Добавляет в кластер новый узел
      * 
@@ -78,10 +93,61 @@ public class Cluster implements Iterable<Node>, Comparable<Cluster> {
         node.setInCluster(true);
         
         if (node.isInBound()) {
-            bounds.add(node.getBound());
+            addBound(node.getBound());
         }
     }
 
+    /**
+     * Добавляет в кластер узел без проверок, выполняемых
+     * {@link #addToCluster(Node)}. Вызывающая сторона гарантирует, что узел
+     * заражен и еще не принадлежит ни одному кластеру.
+     * 
+     * @param node
+     */
+    void append(Node node) {
+        nodes.add(node);
+        node.setInCluster(true);
+
+        if (node.isInBound()) {
+            addBound(node.getBound());
+        }
+    }
+
+    private void addBound(int bound) {
+        if (bound >= 0 && bound < Long.SIZE) {
+            boundsMask |= 1L << bound;
+        } else {
+            if (otherBounds == null) {
+                otherBounds = new HashSet<Integer>();
+            }
+            otherBounds.add(bound);
+        }
+    }
+
+    /**
+     * Возвращает истину, если кластер содержит узел заданной границы.
+     * 
+     * @param bound
+     * @return
+     */
+    public boolean touches(int bound) {
+        if (bound >= 0 && bound < Long.SIZE) {
+            return (boundsMask & (1L << bound)) != 0;
+        }
+        return otherBounds != null && otherBounds.contains(bound);
+    }
+
+    /**
+     * Возвращает маску границ с номерами от 0 до 63, которых касается
+     * кластер: бит с номером границы установлен, если кластер содержит узел
+     * этой границы.
+     * 
+     * @return
+     */
+    public long getBoundsMask() {
+        return boundsMask;
+    }
+
     /**
      * Реализует функцию построения кластера. Возвращает количество узлов в
      * новом кластере.
@@ -119,6 +185,13 @@ public class Cluster implements Iterable<Node>, Comparable<Cluster> {
      * @return the bounds
      */
     public Set<Integer> getBounds() {
+        Set<Integer> bounds = new HashSet<Integer>();
+        for (long mask = boundsMask; mask != 0; mask &= mask - 1) {
+            bounds.add(Long.numberOfTrailingZeros(mask));
+        }
+        if (otherBounds != null) {
+            bounds.addAll(otherBounds);
+        }
         return Collections.unmodifiableSet(bounds);
     }
 
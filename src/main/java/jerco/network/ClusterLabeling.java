@@ -0,0 +1,812 @@
+package jerco.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Поиск кластеров методом объединения множеств (union-find, алгоритм
+ * Хошена-Копельмана) с весами и сжатием путей.
+ * <p>
+ * Узлы перебираются по возрастанию индекса, каждый зараженный узел
+ * объединяется с зараженными соседями, имеющими меньший индекс. Во время
+ * поиска массив {@link #getLabels()} хранит лес множеств так же, как массив
+ * ptr в {@link FastPercolation}: для корня - размер кластера со знаком минус,
+ * для остальных узлов - индекс родителя. После поиска каждый зараженный узел
+ * содержит индекс корня своего кластера (метку), незараженный - {@link #EMPTY}.
+ * Размер кластера хранится в {@link #getSizes()} по индексу корня.
+ * <p>
+ * Если заданы узлы границ сети ({@link BoundarySites}), каждый корень хранит
+ * маску границ, которых касается его кластер. При объединении множеств маски
+ * объединяются, поэтому перколяционные кластеры определяются без обхода
+ * кластеров, а метод {@link #percolates(NetState, SpanningRule)} прекращает
+ * поиск, как только перколяционный кластер появился.
+ * <p>
+ * Для перколяции по связям метод {@link #label(NetState, BondState)}
+ * объединяет только узлы, связь между которыми открыта.
+ * <p>
+ * Метод {@link #label(NetState, int[], ForkJoinPool)} разбивает узлы на
+ * полосы - отрезки индексов - и ищет кластеры в каждой полосе параллельно.
+ * Связи между полосами (швы) объединяются последовательно после поиска в
+ * полосах. Результат совпадает с последовательным поиском с точностью до
+ * выбора корней кластеров.
+ * <p>
+ * Объекты {@link Cluster} не создаются. Их можно получить методом
+ * {@link #materialize(IndexedNodes, Set)}, когда они действительно нужны.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class ClusterLabeling {
+    /**
+     * Метка незараженного узла.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * Метка незараженного узла во время поиска. Отличается от {@link #EMPTY},
+     * так как отрицательные значения обозначают размеры кластеров.
+     */
+    private static final int UNOCCUPIED = Integer.MIN_VALUE;
+
+    /**
+     * Доступ к узлам сети по индексу.
+     */
+    public interface IndexedNodes {
+        /**
+         * Возвращает узел по его индексу.
+         *
+         * @param index
+         * @return
+         */
+        Node getNode(int index);
+    }
+
+    private final Topology topology;
+
+    private final int[] label;
+
+    private final int[] size;
+
+    private final int[] buffer;
+
+    /**
+     * Узлы границ сети или null, если границы не отслеживаются.
+     */
+    private final BoundarySites boundary;
+
+    /**
+     * Маски границ кластеров по индексу корня.
+     */
+    private final int[] boundMask;
+
+    private int clustersCount;
+
+    /**
+     * Истина, если последний поиск был доведен до конца.
+     */
+    private boolean complete;
+
+    /**
+     * Создает поиск кластеров для сети с заданной структурой. Массивы меток и
+     * размеров создаются один раз и переиспользуются при каждом поиске.
+     *
+     * @param topology
+     */
+    public ClusterLabeling(Topology topology) {
+        this(topology, null);
+    }
+
+    /**
+     * Создает поиск кластеров, отслеживающий касание кластерами границ
+     * сети.
+     *
+     * @param topology
+     * @param boundary
+     *            узлы границ сети; null, если границы не отслеживаются
+     */
+    public ClusterLabeling(Topology topology, BoundarySites boundary) {
+        this.topology = topology;
+        this.label = new int[topology.size()];
+        this.size = new int[topology.size()];
+        this.buffer = new int[topology.maxDegree()];
+        this.boundary = boundary;
+        this.boundMask = boundary == null ? null : new int[topology.size()];
+        clustersCount = 0;
+        complete = true;
+        Arrays.fill(label, EMPTY);
+    }
+
+    /**
+     * Осуществляет поиск кластеров среди зараженных узлов.
+     *
+     * @param state
+     *            состояние узлов сети
+     * @return количество кластеров
+     */
+    public int label(NetState state) {
+        return label(state, null);
+    }
+
+    /**
+     * Осуществляет поиск кластеров среди зараженных узлов, учитывая только
+     * открытые связи (перколяция по связям).
+     *
+     * @param state
+     *            состояние узлов сети
+     * @param bonds
+     *            состояние связей; null, если открыты все связи
+     * @return количество кластеров
+     * @throws IllegalArgumentException
+     *             если состояние связей задано, а структура сети не является
+     *             {@link CsrGraph}
+     */
+    public int label(NetState state, BondState bonds) {
+        final int n = label.length;
+        checkBonds(bonds);
+        init(state);
+
+        if (topology instanceof CsrGraph) {
+            unionCsr((CsrGraph) topology, bonds);
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (label[i] == UNOCCUPIED) {
+                    continue;
+                }
+                int count = topology.neighbors(i, buffer);
+                for (int k = 0; k < count; k++) {
+                    int linked = buffer[k];
+                    if (linked < i && label[linked] != UNOCCUPIED) {
+                        union(i, linked);
+                    }
+                }
+            }
+        }
+
+        return finish();
+    }
+
+    /**
+     * Сжимает лес множеств, вычисляет размеры и метки кластеров.
+     *
+     * @return количество кластеров
+     */
+    private int finish() {
+        final int n = label.length;
+        // Каждый узел указывает прямо на корень своего кластера
+        for (int i = 0; i < n; i++) {
+            if (label[i] >= 0) {
+                label[i] = findRoot(i);
+            }
+        }
+
+        clustersCount = 0;
+        for (int i = 0; i < n; i++) {
+            int value = label[i];
+            if (value == UNOCCUPIED) {
+                label[i] = EMPTY;
+                size[i] = 0;
+            } else if (value < 0) {
+                size[i] = -value;
+                clustersCount++;
+            } else {
+                size[i] = 0;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (size[i] > 0) {
+                label[i] = i;
+            }
+        }
+        complete = true;
+        return clustersCount;
+    }
+
+    /**
+     * Устанавливает найденные ранее метки кластеров (например, сохраненные в
+     * {@link LatticeSnapshot}) вместо поиска. Метки имеют тот же смысл, что и
+     * {@link #getLabels()}: корень кластера помечен своим индексом, остальные
+     * узлы кластера - индексом корня. Связность кластеров не проверяется.
+     *
+     * @param state
+     *            состояние узлов сети
+     * @param labels
+     *            метки узлов; массив копируется
+     * @return количество кластеров
+     * @throws IllegalArgumentException
+     *             если количество меток не совпадает с количеством узлов,
+     *             метка указывает не на корень кластера или не соответствует
+     *             зараженности узла
+     */
+    public int setLabels(NetState state, int[] labels) {
+        final int n = label.length;
+        if (labels.length != n) {
+            throw new IllegalArgumentException(String.format(
+                    "labels.length = %d, а узлов %d", labels.length, n));
+        }
+        Arrays.fill(size, 0);
+        clustersCount = 0;
+        complete = false;
+        for (int i = 0; i < n; i++) {
+            int root = labels[i];
+            if (root == EMPTY ? state.isInfected(i) : (!state.isInfected(i)
+                    || root < 0 || root >= n || labels[root] != root)) {
+                throw new IllegalArgumentException(String.format(
+                        "Неверная метка %d узла %d", root, i));
+            }
+            label[i] = root;
+            if (root != EMPTY) {
+                size[root]++;
+                if (root == i) {
+                    clustersCount++;
+                }
+            }
+        }
+        if (boundMask != null) {
+            Arrays.fill(boundMask, 0);
+            for (int k = 0; k < boundary.size(); k++) {
+                int root = label[boundary.site(k)];
+                if (root != EMPTY) {
+                    boundMask[root] |= boundary.siteMask(k);
+                }
+            }
+        }
+        complete = true;
+        return clustersCount;
+    }
+
+    /**
+     * Проверяет, есть ли среди зараженных узлов перколяционный кластер.
+     * Поиск прекращается, как только перколяционный кластер появился, поэтому
+     * после вызова метода метки и размеры кластеров не определены до
+     * следующего вызова {@link #label(NetState)}.
+     *
+     * @param state
+     *            состояние узлов сети
+     * @param rule
+     *            правило определения перколяционного кластера
+     * @return
+     * @throws IllegalStateException
+     *             если границы не отслеживаются либо в сети нет границ,
+     *             необходимых правилу
+     */
+    public boolean percolates(NetState state, SpanningRule rule) {
+        return percolates(state, null, rule);
+    }
+
+    /**
+     * Проверяет, есть ли перколяционный кластер, учитывая только открытые
+     * связи (см. {@link #percolates(NetState, SpanningRule)}).
+     *
+     * @param state
+     *            состояние узлов сети
+     * @param bonds
+     *            состояние связей; null, если открыты все связи
+     * @param rule
+     *            правило определения перколяционного кластера
+     * @return
+     * @throws IllegalStateException
+     *             если границы не отслеживаются либо в сети нет границ,
+     *             необходимых правилу
+     * @throws IllegalArgumentException
+     *             если состояние связей задано, а структура сети не является
+     *             {@link CsrGraph}
+     */
+    public boolean percolates(NetState state, BondState bonds,
+            SpanningRule rule) {
+        checkBoundary();
+        checkBonds(bonds);
+        final int[] required = rule.requiredMasks(boundary);
+        complete = false;
+        clustersCount = 0;
+        init(state);
+
+        for (int k = 0; k < boundary.size(); k++) {
+            int site = boundary.site(k);
+            if (label[site] != UNOCCUPIED
+                    && SpanningRule.isSpanning(boundMask[site], required)) {
+                return true;
+            }
+        }
+
+        final int n = label.length;
+        final int[] edgeIds = bonds == null ? null : ((CsrGraph) topology)
+                .getEdgeIds();
+        for (int i = 0; i < n; i++) {
+            if (label[i] == UNOCCUPIED) {
+                continue;
+            }
+            int count = topology.neighbors(i, buffer);
+            int position = bonds == null ? 0 : ((CsrGraph) topology)
+                    .getOffsets()[i];
+            for (int k = 0; k < count; k++) {
+                int linked = buffer[k];
+                if (linked < i && label[linked] != UNOCCUPIED
+                        && (bonds == null || bonds
+                                .isOpen(edgeIds[position + k]))) {
+                    int root = union(i, linked);
+                    if (SpanningRule.isSpanning(boundMask[root], required)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void checkBonds(BondState bonds) {
+        if (bonds == null) {
+            return;
+        }
+        if (!(topology instanceof CsrGraph)) {
+            throw new IllegalArgumentException(
+                    "Перколяция по связям требует уплотненного графа");
+        }
+        if (bonds.size() != ((CsrGraph) topology).getEdgesCount()) {
+            throw new IllegalArgumentException(String.format(
+                    "Количество связей %d не совпадает с графом (%d)",
+                    bonds.size(), ((CsrGraph) topology).getEdgesCount()));
+        }
+    }
+
+    /**
+     * Осуществляет поиск кластеров, обрабатывая полосы узлов параллельно.
+     * <p>
+     * Каждая полоса заполняется и объединяется отдельной задачей пула: задача
+     * изменяет только элементы массивов своей полосы, поэтому синхронизация
+     * не нужна. Связи, ведущие из полосы в полосы с меньшими индексами,
+     * задача запоминает, и после завершения всех задач они объединяются
+     * последовательно. Затем пул параллельно сжимает пути и вычисляет
+     * размеры кластеров.
+     * <p>
+     * Полосы могут быть любыми, но выигрыш получается, когда связей между
+     * полосами мало: например, когда полоса состоит из целых слоев решетки.
+     *
+     * @param state
+     *            состояние узлов сети
+     * @param stripStarts
+     *            индексы первых узлов полос по возрастанию, первый равен 0
+     * @param pool
+     *            пул, в котором обрабатываются полосы
+     * @return количество кластеров
+     * @throws IllegalArgumentException
+     *             если индексы полос заданы неверно
+     */
+    public int label(NetState state, int[] stripStarts, ForkJoinPool pool) {
+        final int n = label.length;
+        checkStrips(stripStarts, n);
+
+        StripTask[] tasks = new StripTask[stripStarts.length];
+        for (int k = 0; k < tasks.length; k++) {
+            int to = k + 1 < stripStarts.length ? stripStarts[k + 1] : n;
+            tasks[k] = new StripTask(state, stripStarts[k], to);
+        }
+        run(pool, tasks);
+
+        // Швы между полосами
+        for (StripTask task : tasks) {
+            for (int k = 0; k < task.seamCount; k += 2) {
+                union(task.seams[k], task.seams[k + 1]);
+            }
+            task.seams = null;
+        }
+
+        for (StripTask task : tasks) {
+            task.phase = StripTask.COMPRESS;
+        }
+        run(pool, tasks);
+        for (StripTask task : tasks) {
+            task.phase = StripTask.COUNT;
+        }
+        run(pool, tasks);
+
+        clustersCount = 0;
+        for (StripTask task : tasks) {
+            clustersCount += task.clustersCount;
+        }
+        complete = true;
+        return clustersCount;
+    }
+
+    private static void checkStrips(int[] stripStarts, int n) {
+        if (stripStarts.length == 0 || stripStarts[0] != 0) {
+            throw new IllegalArgumentException(
+                    "Первая полоса должна начинаться с узла 0");
+        }
+        for (int k = 1; k < stripStarts.length; k++) {
+            if (stripStarts[k] <= stripStarts[k - 1] || stripStarts[k] > n) {
+                throw new IllegalArgumentException("Неверное начало полосы "
+                        + k + ": " + stripStarts[k]);
+            }
+        }
+    }
+
+    /**
+     * Выполняет задачи в пуле и ждет их завершения. Исключение задачи
+     * передается вызывающему потоку.
+     */
+    private static void run(ForkJoinPool pool, StripTask[] tasks) {
+        for (StripTask task : tasks) {
+            task.reinitialize();
+            pool.execute(task);
+        }
+        for (StripTask task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Обработка одной полосы узлов [from, to).
+     */
+    private final class StripTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Заполнение и объединение узлов полосы.
+         */
+        static final int LABEL = 0;
+
+        /**
+         * Сжатие путей до корней.
+         */
+        static final int COMPRESS = 1;
+
+        /**
+         * Вычисление размеров и меток.
+         */
+        static final int COUNT = 2;
+
+        private final NetState state;
+
+        private final int from;
+
+        private final int to;
+
+        int phase = LABEL;
+
+        /**
+         * Пары узлов, связи между которыми пересекают начало полосы.
+         */
+        int[] seams = new int[16];
+
+        int seamCount;
+
+        int clustersCount;
+
+        StripTask(NetState state, int from, int to) {
+            this.state = state;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            switch (phase) {
+            case LABEL:
+                labelStrip();
+                break;
+            case COMPRESS:
+                // Параллельное сжатие записывает в узел только корень его
+                // множества, поэтому пересечение путей разных полос не
+                // нарушает лес
+                for (int i = from; i < to; i++) {
+                    if (label[i] >= 0) {
+                        label[i] = root(i);
+                    }
+                }
+                break;
+            default:
+                count();
+                break;
+            }
+        }
+
+        private void labelStrip() {
+            for (int i = from; i < to; i++) {
+                label[i] = state.isInfected(i) ? -1 : UNOCCUPIED;
+            }
+            if (boundMask != null) {
+                Arrays.fill(boundMask, from, to, 0);
+                for (int k = 0; k < boundary.size(); k++) {
+                    int site = boundary.site(k);
+                    if (site >= from && site < to) {
+                        boundMask[site] |= boundary.siteMask(k);
+                    }
+                }
+            }
+
+            final int[] linkedNodes = new int[topology.maxDegree()];
+            for (int i = from; i < to; i++) {
+                if (label[i] == UNOCCUPIED) {
+                    continue;
+                }
+                int count = topology.neighbors(i, linkedNodes);
+                for (int k = 0; k < count; k++) {
+                    int linked = linkedNodes[k];
+                    if (linked >= i) {
+                        continue;
+                    }
+                    if (linked < from) {
+                        if (state.isInfected(linked)) {
+                            addSeam(i, linked);
+                        }
+                    } else if (label[linked] != UNOCCUPIED) {
+                        union(i, linked);
+                    }
+                }
+            }
+        }
+
+        private void addSeam(int a, int b) {
+            if (seamCount + 2 > seams.length) {
+                seams = Arrays.copyOf(seams, seams.length * 2);
+            }
+            seams[seamCount++] = a;
+            seams[seamCount++] = b;
+        }
+
+        /**
+         * Находит корень без сжатия: промежуточные узлы могут принадлежать
+         * другим полосам.
+         */
+        private int root(int index) {
+            int root = index;
+            while (label[root] >= 0) {
+                root = label[root];
+            }
+            return root;
+        }
+
+        private void count() {
+            clustersCount = 0;
+            for (int i = from; i < to; i++) {
+                int value = label[i];
+                if (value == UNOCCUPIED) {
+                    label[i] = EMPTY;
+                    size[i] = 0;
+                } else if (value < 0) {
+                    size[i] = -value;
+                    label[i] = i;
+                    clustersCount++;
+                } else {
+                    size[i] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Заполняет лес множеств одиночными зараженными узлами.
+     */
+    private void init(NetState state) {
+        final int n = label.length;
+        for (int i = 0; i < n; i++) {
+            label[i] = state.isInfected(i) ? -1 : UNOCCUPIED;
+        }
+        if (boundMask != null) {
+            Arrays.fill(boundMask, 0);
+            for (int k = 0; k < boundary.size(); k++) {
+                boundMask[boundary.site(k)] |= boundary.siteMask(k);
+            }
+        }
+    }
+
+    /**
+     * Объединение по массивам уплотненного графа без копирования соседей.
+     */
+    private void unionCsr(CsrGraph graph, BondState bonds) {
+        final int[] offsets = graph.getOffsets();
+        final int[] neighbors = graph.getNeighbors();
+        final int[] edgeIds = bonds == null ? null : graph.getEdgeIds();
+        for (int i = 0; i < label.length; i++) {
+            if (label[i] == UNOCCUPIED) {
+                continue;
+            }
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int linked = neighbors[k];
+                if (linked < i && label[linked] != UNOCCUPIED
+                        && (bonds == null || bonds.isOpen(edgeIds[k]))) {
+                    union(i, linked);
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает корень множества, сжимая путь до него. Повторяет findroot из
+     * {@link FastPercolation}, но без рекурсии, чтобы длинные пути не
+     * переполняли стек.
+     */
+    private int findRoot(int index) {
+        int root = index;
+        while (label[root] >= 0) {
+            root = label[root];
+        }
+        while (index != root) {
+            int next = label[index];
+            label[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    /**
+     * Объединяет множества двух узлов. Меньшее множество присоединяется к
+     * большему, маски границ объединяются.
+     *
+     * @return корень объединенного множества
+     */
+    private int union(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (label[rootA] > label[rootB]) {
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        label[rootA] += label[rootB];
+        label[rootB] = rootA;
+        if (boundMask != null) {
+            boundMask[rootA] |= boundMask[rootB];
+        }
+        return rootA;
+    }
+
+    /**
+     * Возвращает количество кластеров, найденных последним поиском.
+     *
+     * @return
+     */
+    public int getClustersCount() {
+        return clustersCount;
+    }
+
+    /**
+     * Возвращает метку узла: индекс корня его кластера либо {@link #EMPTY}.
+     *
+     * @param index
+     * @return
+     */
+    public int getLabel(int index) {
+        return label[index];
+    }
+
+    /**
+     * Возвращает массив меток узлов. Массив не копируется и не должен
+     * изменяться вызывающей стороной.
+     *
+     * @return
+     */
+    public int[] getLabels() {
+        return label;
+    }
+
+    /**
+     * Возвращает массив размеров кластеров по индексу корня; для остальных
+     * узлов размер равен 0. Массив не копируется и не должен изменяться
+     * вызывающей стороной.
+     *
+     * @return
+     */
+    public int[] getSizes() {
+        return size;
+    }
+
+    /**
+     * Возвращает размеры всех кластеров по возрастанию.
+     *
+     * @return
+     */
+    public int[] getClustersSizes() {
+        checkComplete();
+        int[] result = new int[clustersCount];
+        int count = 0;
+        for (int i = 0; i < size.length; i++) {
+            if (size[i] > 0) {
+                result[count++] = size[i];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Возвращает маску границ кластера, которому принадлежит узел (см.
+     * {@link BoundarySites}).
+     *
+     * @param index
+     * @return
+     * @throws IllegalStateException
+     *             если границы не отслеживаются
+     */
+    public int getBoundsMask(int index) {
+        checkBoundary();
+        checkComplete();
+        int root = label[index];
+        return root == EMPTY ? 0 : boundMask[root];
+    }
+
+    /**
+     * Возвращает корни перколяционных кластеров. Проверяются только корни
+     * кластеров, содержащих узлы границ.
+     *
+     * @param rule
+     *            правило определения перколяционного кластера
+     * @return
+     * @throws IllegalStateException
+     *             если границы не отслеживаются либо в сети нет границ,
+     *             необходимых правилу
+     */
+    public Set<Integer> getSpanningRoots(SpanningRule rule) {
+        checkBoundary();
+        checkComplete();
+        final int[] required = rule.requiredMasks(boundary);
+        Set<Integer> result = new HashSet<Integer>();
+        for (int k = 0; k < boundary.size(); k++) {
+            int root = label[boundary.site(k)];
+            if (root != EMPTY
+                    && SpanningRule.isSpanning(boundMask[root], required)) {
+                result.add(root);
+            }
+        }
+        return result;
+    }
+
+    private void checkBoundary() {
+        if (boundary == null) {
+            throw new IllegalStateException("Границы сети не отслеживаются");
+        }
+    }
+
+    private void checkComplete() {
+        if (!complete) {
+            throw new IllegalStateException(
+                    "Поиск кластеров был прерван, вызовите label()");
+        }
+    }
+
+    /**
+     * Создает объекты кластеров по результатам последнего поиска. Кластеры
+     * упорядочены по возрастанию размера, кластеры одинакового размера - по
+     * наименьшему индексу узла. Узлы в кластере следуют по возрастанию
+     * индекса.
+     *
+     * @param nodes
+     *            узлы сети
+     * @param roots
+     *            корни кластеров, которые нужно создать; null, если нужны все
+     *            кластеры
+     * @return
+     */
+    public List<Cluster> materialize(IndexedNodes nodes, Set<Integer> roots) {
+        checkComplete();
+        Map<Integer, Cluster> byRoot = new HashMap<Integer, Cluster>();
+        List<Cluster> result = new ArrayList<Cluster>();
+        for (int i = 0; i < label.length; i++) {
+            int root = label[i];
+            if (root == EMPTY || (roots != null && !roots.contains(root))) {
+                continue;
+            }
+
+            Cluster cluster = byRoot.get(root);
+            if (cluster == null) {
+                cluster = new Cluster();
+                byRoot.put(root, cluster);
+                result.add(cluster);
+            }
+            cluster.append(nodes.getNode(i));
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
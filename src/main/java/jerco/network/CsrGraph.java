@@ -0,0 +1,512 @@
+package jerco.network;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Компактное представление связей сети в формате CSR (compressed sparse row).
+ * <p>
+ * Каждому узлу сети сопоставляется индекс от 0 до {@link #size()} - 1. Соседи
+ * узла с индексом {@code i} хранятся в массиве {@link #getNeighbors()} на
+ * позициях от {@code offsets[i]} (включительно) до {@code offsets[i + 1]} (не
+ * включительно). Порядок соседей совпадает с порядком, в котором их
+ * возвращал {@link Node#iterator()} до уплотнения (по возрастанию
+ * идентификатора).
+ * <p>
+ * После построения графа узлы перестают хранить собственные множества
+ * связанных узлов, а методы {@link Node#iterator()} и
+ * {@link Node#getLinkedNodes()} становятся представлениями над массивами
+ * графа. Добавлять новые связи в уплотненный граф нельзя.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class CsrGraph implements Topology,
+        ClusterLabeling.IndexedNodes {
+    /**
+     * Узлы графа. Индекс узла в массиве совпадает с его индексом в графе.
+     */
+    private final Node[] nodes;
+
+    /**
+     * Смещения начала списка соседей каждого узла. Длина массива на единицу
+     * больше количества узлов.
+     */
+    private final int[] offsets;
+
+    /**
+     * Индексы соседей всех узлов, записанные подряд.
+     */
+    private final int[] neighbors;
+
+    /**
+     * Максимальное количество соседей у одного узла.
+     */
+    private final int maxDegree;
+
+    /**
+     * Номера связей по позициям массива {@link #neighbors}. Создается при
+     * первом обращении.
+     */
+    private int[] edgeIds;
+
+    private int edgesCount;
+
+    /**
+     * Истина, если идентификаторы узлов заданы при построении графа, а не
+     * выданы счетчиком узлов.
+     */
+    private final boolean explicitIds;
+
+    private CsrGraph(Node[] nodes, int[] offsets, int[] neighbors,
+            boolean explicitIds) {
+        this.nodes = nodes;
+        this.explicitIds = explicitIds;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+
+        int max = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            max = Math.max(max, offsets[i + 1] - offsets[i]);
+        }
+        this.maxDegree = max;
+    }
+
+    /**
+     * Строит граф по связям переданных узлов. Узлам присваиваются индексы в
+     * порядке перебора, после чего они переключаются на хранение связей в
+     * графе.
+     *
+     * @param nodes
+     *            узлы сети
+     * @param size
+     *            количество узлов
+     * @return уплотненный граф
+     * @throws IllegalArgumentException
+     *             если узел связан с узлом, не входящим в переданный набор,
+     *             либо количество узлов не совпадает с size
+     * @throws IllegalStateException
+     *             если один из узлов уже входит в уплотненный граф
+     */
+    public static CsrGraph build(Iterable<Node> nodes, int size) {
+        Node[] indexed = new Node[size];
+        int[] offsets = new int[size + 1];
+
+        int count = 0;
+        for (Node node : nodes) {
+            if (node.isCompacted()) {
+                throw new IllegalStateException("Узел " + node.getId()
+                        + " уже входит в уплотненный граф");
+            }
+            if (count == size) {
+                throw new IllegalArgumentException(
+                        "Количество узлов больше заданного " + size);
+            }
+            indexed[count] = node;
+            node.setIndex(count);
+            count++;
+            offsets[count] = offsets[count - 1] + node.getLinkedNodes().size();
+        }
+        if (count != size) {
+            throw new IllegalArgumentException(String.format(
+                    "Ожидалось %d узлов, получено %d", size, count));
+        }
+
+        int[] neighbors = new int[offsets[size]];
+        for (int i = 0; i < size; i++) {
+            int position = offsets[i];
+            for (Node linked : indexed[i]) {
+                int index = linked.getIndex();
+                if (index < 0 || index >= size || indexed[index] != linked) {
+                    throw new IllegalArgumentException("Узел "
+                            + indexed[i].getId() + " связан с узлом "
+                            + linked.getId() + " вне сети");
+                }
+                neighbors[position++] = index;
+            }
+        }
+
+        CsrGraph graph = new CsrGraph(indexed, offsets, neighbors, true);
+        for (Node node : indexed) {
+            node.attach(graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Строит граф непосредственно по списку связей, без промежуточных множеств
+     * связанных узлов. Для каждой метки создается узел с очередным
+     * идентификатором; индекс узла в графе совпадает с индексом метки.
+     * <p>
+     * Связи задаются парами индексов {@code sources[k]} - {@code targets[k]}
+     * для k от 0 до count - 1. Повторные связи (в том числе в обратном
+     * направлении) отбрасываются сортировкой, связи узла с самим собой
+     * игнорируются, как и в {@link Node#linkNodes(Node, Node)}. Соседи каждого
+     * узла записываются по возрастанию индекса.
+     *
+     * @param labels
+     *            метки узлов
+     * @param sources
+     *            индексы первых узлов связей
+     * @param targets
+     *            индексы вторых узлов связей
+     * @param count
+     *            количество связей
+     * @return уплотненный граф
+     * @throws IllegalArgumentException
+     *             если индекс узла связи вне диапазона меток
+     */
+    public static CsrGraph fromEdges(String[] labels, int[] sources,
+            int[] targets, int count) {
+        return fromEdges(null, labels, sources, targets, count);
+    }
+
+    /**
+     * Строит граф по списку связей, как
+     * {@link #fromEdges(String[], int[], int[], int)}, с заданными
+     * идентификаторами узлов.
+     *
+     * @param ids
+     *            идентификаторы узлов или null, если узлы получают очередные
+     *            идентификаторы
+     * @param labels
+     * @param sources
+     * @param targets
+     * @param count
+     * @return уплотненный граф
+     */
+    public static CsrGraph fromEdges(int[] ids, String[] labels,
+            int[] sources, int[] targets, int count) {
+        final int size = labels.length;
+        long[] edges = new long[count];
+        int unique = 0;
+        for (int k = 0; k < count; k++) {
+            int a = sources[k];
+            int b = targets[k];
+            if (a < 0 || a >= size || b < 0 || b >= size) {
+                throw new IllegalArgumentException(String.format(
+                        "Связь %d - %d вне диапазона узлов [0, %d)", a, b,
+                        size));
+            }
+            if (a != b) {
+                edges[unique++] = (long) Math.min(a, b) << 32
+                        | Math.max(a, b);
+            }
+        }
+        Arrays.sort(edges, 0, unique);
+
+        // Младшие соседи узла (с меньшим индексом) записываются перед
+        // старшими, поэтому считаются отдельно.
+        int[] lower = new int[size];
+        int[] offsets = new int[size + 1];
+        int edgesCount = 0;
+        for (int k = 0; k < unique; k++) {
+            if (k > 0 && edges[k] == edges[k - 1]) {
+                continue;
+            }
+            edges[edgesCount++] = edges[k];
+            int a = (int) (edges[k] >>> 32);
+            int b = (int) edges[k];
+            offsets[a + 1]++;
+            offsets[b + 1]++;
+            lower[b]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        // Позиции записи старших и младших соседей каждого узла.
+        int[] upper = lower;
+        int[] next = new int[size];
+        for (int i = 0; i < size; i++) {
+            upper[i] = offsets[i] + lower[i];
+            next[i] = offsets[i];
+        }
+        int[] neighbors = new int[offsets[size]];
+        for (int k = 0; k < edgesCount; k++) {
+            int a = (int) (edges[k] >>> 32);
+            int b = (int) edges[k];
+            neighbors[upper[a]++] = b;
+            neighbors[next[b]++] = a;
+        }
+
+        return of(ids, labels, offsets, neighbors);
+    }
+
+    /**
+     * Строит граф по готовым массивам CSR, например, сохраненным ранее
+     * методами {@link #getOffsets()} и {@link #getNeighbors()}. Массивы не
+     * копируются. Симметричность связей не проверяется.
+     *
+     * @param ids
+     *            идентификаторы узлов или null, если узлы получают очередные
+     *            идентификаторы
+     * @param labels
+     *            метки узлов
+     * @param offsets
+     *            смещения списков соседей, длиной на единицу больше
+     *            количества узлов
+     * @param neighbors
+     *            индексы соседей
+     * @return уплотненный граф
+     * @throws IllegalArgumentException
+     *             если массивы не согласованы между собой
+     */
+    public static CsrGraph of(int[] ids, String[] labels, int[] offsets,
+            int[] neighbors) {
+        final int size = labels.length;
+        if ((ids != null && ids.length != size)
+                || offsets.length != size + 1 || offsets[0] != 0
+                || offsets[size] != neighbors.length) {
+            throw new IllegalArgumentException(
+                    "Размеры массивов графа не согласованы");
+        }
+        for (int i = 0; i < size; i++) {
+            if (offsets[i] > offsets[i + 1]) {
+                throw new IllegalArgumentException("Смещения соседей узла "
+                        + i + " убывают");
+            }
+        }
+        for (int neighbor : neighbors) {
+            if (neighbor < 0 || neighbor >= size) {
+                throw new IllegalArgumentException("Сосед " + neighbor
+                        + " вне диапазона узлов [0, " + size + ")");
+            }
+        }
+
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = new Node(ids == null ? Node.nextId() : ids[i], null);
+            nodes[i].setLabel(labels[i]);
+            nodes[i].setIndex(i);
+        }
+        CsrGraph graph = new CsrGraph(nodes, offsets, neighbors, ids != null);
+        for (Node node : nodes) {
+            node.attach(graph);
+        }
+        return graph;
+    }
+
+    /**
+     * Возвращает истину, если идентификаторы узлов заданы при построении графа
+     * (узлами в {@link #build(Iterable, int)} или массивом идентификаторов), и
+     * ложь, если узлы получили очередные идентификаторы счетчика.
+     *
+     * @return
+     */
+    public boolean hasExplicitIds() {
+        return explicitIds;
+    }
+
+    /**
+     * Возвращает неизменяемое множество узлов графа. Множество является
+     * представлением над массивом узлов и не требует дополнительной памяти.
+     *
+     * @return
+     */
+    public Set<Node> nodeSet() {
+        return new AbstractSet<Node>() {
+            @Override
+            public Iterator<Node> iterator() {
+                return Arrays.asList(nodes).iterator();
+            }
+
+            @Override
+            public int size() {
+                return nodes.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Node)) {
+                    return false;
+                }
+                int index = ((Node) o).getIndex();
+                return index >= 0 && index < nodes.length
+                        && nodes[index] == o;
+            }
+        };
+    }
+
+    /**
+     * Возвращает количество узлов в графе.
+     *
+     * @return
+     */
+    @Override
+    public int size() {
+        return nodes.length;
+    }
+
+    @Override
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Соседи записываются в порядке хранения в графе.
+     */
+    @Override
+    public int neighbors(int index, int[] buffer) {
+        int from = offsets[index];
+        int count = offsets[index + 1] - from;
+        System.arraycopy(neighbors, from, buffer, 0, count);
+        return count;
+    }
+
+    /**
+     * Возвращает количество соседей узла.
+     *
+     * @param index
+     *            индекс узла
+     * @return
+     */
+    public int degree(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Возвращает узел по его индексу в графе.
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    public Node getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Возвращает массив смещений. Массив не копируется и не должен изменяться
+     * вызывающей стороной; метод предназначен для обхода графа в горячих
+     * циклах.
+     *
+     * @return
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Возвращает массив индексов соседей. Массив не копируется и не должен
+     * изменяться вызывающей стороной.
+     *
+     * @return
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Возвращает номера связей по позициям массива {@link #getNeighbors()}.
+     * Связь двух узлов записана в графе дважды, у каждого из узлов, и обе
+     * позиции имеют один номер. Номера идут подряд от 0 до
+     * {@link #getEdgesCount()} - 1. Массив не копируется и не должен
+     * изменяться вызывающей стороной.
+     *
+     * @return
+     */
+    public int[] getEdgeIds() {
+        if (edgeIds == null) {
+            int[] ids = new int[neighbors.length];
+            int count = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int linked = neighbors[k];
+                    int reverse = linked < i ? position(linked, i) : -1;
+                    ids[k] = reverse < 0 ? count++ : ids[reverse];
+                }
+            }
+            edgesCount = count;
+            edgeIds = ids;
+        }
+        return edgeIds;
+    }
+
+    /**
+     * Возвращает количество связей графа.
+     *
+     * @return
+     */
+    public int getEdgesCount() {
+        getEdgeIds();
+        return edgesCount;
+    }
+
+    /**
+     * Возвращает позицию соседа linked в списке соседей узла index или -1.
+     */
+    private int position(int index, int linked) {
+        for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+            if (neighbors[k] == linked) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Итератор по соседям узла с заданным индексом.
+     *
+     * @param index
+     * @return
+     */
+    Iterator<Node> neighborIterator(final int index) {
+        return new Iterator<Node>() {
+            private int position = offsets[index];
+
+            @Override
+            public boolean hasNext() {
+                return position < offsets[index + 1];
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return nodes[neighbors[position++]];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Неизменяемое множество соседей узла с заданным индексом.
+     *
+     * @param index
+     * @return
+     */
+    Set<Node> neighborSet(final int index) {
+        return new AbstractSet<Node>() {
+            @Override
+            public Iterator<Node> iterator() {
+                return neighborIterator(index);
+            }
+
+            @Override
+            public int size() {
+                return degree(index);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                for (int k = offsets[index]; k < offsets[index + 1]; k++) {
+                    if (nodes[neighbors[k]].equals(o)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
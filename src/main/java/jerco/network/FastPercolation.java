@@ -2,6 +2,15 @@ package jerco.network;
 
 import java.util.Random;
 
+import jerco.utils.RandomAlgorithm;
+
+/**
+ * Набросок алгоритма Ньюмана-Зиффа для решетки 5x5.
+ * 
+ * @deprecated используйте {@link NewmanZiff}, который работает с любой сетью
+ *             и возвращает микроканоническую кривую вместо вывода на консоль.
+ */
+@Deprecated
 public class FastPercolation {
 	private static final 	int  L = 5;        /* Linear dimension */
 	 private static final 	int  N = (L*L);
@@ -10,6 +19,11 @@ public class FastPercolation {
 	 private	int ptr[] = new int[N];          /* Array of pointers */
 	 private	int nn[][] = new int[N][4];        /* Nearest neighbors */
 	 private	int order[]=new int[N];        /* Occupation order */
+	 private	Random random = RandomAlgorithm.XOSHIRO256.create();
+	 void setRandom(Random random)
+	 {
+	   this.random = random;
+	 }
 	 void boundaries()
 	 {
 	   int i;
@@ -25,12 +39,11 @@ public class FastPercolation {
 	 }
 	 void permutation()
 	 {
-	   Random a= new Random();
 	   int i,j;
 	   int temp;
 	   for (i=0; i<N; i++) order[i] = i;
 	   for (i=0; i<N; i++) {
-	     j = (int)(i + (N-i)*a.nextDouble());
+	     j = (int)(i + (N-i)*random.nextDouble());
 	     temp = order[i];
 	     order[i] = order[j];
 	     order[j] = temp;
@@ -0,0 +1,717 @@
+package jerco.network;
+
+import static jerco.Constants.DOUBLE_PRECISION;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import jerco.network.RegularLattice.BadNetFileFormatException;
+import jerco.utils.BernoulliBits;
+import jerco.utils.RandomAlgorithm;
+import jerco.utils.RandomSource;
+
+/**
+ * Регулярная решетка с неявной структурой. Связи узлов не хранятся, а
+ * вычисляются по шаблону соседства ({@link StencilTopology}), поэтому
+ * решетку не нужно генерировать. Состояние узлов хранится в {@link NetState}
+ * (один бит на узел для зараженности), для поиска кластеров используется
+ * одно целое на узел.
+ * <p>
+ * Кластеры ищутся объединением множеств (union-find) с весами и сжатием
+ * путей. Объекты {@link Cluster} и узлы создаются только по запросу: итератор
+ * и кластеры возвращают узлы-представления, которые читают и изменяют
+ * состояние решетки. Представления одного и того же узла равны между собой.
+ * <p>
+ * В отличие от {@link ClusterLabeling} лес множеств хранит размеры кластеров
+ * в корнях, без отдельного массива размеров, чтобы решетка занимала четыре
+ * байта на узел.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class ImplicitLattice implements Net {
+    /**
+     * Метка незараженного узла при поиске кластеров.
+     */
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    /**
+     * Узел-представление решетки.
+     */
+    private class Site extends Node {
+
+        Site(int index) {
+            super(index, (NavigableSet<Node>) null);
+            setIndex(index);
+            bind(state, index);
+        }
+
+        @Override
+        public void setInfected(boolean infected) {
+            state.setInfected(getIndex(), infected);
+            resetClusters();
+        }
+
+        @Override
+        boolean isInCluster() {
+            return labeled && parent[getIndex()] != EMPTY;
+        }
+
+        @Override
+        public void setInCluster(boolean inCluster) {
+            if (inCluster != isInCluster()) {
+                throw new UnsupportedOperationException(
+                        "Принадлежность кластеру определяется решеткой");
+            }
+        }
+
+        @Override
+        public boolean isInPercolationCluster() {
+            return isInCluster() && percolationRoots != null
+                    && percolationRoots.contains(findRoot(getIndex()));
+        }
+
+        @Override
+        void setInPercolationCluster(boolean inPercolationCluster) {
+            throw new UnsupportedOperationException(
+                    "Принадлежность кластеру определяется решеткой");
+        }
+
+        @Override
+        public boolean isInBound() {
+            return boundOf(getIndex()) != StencilTopology.NO_BOUND;
+        }
+
+        @Override
+        public int getBound() {
+            int bound = boundOf(getIndex());
+            if (bound == StencilTopology.NO_BOUND) {
+                throw new IllegalStateException("Узел не принадлежит границе");
+            }
+            return bound;
+        }
+
+        @Override
+        public void setBound(int bound) {
+            throw new UnsupportedOperationException(
+                    "Границы неявной решетки задаются ее структурой");
+        }
+
+        @Override
+        public void removeFromBound() {
+            throw new UnsupportedOperationException(
+                    "Границы неявной решетки задаются ее структурой");
+        }
+
+        @Override
+        public void linkTo(Node node) {
+            throw new UnsupportedOperationException(
+                    "Связи неявной решетки задаются шаблоном");
+        }
+
+        @Override
+        public void setLinkedNodes(NavigableSet<Node> linkedNodes) {
+            throw new UnsupportedOperationException(
+                    "Связи неявной решетки задаются шаблоном");
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return getLinkedNodes().iterator();
+        }
+
+        @Override
+        public Set<Node> getLinkedNodes() {
+            int[] buffer = new int[topology.maxDegree()];
+            int count = topology.neighbors(getIndex(), buffer);
+            Set<Node> linked = new LinkedHashSet<Node>(count * 2);
+            for (int i = 0; i < count; i++) {
+                linked.add(new Site(buffer[i]));
+            }
+            return Collections.unmodifiableSet(linked);
+        }
+    }
+
+    /**
+     * Структура решетки
+     */
+    private final NetStructureInfo structureInfo;
+
+    /**
+     * Правило вычисления связей и границ
+     */
+    private final StencilTopology topology;
+
+    /**
+     * Границы в решетке
+     */
+    private final Set<Integer> bounds;
+
+    /**
+     * Узлы решетки, принадлежащие границам.
+     */
+    private final BoundarySites boundary;
+
+    /**
+     * Состояние узлов. Принадлежность кластерам и границам в нем не
+     * хранится, а вычисляется решеткой.
+     */
+    private final NetState state;
+
+    /**
+     * Лес объединения множеств. Для незараженного узла хранит
+     * {@link #EMPTY}, для корня кластера - размер кластера со знаком минус,
+     * для остальных узлов - индекс родителя. Создается при первом поиске
+     * кластеров.
+     */
+    private int[] parent;
+
+    /**
+     * Истина, если {@link #parent} соответствует текущему заражению.
+     */
+    private boolean labeled;
+
+    /**
+     * Количество найденных кластеров.
+     */
+    private int clustersCount;
+
+    /**
+     * Вероятность заражения сети
+     */
+    private double infectProbability = Double.NaN;
+
+    /**
+     * Генератор случайных чисел для заражения.
+     */
+    private Random random = RandomAlgorithm.XOSHIRO256.create();
+
+    /**
+     * Правило определения перколяционного кластера.
+     */
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    /**
+     * Созданные по запросу кластеры.
+     */
+    private List<Cluster> clusters;
+
+    /**
+     * Корни перколяционных кластеров.
+     */
+    private Set<Integer> percolationRoots;
+
+    /**
+     * Созданные по запросу перколяционные кластеры.
+     */
+    private List<Cluster> percolationClusters;
+
+    /**
+     * Создает решетку с заданной структурой. Генерация узлов и связей не
+     * производится.
+     *
+     * @param structureInfo
+     * @throws IllegalArgumentException
+     *             если для генератора или оберток решетки нет шаблона
+     */
+    public ImplicitLattice(NetStructureInfo structureInfo) {
+        this.structureInfo = new NetStructureInfo(structureInfo);
+        this.topology = StencilTopology.of(structureInfo);
+        this.bounds = topology.getBounds();
+        this.boundary = BoundarySites.of(topology);
+        this.state = new NetState(topology.size());
+    }
+
+    public NetStructureInfo getStructureInfo() {
+        return structureInfo;
+    }
+
+    public StencilTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Возвращает узлы решетки, принадлежащие границам.
+     *
+     * @return
+     */
+    public BoundarySites getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера. По
+     * умолчанию {@link SpanningRule#ALL}.
+     *
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+        percolationRoots = null;
+        percolationClusters = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Возвращает узлы-представления в порядке слоев.
+     */
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<Node>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Site(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Возвращает узел-представление по его индексу.
+     *
+     * @param index
+     * @return
+     */
+    public Node getNode(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalArgumentException(String.format(
+                    "index = %d выходит за допустимый диапазон", index));
+        }
+        return new Site(index);
+    }
+
+    /**
+     * Возвращает состояние узлов решетки.
+     *
+     * @return
+     */
+    public NetState getState() {
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Заражение заполняет битовый массив последовательно, по 64 узла за раз.
+     * При вероятности, близкой к 0 или 1, случайные числа вычисляются только
+     * для редких узлов ({@link BernoulliBits}).
+     */
+    @Override
+    public void infect(double p) {
+        infectProbability = p;
+        BernoulliBits infected = new BernoulliBits(random, p
+                - DOUBLE_PRECISION, size());
+        for (int word = 0; word < state.words(); word++) {
+            state.setInfectedWord(word, infected.nextWord());
+        }
+        findClusters();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findClusters() {
+        resetClusters();
+        final int size = size();
+        if (parent == null) {
+            parent = new int[size];
+        }
+
+        for (int i = 0; i < size; i++) {
+            parent[i] = state.isInfected(i) ? -1 : EMPTY;
+        }
+
+        final int[] buffer = new int[topology.maxDegree()];
+        int index = 0;
+        for (int row = 0; row < topology.getHeight(); row++) {
+            final int rowWidth = topology.rowWidth(row);
+            for (int column = 0; column < rowWidth; column++, index++) {
+                if (parent[index] == EMPTY) {
+                    continue;
+                }
+                int count = topology.neighbors(row, column, buffer);
+                for (int k = 0; k < count; k++) {
+                    int linked = buffer[k];
+                    // Каждую связь достаточно рассмотреть один раз
+                    if (linked < index && parent[linked] != EMPTY) {
+                        union(index, linked);
+                    }
+                }
+            }
+        }
+
+        clustersCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (parent[i] < 0 && parent[i] != EMPTY) {
+                clustersCount++;
+            }
+        }
+        labeled = true;
+        return clustersCount;
+    }
+
+    /**
+     * Устанавливает найденные ранее метки кластеров вместо поиска. Метки
+     * имеют тот же смысл, что и в {@link ClusterLabeling#getLabels()}: корень
+     * кластера помечен своим индексом, остальные узлы кластера - индексом
+     * корня. Массив не копируется, а становится лесом объединения множеств
+     * решетки, поэтому после вызова не должен использоваться вызывающей
+     * стороной. Связность кластеров не проверяется.
+     *
+     * @param labels
+     *            метки узлов
+     * @return количество кластеров
+     * @throws IllegalArgumentException
+     *             если количество меток не совпадает с количеством узлов,
+     *             метка указывает не на корень кластера или не соответствует
+     *             зараженности узла
+     */
+    int setClusterLabels(int[] labels) {
+        final int size = size();
+        if (labels.length != size) {
+            throw new IllegalArgumentException(String.format(
+                    "labels.length = %d, а узлов %d", labels.length, size));
+        }
+        resetClusters();
+        parent = null;
+        // Корни получают размер 1, свободные узлы - EMPTY
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int root = labels[i];
+            if (root == ClusterLabeling.EMPTY ? state.isInfected(i)
+                    : (!state.isInfected(i) || root < 0 || root >= size)) {
+                throw new IllegalArgumentException(String.format(
+                        "Неверная метка %d узла %d", root, i));
+            }
+            if (root == ClusterLabeling.EMPTY) {
+                labels[i] = EMPTY;
+            } else if (root == i) {
+                labels[i] = -1;
+                count++;
+            }
+        }
+        // Остальные узлы увеличивают размер своего корня
+        for (int i = 0; i < size; i++) {
+            int root = labels[i];
+            if (root < 0) {
+                continue;
+            }
+            if (labels[root] >= 0 || labels[root] == EMPTY) {
+                throw new IllegalArgumentException(String.format(
+                        "Неверная метка %d узла %d", root, i));
+            }
+            labels[root]--;
+        }
+        parent = labels;
+        clustersCount = count;
+        labeled = true;
+        return count;
+    }
+
+    /**
+     * Возвращает метку кластера узла: индекс корня кластера либо
+     * {@link ClusterLabeling#EMPTY}.
+     */
+    private int clusterLabel(int index) {
+        return parent[index] == EMPTY ? ClusterLabeling.EMPTY
+                : findRoot(index);
+    }
+
+    /**
+     * Сохраняет решетку в двоичном формате {@link LatticeSnapshot}. Если
+     * метки кластеров сохраняются, а кластеры еще не найдены, они ищутся.
+     *
+     * @param file
+     * @param clusterLabels
+     *            сохранять ли метки кластеров узлов
+     * @throws IOException
+     *             в случае проблемы работы с файлом
+     */
+    public void saveSnapshot(File file, boolean clusterLabels)
+            throws IOException {
+        if (clusterLabels && !labeled) {
+            findClusters();
+        }
+        Long seed = random instanceof RandomSource ? ((RandomSource) random)
+                .getSeed() : null;
+        LatticeSnapshot.write(file, structureInfo, seed, size(),
+                clusterLabels, new LatticeSnapshot.Source() {
+                    @Override
+                    public long word(int index) {
+                        return state.getInfectedWord(index);
+                    }
+
+                    @Override
+                    public int label(int index) {
+                        return clusterLabel(index);
+                    }
+                });
+    }
+
+    /**
+     * Загружает решетку из снимка ({@link LatticeSnapshot}). Узлы и связи не
+     * строятся: зараженность читается прямо в {@link NetState}, сохраненные
+     * метки кластеров - в лес объединения множеств. Если меток в снимке нет,
+     * кластеры ищутся.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     *             в случае ошибки чтения
+     * @throws BadNetFileFormatException
+     *             если файл не является снимком, поврежден или для его
+     *             структуры нет шаблона соседства
+     */
+    public static ImplicitLattice load(File file) throws IOException,
+            BadNetFileFormatException {
+        return LatticeSnapshot.readImplicit(file);
+    }
+
+    /**
+     * Возвращает корень множества, которому принадлежит узел, сжимая путь до
+     * корня.
+     *
+     * @param index
+     * @return
+     */
+    private int findRoot(int index) {
+        int root = index;
+        while (parent[root] >= 0) {
+            root = parent[root];
+        }
+        while (index != root) {
+            int next = parent[index];
+            parent[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    /**
+     * Объединяет множества двух узлов. Меньшее множество присоединяется к
+     * большему.
+     */
+    private void union(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+        if (rootA == rootB) {
+            return;
+        }
+        // Размеры хранятся со знаком минус
+        if (parent[rootA] > parent[rootB]) {
+            parent[rootB] += parent[rootA];
+            parent[rootA] = rootB;
+        } else {
+            parent[rootA] += parent[rootB];
+            parent[rootB] = rootA;
+        }
+    }
+
+    private void resetClusters() {
+        labeled = false;
+        clusters = null;
+        percolationRoots = null;
+        percolationClusters = null;
+    }
+
+    private void checkLabeled() {
+        if (!labeled) {
+            throw new IllegalStateException(
+                    "You must to call findClusters() before call this method");
+        }
+    }
+
+    private int boundOf(int index) {
+        int row = topology.row(index);
+        return topology.bound(row, index - topology.index(row, 0));
+    }
+
+    @Override
+    public int size() {
+        return topology.size();
+    }
+
+    @Override
+    public int boundsCounts() {
+        return bounds.size();
+    }
+
+    @Override
+    public double getInfectProbability() {
+        return infectProbability;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Кластеры создаются при первом вызове после поиска кластеров. Кластеры
+     * одинакового размера следуют в порядке их первого узла, узлы в кластере
+     * - в порядке индексов.
+     */
+    @Override
+    public List<Cluster> getClusters() {
+        if (clusters == null) {
+            clusters = labeled ? materialize(null) : new ArrayList<Cluster>();
+        }
+        return Collections.unmodifiableList(clusters);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getClustersSizes() {
+        if (!labeled) {
+            return new int[0];
+        }
+        int[] result = new int[clustersCount];
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (parent[i] < 0 && parent[i] != EMPTY) {
+                result[count++] = -parent[i];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Создает кластеры по результатам поиска.
+     *
+     * @param roots
+     *            корни кластеров, которые нужно создать; null, если нужны все
+     *            кластеры
+     * @return кластеры, упорядоченные по возрастанию размера
+     */
+    private List<Cluster> materialize(Set<Integer> roots) {
+        Map<Integer, Cluster> byRoot = new HashMap<Integer, Cluster>();
+        List<Cluster> result = new ArrayList<Cluster>();
+        for (int i = 0; i < size(); i++) {
+            if (parent[i] == EMPTY) {
+                continue;
+            }
+            int root = findRoot(i);
+            if (roots != null && !roots.contains(root)) {
+                continue;
+            }
+
+            Cluster cluster = byRoot.get(root);
+            if (cluster == null) {
+                cluster = new Cluster();
+                byRoot.put(root, cluster);
+                result.add(cluster);
+            }
+            cluster.append(new Site(i));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Для проверки рассматриваются только узлы на границах решетки
+     * ({@link BoundarySites}), перколяционный кластер определяется правилом
+     * {@link #getSpanningRule()}.
+     */
+    @Override
+    public boolean hasPercolationCluster() {
+        if (bounds.isEmpty()) {
+            throw new IllegalStateException("Your try to check percolatin "
+                    + "cluster, but net doesn't have bounds");
+        }
+        checkLabeled();
+
+        Map<Integer, Integer> rootBounds = new HashMap<Integer, Integer>();
+        for (int k = 0; k < boundary.size(); k++) {
+            int index = boundary.site(k);
+            if (parent[index] == EMPTY) {
+                continue;
+            }
+            int root = findRoot(index);
+            Integer mask = rootBounds.get(root);
+            rootBounds.put(root, (mask == null ? 0 : mask)
+                    | boundary.siteMask(k));
+        }
+
+        final int[] required = spanningRule.requiredMasks(boundary);
+        percolationRoots = new HashSet<Integer>();
+        for (Map.Entry<Integer, Integer> entry : rootBounds.entrySet()) {
+            if (SpanningRule.isSpanning(entry.getValue(), required)) {
+                percolationRoots.add(entry.getKey());
+            }
+        }
+        percolationClusters = null;
+        return !percolationRoots.isEmpty();
+    }
+
+    @Override
+    public List<Cluster> getPercolationClusters() throws IllegalStateException {
+        if (percolationRoots == null) {
+            throw new IllegalStateException(
+                    "You must to call hasPercolationCluster() before "
+                            + "call this method");
+        }
+        if (percolationClusters == null) {
+            percolationClusters = materialize(percolationRoots);
+        }
+        return percolationClusters;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        state.resetInfected();
+        state.resetVisited();
+        resetClusters();
+    }
+}
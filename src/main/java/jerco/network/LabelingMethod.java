@@ -0,0 +1,29 @@
+package jerco.network;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Способ поиска кластеров в уплотненной сети (см. {@link NetImpl#compact()}).
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public enum LabelingMethod {
+    /**
+     * Обход в ширину. Объекты {@link Cluster} создаются сразу при поиске.
+     */
+    BREADTH_FIRST,
+
+    /**
+     * Объединение множеств ({@link ClusterLabeling}). Объекты {@link Cluster}
+     * создаются только при обращении к ним.
+     */
+    UNION_FIND,
+
+    /**
+     * Объединение множеств, при котором полосы узлов обрабатываются
+     * параллельно (см. {@link NetImpl#setLabelingPool(ForkJoinPool)}).
+     * Результат совпадает с {@link #UNION_FIND}.
+     */
+    PARALLEL_UNION_FIND
+}
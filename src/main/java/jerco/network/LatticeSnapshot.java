@@ -0,0 +1,640 @@
+package jerco.network;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import jerco.network.RegularLattice.BadNetFileFormatException;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.RegularWrapper;
+import jerco.utils.RandomSource;
+
+/**
+ * Снимок зараженности регулярной решетки в двоичном формате. В отличие от
+ * текстового формата {@link RegularLattice#save(File)}, который занимает два
+ * байта на узел и читается разбором лексем, снимок хранит зараженность
+ * упакованной по биту на узел и читается и записывается блоками через
+ * {@link FileChannel}.
+ * <p>
+ * Формат (целые числа - в порядке little-endian):
+ *
+ * <pre>
+ * "JLAT"                    - сигнатура, 4 байта
+ * int версия                - {@link #VERSION}
+ * int флажки                - 1: есть метки кластеров, 2: есть зерно
+ * строка генератор          - имя {@code NetGenerators}
+ * int ширина, int высота
+ * int количество оберток, строки имена классов оберток
+ * long зерно                - 0, если зерна нет
+ * int количество узлов
+ * long[(узлы + 63) / 64]    - зараженность, бит k слова w - узел 64w + k
+ * int[узлы]                 - метки кластеров, если есть
+ * </pre>
+ *
+ * Обертки
+ * создаются по имени класса только если класс реализует
+ * {@link RegularWrapper}; класс при проверке не инициализируется.
+ * <p>
+ * Строка записывается как int длина и байты UTF-8. Метки кластеров - индекс
+ * корневого узла кластера либо {@link ClusterLabeling#EMPTY} для свободного
+ * узла.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class LatticeSnapshot {
+    /**
+     * Версия формата, которую записывает этот класс.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'J', 'L', 'A', 'T' };
+
+    private static final int FLAG_LABELS = 1;
+
+    private static final int FLAG_SEED = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final NetStructureInfo structureInfo;
+
+    private final Long seed;
+
+    private final int size;
+
+    private final long[] infected;
+
+    private final int[] labels;
+
+    private LatticeSnapshot(NetStructureInfo structureInfo, Long seed,
+            int size, long[] infected, int[] labels) {
+        this.structureInfo = structureInfo;
+        this.seed = seed;
+        this.size = size;
+        this.infected = infected;
+        this.labels = labels;
+    }
+
+    /**
+     * Создает снимок решетки.
+     *
+     * @param net
+     * @param clusterLabels
+     *            сохранять ли метки кластеров
+     * @return
+     */
+    public static LatticeSnapshot of(RegularLattice net, boolean clusterLabels) {
+        NetState state = net.getState();
+        long[] infected = new long[state.words()];
+        for (int word = 0; word < infected.length; word++) {
+            infected[word] = state.getInfectedWord(word);
+        }
+        Random random = net.getRandom();
+        Long seed = random instanceof RandomSource ? ((RandomSource) random)
+                .getSeed() : null;
+        return new LatticeSnapshot(new NetStructureInfo(net
+                .getStructureInfo()), seed, state.size(), infected,
+                clusterLabels ? net.clusterLabels() : null);
+    }
+
+    /**
+     * Проверяет, записан ли файл в формате снимка.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static boolean isSnapshot(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return !buffer.hasRemaining()
+                    && Arrays.equals(buffer.array(), MAGIC);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Источник зараженности и меток кластеров записываемой решетки.
+     */
+    interface Source {
+        /**
+         * Возвращает слово зараженности с заданным номером.
+         */
+        long word(int index);
+
+        /**
+         * Возвращает метку кластера узла.
+         */
+        int label(int index);
+    }
+
+    /**
+     * Записывает снимок в файл.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        write(file, structureInfo, seed, size, labels != null, new Source() {
+            @Override
+            public long word(int index) {
+                return infected[index];
+            }
+
+            @Override
+            public int label(int index) {
+                return labels[index];
+            }
+        });
+    }
+
+    /**
+     * Записывает снимок решетки, зараженность и метки которой хранятся вне
+     * снимка (например, в отображенных в память файлах).
+     *
+     * @param file
+     * @param structureInfo
+     * @param seed
+     *            зерно или null
+     * @param size
+     *            количество узлов
+     * @param clusterLabels
+     *            записывать ли метки кластеров
+     * @param source
+     * @throws IOException
+     */
+    static void write(File file, NetStructureInfo structureInfo, Long seed,
+            int size, boolean clusterLabels, Source source) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt((clusterLabels ? FLAG_LABELS : 0)
+                    | (seed != null ? FLAG_SEED : 0));
+            putString(buffer, generatorName(structureInfo.getGenerator()));
+            buffer.putInt(structureInfo.getWidth());
+            buffer.putInt(structureInfo.getHeight());
+            buffer.putInt(structureInfo.getWrapper().size());
+            for (RegularWrapper wrapper : structureInfo.getWrapper()) {
+                putString(buffer, wrapper.getClass().getName());
+            }
+            buffer.putLong(seed != null ? seed : 0L);
+            buffer.putInt(size);
+
+            final int words = (size + 63) >>> 6;
+            for (int word = 0; word < words; word++) {
+                if (buffer.remaining() < 8) {
+                    drain(channel, buffer);
+                }
+                buffer.putLong(source.word(word));
+            }
+            for (int i = 0; clusterLabels && i < size; i++) {
+                if (buffer.remaining() < 4) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(source.label(i));
+            }
+            drain(channel, buffer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Заголовок снимка.
+     */
+    static final class Header {
+        final NetStructureInfo structureInfo;
+
+        final Long seed;
+
+        final int size;
+
+        final boolean clusterLabels;
+
+        /**
+         * Смещение слов зараженности в файле.
+         */
+        final long dataPosition;
+
+        Header(NetStructureInfo structureInfo, Long seed, int size,
+                boolean clusterLabels, long dataPosition) {
+            this.structureInfo = structureInfo;
+            this.seed = seed;
+            this.size = size;
+            this.clusterLabels = clusterLabels;
+            this.dataPosition = dataPosition;
+        }
+
+        int words() {
+            return (size + 63) >>> 6;
+        }
+
+        /**
+         * Возвращает смещение меток кластеров в файле.
+         */
+        long labelsPosition() {
+            return dataPosition + 8L * words();
+        }
+    }
+
+    /**
+     * Читает снимок из файла.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     *             в случае ошибки чтения
+     * @throws BadNetFileFormatException
+     *             если файл не является снимком, записан более новой версией
+     *             формата или поврежден
+     */
+    public static LatticeSnapshot read(File file) throws IOException,
+            BadNetFileFormatException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            Header header = readHeader(file, channel, buffer);
+            long[] infected = new long[header.words()];
+            readLongs(channel, buffer, infected);
+            int[] labels = null;
+            if (header.clusterLabels) {
+                labels = new int[header.size];
+                readInts(channel, buffer, labels);
+            }
+            return new LatticeSnapshot(header.structureInfo, header.seed,
+                    header.size, infected, labels);
+        } catch (EOFException e) {
+            throw new BadNetFileFormatException(file, e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Читает снимок сразу в решетку с неявной структурой, без промежуточного
+     * снимка: слова зараженности записываются в {@link NetState} решетки, а
+     * массив прочитанных меток становится лесом объединения множеств.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws BadNetFileFormatException
+     *             если файл не является снимком, поврежден, содержит неверные
+     *             метки или для его структуры нет шаблона соседства
+     */
+    static ImplicitLattice readImplicit(File file) throws IOException,
+            BadNetFileFormatException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            Header header = readHeader(file, channel, buffer);
+            ImplicitLattice net = new ImplicitLattice(header.structureInfo);
+            NetState state = net.getState();
+            if (state.size() != header.size) {
+                throw new BadNetFileFormatException(file, "size = "
+                        + header.size + ", lattice size = " + state.size());
+            }
+            for (int word = 0; word < header.words(); word++) {
+                fill(channel, buffer, 8);
+                state.setInfectedWord(word, buffer.getLong());
+            }
+            if (header.clusterLabels) {
+                int[] labels = new int[header.size];
+                readInts(channel, buffer, labels);
+                net.setClusterLabels(labels);
+            } else {
+                net.findClusters();
+            }
+            return net;
+        } catch (EOFException e) {
+            throw new BadNetFileFormatException(file, e);
+        } catch (IllegalArgumentException e) {
+            throw new BadNetFileFormatException(file, e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void readLongs(FileChannel channel, ByteBuffer buffer,
+            long[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            fill(channel, buffer, 8);
+            int count = Math.min(buffer.remaining() / 8, values.length
+                    - offset);
+            buffer.asLongBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    private static void readInts(FileChannel channel, ByteBuffer buffer,
+            int[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            fill(channel, buffer, 4);
+            int count = Math.min(buffer.remaining() / 4, values.length
+                    - offset);
+            buffer.asIntBuffer().get(values, offset, count);
+            buffer.position(buffer.position() + count * 4);
+            offset += count;
+        }
+    }
+
+    /**
+     * Читает заголовок снимка с начала канала и проверяет, что файл содержит
+     * все данные снимка.
+     *
+     * @param file
+     *            файл канала, для сообщений об ошибках
+     * @param channel
+     * @return
+     * @throws IOException
+     * @throws BadNetFileFormatException
+     */
+    static Header readHeader(File file, FileChannel channel)
+            throws IOException, BadNetFileFormatException {
+        try {
+            Header header = readHeader(file, channel, ByteBuffer.allocate(
+                    1 << 16).order(ByteOrder.LITTLE_ENDIAN));
+            long end = header.labelsPosition()
+                    + (header.clusterLabels ? 4L * header.size : 0);
+            if (channel.size() < end) {
+                throw new EOFException();
+            }
+            return header;
+        } catch (EOFException e) {
+            throw new BadNetFileFormatException(file, e);
+        }
+    }
+
+    /**
+     * Читает заголовок снимка. После чтения в буфере остаются прочитанные
+     * данные, следующие за заголовком.
+     */
+    private static Header readHeader(File file, FileChannel channel,
+            ByteBuffer buffer) throws IOException, BadNetFileFormatException {
+        buffer.clear();
+        buffer.flip();
+        fill(channel, buffer, MAGIC.length + 8);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new BadNetFileFormatException(file, "not a snapshot");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new BadNetFileFormatException(file, "unsupported version "
+                    + version);
+        }
+        int flags = buffer.getInt();
+
+        NetStructureInfo structureInfo = new NetStructureInfo();
+        try {
+            structureInfo.setGenerator(generator(getString(channel, buffer)));
+        } catch (IllegalArgumentException e) {
+            throw new BadNetFileFormatException(file, e);
+        }
+        fill(channel, buffer, 12);
+        structureInfo.setWidth(buffer.getInt());
+        structureInfo.setHeight(buffer.getInt());
+        int wrappers = buffer.getInt();
+        List<RegularWrapper> wrapperList = new ArrayList<RegularWrapper>();
+        for (int i = 0; i < wrappers; i++) {
+            String name = getString(channel, buffer);
+            try {
+                wrapperList.add(wrapper(name));
+            } catch (ReflectiveOperationException e) {
+                throw new BadNetFileFormatException(file, e);
+            } catch (IllegalArgumentException e) {
+                throw new BadNetFileFormatException(file, e);
+            }
+        }
+        structureInfo.setWrapper(wrapperList);
+        fill(channel, buffer, 12);
+        long seed = buffer.getLong();
+        int size = buffer.getInt();
+        if (size < 0) {
+            throw new BadNetFileFormatException(file, "size = " + size);
+        }
+        return new Header(structureInfo, (flags & FLAG_SEED) != 0 ? Long
+                .valueOf(seed) : null, size, (flags & FLAG_LABELS) != 0,
+                channel.position() - buffer.remaining());
+    }
+
+    /**
+     * Возвращает имя генератора в снимке. Имена совпадают с текстовым
+     * форматом. Генераторы треугольной и шестиугольной решеток скрыты в своем
+     * пакете и доступны только через устаревшее перечисление, поэтому
+     * предупреждение подавлено.
+     *
+     * @throws IllegalArgumentException
+     *             если генератор не может быть записан в снимок
+     */
+    @SuppressWarnings("deprecation")
+    private static String generatorName(NetGenerator generator) {
+        try {
+            return jerco.network.generators.NetGenerators.getGeneratorType(
+                    generator).name();
+        } catch (jerco.network.generators.NetGenerators.UnknownNetGenerator e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возвращает генератор по его имени в снимке.
+     *
+     * @throws IllegalArgumentException
+     *             если имя генератора неизвестно
+     */
+    @SuppressWarnings("deprecation")
+    private static NetGenerator generator(String name) {
+        return jerco.network.generators.NetGenerators.valueOf(name)
+                .getGenerator();
+    }
+
+    /**
+     * Создает обертку по имени класса. Известные обертки создаются напрямую,
+     * остальные классы загружаются без инициализации и создаются, только если
+     * реализуют {@link RegularWrapper}.
+     *
+     * @throws IllegalArgumentException
+     *             если класс не реализует {@link RegularWrapper}
+     */
+    private static RegularWrapper wrapper(String name)
+            throws ReflectiveOperationException {
+        if (LeftRightBoundsWrapper.class.getName().equals(name)) {
+            return new LeftRightBoundsWrapper();
+        }
+        Class<?> type = Class.forName(name, false, LatticeSnapshot.class
+                .getClassLoader());
+        if (!RegularWrapper.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException(name + " не является "
+                    + RegularWrapper.class.getName());
+        }
+        return type.asSubclass(RegularWrapper.class).getDeclaredConstructor()
+                .newInstance();
+    }
+
+    private static String getString(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        fill(channel, buffer, 4);
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.capacity()) {
+            throw new EOFException("string length = " + length);
+        }
+        fill(channel, buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Дочитывает из канала в буфер, пока в буфере не станет хотя бы required
+     * непрочитанных байт.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer,
+            int required) throws IOException {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Восстанавливает решетку по снимку: строит решетку со структурой снимка
+     * (если структура решетки уже совпадает, узлы не перестраиваются),
+     * заражает узлы и устанавливает сохраненные метки кластеров. Если меток
+     * в снимке нет, кластеры ищутся.
+     *
+     * @param net
+     * @throws IllegalStateException
+     *             если количество узлов построенной решетки не совпадает с
+     *             количеством узлов снимка
+     * @throws IllegalArgumentException
+     *             если метки снимка не соответствуют его зараженности
+     */
+    public void apply(RegularLattice net) {
+        net.generate(structureInfo);
+        fillState(net.getState());
+        if (labels != null) {
+            net.setClusterLabels(labels);
+        } else {
+            net.findClusters();
+        }
+    }
+
+    /**
+     * Восстанавливает решетку с неявной структурой по снимку без построения
+     * узлов: заражает узлы и устанавливает сохраненные метки кластеров. Если
+     * меток в снимке нет, кластеры ищутся.
+     *
+     * @param net
+     *            решетка со структурой снимка
+     * @throws IllegalStateException
+     *             если количество узлов решетки не совпадает с количеством
+     *             узлов снимка
+     * @throws IllegalArgumentException
+     *             если метки снимка не соответствуют его зараженности
+     */
+    public void apply(ImplicitLattice net) {
+        fillState(net.getState());
+        if (labels != null) {
+            net.setClusterLabels(labels.clone());
+        } else {
+            net.findClusters();
+        }
+    }
+
+    private void fillState(NetState state) {
+        if (state.size() != size) {
+            throw new IllegalStateException("Снимок содержит " + size
+                    + " узлов, а решетка - " + state.size());
+        }
+        for (int word = 0; word < infected.length; word++) {
+            state.setInfectedWord(word, infected[word]);
+        }
+    }
+
+    /**
+     * Возвращает структуру решетки снимка.
+     *
+     * @return копия структуры
+     */
+    public NetStructureInfo getStructureInfo() {
+        return new NetStructureInfo(structureInfo);
+    }
+
+    /**
+     * Возвращает зерно генератора случайных чисел решетки либо null, если
+     * решетка заражалась генератором без известного зерна.
+     *
+     * @return
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isInfected(int index) {
+        return (infected[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Возвращает метки кластеров узлов либо null, если снимок сохранен без
+     * них.
+     *
+     * @return копия массива
+     */
+    public int[] getLabels() {
+        return labels == null ? null : labels.clone();
+    }
+}
@@ -0,0 +1,887 @@
+package jerco.network;
+
+import static jerco.Constants.DOUBLE_PRECISION;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import jerco.network.RegularLattice.BadNetFileFormatException;
+import jerco.utils.BernoulliBits;
+import jerco.utils.MappedIntArray;
+import jerco.utils.MappedLongArray;
+import jerco.utils.RandomAlgorithm;
+import jerco.utils.RandomSource;
+
+/**
+ * Регулярная решетка с неявной структурой (как {@link ImplicitLattice}),
+ * зараженность и метки кластеров которой хранятся в отображенных в память
+ * файлах ({@link MappedLongArray}, {@link MappedIntArray}), а не в куче.
+ * Страницы подгружает и вытесняет операционная система, поэтому заражение,
+ * поиск кластеров и сохранение работают с решетками больше доступной памяти
+ * (до 2<sup>31</sup> - 1 узлов).
+ * <p>
+ * Метки кластеров хранятся в формате снимка {@link LatticeSnapshot}: для
+ * незараженного узла - {@link ClusterLabeling#EMPTY}, для остальных - индекс
+ * корневого узла кластера. Поэтому решетка сохраняется в снимок
+ * последовательной записью ({@link #save(File, boolean)}), а снимок
+ * открывается без копирования ({@link #open(File, File)}): области файла
+ * отображаются в память только для чтения, поэтому снимок может быть
+ * файлом, доступным только для чтения. Перед первым изменением решетки
+ * изменяемая область копируется во временный файл, и изменения вытесняются
+ * в него, а не в файл подкачки; файл снимка не изменяется.
+ * <p>
+ * Кластеры ищутся объединением множеств: корень кластера - узел с
+ * наименьшим индексом, пути сокращаются вдвое при поиске корня. Размеры
+ * кластеров вычисляются при первом запросе проходом по меткам. Объекты
+ * {@link Cluster} и узлы-представления создаются только по запросу и
+ * пригодны лишь для небольших решеток.
+ * <p>
+ * Решетка владеет открытыми файлами и должна быть закрыта методом
+ * {@link #close()}; временные файлы при этом удаляются.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class MappedLattice implements Net, Closeable {
+    private static final int EMPTY = ClusterLabeling.EMPTY;
+
+    /**
+     * Узел-представление решетки.
+     */
+    private class Site extends Node {
+
+        Site(int index) {
+            super(index, (NavigableSet<Node>) null);
+            setIndex(index);
+        }
+
+        @Override
+        public boolean isInfected() {
+            return MappedLattice.this.isInfected(getIndex());
+        }
+
+        @Override
+        public void setInfected(boolean infected) {
+            MappedLattice.this.setInfected(getIndex(), infected);
+        }
+
+        @Override
+        boolean isInCluster() {
+            return labeled && labels.get(getIndex()) != EMPTY;
+        }
+
+        @Override
+        public void setInCluster(boolean inCluster) {
+            if (inCluster != isInCluster()) {
+                throw new UnsupportedOperationException(
+                        "Принадлежность кластеру определяется решеткой");
+            }
+        }
+
+        @Override
+        public boolean isInPercolationCluster() {
+            return isInCluster() && percolationRoots != null
+                    && percolationRoots.contains(labels.get(getIndex()));
+        }
+
+        @Override
+        void setInPercolationCluster(boolean inPercolationCluster) {
+            throw new UnsupportedOperationException(
+                    "Принадлежность кластеру определяется решеткой");
+        }
+
+        @Override
+        public boolean isInBound() {
+            return boundOf(getIndex()) != StencilTopology.NO_BOUND;
+        }
+
+        @Override
+        public int getBound() {
+            int bound = boundOf(getIndex());
+            if (bound == StencilTopology.NO_BOUND) {
+                throw new IllegalStateException("Узел не принадлежит границе");
+            }
+            return bound;
+        }
+
+        @Override
+        public void setBound(int bound) {
+            throw new UnsupportedOperationException(
+                    "Границы неявной решетки задаются ее структурой");
+        }
+
+        @Override
+        public void removeFromBound() {
+            throw new UnsupportedOperationException(
+                    "Границы неявной решетки задаются ее структурой");
+        }
+
+        @Override
+        public void linkTo(Node node) {
+            throw new UnsupportedOperationException(
+                    "Связи неявной решетки задаются шаблоном");
+        }
+
+        @Override
+        public void setLinkedNodes(NavigableSet<Node> linkedNodes) {
+            throw new UnsupportedOperationException(
+                    "Связи неявной решетки задаются шаблоном");
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return getLinkedNodes().iterator();
+        }
+
+        @Override
+        public Set<Node> getLinkedNodes() {
+            int[] buffer = new int[topology.maxDegree()];
+            int count = topology.neighbors(getIndex(), buffer);
+            Set<Node> linked = new LinkedHashSet<Node>(count * 2);
+            for (int i = 0; i < count; i++) {
+                linked.add(new Site(buffer[i]));
+            }
+            return Collections.unmodifiableSet(linked);
+        }
+    }
+
+    /**
+     * Структура решетки
+     */
+    private final NetStructureInfo structureInfo;
+
+    /**
+     * Правило вычисления связей и границ
+     */
+    private final StencilTopology topology;
+
+    /**
+     * Границы в решетке
+     */
+    private final Set<Integer> bounds;
+
+    /**
+     * Узлы решетки, принадлежащие границам.
+     */
+    private final BoundarySites boundary;
+
+    /**
+     * Открытые каналы файлов решетки.
+     */
+    private final List<FileChannel> channels = new ArrayList<FileChannel>(2);
+
+    /**
+     * Временные файлы, удаляемые при закрытии решетки.
+     */
+    private final List<File> temporaryFiles = new ArrayList<File>(2);
+
+    /**
+     * Каталог временных файлов или null для системного каталога.
+     */
+    private final File directory;
+
+    /**
+     * Канал открытого снимка либо null. Пока зараженность или метки
+     * отображены из снимка только для чтения, канал нужен, чтобы скопировать
+     * их во временный файл перед изменением.
+     */
+    private final FileChannel snapshot;
+
+    /**
+     * Заголовок открытого снимка либо null.
+     */
+    private final LatticeSnapshot.Header header;
+
+    /**
+     * Зараженность узлов, по биту на узел.
+     */
+    private MappedLongArray infected;
+
+    /**
+     * Истина, если {@link #infected} отображена из снимка только для чтения.
+     */
+    private boolean infectedInSnapshot;
+
+    /**
+     * Лес объединения множеств. После поиска кластеров - метки кластеров.
+     */
+    private MappedIntArray labels;
+
+    /**
+     * Истина, если {@link #labels} отображены из снимка только для чтения.
+     */
+    private boolean labelsInSnapshot;
+
+    /**
+     * Истина, если {@link #labels} соответствует текущему заражению.
+     */
+    private boolean labeled;
+
+    /**
+     * Размеры кластеров по возрастанию; вычисляются при первом запросе.
+     */
+    private int[] clustersSizes;
+
+    /**
+     * Вероятность заражения сети
+     */
+    private double infectProbability = Double.NaN;
+
+    /**
+     * Генератор случайных чисел для заражения.
+     */
+    private Random random = RandomAlgorithm.XOSHIRO256.create();
+
+    /**
+     * Правило определения перколяционного кластера.
+     */
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    /**
+     * Корни перколяционных кластеров.
+     */
+    private Set<Integer> percolationRoots;
+
+    /**
+     * Созданные по запросу кластеры.
+     */
+    private List<Cluster> clusters;
+
+    /**
+     * Созданные по запросу перколяционные кластеры.
+     */
+    private List<Cluster> percolationClusters;
+
+    /**
+     * Создает незараженную решетку, файлы которой размещаются во временных
+     * файлах заданного каталога.
+     *
+     * @param structureInfo
+     * @param directory
+     *            каталог временных файлов или null для системного каталога
+     * @throws IOException
+     *             если файлы не удалось создать
+     * @throws IllegalArgumentException
+     *             если для генератора или оберток решетки нет шаблона
+     */
+    public MappedLattice(NetStructureInfo structureInfo, File directory)
+            throws IOException {
+        this.structureInfo = new NetStructureInfo(structureInfo);
+        this.topology = StencilTopology.of(structureInfo);
+        this.bounds = topology.getBounds();
+        this.boundary = BoundarySites.of(topology);
+        this.directory = directory;
+        this.snapshot = null;
+        this.header = null;
+        try {
+            FileChannel occupancy = temporaryChannel("occupancy", directory);
+            infected = MappedLongArray.map(occupancy, MapMode.READ_WRITE, 0,
+                    (size() + 63) >>> 6);
+            labels = MappedIntArray.map(temporaryChannel("labels", directory),
+                    MapMode.READ_WRITE, 0, size());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Открывает решетку из снимка. Области зараженности и меток кластеров
+     * (если они есть в снимке) отображаются в память прямо из файла снимка
+     * только для чтения; если меток нет, они размещаются во временном файле.
+     * Файл снимка открывается только для чтения и не изменяется: перед
+     * первым изменением решетки область копируется во временный файл.
+     *
+     * @param snapshot
+     *            файл снимка ({@link LatticeSnapshot})
+     * @param directory
+     *            каталог временных файлов или null для системного каталога
+     * @return решетка, кластеры которой найдены, если снимок содержит метки
+     * @throws IOException
+     * @throws BadNetFileFormatException
+     *             если файл не является снимком или поврежден
+     */
+    public static MappedLattice open(File snapshot, File directory)
+            throws IOException, BadNetFileFormatException {
+        FileChannel channel = FileChannel.open(snapshot.toPath(),
+                StandardOpenOption.READ);
+        try {
+            return new MappedLattice(channel, LatticeSnapshot.readHeader(
+                    snapshot, channel), directory);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (BadNetFileFormatException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedLattice(FileChannel channel, LatticeSnapshot.Header header,
+            File directory) throws IOException {
+        channels.add(channel);
+        this.directory = directory;
+        this.snapshot = channel;
+        this.header = header;
+        this.structureInfo = header.structureInfo;
+        this.topology = StencilTopology.of(structureInfo);
+        this.bounds = topology.getBounds();
+        this.boundary = BoundarySites.of(topology);
+        if (topology.size() != header.size) {
+            throw new IllegalStateException("Снимок содержит " + header.size
+                    + " узлов, а решетка - " + topology.size());
+        }
+        if (header.seed != null) {
+            random = RandomAlgorithm.XOSHIRO256.create(header.seed);
+        }
+        infected = MappedLongArray.map(channel, MapMode.READ_ONLY,
+                header.dataPosition, header.words());
+        infectedInSnapshot = true;
+        if (header.clusterLabels) {
+            labels = MappedIntArray.map(channel, MapMode.READ_ONLY, header
+                    .labelsPosition(), header.size);
+            labelsInSnapshot = true;
+            labeled = true;
+        } else {
+            labels = MappedIntArray.map(temporaryChannel("labels", directory),
+                    MapMode.READ_WRITE, 0, header.size);
+        }
+    }
+
+    /**
+     * Переносит зараженность из снимка во временный файл перед изменением.
+     *
+     * @param copy
+     *            копировать ли зараженность снимка; не нужно, если она
+     *            будет полностью перезаписана
+     */
+    private void modifyInfected(boolean copy) {
+        if (!infectedInSnapshot) {
+            return;
+        }
+        try {
+            FileChannel channel = temporaryChannel("occupancy", directory);
+            long words = header.words();
+            if (copy) {
+                transfer(header.dataPosition, 8L * words, channel);
+            }
+            infected = MappedLongArray.map(channel, MapMode.READ_WRITE, 0,
+                    words);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        infectedInSnapshot = false;
+    }
+
+    /**
+     * Переносит метки кластеров из снимка во временный файл перед
+     * изменением.
+     *
+     * @param copy
+     *            копировать ли метки снимка; не нужно, если они будут
+     *            полностью перезаписаны
+     */
+    private void modifyLabels(boolean copy) {
+        if (!labelsInSnapshot) {
+            return;
+        }
+        try {
+            FileChannel channel = temporaryChannel("labels", directory);
+            if (copy) {
+                transfer(header.labelsPosition(), 4L * header.size, channel);
+            }
+            labels = MappedIntArray.map(channel, MapMode.READ_WRITE, 0,
+                    header.size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        labelsInSnapshot = false;
+    }
+
+    /**
+     * Копирует область снимка в начало временного файла средствами
+     * операционной системы, без чтения в кучу.
+     */
+    private void transfer(long position, long count, FileChannel target)
+            throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transferred = snapshot.transferTo(position + done, count
+                    - done, target);
+            if (transferred <= 0) {
+                throw new IOException("Снимок короче заголовка");
+            }
+            done += transferred;
+        }
+    }
+
+    private FileChannel temporaryChannel(String prefix, File directory)
+            throws IOException {
+        File file = File.createTempFile(prefix, ".bin", directory);
+        file.deleteOnExit();
+        temporaryFiles.add(file);
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channels.add(channel);
+        return channel;
+    }
+
+    /**
+     * Закрывает файлы решетки и удаляет временные файлы. Отображения
+     * освобождаются сборщиком мусора; после закрытия решеткой пользоваться
+     * нельзя.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        channels.clear();
+        for (File file : temporaryFiles) {
+            file.delete();
+        }
+        temporaryFiles.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Сохраняет решетку в файл снимка ({@link LatticeSnapshot}). Файл
+     * записывается последовательно, без копирования решетки в кучу.
+     *
+     * @param file
+     * @param clusterLabels
+     *            сохранять ли метки кластеров; метки сохраняются, только если
+     *            кластеры найдены
+     * @throws IOException
+     */
+    public void save(File file, boolean clusterLabels) throws IOException {
+        Long seed = random instanceof RandomSource ? ((RandomSource) random)
+                .getSeed() : null;
+        LatticeSnapshot.write(file, structureInfo, seed, size(), clusterLabels
+                && labeled, new LatticeSnapshot.Source() {
+            @Override
+            public long word(int index) {
+                return infected.get(index);
+            }
+
+            @Override
+            public int label(int index) {
+                return labels.get(index);
+            }
+        });
+    }
+
+    public NetStructureInfo getStructureInfo() {
+        return structureInfo;
+    }
+
+    public StencilTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Возвращает узлы решетки, принадлежащие границам.
+     *
+     * @return
+     */
+    public BoundarySites getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера. По
+     * умолчанию {@link SpanningRule#ALL}.
+     *
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+        percolationRoots = null;
+        percolationClusters = null;
+    }
+
+    public boolean isInfected(int index) {
+        return (infected.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Устанавливает зараженность узла. Найденные кластеры сбрасываются.
+     *
+     * @param index
+     * @param value
+     */
+    public void setInfected(int index, boolean value) {
+        modifyInfected(true);
+        long word = infected.get(index >>> 6);
+        infected.set(index >>> 6, value ? word | (1L << index) : word
+                & ~(1L << index));
+        resetClusters();
+    }
+
+    /**
+     * Возвращает метку кластера узла: индекс корневого узла кластера либо
+     * {@link ClusterLabeling#EMPTY}.
+     *
+     * @param index
+     * @return
+     * @throws IllegalStateException
+     *             если кластеры не найдены
+     */
+    public int getLabel(int index) {
+        checkLabeled();
+        return labels.get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Возвращает узлы-представления в порядке слоев.
+     */
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<Node>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Site(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Слова зараженности заполняются последовательно ({@link BernoulliBits}).
+     */
+    @Override
+    public void infect(double p) {
+        infectProbability = p;
+        modifyInfected(false);
+        BernoulliBits bits = new BernoulliBits(random, p - DOUBLE_PRECISION,
+                size());
+        final long words = infected.length();
+        for (long word = 0; word < words; word++) {
+            infected.set(word, bits.nextWord());
+        }
+        findClusters();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findClusters() {
+        resetClusters();
+        modifyLabels(false);
+        final int[] buffer = new int[topology.maxDegree()];
+        int index = 0;
+        for (int row = 0; row < topology.getHeight(); row++) {
+            final int rowWidth = topology.rowWidth(row);
+            for (int column = 0; column < rowWidth; column++, index++) {
+                if (!isInfected(index)) {
+                    labels.set(index, EMPTY);
+                    continue;
+                }
+                labels.set(index, index);
+                int count = topology.neighbors(row, column, buffer);
+                for (int k = 0; k < count; k++) {
+                    int linked = buffer[k];
+                    // Каждую связь достаточно рассмотреть один раз
+                    if (linked < index && labels.get(linked) != EMPTY) {
+                        union(index, linked);
+                    }
+                }
+            }
+        }
+
+        // Родитель узла всегда имеет меньший индекс, поэтому за один проход
+        // по возрастанию каждый узел получает метку корня
+        int clustersCount = 0;
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            int parent = labels.get(i);
+            if (parent == i) {
+                clustersCount++;
+            } else if (parent != EMPTY) {
+                labels.set(i, labels.get(parent));
+            }
+        }
+        labeled = true;
+        return clustersCount;
+    }
+
+    /**
+     * Возвращает корень множества, которому принадлежит узел, сокращая путь
+     * вдвое.
+     */
+    private int findRoot(int index) {
+        int parent = labels.get(index);
+        while (parent != index) {
+            int grandparent = labels.get(parent);
+            labels.set(index, grandparent);
+            index = grandparent;
+            parent = labels.get(index);
+        }
+        return index;
+    }
+
+    /**
+     * Объединяет множества двух узлов. Корнем становится корень с меньшим
+     * индексом.
+     */
+    private void union(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+        if (rootA < rootB) {
+            labels.set(rootB, rootA);
+        } else if (rootB < rootA) {
+            labels.set(rootA, rootB);
+        }
+    }
+
+    private void resetClusters() {
+        labeled = false;
+        clustersSizes = null;
+        clusters = null;
+        percolationRoots = null;
+        percolationClusters = null;
+    }
+
+    private void checkLabeled() {
+        if (!labeled) {
+            throw new IllegalStateException(
+                    "You must to call findClusters() before call this method");
+        }
+    }
+
+    private int boundOf(int index) {
+        int row = topology.row(index);
+        return topology.bound(row, index - topology.index(row, 0));
+    }
+
+    @Override
+    public int size() {
+        return topology.size();
+    }
+
+    @Override
+    public int boundsCounts() {
+        return bounds.size();
+    }
+
+    @Override
+    public double getInfectProbability() {
+        return infectProbability;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Размеры вычисляются двумя проходами по меткам: в первом корень
+     * временно хранит размер кластера, во втором метка корня
+     * восстанавливается. Корень может иметь больший индекс, чем узлы его
+     * кластера (метки снимка, записанного {@link RegularLattice}).
+     */
+    @Override
+    public int[] getClustersSizes() {
+        if (!labeled) {
+            return new int[0];
+        }
+        if (clustersSizes == null) {
+            modifyLabels(true);
+            final int size = size();
+            // Размер c хранится в корне как -(c + 1), чтобы не совпасть с EMPTY
+            int clustersCount = 0;
+            for (int i = 0; i < size; i++) {
+                int label = labels.get(i);
+                if (label == EMPTY) {
+                    continue;
+                }
+                if (label == i) {
+                    labels.set(i, -2);
+                    clustersCount++;
+                } else if (label < 0) {
+                    labels.set(i, label - 1);
+                } else {
+                    // Корень, еще не встреченный проходом, считает только
+                    // этот узел; сам корень учтется, когда проход дойдет до
+                    // него
+                    int root = labels.get(label);
+                    if (root == label) {
+                        labels.set(label, -2);
+                        clustersCount++;
+                    } else {
+                        labels.set(label, root - 1);
+                    }
+                }
+            }
+            int[] result = new int[clustersCount];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int label = labels.get(i);
+                if (label < EMPTY) {
+                    result[count++] = -label - 1;
+                    labels.set(i, i);
+                }
+            }
+            Arrays.sort(result);
+            clustersSizes = result;
+        }
+        return clustersSizes.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Кластеры создаются при первом вызове после поиска кластеров и содержат
+     * узлы-представления; метод пригоден только для небольших решеток.
+     */
+    @Override
+    public List<Cluster> getClusters() {
+        if (clusters == null) {
+            clusters = labeled ? materialize(null) : new ArrayList<Cluster>();
+        }
+        return Collections.unmodifiableList(clusters);
+    }
+
+    private List<Cluster> materialize(Set<Integer> roots) {
+        Map<Integer, Cluster> byRoot = new HashMap<Integer, Cluster>();
+        List<Cluster> result = new ArrayList<Cluster>();
+        for (int i = 0; i < size(); i++) {
+            int root = labels.get(i);
+            if (root == EMPTY || (roots != null && !roots.contains(root))) {
+                continue;
+            }
+
+            Cluster cluster = byRoot.get(root);
+            if (cluster == null) {
+                cluster = new Cluster();
+                byRoot.put(root, cluster);
+                result.add(cluster);
+            }
+            cluster.append(new Site(i));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Для проверки рассматриваются только узлы на границах решетки
+     * ({@link BoundarySites}), перколяционный кластер определяется правилом
+     * {@link #getSpanningRule()}.
+     */
+    @Override
+    public boolean hasPercolationCluster() {
+        if (bounds.isEmpty()) {
+            throw new IllegalStateException("Your try to check percolatin "
+                    + "cluster, but net doesn't have bounds");
+        }
+        checkLabeled();
+
+        Map<Integer, Integer> rootBounds = new HashMap<Integer, Integer>();
+        for (int k = 0; k < boundary.size(); k++) {
+            int root = labels.get(boundary.site(k));
+            if (root == EMPTY) {
+                continue;
+            }
+            Integer mask = rootBounds.get(root);
+            rootBounds.put(root, (mask == null ? 0 : mask)
+                    | boundary.siteMask(k));
+        }
+
+        final int[] required = spanningRule.requiredMasks(boundary);
+        percolationRoots = new HashSet<Integer>();
+        for (Map.Entry<Integer, Integer> entry : rootBounds.entrySet()) {
+            if (SpanningRule.isSpanning(entry.getValue(), required)) {
+                percolationRoots.add(entry.getKey());
+            }
+        }
+        percolationClusters = null;
+        return !percolationRoots.isEmpty();
+    }
+
+    @Override
+    public List<Cluster> getPercolationClusters() throws IllegalStateException {
+        if (percolationRoots == null) {
+            throw new IllegalStateException(
+                    "You must to call hasPercolationCluster() before "
+                            + "call this method");
+        }
+        if (percolationClusters == null) {
+            percolationClusters = materialize(percolationRoots);
+        }
+        return percolationClusters;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        modifyInfected(false);
+        infected.fill(0L);
+        resetClusters();
+    }
+}
@@ -0,0 +1,280 @@
+package jerco.network;
+
+/**
+ * Микроканоническая кривая: характеристики сети в зависимости от количества
+ * зараженных узлов n (n = 0..N), полученные алгоритмом {@link NewmanZiff}.
+ * Кривая может объединять несколько проходов алгоритма, в этом случае
+ * возвращаются средние по проходам значения.
+ * <p>
+ * Характеристики при заданной вероятности заражения p (канонический
+ * ансамбль) вычисляются сверткой кривой с биномиальным распределением:
+ * Q(p) = Σ C(N, n) p^n (1 - p)^(N - n) Q(n).
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class MicrocanonicalCurve {
+    /**
+     * Отношение веса к весу моды, ниже которого веса биномиального
+     * распределения считаются равными нулю.
+     */
+    private static final double NEGLIGIBLE_WEIGHT = 1e-300;
+
+    /**
+     * Количество узлов сети.
+     */
+    private final int size;
+
+    /**
+     * Количество проходов алгоритма.
+     */
+    private int samples;
+
+    /**
+     * Сумма по проходам размеров максимального кластера.
+     */
+    private final double[] largest;
+
+    /**
+     * Сумма по проходам сумм квадратов размеров кластеров.
+     */
+    private final double[] squares;
+
+    /**
+     * Количество проходов, в которых перколяционный кластер впервые
+     * появился при n зараженных узлах.
+     */
+    private final int[] spanningAt;
+
+    /**
+     * Накопленная сумма {@link #spanningAt}. Вычисляется по запросу.
+     */
+    private int[] spanningCumulative;
+
+    /**
+     * Создает пустую кривую для сети из size узлов.
+     *
+     * @param size
+     */
+    public MicrocanonicalCurve(int size) {
+        this.size = size;
+        this.largest = new double[size + 1];
+        this.squares = new double[size + 1];
+        this.spanningAt = new int[size + 1];
+    }
+
+    /**
+     * Записывает значения прохода для n зараженных узлов.
+     */
+    void set(int n, int largestSize, long sumSquares) {
+        largest[n] = largestSize;
+        squares[n] = sumSquares;
+    }
+
+    /**
+     * Завершает запись прохода.
+     *
+     * @param n
+     *            количество зараженных узлов, при котором появился
+     *            перколяционный кластер; -1, если он не появился
+     */
+    void setSpanningAt(int n) {
+        samples = 1;
+        if (n >= 0) {
+            spanningAt[n]++;
+        }
+        spanningCumulative = null;
+    }
+
+    /**
+     * Добавляет к кривой проходы другой кривой.
+     *
+     * @param other
+     * @throws IllegalArgumentException
+     *             если кривые построены для сетей разного размера
+     */
+    public void add(MicrocanonicalCurve other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException(String.format(
+                    "Размеры сетей различаются: %d и %d", size, other.size));
+        }
+        for (int n = 0; n <= size; n++) {
+            largest[n] += other.largest[n];
+            squares[n] += other.squares[n];
+            spanningAt[n] += other.spanningAt[n];
+        }
+        samples += other.samples;
+        spanningCumulative = null;
+    }
+
+    /**
+     * Возвращает количество узлов сети.
+     *
+     * @return
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Возвращает количество проходов алгоритма.
+     *
+     * @return
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Возвращает средний размер максимального кластера при n зараженных
+     * узлах.
+     *
+     * @param n
+     * @return
+     */
+    public double getLargestClusterSize(int n) {
+        checkSamples();
+        return largest[n] / samples;
+    }
+
+    /**
+     * Возвращает средний размер кластера, которому принадлежит случайно
+     * выбранный зараженный узел, при n зараженных узлах: Σ s^2 / n.
+     *
+     * @param n
+     * @return
+     */
+    public double getMeanClusterSize(int n) {
+        checkSamples();
+        return n == 0 ? 0 : squares[n] / n / samples;
+    }
+
+    /**
+     * Возвращает долю проходов, в которых при n зараженных узлах есть
+     * перколяционный кластер.
+     *
+     * @param n
+     * @return
+     */
+    public double getSpanningProbability(int n) {
+        checkSamples();
+        if (spanningCumulative == null) {
+            spanningCumulative = new int[size + 1];
+            int sum = 0;
+            for (int k = 0; k <= size; k++) {
+                sum += spanningAt[k];
+                spanningCumulative[k] = sum;
+            }
+        }
+        return (double) spanningCumulative[n] / samples;
+    }
+
+    /**
+     * Возвращает средний размер максимального кластера при вероятности
+     * заражения p.
+     *
+     * @param p
+     * @return
+     */
+    public double getCanonicalLargestClusterSize(double p) {
+        double[] weights = binomial(p);
+        double result = 0;
+        for (int n = 0; n <= size; n++) {
+            if (weights[n] != 0) {
+                result += weights[n] * getLargestClusterSize(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает средний размер кластера при вероятности заражения p (см.
+     * {@link #getMeanClusterSize(int)}).
+     *
+     * @param p
+     * @return
+     */
+    public double getCanonicalMeanClusterSize(double p) {
+        double[] weights = binomial(p);
+        double result = 0;
+        for (int n = 0; n <= size; n++) {
+            if (weights[n] != 0) {
+                result += weights[n] * getMeanClusterSize(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает вероятность существования перколяционного кластера при
+     * вероятности заражения p.
+     *
+     * @param p
+     * @return
+     */
+    public double getCanonicalSpanningProbability(double p) {
+        double[] weights = binomial(p);
+        double result = 0;
+        for (int n = 0; n <= size; n++) {
+            if (weights[n] != 0) {
+                result += weights[n] * getSpanningProbability(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает веса биномиального распределения B(N, p). Веса вычисляются
+     * от моды распределения через отношения соседних весов, поэтому не
+     * переполняются для больших N.
+     *
+     * @param p
+     * @return
+     */
+    double[] binomial(double p) {
+        if (p < 0 || p > 1) {
+            throw new IllegalArgumentException("p = " + p
+                    + " не является вероятностью");
+        }
+        double[] weights = new double[size + 1];
+        if (p == 0) {
+            weights[0] = 1;
+            return weights;
+        }
+        if (p == 1) {
+            weights[size] = 1;
+            return weights;
+        }
+
+        final int mode = Math.min(size, (int) Math.floor((size + 1) * p));
+        final double ratio = p / (1 - p);
+        weights[mode] = 1;
+        double sum = 1;
+        for (int n = mode + 1; n <= size; n++) {
+            weights[n] = weights[n - 1] * (size - n + 1) / n * ratio;
+            if (weights[n] < NEGLIGIBLE_WEIGHT) {
+                weights[n] = 0;
+                break;
+            }
+            sum += weights[n];
+        }
+        for (int n = mode - 1; n >= 0; n--) {
+            weights[n] = weights[n + 1] * (n + 1) / (size - n) / ratio;
+            if (weights[n] < NEGLIGIBLE_WEIGHT) {
+                weights[n] = 0;
+                break;
+            }
+            sum += weights[n];
+        }
+        for (int n = 0; n <= size; n++) {
+            weights[n] /= sum;
+        }
+        return weights;
+    }
+
+    private void checkSamples() {
+        if (samples == 0) {
+            throw new IllegalStateException("Кривая не содержит проходов");
+        }
+    }
+}
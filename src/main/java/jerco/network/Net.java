@@ -1,7 +1,9 @@
 package jerco.network;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Описывает базовое понятие решетки и доступные с ней действия.
@@ -29,6 +31,23 @@ public interface Net extends Iterable<Node> {
      */
     public void infect(double p);
 
+    /**
+     * Устанавливает генератор случайных чисел, используемый при заражении.
+     * Сеть с одинаково заданным генератором заражается одинаково.
+     * 
+     * Реализация по умолчанию не поддерживает замену генератора.
+     * 
+     * @param random
+     * @throws IllegalArgumentException
+     *             если генератор равен null
+     * @throws UnsupportedOperationException
+     *             если сеть не позволяет задать генератор
+     */
+    public default void setRandom(Random random) {
+        throw new UnsupportedOperationException(getClass().getName()
+                + " doesn't support custom random generator");
+    }
+
     /**
      * Осуществляет поиск кластеров. В конце поиска кластеры ранжируются по
      * возрастанию мощности (размера) кластера.
@@ -68,6 +87,23 @@ public interface Net extends Iterable<Node> {
      */
     public List<Cluster> getClusters();
 
+    /**
+     * Возвращает размеры кластеров сети по возрастанию. В отличие от
+     * {@link #getClusters()} не требует создания объектов кластеров.
+     * Реализация по умолчанию берет размеры из {@link #getClusters()}.
+     * 
+     * @return
+     */
+    public default int[] getClustersSizes() {
+        List<Cluster> clusters = getClusters();
+        int[] sizes = new int[clusters.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = clusters.get(i).size();
+        }
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
     /**
      * Возвращает истину, если имеется хотя бы один перколяционный кластер.
      * 
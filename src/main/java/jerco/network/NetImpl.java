@@ -7,10 +7,15 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import jerco.network.io.GraphReader;
 import jerco.network.io.JercoReaderException;
 import jerco.network.io.NetReader;
+import jerco.utils.BernoulliBits;
+import jerco.utils.RandomAlgorithm;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +33,13 @@ import org.slf4j.LoggerFactory;
 public class NetImpl implements Net {
     private static final Logger LOG = LoggerFactory.getLogger(NetImpl.class);
 
+    /**
+     * Количество полос на поток при параллельном поиске кластеров. Полос
+     * больше, чем потоков, чтобы потоки не простаивали из-за неравномерной
+     * заполненности полос.
+     */
+    private static final int STRIPS_PER_THREAD = 4;
+
     /**
      * Множество узлов, которые представляют собой сеть.
      */
@@ -53,6 +65,76 @@ public class NetImpl implements Net {
      */
     private Set<Integer> bounds = new HashSet<Integer>();
 
+    /**
+     * Уплотненное представление связей сети. Равно null, пока сеть не
+     * уплотнена методом {@link #compact()}.
+     */
+    protected CsrGraph graph;
+
+    /**
+     * Состояние узлов уплотненной сети. Равно null, пока сеть не уплотнена.
+     */
+    protected NetState state;
+
+    /**
+     * Способ поиска кластеров в уплотненной сети.
+     */
+    private LabelingMethod labelingMethod = LabelingMethod.BREADTH_FIRST;
+
+    /**
+     * Пул для параллельного поиска кластеров; null - общий пул.
+     */
+    private ForkJoinPool labelingPool;
+
+    /**
+     * Поиск кластеров объединением множеств. Создается при первом поиске.
+     */
+    private ClusterLabeling labeling;
+
+    /**
+     * Истина, если результаты {@link #labeling} соответствуют текущему
+     * заражению. В этом случае список {@link #clusters} создается только по
+     * запросу.
+     */
+    private boolean labeled;
+
+    /**
+     * Генератор случайных чисел для заражения.
+     */
+    private Random random = RandomAlgorithm.XOSHIRO256.create();
+
+    /**
+     * Вид перколяции.
+     */
+    private PercolationMode percolationMode = PercolationMode.SITE;
+
+    /**
+     * Состояние связей при перколяции по связям. Создается при переключении
+     * в режим {@link PercolationMode#BOND}.
+     */
+    private BondState bonds;
+
+    /**
+     * Правило определения перколяционного кластера.
+     */
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    /**
+     * Корни перколяционных кластеров, найденных объединением множеств.
+     */
+    private Set<Integer> percolationRoots;
+
+    /**
+     * Узлы уплотненной сети, принадлежащие границам.
+     */
+    private BoundarySites boundary;
+
+    /**
+     * Очередь обхода в ширину при поиске кластеров по уплотненному графу.
+     * Создается один раз на сеть.
+     */
+    private int[] clusterQueue;
+
     /**
      * Метод нужен чтобы сильно не ломать RegularLattice
      */
@@ -61,9 +143,37 @@ public class NetImpl implements Net {
 
     }
 
+    /**
+     * Создает сеть по считывателю. Если считыватель умеет строить уплотненный
+     * граф ({@link GraphReader}), сеть создается непосредственно по нему, без
+     * промежуточных множеств связей узлов.
+     * 
+     * @param reader
+     * @throws JercoReaderException
+     */
     public NetImpl(NetReader reader) throws JercoReaderException {
-        nodes = reader.read();
+        if (reader instanceof GraphReader) {
+            CsrGraph graph = ((GraphReader) reader).readGraph();
+            nodes = graph.nodeSet();
+            findBounds();
+            compact(graph);
+        } else {
+            nodes = reader.read();
+            findBounds();
+            compact();
+        }
+    }
+
+    /**
+     * Создает сеть по уплотненному графу, построенному, например,
+     * {@link CsrGraph#fromEdges(String[], int[], int[], int)}.
+     * 
+     * @param graph
+     */
+    public NetImpl(CsrGraph graph) {
+        nodes = graph.nodeSet();
         findBounds();
+        compact(graph);
     }
 
     /**
@@ -79,6 +189,196 @@ public class NetImpl implements Net {
         }
     }
 
+    /**
+     * Переводит связи всех узлов сети в уплотненный граф {@link CsrGraph}.
+     * После вызова узлы сети не хранят собственные множества связей, а поиск
+     * кластеров осуществляется обходом массивов графа.
+     * <p>
+     * Метод вызывается после того, как структура сети полностью построена:
+     * изменять связи уплотненных узлов нельзя.
+     * <p>
+     * Состояние узлов (флажки, границы, вещество) переносится в общее
+     * хранилище {@link NetState}, узлы становятся его представлениями.
+     */
+    final protected void compact() {
+        compact(CsrGraph.build(this, size()));
+    }
+
+    private void compact(CsrGraph graph) {
+        this.graph = graph;
+        state = new NetState(graph.size());
+        for (int i = 0; i < graph.size(); i++) {
+            graph.getNode(i).bind(state, i);
+        }
+        clusterQueue = null;
+        labeling = null;
+        labeled = false;
+        boundary = BoundarySites.of(state);
+        bonds = isBondMode() ? new BondState(graph.getEdgesCount()) : null;
+    }
+
+    /**
+     * Возвращает уплотненный граф сети или null, если сеть не уплотнена.
+     * 
+     * @return
+     */
+    public CsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Возвращает способ поиска кластеров.
+     * 
+     * @return
+     */
+    public LabelingMethod getLabelingMethod() {
+        return labelingMethod;
+    }
+
+    /**
+     * Устанавливает способ поиска кластеров. Способ применяется только к
+     * уплотненной сети, в остальных случаях кластеры строятся методом
+     * {@link Cluster#build()}.
+     * 
+     * @param labelingMethod
+     */
+    public void setLabelingMethod(LabelingMethod labelingMethod) {
+        if (labelingMethod == null) {
+            throw new IllegalArgumentException("labelingMethod is null");
+        }
+        this.labelingMethod = labelingMethod;
+        resetClusters();
+    }
+
+    /**
+     * Устанавливает пул, в котором выполняется поиск кластеров способом
+     * {@link LabelingMethod#PARALLEL_UNION_FIND}. По умолчанию используется
+     * {@link ForkJoinPool#commonPool()}.
+     * 
+     * @param labelingPool
+     *            пул или null для общего пула
+     */
+    public void setLabelingPool(ForkJoinPool labelingPool) {
+        this.labelingPool = labelingPool;
+    }
+
+    public ForkJoinPool getLabelingPool() {
+        return labelingPool == null ? ForkJoinPool.commonPool() : labelingPool;
+    }
+
+    /**
+     * Возвращает индексы первых узлов полос, на которые делится уплотненная
+     * сеть при параллельном поиске кластеров. По умолчанию индексы делятся на
+     * равные отрезки.
+     * 
+     * @param strips
+     *            желаемое количество полос
+     * @return индексы по возрастанию, первый равен 0
+     */
+    protected int[] stripStarts(int strips) {
+        final int size = graph.size();
+        strips = Math.max(1, Math.min(strips, size));
+        int[] starts = new int[strips];
+        for (int k = 0; k < strips; k++) {
+            starts[k] = (int) ((long) size * k / strips);
+        }
+        return starts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    public PercolationMode getPercolationMode() {
+        return percolationMode;
+    }
+
+    /**
+     * Устанавливает вид перколяции. Перколяция по связям доступна только для
+     * уплотненной сети; кластеры в этом режиме всегда ищутся объединением
+     * множеств, независимо от {@link #getLabelingMethod()}.
+     * 
+     * @param percolationMode
+     * @throws IllegalStateException
+     *             если выбрана перколяция по связям, а сеть не уплотнена
+     */
+    public void setPercolationMode(PercolationMode percolationMode) {
+        if (percolationMode == null) {
+            throw new IllegalArgumentException("percolationMode is null");
+        }
+        if (percolationMode == PercolationMode.BOND) {
+            if (graph == null) {
+                throw new IllegalStateException(
+                        "Перколяция по связям требует уплотненной сети");
+            }
+            if (bonds == null) {
+                bonds = new BondState(graph.getEdgesCount());
+            }
+        }
+        this.percolationMode = percolationMode;
+        resetClusters();
+    }
+
+    /**
+     * Возвращает состояние связей или null, если сеть ни разу не
+     * переключалась в режим перколяции по связям.
+     * 
+     * @return
+     */
+    public BondState getBonds() {
+        return bonds;
+    }
+
+    private boolean isBondMode() {
+        return percolationMode == PercolationMode.BOND;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера. По
+     * умолчанию {@link SpanningRule#ALL}: кластер касается всех границ сети.
+     * 
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+    }
+
+    /**
+     * Возвращает узлы границ уплотненной сети или null, если сеть не
+     * уплотнена.
+     * 
+     * @return
+     */
+    public BoundarySites getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Возвращает состояние узлов сети или null, если сеть не уплотнена.
+     * 
+     * @return
+     */
+    public NetState getState() {
+        return state;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -88,35 +388,224 @@ public class NetImpl implements Net {
 
     /**
      * Реализует простейший способ перколяции, основываясь только на переданной
-     * вероятности и случайных числах.
+     * вероятности и случайных числах генератора {@link #getRandom()}.
      * <p>
      * После заражения ищет кластеры.
+     * <p>
+     * Заражение уплотненной сети заполняет битовый массив состояния
+     * последовательно, по 64 узла за раз. При вероятности, близкой к 0 или 1,
+     * случайные числа вычисляются только для редких узлов
+     * ({@link BernoulliBits}).
      */
     public void infect(double p) {
-        infectProbability = p;
-        for (Node node : this) {
-            boolean infected = (infectProbability - Math.random()) > DOUBLE_PRECISION;
-            node.setInfected(infected);
+        if (isBondMode()) {
+            openBonds(p);
+        } else {
+            infectNodes(p);
         }
         findClusters();
     }
 
+    /**
+     * Заражает сеть с вероятностью p и проверяет, есть ли в ней
+     * перколяционный кластер. Для уплотненной сети с поиском кластеров
+     * объединением множеств поиск прекращается, как только перколяционный
+     * кластер появился; кластеры при этом не сохраняются, и перед обращением
+     * к ним нужно вызвать {@link #findClusters()}. В остальных случаях метод
+     * равносилен последовательному вызову {@link #infect(double)} и
+     * {@link #hasPercolationCluster()}.
+     * 
+     * @param p
+     * @return
+     * @throws IllegalStateException
+     *             если в сети нет границ, необходимых правилу
+     *             {@link #getSpanningRule()}
+     */
+    public boolean percolates(double p) {
+        if (isBondMode()) {
+            openBonds(p);
+            resetClusters();
+            return labeling().percolates(state, bonds, spanningRule);
+        }
+        if (graph == null || labelingMethod == LabelingMethod.BREADTH_FIRST) {
+            infect(p);
+            return hasPercolationCluster();
+        }
+        infectNodes(p);
+        resetClusters();
+        return labeling().percolates(state, spanningRule);
+    }
+
+    /**
+     * Заражает все узлы и открывает каждую связь с вероятностью p.
+     */
+    private void openBonds(double p) {
+        infectProbability = p;
+        final int size = state.size();
+        for (int word = 0; word < state.words(); word++) {
+            final int limit = Math.min(64, size - (word << 6));
+            state.setInfectedWord(word, limit == 64 ? -1L : (1L << limit) - 1);
+        }
+
+        BernoulliBits open = new BernoulliBits(random, p - DOUBLE_PRECISION,
+                bonds.size());
+        for (int word = 0; word < bonds.words(); word++) {
+            bonds.setOpenWord(word, open.nextWord());
+        }
+    }
+
+    private void infectNodes(double p) {
+        infectProbability = p;
+        if (state != null) {
+            BernoulliBits infected = new BernoulliBits(random, p
+                    - DOUBLE_PRECISION, state.size());
+            for (int word = 0; word < state.words(); word++) {
+                state.setInfectedWord(word, infected.nextWord());
+            }
+        } else {
+            for (Node node : this) {
+                boolean infected = (infectProbability - random.nextDouble()) > DOUBLE_PRECISION;
+                node.setInfected(infected);
+            }
+        }
+    }
+
+    private ClusterLabeling labeling() {
+        if (labeling == null) {
+            labeling = new ClusterLabeling(graph, boundary);
+        }
+        return labeling;
+    }
+
+    /**
+     * Возвращает метки кластеров узлов уплотненной сети: индекс корневого
+     * узла кластера либо {@link ClusterLabeling#EMPTY}. Если кластеры искались
+     * обходом в ширину, метки вычисляются объединением множеств; найденные
+     * кластеры сети при этом не изменяются.
+     * 
+     * @return новый массив
+     */
+    int[] clusterLabels() {
+        if (!labeled) {
+            if (isBondMode()) {
+                labeling().label(state, bonds);
+            } else {
+                labeling().label(state);
+            }
+        }
+        return labeling.getLabels().clone();
+    }
+
+    /**
+     * Устанавливает найденные ранее метки кластеров уплотненной сети (см.
+     * {@link #clusterLabels()}) вместо поиска кластеров. Объекты кластеров
+     * создаются при первом обращении, как и при поиске объединением
+     * множеств. Состояние связей не сохраняется вместе с метками, поэтому при
+     * перколяции по связям кластеры ищутся заново.
+     * 
+     * @param labels
+     *            метки узлов
+     * @return количество кластеров
+     * @throws IllegalStateException
+     *             если сеть не уплотнена
+     * @throws IllegalArgumentException
+     *             если метки не соответствуют сети (см.
+     *             {@link ClusterLabeling#setLabels(NetState, int[])})
+     */
+    int setClusterLabels(int[] labels) {
+        if (graph == null) {
+            throw new IllegalStateException("Сеть не уплотнена");
+        }
+        if (isBondMode()) {
+            return findClusters();
+        }
+        resetClusters();
+        int count = labeling().setLabels(state, labels);
+        state.markInfectedInCluster();
+        clusters = null;
+        labeled = true;
+        return count;
+    }
+
     /**
      * {@inheritDoc}
      */
     public int findClusters() {
         resetClusters();
-        for (Node node : this) {
-            if (!node.isInCluster() && node.isInfected()) {
-                Cluster cluster = new Cluster(node);
-                cluster.build();
-                clusters.add(cluster);
+        if (graph != null && (isBondMode()
+                || labelingMethod != LabelingMethod.BREADTH_FIRST)) {
+            int count;
+            if (isBondMode()) {
+                count = labeling().label(state, bonds);
+            } else if (labelingMethod == LabelingMethod.PARALLEL_UNION_FIND) {
+                ForkJoinPool pool = getLabelingPool();
+                count = labeling().label(state,
+                        stripStarts(pool.getParallelism() * STRIPS_PER_THREAD),
+                        pool);
+            } else {
+                count = labeling().label(state);
+            }
+            state.markInfectedInCluster();
+            clusters = null;
+            labeled = true;
+            return count;
+        }
+        if (graph != null) {
+            buildClusters(graph);
+        } else {
+            for (Node node : this) {
+                if (!node.isInCluster() && node.isInfected()) {
+                    Cluster cluster = new Cluster(node);
+                    cluster.build();
+                    clusters.add(cluster);
+                }
             }
         }
         Collections.sort(clusters);
         return clusters.size();
     }
 
+    /**
+     * Осуществляет поиск кластеров обходом в ширину по массивам уплотненного
+     * графа. Очередь обхода хранит индексы узлов, поэтому на каждый кластер
+     * создается только сам объект {@link Cluster}.
+     * 
+     * @param graph
+     */
+    private void buildClusters(CsrGraph graph) {
+        final int[] offsets = graph.getOffsets();
+        final int[] neighbors = graph.getNeighbors();
+        final int size = graph.size();
+        if (clusterQueue == null || clusterQueue.length < size) {
+            clusterQueue = new int[size];
+        }
+        final int[] queue = clusterQueue;
+
+        for (int i = 0; i < size; i++) {
+            if (state.isInCluster(i) || !state.isInfected(i)) {
+                continue;
+            }
+
+            Cluster cluster = new Cluster();
+            cluster.append(graph.getNode(i));
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = i;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int k = offsets[current]; k < offsets[current + 1]; k++) {
+                    int linkedIndex = neighbors[k];
+                    if (state.isInfected(linkedIndex)
+                            && !state.isInCluster(linkedIndex)) {
+                        cluster.append(graph.getNode(linkedIndex));
+                        queue[tail++] = linkedIndex;
+                    }
+                }
+            }
+            clusters.add(cluster);
+        }
+    }
+
     /**
      * Осуществляет сброс кластеров сети. При этом создается новый список
      * кластеров, а все узлы помечаются как не находящиеся в каком-либо кластере
@@ -125,6 +614,12 @@ public class NetImpl implements Net {
         LOG.debug("reset clusters");
         clusters = new ArrayList<Cluster>();
         percolationClusters = null;
+        percolationRoots = null;
+        labeled = false;
+        if (state != null) {
+            state.resetClusters();
+            return;
+        }
         for (Node node : this) {
             node.setInCluster(false);
         }
@@ -142,6 +637,10 @@ public class NetImpl implements Net {
      */
     public void resetVisited() {
         LOG.debug("reset visited");
+        if (state != null) {
+            state.resetVisited();
+            return;
+        }
         for (Node node : this) {
             node.setVisited(false);
         }
@@ -153,19 +652,45 @@ public class NetImpl implements Net {
      */
     public void resetInfected() {
         LOG.debug("reset infected");
-        for (Node node : this) {
-            node.setInfected(false);
+        if (state != null) {
+            state.resetInfected();
+        } else {
+            for (Node node : this) {
+                node.setInfected(false);
+            }
         }
-        clusters.clear();
+        clusters = new ArrayList<Cluster>();
+        labeled = false;
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * При поиске кластеров объединением множеств кластеры создаются при
+     * первом вызове метода.
      */
     public List<Cluster> getClusters() {
+        if (clusters == null) {
+            clusters = labeling.materialize(graph, null);
+        }
         return Collections.<Cluster> unmodifiableList(clusters);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getClustersSizes() {
+        if (labeled) {
+            return labeling.getClustersSizes();
+        }
+        int[] result = new int[clusters.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = clusters.get(i).size();
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -180,18 +705,59 @@ public class NetImpl implements Net {
             throw new IllegalStateException(msg);
         }
 
+        if (labeled) {
+            percolationClusters = null;
+            percolationRoots = labeling.getSpanningRoots(spanningRule);
+            markPercolationRoots();
+            return !percolationRoots.isEmpty();
+        }
+
         percolationClusters = new ArrayList<Cluster>(1);
         for (Cluster cluster : clusters) {
-            if (cluster.getBounds().equals(bounds)) {
+            if (spanningRule.isSpanning(cluster, bounds)) {
                 percolationClusters.add(cluster);
+                for (Node node : cluster) {
+                    node.setInPercolationCluster(true);
+                }
             }
         }
 
         return !percolationClusters.isEmpty();
     }
 
+    /**
+     * Помечает узлы перколяционных кластеров, найденных объединением
+     * множеств.
+     */
+    private void markPercolationRoots() {
+        if (percolationRoots.isEmpty()) {
+            return;
+        }
+        final int[] roots = new int[percolationRoots.size()];
+        int count = 0;
+        for (int root : percolationRoots) {
+            roots[count++] = root;
+        }
+
+        final int[] labels = labeling.getLabels();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == ClusterLabeling.EMPTY) {
+                continue;
+            }
+            for (int root : roots) {
+                if (labels[i] == root) {
+                    state.setInPercolationCluster(i, true);
+                    break;
+                }
+            }
+        }
+    }
+
     @Override
     public List<Cluster> getPercolationClusters() throws IllegalStateException {
+        if (percolationClusters == null && percolationRoots != null) {
+            percolationClusters = labeling.materialize(graph, percolationRoots);
+        }
         if (percolationClusters == null) {
             throw new IllegalStateException(
                     "You must to call hasPercolationCluster() before "
@@ -208,6 +774,9 @@ public class NetImpl implements Net {
         resetClusters();
         resetVisited();
         resetInfected();
+        if (bonds != null) {
+            bonds.reset();
+        }
     }
 
     /**
@@ -0,0 +1,316 @@
+package jerco.network;
+
+import java.util.Arrays;
+
+/**
+ * Состояние узлов сети, хранящееся по столбцам: флажки узлов упакованы в
+ * битовые массивы {@code long[]} (один бит на узел), номер границы, вещество и
+ * вероятность замещения хранятся в массивах примитивов. Узел с индексом
+ * {@code i} занимает позицию {@code i} в каждом из массивов.
+ * <p>
+ * Узлы сети ({@link Node}) после уплотнения сети не хранят состояние сами, а
+ * читают и изменяют его через этот объект. Поэтому сброс флажка у всех узлов
+ * сводится к заполнению массива, а заражение и поиск кластеров -
+ * к последовательному проходу по массивам.
+ * <p>
+ * Массивы создаются при первой записи значения, отличного от значения по
+ * умолчанию. Сеть, у которой, например, никогда не задавалась вероятность
+ * замещения, не тратит на нее память.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class NetState {
+    /**
+     * Количество узлов, состояние которых хранится.
+     */
+    private final int size;
+
+    private long[] visited;
+
+    private long[] infected;
+
+    private long[] inCluster;
+
+    private long[] inPercolationCluster;
+
+    private long[] inBound;
+
+    private int[] bound;
+
+    private int[] substance;
+
+    private double[] probability;
+
+    /**
+     * Создает состояние для заданного количества узлов. Все флажки сброшены,
+     * узлы не содержат вещества.
+     *
+     * @param size
+     */
+    public NetState(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size = " + size + " < 0");
+        }
+        this.size = size;
+    }
+
+    /**
+     * Возвращает количество узлов.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает количество 64-битных слов в битовых массивах флажков.
+     *
+     * @return
+     */
+    public int words() {
+        return (size + 63) >>> 6;
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return bits != null && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private long[] set(long[] bits, int index, boolean value) {
+        if (bits == null) {
+            if (!value) {
+                return null;
+            }
+            bits = new long[words()];
+        }
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+        return bits;
+    }
+
+    private static void clear(long[] bits) {
+        if (bits != null) {
+            Arrays.fill(bits, 0L);
+        }
+    }
+
+    public boolean isVisited(int index) {
+        return get(visited, index);
+    }
+
+    public void setVisited(int index, boolean value) {
+        visited = set(visited, index, value);
+    }
+
+    public boolean isInfected(int index) {
+        return get(infected, index);
+    }
+
+    /**
+     * Устанавливает зараженность узла. Как и {@link Node#setInfected(boolean)},
+     * снятие заражения убирает узел из кластеров и удаляет из него вещество.
+     *
+     * @param index
+     * @param value
+     */
+    public void setInfected(int index, boolean value) {
+        infected = set(infected, index, value);
+        if (!value) {
+            setInCluster(index, false);
+            setSubstance(index, Node.NONE);
+        }
+    }
+
+    /**
+     * Устанавливает зараженность 64 узлов, начиная с узла {@code word * 64}.
+     * Бит {@code k} слова соответствует узлу {@code word * 64 + k}; биты за
+     * пределами сети должны быть равны нулю. Все незараженные узлы слова, как
+     * и в {@link #setInfected(int, boolean)} со значением false, удаляются из
+     * кластеров и теряют вещество, даже если не были заражены до вызова.
+     *
+     * @param word
+     *            номер слова
+     * @param bits
+     *            новые значения флажка
+     */
+    public void setInfectedWord(int word, long bits) {
+        if (infected == null && bits != 0) {
+            infected = new long[words()];
+        }
+        if (infected != null) {
+            infected[word] = bits;
+        }
+        if (inCluster != null) {
+            inCluster[word] &= bits;
+        }
+        if (inPercolationCluster != null) {
+            inPercolationCluster[word] &= bits;
+        }
+        if (substance != null) {
+            final int base = word << 6;
+            final int count = Math.min(64, size - base);
+            long uninfected = ~bits
+                    & (count == 64 ? -1L : (1L << count) - 1);
+            while (uninfected != 0) {
+                substance[base + Long.numberOfTrailingZeros(uninfected)] = Node.NONE;
+                uninfected &= uninfected - 1;
+            }
+        }
+    }
+
+    /**
+     * Возвращает слово битового массива зараженности.
+     *
+     * @param word
+     * @return
+     * @see #setInfectedWord(int, long)
+     */
+    public long getInfectedWord(int word) {
+        return infected == null ? 0L : infected[word];
+    }
+
+    public boolean isInCluster(int index) {
+        return get(inCluster, index);
+    }
+
+    /**
+     * Устанавливает принадлежность узла кластеру. Удаление из кластера
+     * удаляет узел и из перколяционного кластера.
+     *
+     * @param index
+     * @param value
+     */
+    public void setInCluster(int index, boolean value) {
+        inCluster = set(inCluster, index, value);
+        if (!value) {
+            setInPercolationCluster(index, false);
+        }
+    }
+
+    public boolean isInPercolationCluster(int index) {
+        return get(inPercolationCluster, index);
+    }
+
+    public void setInPercolationCluster(int index, boolean value) {
+        inPercolationCluster = set(inPercolationCluster, index, value);
+    }
+
+    public boolean isInBound(int index) {
+        return get(inBound, index);
+    }
+
+    public void setInBound(int index, boolean value) {
+        inBound = set(inBound, index, value);
+    }
+
+    public int getBound(int index) {
+        return bound == null ? 0 : bound[index];
+    }
+
+    public void setBound(int index, int value) {
+        if (bound == null) {
+            if (value == 0) {
+                return;
+            }
+            bound = new int[size];
+        }
+        bound[index] = value;
+    }
+
+    public int getSubstance(int index) {
+        return substance == null ? Node.NONE : substance[index];
+    }
+
+    public void setSubstance(int index, int value) {
+        if (substance == null) {
+            if (value == Node.NONE) {
+                return;
+            }
+            substance = new int[size];
+        }
+        substance[index] = value;
+    }
+
+    public double getProbability(int index) {
+        return probability == null ? 0 : probability[index];
+    }
+
+    public void setProbability(int index, double value) {
+        if (probability == null) {
+            if (value == 0) {
+                return;
+            }
+            probability = new double[size];
+        }
+        probability[index] = value;
+    }
+
+    /**
+     * Помещает в кластеры все зараженные узлы и только их. Применяется после
+     * поиска кластеров, при котором каждый зараженный узел попадает в
+     * какой-либо кластер.
+     */
+    public void markInfectedInCluster() {
+        if (infected == null) {
+            clear(inCluster);
+        } else if (inCluster == null) {
+            inCluster = infected.clone();
+        } else {
+            System.arraycopy(infected, 0, inCluster, 0, infected.length);
+        }
+        clear(inPercolationCluster);
+    }
+
+    /**
+     * Сбрасывает флажок посещения у всех узлов.
+     */
+    public void resetVisited() {
+        clear(visited);
+    }
+
+    /**
+     * Убирает все узлы из кластеров, в том числе из перколяционных.
+     */
+    public void resetClusters() {
+        clear(inCluster);
+        clear(inPercolationCluster);
+    }
+
+    /**
+     * Снимает заражение со всех узлов. Узлы удаляются из кластеров и теряют
+     * вещество.
+     */
+    public void resetInfected() {
+        clear(infected);
+        resetClusters();
+        if (substance != null) {
+            Arrays.fill(substance, Node.NONE);
+        }
+    }
+
+    /**
+     * Копирует состояние узла из другого хранилища.
+     *
+     * @param index
+     *            индекс узла в этом хранилище
+     * @param source
+     *            хранилище, из которого копируется состояние
+     * @param sourceIndex
+     *            индекс узла в хранилище source
+     */
+    public void copy(int index, NetState source, int sourceIndex) {
+        setVisited(index, source.isVisited(sourceIndex));
+        setInfected(index, source.isInfected(sourceIndex));
+        setInCluster(index, source.isInCluster(sourceIndex));
+        setInPercolationCluster(index,
+                source.isInPercolationCluster(sourceIndex));
+        setInBound(index, source.isInBound(sourceIndex));
+        setBound(index, source.getBound(sourceIndex));
+        setSubstance(index, source.getSubstance(sourceIndex));
+        setProbability(index, source.getProbability(sourceIndex));
+    }
+}
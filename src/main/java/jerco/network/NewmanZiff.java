@@ -0,0 +1,242 @@
+package jerco.network;
+
+import java.util.Random;
+
+import jerco.utils.RandomAlgorithm;
+
+/**
+ * Алгоритм Ньюмана-Зиффа. Узлы сети заражаются по одному в случайном
+ * порядке, кластеры объединяются методом объединения множеств (как в
+ * {@link FastPercolation}, но для произвольной сети). После добавления каждого
+ * узла запоминаются размер максимального кластера, средний размер кластера и
+ * наличие перколяционного кластера.
+ * <p>
+ * Один проход за время O(N α(N)) дает характеристики сети для всех
+ * количеств зараженных узлов n = 0..N (микроканоническую кривую
+ * {@link MicrocanonicalCurve}). Зависимость характеристик от вероятности
+ * заражения p получается сверткой кривой с биномиальным распределением, без
+ * повторного заражения и поиска кластеров для каждого p.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class NewmanZiff {
+    /**
+     * Метка незараженного узла.
+     */
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final Topology topology;
+
+    private final BoundarySites boundary;
+
+    /**
+     * Лес множеств: для корня - размер кластера со знаком минус, для
+     * остальных зараженных узлов - индекс родителя.
+     */
+    private final int[] ptr;
+
+    /**
+     * Границы, которых касается кластер, по индексу корня.
+     */
+    private final int[] boundMask;
+
+    /**
+     * Порядок заражения узлов.
+     */
+    private final int[] order;
+
+    private final int[] buffer;
+
+    private Random random = RandomAlgorithm.XOSHIRO256.create();
+
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    /**
+     * Создает алгоритм для сети с заданной структурой.
+     *
+     * @param topology
+     *            связи узлов сети
+     * @param boundary
+     *            узлы границ сети; null, если перколяция не отслеживается
+     */
+    public NewmanZiff(Topology topology, BoundarySites boundary) {
+        this.topology = topology;
+        this.boundary = boundary;
+        this.ptr = new int[topology.size()];
+        this.boundMask = boundary == null ? null : new int[topology.size()];
+        this.order = new int[topology.size()];
+        this.buffer = new int[topology.maxDegree()];
+    }
+
+    /**
+     * Создает алгоритм для уплотненной сети.
+     *
+     * @param net
+     * @throws IllegalArgumentException
+     *             если сеть не уплотнена
+     */
+    public NewmanZiff(NetImpl net) {
+        this(checkCompacted(net).getGraph(), net.getBoundary());
+    }
+
+    /**
+     * Создает алгоритм для решетки с неявной структурой.
+     *
+     * @param lattice
+     */
+    public NewmanZiff(ImplicitLattice lattice) {
+        this(lattice.getTopology(), lattice.getBoundary());
+    }
+
+    private static NetImpl checkCompacted(NetImpl net) {
+        if (net.getGraph() == null) {
+            throw new IllegalArgumentException("Сеть не уплотнена");
+        }
+        return net;
+    }
+
+    /**
+     * Устанавливает генератор случайных чисел, задающий порядок заражения.
+     *
+     * @param random
+     */
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера. По
+     * умолчанию {@link SpanningRule#ALL}.
+     *
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Осуществляет один проход алгоритма.
+     *
+     * @return микроканоническая кривая прохода
+     * @throws IllegalStateException
+     *             если в сети нет границ, необходимых правилу определения
+     *             перколяционного кластера
+     */
+    public MicrocanonicalCurve run() {
+        final int n = ptr.length;
+        permutation();
+
+        MicrocanonicalCurve curve = new MicrocanonicalCurve(n);
+        final boolean trackSpanning = boundary != null
+                && boundary.boundsCount() > 0;
+        final int[] required = trackSpanning ? spanningRule
+                .requiredMasks(boundary) : null;
+        for (int i = 0; i < n; i++) {
+            ptr[i] = EMPTY;
+        }
+        if (trackSpanning) {
+            for (int i = 0; i < n; i++) {
+                boundMask[i] = 0;
+            }
+            for (int k = 0; k < boundary.size(); k++) {
+                boundMask[boundary.site(k)] |= boundary.siteMask(k);
+            }
+        }
+
+        int big = 0;
+        long sumSquares = 0;
+        int spanningAt = -1;
+        for (int i = 0; i < n; i++) {
+            int r1 = order[i];
+            ptr[r1] = -1;
+            sumSquares += 1;
+
+            int count = topology.neighbors(r1, buffer);
+            for (int j = 0; j < count; j++) {
+                int s2 = buffer[j];
+                if (ptr[s2] == EMPTY) {
+                    continue;
+                }
+                int r2 = findRoot(s2);
+                if (r2 == r1) {
+                    continue;
+                }
+
+                // (s1 + s2)^2 = s1^2 + s2^2 + 2 * s1 * s2
+                sumSquares += 2L * ptr[r1] * ptr[r2];
+                int merged = trackSpanning ? boundMask[r1] | boundMask[r2] : 0;
+                if (ptr[r1] > ptr[r2]) {
+                    ptr[r2] += ptr[r1];
+                    ptr[r1] = r2;
+                    r1 = r2;
+                } else {
+                    ptr[r1] += ptr[r2];
+                    ptr[r2] = r1;
+                }
+                if (trackSpanning) {
+                    boundMask[r1] = merged;
+                }
+            }
+
+            if (-ptr[r1] > big) {
+                big = -ptr[r1];
+            }
+            if (spanningAt < 0 && trackSpanning
+                    && SpanningRule.isSpanning(boundMask[r1], required)) {
+                spanningAt = i + 1;
+            }
+            curve.set(i + 1, big, sumSquares);
+        }
+        curve.setSpanningAt(spanningAt);
+        return curve;
+    }
+
+    /**
+     * Возвращает порядок заражения узлов в последнем проходе. Применяется при
+     * модульном тестировании.
+     *
+     * @return
+     */
+    int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Создает случайную перестановку узлов (алгоритм Фишера-Йетса).
+     */
+    private void permutation() {
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+    }
+
+    private int findRoot(int index) {
+        int root = index;
+        while (ptr[root] >= 0) {
+            root = ptr[root];
+        }
+        while (index != root) {
+            int next = ptr[index];
+            ptr[index] = root;
+            index = next;
+        }
+        return root;
+    }
+}
@@ -36,7 +36,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * 
      * @return - идентификатор узла
      */
-    private static int nextId() {
+    static int nextId() {
         return idCounter++;
     }
 
@@ -82,38 +82,24 @@ public class Node implements Iterable<Node>, Comparable<Node> {
 
     private String label = NO_LABEL;
 
-    // Связанные с этим узлом узлы
-    private NavigableSet<Node> linkedNodes = new TreeSet<Node>();
+    // Связанные с этим узлом узлы. После уплотнения сети (см. CsrGraph)
+    // равно null, а связи хранятся в графе.
+    private NavigableSet<Node> linkedNodes;
 
-    // Флажок посещения узла
-    private boolean visited;
+    // Уплотненный граф, которому принадлежит узел
+    private CsrGraph graph;
 
-    // Флажок зараженности узла
-    private boolean infected;
+    // Индекс узла в сети. -1, если узел еще не проиндексирован
+    private int index = -1;
 
-    // Содержит флажок, принадлежит узел какому-нибудь кластеру или нет
-    private boolean inCluster;
+    // Хранилище состояния узла. У узла уплотненной сети - общее хранилище
+    // сети. Узел вне сети создает собственное хранилище из одного узла при
+    // первом изменении состояния; до этого равно null, и состояние узла
+    // совпадает с состоянием по умолчанию.
+    private NetState state;
 
-    // Содержит флажок, принадлежит ли узел перколяционному кластеру
-    private boolean inPercolationCluster;
-
-    /**
-     * Флажок, принадлежит ли узел границе или нет.
-     */
-    private boolean inBound;
-
-    /**
-     * Номер границы, если узел ей принадлежит.
-     */
-    private int bound;
-
-    /**
-     * Сопоставленная узлу вероятность.
-     */
-    private double probability;
-
-    // Идентификатор вещества, которое содержит узел
-    private int substance = NONE;
+    // Позиция узла в хранилище состояния
+    private int slot;
 
     /**
      * Create node with deafault unique id.
@@ -129,7 +115,19 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @param id
      */
     public Node(int id) {
+        this(id, new TreeSet<Node>());
+    }
+
+    /**
+     * Создает узел с заданным множеством связей. Подклассы, которые сами
+     * определяют связи узла, передают null.
+     * 
+     * @param id
+     * @param linkedNodes
+     */
+    Node(int id, NavigableSet<Node> linkedNodes) {
         this.id = id;
+        this.linkedNodes = linkedNodes;
     }
 
     /**
@@ -147,7 +145,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="infected"
      */
     public boolean isInfected() {
-        return infected;
+        return state != null && state.isInfected(slot);
     }
 
     /**
@@ -157,8 +155,10 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="infected"
      */
     public void setInfected(boolean infected) {
-        this.infected = infected;
-        if (!this.infected) {
+        if (state != null || infected) {
+            writable().setInfected(slot, infected);
+        }
+        if (!infected) {
             setInCluster(false);
             setSubstance(Node.NONE);
         }
@@ -171,7 +171,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="visited"
      */
     public boolean isVisited() {
-        return visited;
+        return state != null && state.isVisited(slot);
     }
 
     /**
@@ -181,7 +181,9 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="visited"
      */
     public void setVisited(boolean visited) {
-        this.visited = visited;
+        if (state != null || visited) {
+            writable().setVisited(slot, visited);
+        }
     }
 
     /**
@@ -190,6 +192,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @param node
      */
     public void linkTo(Node node) {
+        checkNotCompacted();
         linkedNodes.add(node);
     }
 
@@ -199,6 +202,9 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @return
      */
     public Iterator<Node> iterator() {
+        if (graph != null) {
+            return graph.neighborIterator(index);
+        }
         return linkedNodes.iterator();
     }
 
@@ -208,17 +214,123 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @return the linkedNodes
      */
     public Set<Node> getLinkedNodes() {
+        if (graph != null) {
+            return graph.neighborSet(index);
+        }
         return Collections.unmodifiableSet(linkedNodes);
     }
 
     /**
      * @param linkedNodes
      *            the linkedNodes to set
+     * @throws IllegalStateException
+     *             если узел уже входит в уплотненный граф
      */
     public void setLinkedNodes(NavigableSet<Node> linkedNodes) {
+        checkNotCompacted();
         this.linkedNodes = linkedNodes;
     }
 
+    /**
+     * Возвращает истину, если связи узла хранятся в уплотненном графе
+     * {@link CsrGraph}.
+     * 
+     * @return
+     */
+    public boolean isCompacted() {
+        return graph != null;
+    }
+
+    /**
+     * Возвращает индекс узла в сети или -1, если узел не проиндексирован.
+     * 
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Устанавливает индекс узла в сети.
+     * 
+     * @param index
+     */
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    /**
+     * Переключает узел на хранение связей в уплотненном графе. Собственное
+     * множество связанных узлов при этом освобождается.
+     * 
+     * @param graph
+     */
+    void attach(CsrGraph graph) {
+        this.graph = graph;
+        this.linkedNodes = null;
+    }
+
+    /**
+     * Переключает узел на хранение состояния в общем хранилище сети. Текущее
+     * состояние узла копируется в позицию slot только в той части, которая
+     * отличается от значений по умолчанию, поэтому новый узел-представление
+     * не затирает состояние хранилища.
+     * 
+     * @param state
+     * @param slot
+     */
+    void bind(NetState state, int slot) {
+        final NetState source = this.state;
+        final int index = this.slot;
+        if (source != null) {
+            if (source.isVisited(index)) {
+                state.setVisited(slot, true);
+            }
+            if (source.isInfected(index)) {
+                state.setInfected(slot, true);
+            }
+            if (source.isInCluster(index)) {
+                state.setInCluster(slot, true);
+            }
+            if (source.isInPercolationCluster(index)) {
+                state.setInPercolationCluster(slot, true);
+            }
+            if (source.isInBound(index)) {
+                state.setInBound(slot, true);
+            }
+            if (source.getBound(index) != 0) {
+                state.setBound(slot, source.getBound(index));
+            }
+            if (source.getSubstance(index) != NONE) {
+                state.setSubstance(slot, source.getSubstance(index));
+            }
+            if (source.getProbability(index) != 0) {
+                state.setProbability(slot, source.getProbability(index));
+            }
+        }
+        this.state = state;
+        this.slot = slot;
+    }
+
+    /**
+     * Возвращает хранилище для изменения состояния, создавая собственное
+     * хранилище узла вне сети.
+     */
+    private NetState writable() {
+        if (state == null) {
+            state = new NetState(1);
+            slot = 0;
+        }
+        return state;
+    }
+
+    private void checkNotCompacted() {
+        if (graph != null) {
+            throw new IllegalStateException("Узел " + id
+                    + " входит в уплотненный граф, связи изменять нельзя");
+        }
+    }
+
     /**
      * Возвращает идентификатор узла
      * 
@@ -255,7 +367,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @return the inBound
      */
     public boolean isInBound() {
-        return inBound;
+        return state != null && state.isInBound(slot);
     }
 
     /**
@@ -266,10 +378,10 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      *             если inBound == false.
      */
     public int getBound() {
-        if (!inBound) {
+        if (!isInBound()) {
             throw new IllegalStateException("Узел не принадлежит границе");
         }
-        return bound;
+        return state.getBound(slot);
     }
 
     /**
@@ -277,22 +389,24 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      *            the bound to set
      */
     public void setBound(int bound) {
-        this.bound = bound;
-        this.inBound = true;
+        writable().setBound(slot, bound);
+        state.setInBound(slot, true);
     }
 
     /**
      * Удаляет узел из границы.
      */
     public void removeFromBound() {
-        this.inBound = false;
+        if (state != null) {
+            state.setInBound(slot, false);
+        }
     }
 
     /**
      * @return the inPercolationCluster
      */
     public boolean isInPercolationCluster() {
-        return inPercolationCluster;
+        return state != null && state.isInPercolationCluster(slot);
     }
 
     /**
@@ -302,7 +416,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="inCluster"
      */
     boolean isInCluster() {
-        return inCluster;
+        return state != null && state.isInCluster(slot);
     }
 
     /**
@@ -315,8 +429,10 @@ public class Node implements Iterable<Node>, Comparable<Node> {
         if (!isInfected() && inCluster) {
             throw new IllegalStateException("Node is not infected");
         }
-        this.inCluster = inCluster;
-        if (!this.inCluster) {
+        if (state != null || inCluster) {
+            writable().setInCluster(slot, inCluster);
+        }
+        if (!inCluster) {
             setInPercolationCluster(false);
         }
     }
@@ -328,7 +444,9 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @uml.property name="inPercolationCluster"
      */
     void setInPercolationCluster(boolean inPercolationCluster) {
-        this.inPercolationCluster = inPercolationCluster;
+        if (state != null || inPercolationCluster) {
+            writable().setInPercolationCluster(slot, inPercolationCluster);
+        }
     }
 
     /**
@@ -337,7 +455,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @return
      */
     public double getProbability() {
-        return probability;
+        return state != null ? state.getProbability(slot) : 0;
     }
 
     /**
@@ -346,7 +464,9 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @param probability
      */
     public void setProbability(double displaceProbability) {
-        this.probability = displaceProbability;
+        if (state != null || displaceProbability != 0) {
+            writable().setProbability(slot, displaceProbability);
+        }
     }
 
     /**
@@ -355,7 +475,7 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      * @return
      */
     public int getSubstance() {
-        return substance;
+        return state != null ? state.getSubstance(slot) : NONE;
     }
 
     /**
@@ -365,7 +485,9 @@ public class Node implements Iterable<Node>, Comparable<Node> {
      *            - идентификатор вещества
      */
     public void setSubstance(int substance) {
-        this.substance = substance;
+        if (state != null || substance != NONE) {
+            writable().setSubstance(slot, substance);
+        }
     }
 
     @Override
@@ -389,12 +511,14 @@ public class Node implements Iterable<Node>, Comparable<Node> {
 
     @Override
     public String toString() {
-        return "Node [id=" + id + ", infected=" + infected + ", probability="
-                + probability + ", visited=" + visited + ", inBound=" + inBound
-                + ", bound=" + bound + ", inCluster=" + inCluster
-                + ", inPercolationCluster=" + inPercolationCluster
-                + ", linkedNodes.size=" + linkedNodes.size() + ", substance="
-                + substance + "]";
+        return "Node [id=" + id + ", infected=" + isInfected()
+                + ", probability=" + getProbability() + ", visited="
+                + isVisited() + ", inBound=" + isInBound() + ", bound="
+                + (state != null ? state.getBound(slot) : 0) + ", inCluster="
+                + isInCluster() + ", inPercolationCluster="
+                + isInPercolationCluster() + ", linkedNodes.size="
+                + getLinkedNodes().size() + ", substance=" + getSubstance()
+                + "]";
     }
 
     @Override
@@ -0,0 +1,27 @@
+package jerco.network;
+
+/**
+ * Вид перколяции, которую моделирует заражение сети.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public enum PercolationMode {
+    /**
+     * Перколяция по узлам: каждый узел заражается с вероятностью p, кластеры
+     * образуют связанные между собой зараженные узлы.
+     */
+    SITE,
+
+    /**
+     * Перколяция по связям: каждая связь открыта с вероятностью p, все узлы
+     * заражены, кластеры образуют узлы, соединенные открытыми связями.
+     * Одиночный узел без открытых связей является кластером размера 1.
+     * Поиск кластеров объединяет только зараженные узлы, поэтому если
+     * заражение узлов изменено после {@link Net#infect(double)}, получается
+     * смешанная перколяция по узлам и связям.
+     * Состояние связей хранится в {@link BondState}, поэтому режим доступен
+     * только для уплотненной сети.
+     */
+    BOND
+}
@@ -39,6 +39,14 @@ public class RegularLattice extends NetImpl {
         BadNetFileFormatException(File file) {
             super(file.getAbsolutePath());
         }
+
+        BadNetFileFormatException(File file, String message) {
+            super(file.getAbsolutePath() + ": " + message);
+        }
+
+        BadNetFileFormatException(File file, Throwable cause) {
+            super(file.getAbsolutePath(), cause);
+        }
     };
 
     /**
@@ -137,6 +145,7 @@ public class RegularLattice extends NetImpl {
         	}
 
         findBounds();
+        compact();
         generated = true;   
     }
 
@@ -194,6 +203,28 @@ public class RegularLattice extends NetImpl {
         return size;
     }
     
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Полосы решетки состоят из целых слоев, поэтому связи между полосами
+     * есть только у крайних слоев полос.
+     */
+    @Override
+    protected int[] stripStarts(int strips) {
+        strips = Math.max(1, Math.min(strips, layers.size()));
+        int[] starts = new int[strips];
+        int layer = 0;
+        int index = 0;
+        for (int k = 0; k < strips; k++) {
+            int firstLayer = (int) ((long) layers.size() * k / strips);
+            while (layer < firstLayer) {
+                index += layers.get(layer++).size();
+            }
+            starts[k] = index;
+        }
+        return starts;
+    }
+
     /**
      * Возвращает неизменяемый список слоев сети
      * 
@@ -275,18 +306,52 @@ public class RegularLattice extends NetImpl {
     }
 
     /**
-     * Загружает структуру сети из файла заданного формата ({@link #save(File)}.
-     * После загрузки автоматически осуществляется поиск кластера.
+     * Сохраняет сеть в двоичном формате {@link LatticeSnapshot}: структуру
+     * сети (генератор, размеры, обертки), зерно генератора случайных чисел и
+     * зараженность узлов по биту на узел.
+     * 
+     * @param file
+     *            имя файла для сохранения
+     * @param clusterLabels
+     *            сохранять ли метки кластеров узлов
+     * @throws IOException
+     *             в случае проблемы работы с файлом
+     */
+    public void saveSnapshot(File file, boolean clusterLabels)
+            throws IOException {
+        LatticeSnapshot.of(this, clusterLabels).write(file);
+    }
+
+    /**
+     * Загружает структуру сети из файла заданного формата ({@link #save(File)}
+     * или {@link #saveSnapshot(File, boolean)}; формат определяется по
+     * сигнатуре файла. После загрузки автоматически осуществляется поиск
+     * кластера; если снимок содержит метки кластеров, они устанавливаются
+     * без поиска.
      * 
      * @param file
      * @throws FileNotFoundException -
      *           в случае, если переданный файл не найден.
      * @throws BadNetFileFormatException -
      *           в случае, если структура переданного файла не соотвествует
-     *           заданной
+     *           заданной или файл не удалось прочитать
      */
     public void load(File file) throws FileNotFoundException,
             BadNetFileFormatException {
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getAbsolutePath());
+        }
+        try {
+            if (LatticeSnapshot.isSnapshot(file)) {
+                LatticeSnapshot.read(file).apply(this);
+                return;
+            }
+        } catch (IOException e) {
+            throw new BadNetFileFormatException(file, e);
+        } catch (IllegalArgumentException e) {
+            throw new BadNetFileFormatException(file, e);
+        }
+
         Scanner scanner = new Scanner(new BufferedReader(new FileReader(file)));
 
         // Считываем генератор структуры сети
@@ -372,7 +437,7 @@ public class RegularLattice extends NetImpl {
     }
 
     void printClusters(PrintStream out) {
-        for (Cluster cluster : clusters) {
+        for (Cluster cluster : getClusters()) {
             out.println(cluster);
         }
     }
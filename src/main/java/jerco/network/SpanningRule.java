@@ -0,0 +1,195 @@
+package jerco.network;
+
+import static jerco.network.generators.NetGenerator.BOTTOM_BOUNDS;
+import static jerco.network.generators.NetGenerator.LEFT_BOUNDS;
+import static jerco.network.generators.NetGenerator.RIGHT_BOUNDS;
+import static jerco.network.generators.NetGenerator.TOP_BOUNDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import jerco.network.generators.LeftRightBoundsWrapper;
+
+/**
+ * Правило, по которому кластер считается перколяционным.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public enum SpanningRule {
+    /**
+     * Кластер касается верхней и нижней границ.
+     */
+    TOP_BOTTOM {
+        @Override
+        int[][] requiredBounds(Set<Integer> netBounds) {
+            return new int[][] { { TOP_BOUNDS, BOTTOM_BOUNDS } };
+        }
+    },
+
+    /**
+     * Кластер касается левой и правой границ (см.
+     * {@link LeftRightBoundsWrapper}).
+     */
+    LEFT_RIGHT {
+        @Override
+        int[][] requiredBounds(Set<Integer> netBounds) {
+            return new int[][] { { LEFT_BOUNDS, RIGHT_BOUNDS } };
+        }
+    },
+
+    /**
+     * Кластер соединяет хотя бы одну пару противоположных границ: верхнюю и
+     * нижнюю или левую и правую. Учитываются только пары, обе границы которых
+     * есть в сети.
+     */
+    ANY_PAIR {
+        @Override
+        int[][] requiredBounds(Set<Integer> netBounds) {
+            List<int[]> pairs = new ArrayList<int[]>(2);
+            if (netBounds.contains(TOP_BOUNDS)
+                    && netBounds.contains(BOTTOM_BOUNDS)) {
+                pairs.add(new int[] { TOP_BOUNDS, BOTTOM_BOUNDS });
+            }
+            if (netBounds.contains(LEFT_BOUNDS)
+                    && netBounds.contains(RIGHT_BOUNDS)) {
+                pairs.add(new int[] { LEFT_BOUNDS, RIGHT_BOUNDS });
+            }
+            return pairs.toArray(new int[pairs.size()][]);
+        }
+    },
+
+    /**
+     * Кластер касается всех границ сети. Правило по умолчанию.
+     */
+    ALL {
+        @Override
+        int[][] requiredBounds(Set<Integer> netBounds) {
+            int[] all = new int[netBounds.size()];
+            int count = 0;
+            for (int bound : netBounds) {
+                all[count++] = bound;
+            }
+            return new int[][] { all };
+        }
+    };
+
+    /**
+     * Возвращает наборы границ, касание всех границ любого из которых делает
+     * кластер перколяционным.
+     *
+     * @param netBounds
+     *            границы сети
+     * @return
+     */
+    abstract int[][] requiredBounds(Set<Integer> netBounds);
+
+    /**
+     * Возвращает маски наборов границ, которых должен касаться перколяционный
+     * кластер (см. {@link #isSpanning(int, int[])}).
+     *
+     * @param boundary
+     *            узлы границ сети
+     * @return
+     * @throws IllegalStateException
+     *             если в сети нет границ, необходимых правилу
+     */
+    public int[] requiredMasks(BoundarySites boundary) {
+        int[][] required = requiredBounds(boundary.getBounds());
+        if (required.length == 0) {
+            throw new IllegalStateException(missingBounds());
+        }
+        int[] masks = new int[required.length];
+        for (int k = 0; k < required.length; k++) {
+            for (int bound : required[k]) {
+                int mask = boundary.mask(bound);
+                if (mask == 0) {
+                    throw new IllegalStateException(missingBounds());
+                }
+                masks[k] |= mask;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Возвращает маски наборов границ, в которых номер бита равен номеру
+     * границы (см. {@link StreamingLattice}).
+     *
+     * @param netBounds
+     *            границы сети, номера которых меньше {@link Integer#SIZE}
+     * @return
+     * @throws IllegalStateException
+     *             если в сети нет границ, необходимых правилу
+     */
+    int[] requiredBoundMasks(Set<Integer> netBounds) {
+        int[][] required = requiredBounds(netBounds);
+        if (required.length == 0) {
+            throw new IllegalStateException(missingBounds());
+        }
+        int[] masks = new int[required.length];
+        for (int k = 0; k < required.length; k++) {
+            for (int bound : required[k]) {
+                if (!netBounds.contains(bound)) {
+                    throw new IllegalStateException(missingBounds());
+                }
+                masks[k] |= 1 << bound;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Проверяет, является ли кластер с заданной маской границ
+     * перколяционным.
+     *
+     * @param mask
+     *            маска границ кластера
+     * @param requiredMasks
+     *            результат {@link #requiredMasks(BoundarySites)}
+     * @return
+     */
+    public static boolean isSpanning(int mask, int[] requiredMasks) {
+        for (int required : requiredMasks) {
+            if ((mask & required) == required) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет, является ли кластер перколяционным.
+     *
+     * @param cluster
+     * @param netBounds
+     *            границы сети
+     * @return
+     * @throws IllegalStateException
+     *             если в сети нет границ, необходимых правилу
+     */
+    public boolean isSpanning(Cluster cluster, Set<Integer> netBounds) {
+        int[][] required = requiredBounds(netBounds);
+        if (required.length == 0) {
+            throw new IllegalStateException(missingBounds());
+        }
+        for (int[] bounds : required) {
+            boolean spanning = true;
+            for (int bound : bounds) {
+                if (!netBounds.contains(bound)) {
+                    throw new IllegalStateException(missingBounds());
+                }
+                spanning &= cluster.touches(bound);
+            }
+            if (spanning) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String missingBounds() {
+        return "Net doesn't have bounds required by spanning rule " + name();
+    }
+}
@@ -0,0 +1,321 @@
+package jerco.network;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jerco.network.generators.LatticeStencil;
+import jerco.network.generators.LatticeStencils;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.RegularWrapper;
+
+/**
+ * Структура регулярной решетки, связи которой вычисляются по шаблону
+ * {@link LatticeStencil} и не хранятся в памяти.
+ * <p>
+ * Узлы нумеруются по слоям: сначала все узлы первого слоя, затем второго и
+ * т.д. Такой же порядок обхода узлов дает {@link RegularLattice}. Границы
+ * узлов вычисляются так же, как их устанавливают генераторы и
+ * {@link LeftRightBoundsWrapper}.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class StencilTopology implements Topology, LatticeStencil.Grid {
+    /**
+     * Значение, возвращаемое {@link #bound(int, int)} для узлов, не
+     * принадлежащих границе.
+     */
+    public static final int NO_BOUND = -1;
+
+    private final LatticeStencil stencil;
+
+    private final int width;
+
+    private final int height;
+
+    /**
+     * Индекс первого узла каждого слоя. Длина массива на единицу больше
+     * количества слоев.
+     */
+    private final int[] rowOffsets;
+
+    /**
+     * Истина, если во всех слоях одинаковое количество узлов. В этом случае
+     * номер слоя вычисляется делением.
+     */
+    private final boolean uniformRows;
+
+    /**
+     * Принадлежат ли крайние узлы слоев левой и правой границам.
+     */
+    private final boolean leftRightBounds;
+
+    /**
+     * Создает структуру решетки.
+     * 
+     * @param stencil
+     *            шаблон соседства
+     * @param width
+     *            ширина решетки
+     * @param height
+     *            высота решетки
+     * @param leftRightBounds
+     *            принадлежат ли крайние узлы слоев левой и правой границам
+     * @throws IllegalArgumentException
+     *             если количество узлов не помещается в int
+     */
+    public StencilTopology(LatticeStencil stencil, int width, int height,
+            boolean leftRightBounds) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException(
+                    "Ширина и высота должны быть больше 0");
+        }
+        this.stencil = stencil;
+        this.width = width;
+        this.height = height;
+        this.leftRightBounds = leftRightBounds;
+
+        rowOffsets = new int[height + 1];
+        boolean uniform = true;
+        long offset = 0;
+        for (int row = 0; row < height; row++) {
+            rowOffsets[row] = (int) offset;
+            int rowWidth = stencil.rowWidth(row, width);
+            uniform &= rowWidth == width;
+            offset += rowWidth;
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format(
+                        "Решетка %dx%d содержит слишком много узлов", width,
+                        height));
+            }
+        }
+        rowOffsets[height] = (int) offset;
+        uniformRows = uniform;
+    }
+
+    /**
+     * Создает структуру решетки по ее описанию.
+     * 
+     * @param structureInfo
+     * @return
+     * @throws IllegalArgumentException
+     *             если в описании есть обертка, которую нельзя выразить
+     *             правилом вычисления границ
+     */
+    public static StencilTopology of(NetStructureInfo structureInfo) {
+        return new StencilTopology(
+                LatticeStencils.forGenerator(structureInfo.getGenerator()),
+                structureInfo.getWidth(), structureInfo.getHeight(),
+                hasLeftRightBounds(structureInfo));
+    }
+
+    /**
+     * Проверяет обертки решетки и возвращает истину, если крайние узлы слоев
+     * принадлежат левой и правой границам.
+     * 
+     * @param structureInfo
+     * @return
+     * @throws IllegalArgumentException
+     *             если в описании есть обертка, которую нельзя выразить
+     *             правилом вычисления границ
+     */
+    static boolean hasLeftRightBounds(NetStructureInfo structureInfo) {
+        boolean leftRightBounds = false;
+        List<RegularWrapper> wrappers = structureInfo.getWrapper();
+        for (RegularWrapper wrapper : wrappers) {
+            if (wrapper instanceof LeftRightBoundsWrapper) {
+                leftRightBounds = true;
+            } else {
+                throw new IllegalArgumentException(
+                        "Обертка не поддерживается неявной решеткой: "
+                                + wrapper.getClass().getName());
+            }
+        }
+        return leftRightBounds;
+    }
+
+    @Override
+    public int size() {
+        return rowOffsets[height];
+    }
+
+    @Override
+    public int maxDegree() {
+        return stencil.maxDegree();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Индексы записываются по возрастанию, т.е. в том же порядке, в котором
+     * соседей перебирает узел {@link RegularLattice}.
+     */
+    @Override
+    public int neighbors(int index, int[] buffer) {
+        int row = row(index);
+        return neighbors(row, index - rowOffsets[row], buffer);
+    }
+
+    /**
+     * Записывает индексы соседей узла по возрастанию.
+     * 
+     * @param row
+     *            номер слоя узла
+     * @param column
+     *            номер узла в слое
+     * @param buffer
+     *            буфер длиной не меньше {@link #maxDegree()}
+     * @return количество соседей
+     */
+    public int neighbors(int row, int column, int[] buffer) {
+        int count = stencil.neighbors(this, row, column, buffer);
+        for (int i = 1; i < count; i++) {
+            int value = buffer[i];
+            int j = i - 1;
+            while (j >= 0 && buffer[j] > value) {
+                buffer[j + 1] = buffer[j];
+                j--;
+            }
+            buffer[j + 1] = value;
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает номер слоя, которому принадлежит узел.
+     * 
+     * @param index
+     * @return
+     */
+    public int row(int index) {
+        if (uniformRows) {
+            return index / width;
+        }
+
+        int low = 0;
+        int high = height - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (rowOffsets[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает номер узла в слое.
+     * 
+     * @param index
+     * @return
+     */
+    public int column(int index) {
+        return index - rowOffsets[row(index)];
+    }
+
+    @Override
+    public int index(int row, int column) {
+        return rowOffsets[row] + column;
+    }
+
+    /**
+     * Возвращает количество узлов в слое.
+     * 
+     * @param row
+     * @return
+     */
+    public int rowWidth(int row) {
+        return rowOffsets[row + 1] - rowOffsets[row];
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public LatticeStencil getStencil() {
+        return stencil;
+    }
+
+    /**
+     * Возвращает номер границы, которой принадлежит узел, или
+     * {@link #NO_BOUND}.
+     * 
+     * @param row
+     * @param column
+     * @return
+     */
+    public int bound(int row, int column) {
+        return bound(row, column, rowWidth(row), height, leftRightBounds);
+    }
+
+    /**
+     * Вычисляет номер границы узла решетки или {@link #NO_BOUND}.
+     * 
+     * @param row
+     * @param column
+     * @param rowWidth
+     *            количество узлов в слое узла
+     * @param height
+     *            высота решетки
+     * @param leftRightBounds
+     *            принадлежат ли крайние узлы слоев левой и правой границам
+     * @return
+     */
+    static int bound(int row, int column, int rowWidth, int height,
+            boolean leftRightBounds) {
+        if (leftRightBounds) {
+            if (column == rowWidth - 1) {
+                return NetGenerator.RIGHT_BOUNDS;
+            }
+            if (column == 0) {
+                return NetGenerator.LEFT_BOUNDS;
+            }
+        }
+        if (row == height - 1) {
+            return NetGenerator.BOTTOM_BOUNDS;
+        }
+        if (row == 0) {
+            return NetGenerator.TOP_BOUNDS;
+        }
+        return NO_BOUND;
+    }
+
+    /**
+     * Возвращает множество границ, которым принадлежит хотя бы один узел
+     * решетки.
+     * 
+     * @return
+     */
+    public Set<Integer> getBounds() {
+        Set<Integer> bounds = new HashSet<Integer>();
+        for (int row = 0; row < height; row++) {
+            int rowWidth = rowWidth(row);
+            if (row == 0 || row == height - 1) {
+                for (int column = 0; column < rowWidth; column++) {
+                    addBound(bounds, row, column);
+                }
+            } else if (rowWidth > 0) {
+                addBound(bounds, row, 0);
+                addBound(bounds, row, rowWidth - 1);
+            }
+        }
+        return bounds;
+    }
+
+    private void addBound(Set<Integer> bounds, int row, int column) {
+        int bound = bound(row, column);
+        if (bound != NO_BOUND) {
+            bounds.add(bound);
+        }
+    }
+}
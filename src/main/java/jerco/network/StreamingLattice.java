@@ -0,0 +1,587 @@
+package jerco.network;
+
+import static jerco.Constants.DOUBLE_PRECISION;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import jerco.network.generators.LatticeStencil;
+import jerco.network.generators.LatticeStencils;
+import jerco.utils.BernoulliBits;
+import jerco.utils.RandomAlgorithm;
+
+/**
+ * Регулярная решетка, которая заражается и просматривается по одному слою
+ * (алгоритм Хошена-Копельмана). Слои не хранятся: в памяти находятся только
+ * текущий и предыдущий слои, поэтому память пропорциональна ширине решетки,
+ * а высота ограничена только типом int.
+ * <p>
+ * Узлы слоя получают метки кластеров по соседям в предыдущем слое и в уже
+ * просмотренной части текущего слоя, метки объединяются методом объединения
+ * множеств. Кластер, ни один узел которого не попал в очередной слой, расти
+ * больше не может: он передается слушателю {@link ClusterListener}, а его
+ * метки используются повторно. Поэтому количество меток тоже пропорционально
+ * ширине решетки.
+ * <p>
+ * Соседи узлов вычисляются по шаблону {@link LatticeStencil}, поэтому
+ * поддерживаются те же генераторы и обертки, что и у {@link ImplicitLattice}.
+ * Границы кластера передаются маской, в которой номер бита равен номеру
+ * границы (см. {@link #bounds(int)}).
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class StreamingLattice {
+    /**
+     * Получатель кластеров, которые больше не могут вырасти.
+     */
+    public interface ClusterListener {
+        /**
+         * Вызывается для каждого кластера один раз, после просмотра слоя, в
+         * который кластер уже не попал, либо после просмотра последнего слоя.
+         *
+         * @param size
+         *            количество узлов кластера
+         * @param boundsMask
+         *            маска границ, которых касается кластер
+         */
+        void clusterCompleted(long size, int boundsMask);
+    }
+
+    /**
+     * Источник заражения слоев.
+     */
+    public interface RowSource {
+        /**
+         * Записывает зараженность узлов слоя.
+         *
+         * @param row
+         *            номер слоя
+         * @param infected
+         *            массив, первые rowWidth элементов которого нужно
+         *            заполнить
+         * @param rowWidth
+         *            количество узлов в слое
+         */
+        void fill(int row, boolean[] infected, int rowWidth);
+    }
+
+    /**
+     * Метка незараженного узла.
+     */
+    private static final int NONE = -1;
+
+    private final NetStructureInfo structureInfo;
+
+    private final LatticeStencil stencil;
+
+    private final int width;
+
+    private final int height;
+
+    private final boolean leftRightBounds;
+
+    /**
+     * Максимальное количество узлов в слое.
+     */
+    private final int stride;
+
+    private final Set<Integer> bounds;
+
+    private final Window window = new Window();
+
+    private final int[] buffer;
+
+    private final boolean[] infected;
+
+    private int[] previousLabels;
+
+    private int[] currentLabels;
+
+    /**
+     * Родитель метки; для корня - сама метка.
+     */
+    private int[] parent = new int[0];
+
+    /**
+     * Размер кластера по метке корня.
+     */
+    private long[] size = new long[0];
+
+    /**
+     * Маска границ кластера по метке корня.
+     */
+    private int[] boundsMask = new int[0];
+
+    /**
+     * Последний слой, в котором встретился кластер, по метке корня.
+     */
+    private int[] lastRow = new int[0];
+
+    /**
+     * Используемые метки.
+     */
+    private int[] active = new int[0];
+
+    private int activeCount;
+
+    /**
+     * Освобожденные метки.
+     */
+    private int[] free = new int[0];
+
+    private int freeCount;
+
+    /**
+     * Количество созданных меток.
+     */
+    private int labelsCount;
+
+    private Random random = RandomAlgorithm.XOSHIRO256.create();
+
+    private ClusterListener listener;
+
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    private int[] requiredMasks;
+
+    private double infectProbability = Double.NaN;
+
+    private long infectedCount;
+
+    private long clustersCount;
+
+    private long largestClusterSize;
+
+    private boolean percolation;
+
+    /**
+     * Создает решетку с заданной структурой.
+     *
+     * @param structureInfo
+     * @throws IllegalArgumentException
+     *             если для генератора или оберток решетки нет шаблона
+     */
+    public StreamingLattice(NetStructureInfo structureInfo) {
+        if (structureInfo.getWidth() < 1 || structureInfo.getHeight() < 1) {
+            throw new IllegalArgumentException(
+                    "Ширина и высота должны быть больше 0");
+        }
+        this.structureInfo = new NetStructureInfo(structureInfo);
+        this.stencil = LatticeStencils.forGenerator(structureInfo
+                .getGenerator());
+        this.width = structureInfo.getWidth();
+        this.height = structureInfo.getHeight();
+        this.leftRightBounds = StencilTopology
+                .hasLeftRightBounds(structureInfo);
+
+        int maxWidth = 0;
+        int rows = Math.min(height, 4);
+        for (int row = 0; row < rows; row++) {
+            maxWidth = Math.max(maxWidth, stencil.rowWidth(row, width));
+        }
+        this.stride = maxWidth;
+        this.bounds = findBounds();
+
+        this.buffer = new int[stencil.maxDegree()];
+        this.infected = new boolean[stride];
+        this.previousLabels = new int[stride];
+        this.currentLabels = new int[stride];
+    }
+
+    /**
+     * Собирает границы решетки. Границы всех внутренних слоев одинаковы,
+     * поэтому достаточно просмотреть крайние слои и один внутренний.
+     */
+    private Set<Integer> findBounds() {
+        Set<Integer> result = new TreeSet<Integer>();
+        for (int row : new int[] { 0, Math.min(1, height - 1), height - 1 }) {
+            int rowWidth = stencil.rowWidth(row, width);
+            for (int column = 0; column < rowWidth; column++) {
+                int bound = StencilTopology.bound(row, column, rowWidth,
+                        height, leftRightBounds);
+                if (bound != StencilTopology.NO_BOUND) {
+                    result.add(bound);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    public NetStructureInfo getStructureInfo() {
+        return structureInfo;
+    }
+
+    /**
+     * Возвращает количество узлов решетки.
+     *
+     * @return
+     */
+    public long size() {
+        long result = 0;
+        for (int row = 0; row < height; row++) {
+            result += stencil.rowWidth(row, width);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает границы решетки.
+     *
+     * @return
+     */
+    public Set<Integer> getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Возвращает множество границ, заданных маской.
+     *
+     * @param boundsMask
+     *            маска, в которой номер бита равен номеру границы
+     * @return
+     */
+    public static Set<Integer> bounds(int boundsMask) {
+        Set<Integer> result = new HashSet<Integer>();
+        for (int bound = 0; bound < Integer.SIZE; bound++) {
+            if ((boundsMask & (1 << bound)) != 0) {
+                result.add(bound);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Устанавливает генератор случайных чисел для {@link #infect(double)}.
+     *
+     * @param random
+     */
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+    }
+
+    /**
+     * Устанавливает получателя законченных кластеров.
+     *
+     * @param listener
+     *            получатель или null
+     */
+    public void setListener(ClusterListener listener) {
+        this.listener = listener;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера. По
+     * умолчанию {@link SpanningRule#ALL}.
+     *
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+    }
+
+    /**
+     * Заражает каждый узел решетки с вероятностью p и находит кластеры. При
+     * вероятности, близкой к 0 или 1, случайные числа вычисляются только для
+     * редких узлов ({@link BernoulliBits}).
+     *
+     * @param p
+     * @throws IllegalStateException
+     *             если в решетке нет границ, необходимых правилу
+     *             определения перколяционного кластера
+     */
+    public void infect(final double p) {
+        final BernoulliBits bits = new BernoulliBits(random, p
+                - DOUBLE_PRECISION, size());
+        run(new RowSource() {
+            @Override
+            public void fill(int row, boolean[] infected, int rowWidth) {
+                for (int column = 0; column < rowWidth; column += 64) {
+                    final int count = Math.min(64, rowWidth - column);
+                    long word = bits.next(count);
+                    for (int bit = 0; bit < count; bit++) {
+                        infected[column + bit] = (word & (1L << bit)) != 0;
+                    }
+                }
+            }
+        });
+        infectProbability = p;
+    }
+
+    /**
+     * Заражает слои решетки по данным источника и находит кластеры.
+     *
+     * @param source
+     * @throws IllegalStateException
+     *             если в решетке нет границ, необходимых правилу
+     *             определения перколяционного кластера
+     */
+    public void run(RowSource source) {
+        requiredMasks = spanningRule.requiredBoundMasks(bounds);
+        infectProbability = Double.NaN;
+        infectedCount = 0;
+        clustersCount = 0;
+        largestClusterSize = 0;
+        percolation = false;
+        activeCount = 0;
+        freeCount = 0;
+        labelsCount = 0;
+        Arrays.fill(currentLabels, NONE);
+
+        for (int row = 0; row < height; row++) {
+            int[] temp = previousLabels;
+            previousLabels = currentLabels;
+            currentLabels = temp;
+
+            int rowWidth = stencil.rowWidth(row, width);
+            Arrays.fill(currentLabels, NONE);
+            source.fill(row, infected, rowWidth);
+            window.row = row;
+            for (int column = 0; column < rowWidth; column++) {
+                if (infected[column]) {
+                    labelSite(row, column, rowWidth);
+                }
+            }
+            releaseLabels(row, rowWidth);
+        }
+
+        for (int k = 0; k < activeCount; k++) {
+            complete(active[k]);
+        }
+        activeCount = 0;
+    }
+
+    /**
+     * Присваивает узлу метку кластера соседей, объединяя их кластеры.
+     */
+    private void labelSite(int row, int column, int rowWidth) {
+        infectedCount++;
+        int root = NONE;
+        int count = stencil.neighbors(window, row, column, buffer);
+        for (int k = 0; k < count; k++) {
+            int slot = buffer[k];
+            int id;
+            if (slot < stride) {
+                id = previousLabels[slot];
+            } else if (slot < stride + column) {
+                id = currentLabels[slot - stride];
+            } else {
+                // Узел текущего слоя правее или узел следующего слоя
+                continue;
+            }
+            if (id == NONE) {
+                continue;
+            }
+            id = find(id);
+            root = root == NONE ? id : union(root, id);
+        }
+
+        if (root == NONE) {
+            root = allocate();
+        }
+        size[root]++;
+        int bound = StencilTopology.bound(row, column, rowWidth, height,
+                leftRightBounds);
+        if (bound != StencilTopology.NO_BOUND) {
+            boundsMask[root] |= 1 << bound;
+        }
+        currentLabels[column] = root;
+    }
+
+    /**
+     * Заменяет метки слоя корнями и освобождает метки, которые больше не
+     * используются. Кластеры, не попавшие в слой, передаются слушателю.
+     */
+    private void releaseLabels(int row, int rowWidth) {
+        for (int column = 0; column < rowWidth; column++) {
+            if (currentLabels[column] != NONE) {
+                int root = find(currentLabels[column]);
+                currentLabels[column] = root;
+                lastRow[root] = row;
+            }
+        }
+
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int id = active[k];
+            if (parent[id] != id) {
+                release(id);
+            } else if (lastRow[id] != row) {
+                complete(id);
+                release(id);
+            } else {
+                active[kept++] = id;
+            }
+        }
+        activeCount = kept;
+    }
+
+    private void complete(int root) {
+        clustersCount++;
+        largestClusterSize = Math.max(largestClusterSize, size[root]);
+        if (!percolation
+                && SpanningRule.isSpanning(boundsMask[root], requiredMasks)) {
+            percolation = true;
+        }
+        if (listener != null) {
+            listener.clusterCompleted(size[root], boundsMask[root]);
+        }
+    }
+
+    private int allocate() {
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            id = labelsCount++;
+            if (id == parent.length) {
+                int capacity = Math.max(16, parent.length * 2);
+                parent = Arrays.copyOf(parent, capacity);
+                size = Arrays.copyOf(size, capacity);
+                boundsMask = Arrays.copyOf(boundsMask, capacity);
+                lastRow = Arrays.copyOf(lastRow, capacity);
+                active = Arrays.copyOf(active, capacity);
+                free = Arrays.copyOf(free, capacity);
+            }
+        }
+        parent[id] = id;
+        size[id] = 0;
+        boundsMask[id] = 0;
+        lastRow[id] = NONE;
+        active[activeCount++] = id;
+        return id;
+    }
+
+    private void release(int id) {
+        free[freeCount++] = id;
+    }
+
+    /**
+     * Возвращает корень метки, сокращая путь вдвое.
+     */
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    /**
+     * Объединяет кластеры двух корней. Меньший присоединяется к большему.
+     *
+     * @return корень объединенного кластера
+     */
+    private int union(int rootA, int rootB) {
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (size[rootA] < size[rootB]) {
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        boundsMask[rootA] |= boundsMask[rootB];
+        return rootA;
+    }
+
+    /**
+     * Возвращает вероятность заражения последнего вызова
+     * {@link #infect(double)} или NaN.
+     *
+     * @return
+     */
+    public double getInfectProbability() {
+        return infectProbability;
+    }
+
+    /**
+     * Возвращает количество зараженных узлов.
+     *
+     * @return
+     */
+    public long getInfectedCount() {
+        return infectedCount;
+    }
+
+    /**
+     * Возвращает количество найденных кластеров.
+     *
+     * @return
+     */
+    public long getClustersCount() {
+        return clustersCount;
+    }
+
+    /**
+     * Возвращает размер максимального кластера.
+     *
+     * @return
+     */
+    public long getLargestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**
+     * Возвращает истину, если найден перколяционный кластер.
+     *
+     * @return
+     */
+    public boolean hasPercolationCluster() {
+        return percolation;
+    }
+
+    /**
+     * Возвращает количество меток, созданных при последнем проходе.
+     * Применяется при модульном тестировании.
+     *
+     * @return
+     */
+    int getLabelsCount() {
+        return labelsCount;
+    }
+
+    /**
+     * Окно из двух слоев: узлы предыдущего слоя имеют индексы [0, stride),
+     * узлы текущего - [stride, 2 * stride), узлы следующего - от 2 * stride.
+     */
+    private final class Window implements LatticeStencil.Grid {
+        int row;
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int index(int neighborRow, int column) {
+            int shift = neighborRow - row + 1;
+            if (shift < 0 || shift > 2) {
+                throw new IllegalStateException(
+                        "Шаблон связывает несмежные слои");
+            }
+            return shift * stride + column;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package jerco.network;
+
+/**
+ * Описывает структуру связей сети в терминах индексов узлов. Узлы сети
+ * пронумерованы от 0 до {@link #size()} - 1.
+ * <p>
+ * Интерфейс позволяет алгоритмам поиска кластеров работать одинаково как со
+ * связями, хранящимися в памяти ({@link CsrGraph}), так и со связями,
+ * вычисляемыми по правилу построения решетки ({@link StencilTopology}).
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public interface Topology {
+
+    /**
+     * Возвращает количество узлов.
+     * 
+     * @return
+     */
+    public int size();
+
+    /**
+     * Возвращает максимальное количество соседей у одного узла. Используется
+     * для выделения буфера, передаваемого в {@link #neighbors(int, int[])}.
+     * 
+     * @return
+     */
+    public int maxDegree();
+
+    /**
+     * Записывает индексы соседей узла в переданный буфер.
+     * 
+     * @param index
+     *            индекс узла
+     * @param buffer
+     *            буфер длиной не меньше {@link #maxDegree()}
+     * @return количество соседей
+     */
+    public int neighbors(int index, int[] buffer);
+}
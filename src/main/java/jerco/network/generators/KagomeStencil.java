@@ -0,0 +1,106 @@
+package jerco.network.generators;
+
+/**
+ * Шаблон решетки Кагоме, повторяющий связи, которые создает
+ * {@link KagomeGenerator}.
+ * <p>
+ * Базовая часть решетки состоит из 4 слоев. Слои с номерами 0 и 2 (по модулю
+ * 4) являются связанными: имеют полную ширину и связи между соседними узлами.
+ * Слои 1 и 3 являются разреженными: содержат примерно половину узлов, каждый
+ * из которых связан с двумя узлами предыдущего и двумя узлами следующего слоя.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class KagomeStencil implements LatticeStencil {
+    public static final KagomeStencil INSTANCE = new KagomeStencil();
+
+    private KagomeStencil() {
+
+    }
+
+    /**
+     * Возвращает истину, если слой разреженный.
+     * 
+     * @param row
+     * @return
+     */
+    private static boolean isRare(int row) {
+        return (row & 1) == 1;
+    }
+
+    @Override
+    public int rowWidth(int row, int width) {
+        switch (row % 4) {
+        case 1:
+            return width / 2;
+        case 3:
+            return (width - 1) / 2;
+        default:
+            return width;
+        }
+    }
+
+    @Override
+    public int maxDegree() {
+        return 4;
+    }
+
+    @Override
+    public boolean isPeriodic() {
+        return false;
+    }
+
+    @Override
+    public int neighbors(Grid grid, int row, int column, int[] buffer) {
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+
+        int count = 0;
+        if (!isRare(row)) {
+            if (column > 0) {
+                buffer[count++] = grid.index(row, column - 1);
+            }
+            if (column + 1 < width) {
+                buffer[count++] = grid.index(row, column + 1);
+            }
+
+            // Связь с разреженным слоем сверху
+            if (row > 0) {
+                int substraction = (row % 4 == 0) ? 1 : 0;
+                if (column >= substraction) {
+                    int previous = (column - substraction) / 2;
+                    if (previous < rowWidth(row - 1, width)) {
+                        buffer[count++] = grid.index(row - 1, previous);
+                    }
+                }
+            }
+
+            // Связь с разреженным слоем снизу
+            if (row + 1 < height) {
+                int addition = (row % 4 == 0) ? 0 : 1;
+                if (column >= addition) {
+                    int next = (column - addition) / 2;
+                    if (next < rowWidth(row + 1, width)) {
+                        buffer[count++] = grid.index(row + 1, next);
+                    }
+                }
+            }
+        } else {
+            int addition = (row % 4 == 1) ? 0 : 1;
+            buffer[count++] = grid.index(row - 1, column * 2 + addition);
+            buffer[count++] = grid.index(row - 1, column * 2 + 1 + addition);
+
+            if (row + 1 < height) {
+                int substraction = (row % 4 == 3) ? 1 : 0;
+                for (int i = 0; i < 2; i++) {
+                    int next = column * 2 + i + substraction;
+                    if (next < width) {
+                        buffer[count++] = grid.index(row + 1, next);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
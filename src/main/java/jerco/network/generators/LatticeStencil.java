@@ -0,0 +1,89 @@
+package jerco.network.generators;
+
+/**
+ * Правило соседства регулярной решетки. В отличие от {@link NetGenerator},
+ * который создает узлы и связывает их между собой, шаблон вычисляет соседей
+ * узла по его положению (номеру слоя и номеру узла в слое). Это позволяет
+ * работать с решеткой, не храня ее связи в памяти.
+ * <p>
+ * Нумерация слоев и узлов в слое совпадает с нумерацией слоев, которые строит
+ * соответствующий генератор.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public interface LatticeStencil {
+
+    /**
+     * Размещение узлов решетки, для которой вычисляются соседи. Переводит
+     * положение узла в его индекс.
+     */
+    public interface Grid {
+        /**
+         * Возвращает ширину решетки.
+         * 
+         * @return
+         */
+        public int getWidth();
+
+        /**
+         * Возвращает высоту решетки (количество слоев).
+         * 
+         * @return
+         */
+        public int getHeight();
+
+        /**
+         * Возвращает индекс узла с заданным положением.
+         * 
+         * @param row
+         *            номер слоя
+         * @param column
+         *            номер узла в слое
+         * @return
+         */
+        public int index(int row, int column);
+    }
+
+    /**
+     * Возвращает количество узлов в слое.
+     * 
+     * @param row
+     *            номер слоя
+     * @param width
+     *            ширина решетки
+     * @return
+     */
+    public int rowWidth(int row, int width);
+
+    /**
+     * Возвращает максимальное количество соседей одного узла.
+     * 
+     * @return
+     */
+    public int maxDegree();
+
+    /**
+     * Возвращает истину, если крайние узлы каждого слоя связаны между собой
+     * (решетка свернута в цилиндр).
+     * 
+     * @return
+     */
+    public boolean isPeriodic();
+
+    /**
+     * Записывает индексы соседей узла в буфер. Порядок индексов не
+     * определен, повторов нет.
+     * 
+     * @param grid
+     *            решетка
+     * @param row
+     *            номер слоя узла
+     * @param column
+     *            номер узла в слое
+     * @param buffer
+     *            буфер длиной не меньше {@link #maxDegree()}
+     * @return количество соседей
+     */
+    public int neighbors(Grid grid, int row, int column, int[] buffer);
+}
@@ -0,0 +1,40 @@
+package jerco.network.generators;
+
+/**
+ * Сопоставляет генераторам регулярных решеток шаблоны соседства
+ * {@link LatticeStencil}.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class LatticeStencils {
+
+    private LatticeStencils() {
+
+    }
+
+    /**
+     * Возвращает шаблон, описывающий решетку, которую строит переданный
+     * генератор.
+     * 
+     * @param generator
+     * @return
+     * @throws IllegalArgumentException
+     *             если для генератора нет шаблона
+     */
+    public static LatticeStencil forGenerator(NetGenerator generator) {
+        if (generator instanceof RectGenerator) {
+            return OffsetStencil.RECTANGLE;
+        } else if (generator instanceof TriangGenerator) {
+            return OffsetStencil.TRIANGLE;
+        } else if (generator instanceof KagomeGenerator) {
+            return KagomeStencil.INSTANCE;
+        } else if (generator instanceof CylinderGenerator) {
+            // CylinderGenerator всегда строит прямоугольную решетку
+            return OffsetStencil.CYLINDER;
+        } else {
+            throw new IllegalArgumentException("Нет шаблона для генератора "
+                    + generator.getClass().getName());
+        }
+    }
+}
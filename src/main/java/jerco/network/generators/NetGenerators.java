@@ -24,6 +24,16 @@ public enum NetGenerators {
         public NetGenerator getGenerator() {
             return new HexaGenerator();
         }
+    },
+    Kagome {
+        public NetGenerator getGenerator() {
+            return new KagomeGenerator();
+        }
+    },
+    Cylinder {
+        public NetGenerator getGenerator() {
+            return new CylinderGenerator();
+        }
     };
 
     /**
@@ -56,6 +66,10 @@ public enum NetGenerators {
             return Triangle;
         } else if (generator instanceof HexaGenerator) {
             return Hexagone;
+        } else if (generator instanceof KagomeGenerator) {
+            return Kagome;
+        } else if (generator instanceof CylinderGenerator) {
+            return Cylinder;
         } else {
             throw new UnknownNetGenerator(generator);
         }
@@ -0,0 +1,132 @@
+package jerco.network.generators;
+
+/**
+ * Шаблон решетки, в которой все узлы имеют одинаковое окружение. Соседи
+ * задаются списком смещений (по слоям и по узлам в слое) относительно узла.
+ * <p>
+ * Для свернутой в цилиндр решетки смещения по узлам в слое берутся по модулю
+ * ширины решетки.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class OffsetStencil implements LatticeStencil {
+    /**
+     * Прямоугольная решетка, {@link RectGenerator}.
+     */
+    public static final OffsetStencil RECTANGLE = new OffsetStencil(false,
+            new int[][] { { -1, 0 }, { 0, -1 }, { 0, 1 }, { 1, 0 } });
+
+    /**
+     * Треугольная решетка, {@link TriangGenerator}. Дополнительно к
+     * прямоугольной узел связан по диагонали с правым нижним и левым верхним
+     * узлами.
+     */
+    public static final OffsetStencil TRIANGLE = new OffsetStencil(false,
+            new int[][] { { -1, -1 }, { -1, 0 }, { 0, -1 }, { 0, 1 },
+                    { 1, 0 }, { 1, 1 } });
+
+    /**
+     * Прямоугольная решетка, свернутая в цилиндр, {@link CylinderGenerator}.
+     */
+    public static final OffsetStencil CYLINDER = RECTANGLE.periodic();
+
+    private final boolean periodic;
+
+    private final int[] rowOffsets;
+
+    private final int[] columnOffsets;
+
+    /**
+     * Создает шаблон.
+     * 
+     * @param periodic
+     *            свернута ли решетка в цилиндр
+     * @param offsets
+     *            пары смещений {номер слоя, номер узла в слое}
+     */
+    public OffsetStencil(boolean periodic, int[][] offsets) {
+        this.periodic = periodic;
+        rowOffsets = new int[offsets.length];
+        columnOffsets = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i].length != 2) {
+                throw new IllegalArgumentException(
+                        "Смещение задается парой чисел");
+            }
+            rowOffsets[i] = offsets[i][0];
+            columnOffsets[i] = offsets[i][1];
+        }
+    }
+
+    /**
+     * Возвращает такой же шаблон для решетки, свернутой в цилиндр.
+     * 
+     * @return
+     */
+    public OffsetStencil periodic() {
+        int[][] offsets = new int[rowOffsets.length][];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = new int[] { rowOffsets[i], columnOffsets[i] };
+        }
+        return new OffsetStencil(true, offsets);
+    }
+
+    @Override
+    public int rowWidth(int row, int width) {
+        return width;
+    }
+
+    @Override
+    public int maxDegree() {
+        return rowOffsets.length;
+    }
+
+    @Override
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    @Override
+    public int neighbors(Grid grid, int row, int column, int[] buffer) {
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+
+        int count = 0;
+        for (int k = 0; k < rowOffsets.length; k++) {
+            int r = row + rowOffsets[k];
+            if (r < 0 || r >= height) {
+                continue;
+            }
+
+            int c = column + columnOffsets[k];
+            if (c < 0 || c >= width) {
+                if (!periodic) {
+                    continue;
+                }
+                c = ((c % width) + width) % width;
+            }
+            if (r == row && c == column) {
+                continue;
+            }
+
+            int index = grid.index(r, c);
+            // В узкой свернутой решетке разные смещения могут указывать на
+            // один и тот же узел
+            if (periodic && contains(buffer, count, index)) {
+                continue;
+            }
+            buffer[count++] = index;
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] buffer, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
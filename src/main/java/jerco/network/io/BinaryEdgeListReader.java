@@ -0,0 +1,221 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+import jerco.network.CsrGraph;
+import jerco.network.Node;
+import jerco.utils.MappedIntArray;
+
+/**
+ * Считыватель списка связей в двоичном формате. Файл отображается в память,
+ * пары индексов копируются в массивы без разбора текста.
+ * <p>
+ * Формат (целые числа - int32 в порядке little-endian):
+ *
+ * <pre>
+ * "JEDG"                 - сигнатура, 4 байта
+ * int версия             - {@link #VERSION}
+ * int количество узлов
+ * int количество связей
+ * int количество узлов на границах
+ * int[2 * связи]         - пары индексов узлов связей
+ * int[2 * узлы границ]   - пары (индекс узла, номер границы)
+ * </pre>
+ *
+ * Узлы индексируются с нуля и получают метки "0", "1", ... по индексам.
+ * Записать граф в этом формате можно методом {@link #write(CsrGraph, File)}.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class BinaryEdgeListReader implements GraphReader {
+    /**
+     * Версия формата, которую записывает этот класс.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'J', 'E', 'D', 'G' };
+
+    private static final int HEADER_SIZE = MAGIC.length + 4 * 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+
+    public BinaryEdgeListReader(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public BinaryEdgeListReader(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("File not found " + file.getAbsolutePath());
+        }
+
+        if (!file.canRead()) {
+            throw new IOException("Can't read file " + file.getAbsolutePath());
+        }
+        this.file = file;
+    }
+
+    /**
+     * Returns nodes of compact graph (see {@link #readGraph()}).
+     */
+    @Override
+    public Set<Node> read() throws JercoReaderException {
+        return readGraph().nodeSet();
+    }
+
+    @Override
+    public CsrGraph readGraph() throws JercoReaderException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            int read;
+            do {
+                read = channel.read(header);
+            } while (read > 0 && header.hasRemaining());
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            if (header.remaining() < HEADER_SIZE) {
+                throw new JercoReaderException(file + ": file is too short");
+            }
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new JercoReaderException(file
+                        + ": not a binary edge list");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new JercoReaderException(file + ": unsupported version "
+                        + version);
+            }
+            int size = header.getInt();
+            int edgesCount = header.getInt();
+            int boundsCount = header.getInt();
+            if (size < 0 || edgesCount < 0 || boundsCount < 0) {
+                throw new JercoReaderException(file + ": bad header");
+            }
+            long expected = HEADER_SIZE + 8L * edgesCount + 8L * boundsCount;
+            if (channel.size() != expected) {
+                throw new JercoReaderException(String.format(
+                        "%s: expected %d bytes, got %d", file, expected,
+                        channel.size()));
+            }
+
+            MappedIntArray data = MappedIntArray.map(channel,
+                    MapMode.READ_ONLY, HEADER_SIZE, 2L * edgesCount + 2L
+                            * boundsCount);
+            int[] sources = new int[edgesCount];
+            int[] targets = new int[edgesCount];
+            long position = 0;
+            for (int k = 0; k < edgesCount; k++) {
+                sources[k] = data.get(position++);
+                targets[k] = data.get(position++);
+            }
+
+            String[] labels = new String[size];
+            for (int i = 0; i < size; i++) {
+                labels[i] = String.valueOf(i);
+            }
+            CsrGraph graph = CsrGraph.fromEdges(labels, sources, targets,
+                    edgesCount);
+            for (int k = 0; k < boundsCount; k++) {
+                int node = data.get(position++);
+                int bound = data.get(position++);
+                if (node < 0 || node >= size) {
+                    throw new JercoReaderException(file + ": bound of node "
+                            + node + " outside of net");
+                }
+                graph.getNode(node).setBound(bound);
+            }
+            return graph;
+        } catch (IOException e) {
+            throw new JercoReaderException("Can't read file " + file, e);
+        } catch (IllegalArgumentException e) {
+            throw new JercoReaderException(file + ": " + e.getMessage(), e);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // файл только читался
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает граф в двоичном формате. Каждая связь записывается один раз,
+     * метки узлов не сохраняются.
+     *
+     * @param graph
+     * @param file
+     * @throws IOException
+     */
+    public static void write(CsrGraph graph, File file) throws IOException {
+        final int[] offsets = graph.getOffsets();
+        final int[] neighbors = graph.getNeighbors();
+        int boundsCount = 0;
+        for (int i = 0; i < graph.size(); i++) {
+            if (graph.getNode(i).isInBound()) {
+                boundsCount++;
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(graph.size());
+            buffer.putInt(graph.getEdgesCount());
+            buffer.putInt(boundsCount);
+            for (int i = 0; i < graph.size(); i++) {
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    if (neighbors[k] > i) {
+                        if (buffer.remaining() < 8) {
+                            drain(channel, buffer);
+                        }
+                        buffer.putInt(i);
+                        buffer.putInt(neighbors[k]);
+                    }
+                }
+            }
+            for (int i = 0; i < graph.size(); i++) {
+                Node node = graph.getNode(i);
+                if (node.isInBound()) {
+                    if (buffer.remaining() < 8) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putInt(i);
+                    buffer.putInt(node.getBound());
+                }
+            }
+            drain(channel, buffer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,418 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import jerco.network.CsrGraph;
+import jerco.network.Node;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Кэширует результат разбора файла сети другим считывателем. После первого
+ * разбора граф сохраняется в двоичном виде рядом с исходным файлом (файл с
+ * дополнительным расширением {@value #CACHE_EXTENSION}), последующие чтения
+ * отображают сохраненный граф в память вместо повторного разбора.
+ * <p>
+ * Кэш действителен, если совпадают размер и время изменения исходного файла.
+ * Если размер совпадает, а время изменения нет (файл скопирован или
+ * перезаписан), сравнивается контрольная сумма CRC32 содержимого; при
+ * совпадении кэш используется, а время изменения в нем обновляется.
+ * <p>
+ * Формат кэша (целые числа - в порядке little-endian):
+ *
+ * <pre>
+ * "JNET"                  - сигнатура, 4 байта
+ * int версия              - {@link #VERSION}
+ * long размер, long время изменения, long CRC32 исходного файла
+ * int флажки              - 1: идентификаторы узлов сохранены
+ * int узлы, int длина списка соседей, int узлы на границах, int байты меток
+ * int[узлы]               - идентификаторы узлов, если сохранены
+ * int[узлы + 1]           - смещения списков соседей
+ * int[длина]              - индексы соседей
+ * int[2 * узлы границ]    - пары (индекс узла, номер границы)
+ * int[узлы + 1]           - смещения меток в байтах
+ * byte[байты меток]       - метки в UTF-8
+ * </pre>
+ *
+ * Идентификаторы узлов сохраняются, только если они заданы считывателем
+ * ({@link CsrGraph#hasExplicitIds()}); иначе узлы загруженного графа, как и
+ * при разборе, получают очередные идентификаторы.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class CachingNetReader implements GraphReader {
+    private static final Logger LOG = LoggerFactory
+            .getLogger(CachingNetReader.class);
+
+    /**
+     * Расширение, добавляемое к имени исходного файла.
+     */
+    public static final String CACHE_EXTENSION = ".jnet";
+
+    /**
+     * Версия формата, которую записывает этот класс.
+     */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'J', 'N', 'E', 'T' };
+
+    private static final int FLAG_IDS = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 4 + 3 * 8 + 5 * 4;
+
+    /**
+     * Смещение времени изменения исходного файла в заголовке.
+     */
+    private static final int MTIME_POSITION = MAGIC.length + 4 + 8;
+
+    private static final int CHECKSUM_BLOCK = 1 << 26;
+
+    private final File source;
+
+    private final NetReader reader;
+
+    private final File cache;
+
+    /**
+     * Истина, если последний вызов {@link #readGraph()} загрузил кэш.
+     */
+    private boolean cacheHit;
+
+    /**
+     * Создает считыватель с кэшем рядом с исходным файлом.
+     *
+     * @param source
+     *            исходный файл сети
+     * @param reader
+     *            считыватель исходного файла
+     */
+    public CachingNetReader(File source, NetReader reader) {
+        this(source, reader, new File(source.getPath() + CACHE_EXTENSION));
+    }
+
+    /**
+     * @param source
+     *            исходный файл сети
+     * @param reader
+     *            считыватель исходного файла
+     * @param cache
+     *            файл кэша
+     */
+    public CachingNetReader(File source, NetReader reader, File cache) {
+        if (source == null || reader == null || cache == null) {
+            throw new IllegalArgumentException(
+                    "source, reader and cache must be set");
+        }
+        this.source = source;
+        this.reader = reader;
+        this.cache = cache;
+    }
+
+    public File getCache() {
+        return cache;
+    }
+
+    /**
+     * Возвращает истину, если последнее чтение загрузило граф из кэша, а не
+     * разбирало исходный файл.
+     *
+     * @return
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * Returns nodes of compact graph (see {@link #readGraph()}).
+     */
+    @Override
+    public Set<Node> read() throws JercoReaderException {
+        return readGraph().nodeSet();
+    }
+
+    /**
+     * Загружает граф из кэша, если он действителен, иначе разбирает исходный
+     * файл и сохраняет кэш. Ошибка записи кэша не прерывает чтение.
+     */
+    @Override
+    public CsrGraph readGraph() throws JercoReaderException {
+        cacheHit = false;
+        if (!source.isFile()) {
+            throw new JercoReaderException("File not found "
+                    + source.getAbsolutePath());
+        }
+
+        if (cache.isFile()) {
+            try {
+                CsrGraph graph = load();
+                if (graph != null) {
+                    cacheHit = true;
+                    return graph;
+                }
+            } catch (IOException e) {
+                LOG.warn("Can't read cache " + cache + ", parse " + source, e);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Broken cache " + cache + ", parse " + source, e);
+            }
+        }
+
+        CsrGraph graph;
+        if (reader instanceof GraphReader) {
+            graph = ((GraphReader) reader).readGraph();
+        } else {
+            Set<Node> nodes = reader.read();
+            graph = CsrGraph.build(nodes, nodes.size());
+        }
+
+        try {
+            save(graph, graph.hasExplicitIds());
+        } catch (IOException e) {
+            LOG.warn("Can't write cache " + cache, e);
+        }
+        return graph;
+    }
+
+    /**
+     * Загружает граф из кэша.
+     *
+     * @return граф или null, если кэш относится к другому содержимому
+     *         исходного файла
+     */
+    private CsrGraph load() throws IOException {
+        FileChannel channel = FileChannel.open(cache.toPath(),
+                StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalArgumentException("cache is too short");
+            }
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0,
+                    channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)
+                    || buffer.getInt() != VERSION) {
+                return null;
+            }
+
+            long length = buffer.getLong();
+            long modified = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (length != source.length()) {
+                return null;
+            }
+            if (modified != source.lastModified()) {
+                if (checksum != checksum(source)) {
+                    return null;
+                }
+                touch();
+            }
+
+            int flags = buffer.getInt();
+            int size = buffer.getInt();
+            int neighborsLength = buffer.getInt();
+            int boundsCount = buffer.getInt();
+            int labelBytes = buffer.getInt();
+            long expected = HEADER_SIZE
+                    + 4L * ((flags & FLAG_IDS) != 0 ? size : 0) + 4L
+                    * (size + 1) + 4L * neighborsLength + 8L * boundsCount
+                    + 4L * (size + 1) + labelBytes;
+            if (size < 0 || neighborsLength < 0 || boundsCount < 0
+                    || labelBytes < 0 || channel.size() != expected) {
+                throw new IllegalArgumentException("cache size "
+                        + channel.size() + " doesn't match header");
+            }
+
+            IntBuffer ints = buffer.asIntBuffer();
+            int[] ids = null;
+            if ((flags & FLAG_IDS) != 0) {
+                ids = new int[size];
+                ints.get(ids);
+            }
+            int[] offsets = new int[size + 1];
+            ints.get(offsets);
+            int[] neighbors = new int[neighborsLength];
+            ints.get(neighbors);
+            int[] bounds = new int[2 * boundsCount];
+            ints.get(bounds);
+            int[] labelOffsets = new int[size + 1];
+            ints.get(labelOffsets);
+
+            byte[] bytes = new byte[labelBytes];
+            buffer.position(buffer.position() + 4 * ints.position());
+            buffer.get(bytes);
+            String[] labels = new String[size];
+            for (int i = 0; i < size; i++) {
+                int from = labelOffsets[i];
+                labels[i] = from == labelOffsets[i + 1] ? Node.NO_LABEL
+                        : new String(bytes, from, labelOffsets[i + 1] - from,
+                                StandardCharsets.UTF_8);
+            }
+
+            CsrGraph graph = CsrGraph.of(ids, labels, offsets, neighbors);
+            for (int k = 0; k < boundsCount; k++) {
+                graph.getNode(bounds[2 * k]).setBound(bounds[2 * k + 1]);
+            }
+            return graph;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Записывает в кэш текущее время изменения исходного файла.
+     */
+    private void touch() {
+        try {
+            FileChannel channel = FileChannel.open(cache.toPath(),
+                    StandardOpenOption.WRITE);
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(8).order(
+                        ByteOrder.LITTLE_ENDIAN);
+                buffer.putLong(source.lastModified()).flip();
+                channel.write(buffer, MTIME_POSITION);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Can't update cache " + cache, e);
+        }
+    }
+
+    /**
+     * Сохраняет граф в кэш. Кэш записывается во временный файл, который затем
+     * заменяет прежний кэш.
+     */
+    private void save(CsrGraph graph, boolean ids) throws IOException {
+        final int size = graph.size();
+        int boundsCount = 0;
+        int[] labelOffsets = new int[size + 1];
+        byte[][] labels = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            Node node = graph.getNode(i);
+            if (node.isInBound()) {
+                boundsCount++;
+            }
+            labels[i] = node.getLabel().getBytes(StandardCharsets.UTF_8);
+            labelOffsets[i + 1] = labelOffsets[i] + labels[i].length;
+        }
+        final int[] neighbors = graph.getNeighbors();
+        long expected = HEADER_SIZE + 4L * (ids ? size : 0) + 8L * (size + 1)
+                + 4L * neighbors.length + 8L * boundsCount
+                + labelOffsets[size];
+        if (expected > Integer.MAX_VALUE) {
+            // кэш отображается в память одним буфером
+            LOG.warn("Graph is too big for cache: " + expected + " bytes");
+            return;
+        }
+
+        long length = source.length();
+        long modified = source.lastModified();
+        long checksum = checksum(source);
+
+        File temporary = new File(cache.getPath() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(length);
+            buffer.putLong(modified);
+            buffer.putLong(checksum);
+            buffer.putInt(ids ? FLAG_IDS : 0);
+            buffer.putInt(size);
+            buffer.putInt(neighbors.length);
+            buffer.putInt(boundsCount);
+            buffer.putInt(labelOffsets[size]);
+            for (int i = 0; ids && i < size; i++) {
+                putInt(channel, buffer, graph.getNode(i).getId());
+            }
+            for (int offset : graph.getOffsets()) {
+                putInt(channel, buffer, offset);
+            }
+            for (int neighbor : neighbors) {
+                putInt(channel, buffer, neighbor);
+            }
+            for (int i = 0; i < size; i++) {
+                Node node = graph.getNode(i);
+                if (node.isInBound()) {
+                    putInt(channel, buffer, i);
+                    putInt(channel, buffer, node.getBound());
+                }
+            }
+            for (int offset : labelOffsets) {
+                putInt(channel, buffer, offset);
+            }
+            for (byte[] label : labels) {
+                for (byte b : label) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+                    buffer.put(b);
+                }
+            }
+            drain(channel, buffer);
+        } finally {
+            channel.close();
+        }
+        Files.move(temporary.toPath(), cache.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Вычисляет CRC32 содержимого файла, отображая его в память блоками.
+     */
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            for (long position = 0; position < size;) {
+                long length = Math.min(CHECKSUM_BLOCK, size - position);
+                crc.update(channel.map(MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        } finally {
+            channel.close();
+        }
+        return crc.getValue();
+    }
+
+    private static void putInt(FileChannel channel, ByteBuffer buffer,
+            int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            drain(channel, buffer);
+        }
+        buffer.putInt(value);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
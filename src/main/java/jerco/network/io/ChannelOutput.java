@@ -0,0 +1,127 @@
+package jerco.network.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Буферизованный вывод текста в канал в кодировке UTF-8. Символы ASCII и
+ * целые числа записываются в буфер напрямую, без промежуточных строк;
+ * остальные символы кодируются кодировщиком прямо в буфер. Размер буфера
+ * постоянен, поэтому память вывода не зависит от объема данных.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+final class ChannelOutput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    /**
+     * Цифры числа в обратном порядке.
+     */
+    private final byte[] digits = new byte[10];
+
+    ChannelOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    ChannelOutput append(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                encode(text, i);
+                return this;
+            }
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) c);
+        }
+        return this;
+    }
+
+    /**
+     * Записывает символ ASCII.
+     *
+     * @param c
+     * @return
+     * @throws IOException
+     */
+    ChannelOutput append(char c) throws IOException {
+        if (c >= 0x80) {
+            throw new IllegalArgumentException("Not ASCII character " + c);
+        }
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) c);
+        return this;
+    }
+
+    ChannelOutput append(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            return append(String.valueOf(value));
+        }
+        if (buffer.remaining() < digits.length + 1) {
+            flush();
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        return this;
+    }
+
+    ChannelOutput append(boolean value) throws IOException {
+        return append(value ? "true" : "false");
+    }
+
+    /**
+     * Записывает содержимое буфера в канал.
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void encode(String text, int from) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text, from, text.length());
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush();
+            } else if (result.isError()) {
+                result.throwException();
+            }
+        } while (!result.isUnderflow());
+        while (encoder.flush(buffer).isOverflow()) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package jerco.network.io;
+
+import java.io.IOException;
+
+import jerco.network.Net;
+import jerco.network.Node;
+
+/**
+ * Выгружает сеть в формате DOT (Graphviz) как неориентированный граф.
+ * Узлы называются идентификаторами, метка узла (или идентификатор, если метки
+ * нет) выводится атрибутом label. Зараженные узлы закрашиваются: узлы
+ * перколяционного кластера - {@value #PERCOLATION_COLOR}, остальные -
+ * {@value #INFECTED_COLOR}. Узлы границ рисуются двойной окружностью.
+ * Состояние также записывается атрибутами infected, percolation и bound.
+ *
+ * <pre>
+ * graph G {
+ *     node [shape = "circle"];
+ *     1 [label = "1", bound = 0, shape = "doublecircle"];
+ *     2 [label = "2", infected = true, style = "filled", fillcolor = "gray"];
+ *     1 -- 2;
+ * }
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class DotWriter extends StreamingNetWriter {
+    static final String INFECTED_COLOR = "gray";
+
+    static final String PERCOLATION_COLOR = "red";
+
+    public DotWriter(Net net) {
+        super(net);
+    }
+
+    @Override
+    void write(ChannelOutput out) throws IOException {
+        out.append("graph G {\n\tnode [shape = \"circle\"];\n");
+        for (Node node : net) {
+            out.append('\t').append(node.getId()).append(" [label = \"");
+            String label = node.getLabel();
+            if (label.isEmpty()) {
+                out.append(node.getId());
+            } else {
+                out.append(escape(label));
+            }
+            out.append('"');
+            if (node.isInfected()) {
+                boolean percolation = node.isInPercolationCluster();
+                out.append(", infected = true");
+                if (percolation) {
+                    out.append(", percolation = true");
+                }
+                out.append(", style = \"filled\", fillcolor = \"")
+                        .append(percolation ? PERCOLATION_COLOR
+                                : INFECTED_COLOR).append('"');
+            }
+            if (node.isInBound()) {
+                out.append(", bound = ").append(node.getBound())
+                        .append(", shape = \"doublecircle\"");
+            }
+            out.append("];\n");
+        }
+        for (Node node : net) {
+            for (Node linked : node) {
+                if (isForward(node, linked)) {
+                    out.append('\t').append(node.getId()).append(" -- ")
+                            .append(linked.getId()).append(";\n");
+                }
+            }
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * Экранирует кавычки и обратную косую черту в строке DOT.
+     */
+    static String escape(String text) {
+        if (text.indexOf('"') < 0 && text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\');
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
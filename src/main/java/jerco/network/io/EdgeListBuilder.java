@@ -0,0 +1,246 @@
+package jerco.network.io;
+
+import java.util.Arrays;
+
+import jerco.network.CsrGraph;
+
+/**
+ * Построитель уплотненного графа по списку связей. Метки узлов заменяются
+ * индексами (0, 1, ...) в порядке первого появления, связи записываются в
+ * растущие массивы индексов. Объекты узлов создаются только в
+ * {@link #build()}.
+ * <p>
+ * Предназначен для считывателей больших графов: на узел тратится запись в
+ * таблице меток, на связь - два int.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public class EdgeListBuilder {
+    private static final int NO_BOUND = Integer.MIN_VALUE;
+
+    private String[] labels = new String[16];
+
+    private int[] bounds = new int[16];
+
+    private boolean[] declared = new boolean[16];
+
+    private int size;
+
+    /**
+     * Таблица меток с открытой адресацией: индекс узла + 1, 0 - пустая
+     * ячейка.
+     */
+    private int[] table = new int[32];
+
+    private int[] sources = new int[16];
+
+    private int[] targets = new int[16];
+
+    private int edgesCount;
+
+    /**
+     * Возвращает индекс узла с заданной меткой, добавляя узел при первом
+     * обращении.
+     * 
+     * @param label
+     * @return
+     */
+    public int node(String label) {
+        int mask = table.length - 1;
+        int slot = mix(label.hashCode()) & mask;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (labels[index].equals(label)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == labels.length) {
+            labels = Arrays.copyOf(labels, size * 2);
+            bounds = Arrays.copyOf(bounds, size * 2);
+            declared = Arrays.copyOf(declared, size * 2);
+        }
+        labels[size] = label;
+        bounds[size] = NO_BOUND;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Добавляет узел, не проверяя, есть ли уже узел с такой меткой, и не
+     * внося метку в таблицу. Вызывающая сторона сама отвечает за уникальность
+     * меток и не ищет добавленные так узлы методом {@link #node(String)}.
+     * 
+     * @param label
+     * @return индекс узла
+     */
+    int append(String label) {
+        if (size == labels.length) {
+            labels = Arrays.copyOf(labels, size * 2);
+            bounds = Arrays.copyOf(bounds, size * 2);
+            declared = Arrays.copyOf(declared, size * 2);
+        }
+        labels[size] = label;
+        bounds[size] = NO_BOUND;
+        declared[size] = true;
+        return size++;
+    }
+
+    /**
+     * Добавляет узел и отмечает его как объявленный. Узлы, на которые
+     * ссылаются только связи, считаются необъявленными (см.
+     * {@link #getUndeclared()}).
+     * 
+     * @param label
+     * @return индекс узла
+     */
+    public int declare(String label) {
+        int index = node(label);
+        declared[index] = true;
+        return index;
+    }
+
+    /**
+     * Устанавливает границу узла.
+     * 
+     * @param index
+     *            индекс узла
+     * @param bound
+     *            номер границы
+     */
+    public void setBound(int index, int bound) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Нет узла с индексом " + index);
+        }
+        bounds[index] = bound;
+    }
+
+    /**
+     * Добавляет связь между узлами с заданными индексами. Повторные связи
+     * отбрасываются при построении графа.
+     * 
+     * @param a
+     * @param b
+     */
+    public void addEdge(int a, int b) {
+        if (edgesCount == sources.length) {
+            sources = Arrays.copyOf(sources, edgesCount * 2);
+            targets = Arrays.copyOf(targets, edgesCount * 2);
+        }
+        sources[edgesCount] = a;
+        targets[edgesCount] = b;
+        edgesCount++;
+    }
+
+    /**
+     * Добавляет связь между узлами с заданными метками.
+     * 
+     * @param a
+     * @param b
+     */
+    public void addEdge(String a, String b) {
+        addEdge(node(a), node(b));
+    }
+
+    /**
+     * Возвращает количество узлов.
+     * 
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает метку узла.
+     * 
+     * @param index
+     *            индекс узла
+     * @return
+     */
+    public String getLabel(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Нет узла с индексом " + index);
+        }
+        return labels[index];
+    }
+
+    /**
+     * Возвращает количество добавленных связей, включая повторные.
+     * 
+     * @return
+     */
+    public int getEdgesCount() {
+        return edgesCount;
+    }
+
+    /**
+     * Возвращает метку первого узла, на который ссылается связь, но который
+     * не был объявлен методом {@link #declare(String)}, или null.
+     * 
+     * @return
+     */
+    public String getUndeclared() {
+        for (int i = 0; i < size; i++) {
+            if (!declared[i]) {
+                return labels[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Строит граф. Индексы узлов графа совпадают с индексами, выданными
+     * построителем.
+     * 
+     * @return
+     */
+    public CsrGraph build() {
+        return build(null);
+    }
+
+    /**
+     * Строит граф с заданными идентификаторами узлов.
+     * 
+     * @param ids
+     *            идентификаторы узлов по индексам или null
+     * @return
+     */
+    CsrGraph build(int[] ids) {
+        CsrGraph graph = CsrGraph.fromEdges(ids, Arrays.copyOf(labels, size),
+                sources, targets, edgesCount);
+        for (int i = 0; i < size; i++) {
+            if (bounds[i] != NO_BOUND) {
+                graph.getNode(i).setBound(bounds[i]);
+            }
+        }
+        return graph;
+    }
+
+    private void rehash() {
+        int[] rehashed = new int[table.length * 2];
+        int mask = rehashed.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = mix(labels[i].hashCode()) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = i + 1;
+        }
+        table = rehashed;
+    }
+
+    /**
+     * Перемешивает биты хэша строки, чтобы близкие метки ("1", "2", ...) не
+     * занимали соседние ячейки таблицы.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
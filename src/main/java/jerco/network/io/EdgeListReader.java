@@ -0,0 +1,127 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import jerco.network.CsrGraph;
+
+/**
+ * Считыватель текстового списка связей. Каждая строка содержит метки двух
+ * связанных узлов через пробел или табуляцию:
+ *
+ * <pre>
+ * # комментарий
+ * #bound 1 0
+ * 1 6
+ * 2 6
+ * 7
+ * </pre>
+ *
+ * Строка из одной метки объявляет узел без связей, строка
+ * {@code #bound <метка> <номер границы>} задает границу узла. Узлы
+ * индексируются в порядке первого появления в файле.
+ * <p>
+ * Файл разбирается параллельно по частям (см. {@link MappedTextReader}).
+ * Числовые метки (целые числа без ведущих нулей) разбираются в числа и
+ * сводятся к общим индексам через массив, индексированный числом; остальные
+ * метки заменяются локальными индексами части и сводятся через таблицу меток.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class EdgeListReader extends MappedTextReader {
+    /**
+     * Числовые метки сводятся массивом, если наибольшая метка не больше
+     * количества записей узлов плюс этот запас; иначе - таблицей меток.
+     */
+    private static final int DENSE_SLACK = 1 << 16;
+
+    public EdgeListReader(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public EdgeListReader(File file) throws IOException {
+        super(file, '#');
+    }
+
+    /**
+     * Возвращает число для числовой метки или -(локальный индекс + 1) для
+     * остальных.
+     */
+    @Override
+    protected int node(Chunk chunk, int from, int to) {
+        int token = isNumber(chunk, from, to) ? chunk.parseInt(from, to)
+                : -chunk.intern(from, to) - 1;
+        if (token > chunk.maxValue) {
+            chunk.maxValue = token;
+        }
+        chunk.addToken(token);
+        return token;
+    }
+
+    private static boolean isNumber(Chunk chunk, int from, int to) {
+        if (to - from > 10 || (to - from > 1 && chunk.byteAt(from) == '0')) {
+            return false;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = chunk.byteAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        return value <= Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected CsrGraph build(Chunk[] chunks) {
+        long tokens = 0;
+        int maxValue = -1;
+        for (Chunk chunk : chunks) {
+            tokens += chunk.tokensCount;
+            maxValue = Math.max(maxValue, chunk.maxValue);
+        }
+        int[] byValue = maxValue >= 0 && maxValue <= tokens + DENSE_SLACK
+                ? new int[maxValue + 1] : null;
+
+        EdgeListBuilder builder = new EdgeListBuilder();
+        for (Chunk chunk : chunks) {
+            int[] byLabel = new int[chunk.labelsCount];
+            // индексы назначаются в порядке появления записей в файле
+            for (int k = 0; k < chunk.tokensCount; k++) {
+                int token = chunk.tokens[k];
+                if (token < 0) {
+                    int local = -token - 1;
+                    if (byLabel[local] == 0) {
+                        byLabel[local] = builder.node(chunk.labels[local]) + 1;
+                    }
+                } else if (byValue == null) {
+                    builder.node(String.valueOf(token));
+                } else if (byValue[token] == 0) {
+                    byValue[token] = builder.append(String.valueOf(token)) + 1;
+                }
+            }
+            for (int k = 0; k < chunk.edgesCount; k++) {
+                builder.addEdge(
+                        index(builder, byValue, byLabel, chunk.sources[k]),
+                        index(builder, byValue, byLabel, chunk.targets[k]));
+            }
+            for (int k = 0; k < chunk.boundsCount; k++) {
+                builder.setBound(
+                        index(builder, byValue, byLabel, chunk.boundNodes[k]),
+                        chunk.bounds[k]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static int index(EdgeListBuilder builder, int[] byValue,
+            int[] byLabel, int token) {
+        if (token < 0) {
+            return byLabel[-token - 1] - 1;
+        }
+        return byValue != null ? byValue[token] - 1 : builder.node(String
+                .valueOf(token));
+    }
+}
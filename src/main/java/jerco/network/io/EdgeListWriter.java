@@ -0,0 +1,64 @@
+package jerco.network.io;
+
+import java.io.IOException;
+
+import jerco.network.Net;
+import jerco.network.Node;
+
+/**
+ * Выгружает сеть текстовым списком связей, который читает
+ * {@link EdgeListReader}. Узлы обозначаются идентификаторами. Для каждого
+ * узла в порядке обхода сети записываются граница, состояние и связи с
+ * узлами с большим идентификатором; узел без связей объявляется отдельной
+ * строкой:
+ *
+ * <pre>
+ * # 3 nodes
+ * #bound 1 0
+ * #infected 1
+ * #percolation 1
+ * 1 2
+ * 3
+ * </pre>
+ *
+ * Строки {@code #infected} и {@code #percolation} считыватель пропускает как
+ * комментарии.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class EdgeListWriter extends StreamingNetWriter {
+
+    public EdgeListWriter(Net net) {
+        super(net);
+    }
+
+    @Override
+    void write(ChannelOutput out) throws IOException {
+        out.append("# ").append(net.size()).append(" nodes\n");
+        for (Node node : net) {
+            int id = node.getId();
+            if (node.isInBound()) {
+                out.append("#bound ").append(id).append(' ')
+                        .append(node.getBound()).append('\n');
+            }
+            if (node.isInfected()) {
+                out.append("#infected ").append(id).append('\n');
+                if (node.isInPercolationCluster()) {
+                    out.append("#percolation ").append(id).append('\n');
+                }
+            }
+            boolean linked = false;
+            for (Node other : node) {
+                linked = true;
+                if (isForward(node, other)) {
+                    out.append(id).append(' ').append(other.getId())
+                            .append('\n');
+                }
+            }
+            if (!linked) {
+                out.append(id).append('\n');
+            }
+        }
+    }
+}
@@ -3,25 +3,46 @@ package jerco.network.io;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import jerco.network.CsrGraph;
 import jerco.network.Node;
 import jxl.Cell;
+import jxl.CellType;
 import jxl.Sheet;
 import jxl.Workbook;
+import jxl.WorkbookSettings;
 import jxl.read.biff.BiffException;
 import jxl.read.biff.WorkbookParser;
 
 /**
  * Класс считывает структуру сети из файла Excel, в котором она задана матрицей
- * инцидентности.
+ * инцидентности или списком смежности.
+ * <p>
+ * Матрица инцидентности задается на листе "Структура" (или первом листе):
+ * первая строка содержит имена узлов, непустая ячейка в столбце i и строке j
+ * связывает узлы i и j. Узлы получают идентификаторы по номерам столбцов,
+ * начиная с 1.
+ * <p>
+ * Список смежности задается на листе "Список смежности": первая строка -
+ * заголовок, в каждой следующей строке первая ячейка - имя узла, остальные -
+ * имена связанных с ним узлов. Узел может занимать несколько строк. Узлы
+ * получают идентификаторы, начиная с 1, в порядке первого появления. Формат
+ * xls ограничен 256 столбцами, поэтому большие сети задаются списком
+ * смежности.
+ * <p>
+ * Лист "Ключевые узлы" (или второй лист) задает границы: строка i (начиная со
+ * второй) перечисляет, начиная со второго столбца, имена узлов границы i - 1.
+ * <p>
+ * Метод {@link #readGraph()} просматривает листы по строкам, пропуская пустые
+ * ячейки по их типу, и строит уплотненный граф без промежуточных объектов
+ * связей.
  * 
  * @author Leonid Vygovskiy
  * 
  */
-public class ExcelReader implements NetReader {
+public class ExcelReader implements GraphReader {
     private static final int SHEET_BOUNDS_INDEX = 1;
 
     private static final String SHEET_BOUNDS_NAME = "Ключевые узлы";
@@ -30,8 +51,33 @@ public class ExcelReader implements NetReader {
 
     private static final String STRUCTURE_SHEET_NAME = "Структура";
 
+    private static final String ADJACENCY_SHEET_NAME = "Список смежности";
+
+    /**
+     * Способ задания структуры сети в книге.
+     */
+    public enum Layout {
+        /**
+         * Список смежности, если в книге есть лист "Список смежности", иначе
+         * матрица инцидентности.
+         */
+        AUTO,
+
+        /**
+         * Матрица инцидентности.
+         */
+        MATRIX,
+
+        /**
+         * Список смежности.
+         */
+        ADJACENCY_LIST
+    }
+
     private final File xls;
 
+    private Layout layout = Layout.AUTO;
+
     /**
      * Содержит отобажение идентификаторов узлов на узлы. Нужно для быстрого
      * поиска узла по идентификатору в процессе построения.
@@ -50,6 +96,25 @@ public class ExcelReader implements NetReader {
         xls = file;
     }
 
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(Layout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("layout is null");
+        }
+        this.layout = layout;
+    }
+
+    /**
+     * Считывает сеть в отдельные узлы, связанные между собой, обходя матрицу
+     * по столбцам.
+     * 
+     * @deprecated используйте {@link #readGraph()}, который не создает
+     *             множеств связей узлов и обходит только непустые ячейки
+     */
+    @Deprecated
     public void loadNetwork() throws BiffException, IOException {
         nodesIds.clear();
         nodesNames.clear();
@@ -126,13 +191,8 @@ public class ExcelReader implements NetReader {
      * @return
      */
     private Sheet findSheet(String name, int index) {
-        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-            Sheet sheet = workbook.getSheet(i);
-            if (sheet.getName().equalsIgnoreCase(name)) {
-                return sheet;
-            }
-        }
-        return workbook.getSheet(index);
+        Sheet sheet = findSheet(name);
+        return sheet != null ? sheet : workbook.getSheet(index);
     }
 
     /**
@@ -152,18 +212,162 @@ public class ExcelReader implements NetReader {
         return node;
     }
 
+    /**
+     * Returns nodes of compact graph (see {@link #readGraph()}).
+     */
     @Override
     public Set<Node> read() throws JercoReaderException {
+        return readGraph().nodeSet();
+    }
+
+    @Override
+    public CsrGraph readGraph() throws JercoReaderException {
+        WorkbookSettings settings = new WorkbookSettings();
+        settings.setGCDisabled(true);
+        settings.setIgnoreBlanks(true);
+        settings.setDrawingsDisabled(true);
+        settings.setCellValidationDisabled(true);
+        settings.setAutoFilterDisabled(true);
+        settings.setSuppressWarnings(true);
+
+        Workbook book;
         try {
-            loadNetwork();
+            book = Workbook.getWorkbook(xls, settings);
         } catch (BiffException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            throw new JercoReaderException("Can't read workbook " + xls, e);
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            throw new JercoReaderException("Can't read file " + xls, e);
+        }
+        try {
+            workbook = book;
+            EdgeListBuilder builder = new EdgeListBuilder();
+            Map<String, Integer> names = new HashMap<String, Integer>();
+
+            Sheet adjacency = findSheet(ADJACENCY_SHEET_NAME);
+            if (layout == Layout.ADJACENCY_LIST
+                    || (layout == Layout.AUTO && adjacency != null)) {
+                readAdjacency(adjacency != null ? adjacency
+                        : workbook.getSheet(STRUCTURE_SHEET_INDEX), builder,
+                        names);
+            } else {
+                readMatrix(findSheet(STRUCTURE_SHEET_NAME,
+                        STRUCTURE_SHEET_INDEX), builder, names);
+            }
+
+            if (workbook.getNumberOfSheets() > SHEET_BOUNDS_INDEX
+                    || findSheet(SHEET_BOUNDS_NAME) != null) {
+                readBounds(findSheet(SHEET_BOUNDS_NAME, SHEET_BOUNDS_INDEX),
+                        builder, names);
+            }
+
+            int[] ids = new int[builder.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = i + 1;
+            }
+            return builder.build(ids);
+        } finally {
+            workbook = null;
+            book.close();
+        }
+    }
+
+    /**
+     * Считывает матрицу инцидентности по строкам. Узел столбца i получает
+     * индекс i - 1.
+     */
+    private static void readMatrix(Sheet sheet, EdgeListBuilder builder,
+            Map<String, Integer> names) {
+        Cell[] title = sheet.getRows() > 0 ? sheet.getRow(0) : new Cell[0];
+        int size = Math.max(sheet.getColumns(), sheet.getRows()) - 1;
+        for (int i = 1; i <= size; i++) {
+            String name = i < title.length ? text(title[i]) : null;
+            int index = builder.append(name == null ? Node.NO_LABEL : name);
+            if (name != null) {
+                names.put(name, index);
+            }
+        }
+
+        for (int j = 1; j < sheet.getRows(); j++) {
+            Cell[] cells = sheet.getRow(j);
+            for (int i = 1; i < cells.length; i++) {
+                if (text(cells[i]) != null) {
+                    builder.addEdge(i - 1, j - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Считывает список смежности. Имена узлов заменяются индексами в порядке
+     * первого появления.
+     */
+    private static void readAdjacency(Sheet sheet, EdgeListBuilder builder,
+            Map<String, Integer> names) {
+        for (int j = 1; j < sheet.getRows(); j++) {
+            Cell[] cells = sheet.getRow(j);
+            String name = cells.length > 0 ? text(cells[0]) : null;
+            if (name == null) {
+                continue;
+            }
+            int a = builder.node(name);
+            for (int i = 1; i < cells.length; i++) {
+                String linked = text(cells[i]);
+                if (linked != null) {
+                    builder.addEdge(a, builder.node(linked));
+                }
+            }
+        }
+        for (int i = 0; i < builder.size(); i++) {
+            names.put(builder.getLabel(i), i);
+        }
+    }
+
+    /**
+     * Считывает границы: узлы строки i (начиная со второй) принадлежат
+     * границе i - 1.
+     */
+    private void readBounds(Sheet sheet, EdgeListBuilder builder,
+            Map<String, Integer> names) throws JercoReaderException {
+        for (int i = 1; i < sheet.getRows(); i++) {
+            Cell[] bound = sheet.getRow(i);
+            for (int j = 1; j < bound.length; j++) {
+                String name = text(bound[j]);
+                if (name == null) {
+                    continue;
+                }
+                Integer index = names.get(name);
+                if (index == null) {
+                    throw new JercoReaderException("Bound " + (i - 1)
+                            + " contains unknown node " + name + " in " + xls);
+                }
+                builder.setBound(index, i - 1);
+            }
+        }
+    }
+
+    /**
+     * Возвращает обрезанное содержимое ячейки или null для пустой ячейки.
+     * Пустые ячейки отбрасываются по типу, без форматирования содержимого.
+     */
+    private static String text(Cell cell) {
+        if (cell.getType() == CellType.EMPTY) {
+            return null;
+        }
+        String contents = cell.getContents().trim();
+        return contents.isEmpty() ? null : contents;
+    }
+
+    /**
+     * Возвращает лист с заданным именем или null.
+     */
+    private Sheet findSheet(String name) {
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            Sheet sheet = workbook.getSheet(i);
+            if (sheet.getName().equalsIgnoreCase(name)) {
+                return sheet;
+            }
         }
-        return new HashSet<Node>(nodesIds.values());
+        return null;
     }
 
 }
@@ -18,7 +18,10 @@ import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 /**
- * Export network structure with FreeMarker template engine.
+ * Export network structure with FreeMarker template engine. Template model
+ * holds all nodes of net in list <code>nodes</code>, so this writer suits
+ * custom templates of small nets. Large nets are exported with streaming
+ * {@link DotWriter}, {@link GraphMLWriter} and {@link EdgeListWriter}.
  * 
  * @author Leonid Vygovskiy
  *
@@ -60,6 +63,10 @@ public class FreemarkerWriter {
         root.put("nodes", nodes);
         
         Writer writer = new BufferedWriter(new FileWriter(exportName));
-        template.process(root, writer);
+        try {
+            template.process(root, writer);
+        } finally {
+            writer.close();
+        }
     }
 }
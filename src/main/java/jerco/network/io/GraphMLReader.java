@@ -4,19 +4,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
+import jerco.network.CsrGraph;
 import jerco.network.Node;
 
 import org.slf4j.Logger;
@@ -26,20 +21,30 @@ import org.slf4j.LoggerFactory;
  * Support import graphs from <a
  * href="http://graphml.graphdrawing.org/">graphml</a> format. Only small subset
  * of full format supported.
+ * <p>
+ * File is read in one pass with cursor {@link XMLStreamReader}. Node ids are
+ * interned to int indexes and edges are appended to primitive arrays by
+ * {@link EdgeListBuilder}, duplicate edges are removed by sort when
+ * {@link CsrGraph} is built. So no objects are created per edge.
  * 
  * @author Leonid Vygovskiy
  * 
  */
-public class GraphMLReader implements NetReader {
+public class GraphMLReader implements GraphReader {
     private static final Logger logger = LoggerFactory
             .getLogger(GraphMLReader.class);
 
     private static XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
-    private XMLEventReader reader;
+    private XMLStreamReader reader;
 
-    private Map<String, Node> nodesByLabel;
+    private InputStream input;
 
-    private Set<Link> links;
+    /**
+     * File to read, null if reader is created for stream. File is opened on
+     * each reading, so reader that isn't read (e.g. by
+     * {@link CachingNetReader}) don't hold open file.
+     */
+    private File file;
 
     public GraphMLReader(String fileName) throws IOException,
             XMLStreamException {
@@ -63,8 +68,7 @@ public class GraphMLReader implements NetReader {
             throw new IOException("Can't read file " + file.getAbsolutePath());
         }
 
-        init(new FileInputStream(file));
-
+        this.file = file;
     }
 
     public GraphMLReader(InputStream input) throws XMLStreamException {
@@ -72,184 +76,139 @@ public class GraphMLReader implements NetReader {
     }
 
     private void init(InputStream input) throws XMLStreamException {
-        reader = xmlFactory.createXMLEventReader(input);
+        this.input = input;
+        reader = xmlFactory.createXMLStreamReader(input);
     }
 
+    /**
+     * Returns nodes of compact graph (see {@link #readGraph()}). Nodes can't
+     * be linked with other nodes.
+     */
     @Override
     public Set<Node> read() throws JercoReaderException {
-        nodesByLabel = new HashMap<String, Node>();
-        links = new HashSet<Link>();
-        
-        // init nodesByLabel and links. 
-        parseXML();
-
-        return makeNet(nodesByLabel, links);
-    }
-
-    private Set<Node> makeNet(Map<String, Node> nodesByLabel, Set<Link> links) throws JercoReaderException {
-        Set<Node> nodes = new HashSet<Node>();
-
-        for (Link link : links) {
-            Node a = getNodeByLabel(link.getA());
-            Node b = getNodeByLabel(link.getB());
-            
-            Node.linkNodes(a, b);
-            nodes.add(a);
-            nodes.add(b);
-        }
-
-        return nodes;
+        return readGraph().nodeSet();
     }
 
     /**
-     * This is a small trap. Map {@link #nodesByLabel} and {@link #links}
-     * contains nodes that has same label, but different objects instations.
-     * Main object contains in {@link #nodesByLabel}, so this method get him.
-     * <p>
-     * This is behaviour required because graphml don't require declare node
-     * before reference to it in edges.
+     * Read graph. Nodes are indexed in order of declaration, declared nodes
+     * without edges are included into graph.
      * 
-     * @param node
      * @throws JercoReaderException
+     *             if xml can't be parsed or edge references undefined node
      */
-    private Node getNodeByLabel(Node node) throws JercoReaderException {
-        Node n = nodesByLabel.get(node.getLabel());
-        if (n == null) {
+    @Override
+    public CsrGraph readGraph() throws JercoReaderException {
+        if (file != null) {
+            InputStream stream;
+            try {
+                stream = new FileInputStream(file);
+            } catch (IOException e) {
+                throw new JercoReaderException("Can't read file " + file, e);
+            }
+            try {
+                init(stream);
+            } catch (XMLStreamException e) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // исходная ошибка важнее
+                }
+                throw new JercoReaderException("Can't parse xml " + file, e);
+            }
+        }
+        EdgeListBuilder builder = new EdgeListBuilder();
+
+        parseXML(builder);
+
+        String undefined = builder.getUndeclared();
+        if (undefined != null) {
             throw new JercoReaderException("edge contains undefined node "
-                    + node.getLabel());
+                    + undefined);
         }
-        return n;
+
+        return builder.build();
     }
 
     /**
-     * Parse xml with {@link #reader} and fill {@link #nodes},
-     * {@link #nodesByLabel}, {@link #links}
+     * Parse xml with {@link #reader} and fill builder.
      * 
      * @throws JercoReaderException
      */
-    private void parseXML() throws JercoReaderException {
+    private void parseXML(EdgeListBuilder builder) throws JercoReaderException {
         try {
             while (reader.hasNext()) {
-                XMLEvent event = reader.nextEvent();
-                if (event.isStartElement()) {
-                    StartElement tag = event.asStartElement();
-                    String name = tag.getName().getLocalPart();
-
-                    if ("node".equalsIgnoreCase(name)) {
-                        try {
-                            final Node node = readNode(tag, reader);
-                            nodesByLabel.put(node.getLabel(), node);
-                        } catch (Exception e) {
-                            String msg = "Can't read node from tag " + tag;
-                            logger.error(msg, e);
-                            throw new JercoReaderException(msg, e);
-                        }
-
-                    } else if ("edge".equalsIgnoreCase(name)) {
-                        try {
-                            links.add(readLink(tag));
-                        } catch (Exception e) {
-                            String msg = "Can't read link from tag " + tag;
-                            logger.error(msg, e);
-                            throw new JercoReaderException(msg, e);
-                        }
-                    }
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+
+                if ("node".equalsIgnoreCase(name)) {
+                    readNode(builder);
+                } else if ("edge".equalsIgnoreCase(name)) {
+                    String a = readAttribute("source");
+                    String b = readAttribute("target");
+                    builder.addEdge(a, b);
                 }
             }
-
         } catch (XMLStreamException e) {
-            logger.error("Can't parse xml", e);
+            String msg = "Can't parse xml";
+            logger.error(msg, e);
+            throw new JercoReaderException(msg, e);
+        } catch (NumberFormatException e) {
+            String msg = "Can't read bound of node";
+            logger.error(msg, e);
+            throw new JercoReaderException(msg, e);
         } finally {
             try {
                 reader.close();
+                input.close();
             } catch (XMLStreamException e) {
-                logger.error("Can't close XMLEventReader");
+                logger.error("Can't close XMLStreamReader");
+            } catch (IOException e) {
+                logger.error("Can't close input stream");
             }
         }
     }
 
-    
-    private Node readNode(StartElement tag, XMLEventReader reader) throws XMLStreamException,
+    /**
+     * Read node tag and it's data. Cursor is on start of node tag and moved to
+     * end of it.
+     */
+    private void readNode(EdgeListBuilder builder) throws XMLStreamException,
             JercoReaderException {
-        String id = readAttribute(tag, "id");
-        Node node = new Node(id);
-        
-        XMLEvent xmlEvent = reader.peek();
-        
-        if (xmlEvent.isCharacters()) {
-            reader.next();
-            xmlEvent = reader.peek();
-        }
-        
-        if (!xmlEvent.isStartElement()) {
-            return node;
-        }
-        
-        StartElement data = xmlEvent.asStartElement();
-        String name = data.getName().getLocalPart();
-        if (!"data".equalsIgnoreCase(name)) {
-            return node;
-        }
-        
-        String key = readAttribute(data, "key");
-        if (!"bound".equalsIgnoreCase(key)) {
-            return node;
+        int index = builder.declare(readAttribute("id"));
+
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("data".equalsIgnoreCase(reader.getLocalName())
+                        && "bound".equalsIgnoreCase(reader.getAttributeValue(
+                                null, "key"))) {
+                    // getElementText moves cursor to end of data tag
+                    builder.setBound(index, Integer.valueOf(reader
+                            .getElementText().trim()));
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
         }
-        // This our xmlEvent. Move reader to it.
-        reader.next();
-        
-        int bound = Integer.valueOf(reader.getElementText());
-        node.setBound(bound);
-        
-        // we did peek, so skip element
-        reader.next();
-        
-        return node;
     }
 
-    private String readAttribute(StartElement tag, final String attributeName)
+    private String readAttribute(final String attributeName)
             throws JercoReaderException {
-        Attribute attribute = tag.getAttributeByName(new QName(attributeName));
-        if (attribute == null) {
+        String value = reader.getAttributeValue(null, attributeName);
+        if (value == null) {
             throw new JercoReaderException("can't get required attribute "
-                    + attributeName);
-        }
-        
-        String id = attribute.getValue();
-        if (id == null || id.isEmpty()) {
-            throw new JercoReaderException("required attribute value is empty "
-                    + attributeName);
+                    + attributeName + " of tag " + reader.getLocalName());
         }
-        return id;
-    }
-
-    private Link readLink(StartElement tag) throws XMLStreamException,
-            JercoReaderException {
-
-        String aId = readAttribute(tag, "source");
-        String bId = readAttribute(tag, "target");
-        
-        Node a = giveNodeForLink(aId);
-        Node b = giveNodeForLink(bId);
-
-        return new Link(a, b);
-    }
 
-    /**
-     * When edge is read, it can reference to already defined node or not. So,
-     * if node is defined it's loaded from {@link #nodesByLabel} otherwise
-     * returned new node.
-     * <p>
-     * This is allow to save memory on huge graphs.
-     * 
-     * @param label
-     * @return
-     */
-    private Node giveNodeForLink(String label) {
-        if (nodesByLabel.containsKey(label)) {
-            return nodesByLabel.get(label);
-        } else {
-            return new Node(label);
+        if (value.isEmpty()) {
+            throw new JercoReaderException("required attribute value is empty "
+                    + attributeName + " of tag " + reader.getLocalName());
         }
+        return value;
     }
 }
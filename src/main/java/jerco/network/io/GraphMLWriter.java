@@ -0,0 +1,117 @@
+package jerco.network.io;
+
+import java.io.IOException;
+
+import jerco.network.Net;
+import jerco.network.Node;
+
+/**
+ * Writes net to GraphML without building a DOM. Nodes are identified by
+ * {@link Node#getId()}, the label, bound and infection state are written as
+ * data elements:
+ *
+ * <pre>
+ * &lt;node id="1"&gt;
+ *   &lt;data key="label"&gt;a&lt;/data&gt;
+ *   &lt;data key="bound"&gt;0&lt;/data&gt;
+ *   &lt;data key="infected"&gt;true&lt;/data&gt;
+ *   &lt;data key="percolation"&gt;true&lt;/data&gt;
+ * &lt;/node&gt;
+ * </pre>
+ *
+ * Only non-default values are written. The output can be read back with
+ * {@link GraphMLReader}, which restores structure and bounds (node labels
+ * become ids).
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class GraphMLWriter extends StreamingNetWriter {
+
+    public GraphMLWriter(Net net) {
+        super(net);
+    }
+
+    @Override
+    void write(ChannelOutput out) throws IOException {
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+                + "\t<key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>\n"
+                + "\t<key id=\"bound\" for=\"node\" attr.name=\"bound\" attr.type=\"int\"/>\n"
+                + "\t<key id=\"infected\" for=\"node\" attr.name=\"infected\" attr.type=\"boolean\">"
+                + "<default>false</default></key>\n"
+                + "\t<key id=\"percolation\" for=\"node\" attr.name=\"percolation\" attr.type=\"boolean\">"
+                + "<default>false</default></key>\n"
+                + "\t<graph edgedefault=\"undirected\">\n");
+        for (Node node : net) {
+            out.append("\t\t<node id=\"").append(node.getId()).append('"');
+            String label = node.getLabel();
+            boolean infected = node.isInfected();
+            if (label.isEmpty() && !infected && !node.isInBound()) {
+                out.append("/>\n");
+                continue;
+            }
+            out.append('>');
+            if (!label.isEmpty()) {
+                out.append("<data key=\"label\">").append(escape(label))
+                        .append("</data>");
+            }
+            if (node.isInBound()) {
+                out.append("<data key=\"bound\">").append(node.getBound())
+                        .append("</data>");
+            }
+            if (infected) {
+                out.append("<data key=\"infected\">true</data>");
+                if (node.isInPercolationCluster()) {
+                    out.append("<data key=\"percolation\">true</data>");
+                }
+            }
+            out.append("</node>\n");
+        }
+        for (Node node : net) {
+            for (Node linked : node) {
+                if (isForward(node, linked)) {
+                    out.append("\t\t<edge source=\"").append(node.getId())
+                            .append("\" target=\"").append(linked.getId())
+                            .append("\"/>\n");
+                }
+            }
+        }
+        out.append("\t</graph>\n</graphml>\n");
+    }
+
+    /**
+     * Escapes XML markup characters.
+     */
+    static String escape(String text) {
+        int i = 0;
+        while (i < text.length() && "<>&\"".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == text.length()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length() + 16);
+        result.append(text, 0, i);
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                result.append("&lt;");
+                break;
+            case '>':
+                result.append("&gt;");
+                break;
+            case '&':
+                result.append("&amp;");
+                break;
+            case '"':
+                result.append("&quot;");
+                break;
+            default:
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package jerco.network.io;
+
+import jerco.network.CsrGraph;
+import jerco.network.NetImpl;
+
+/**
+ * Считыватель, строящий уплотненный граф сети ({@link CsrGraph}) без
+ * промежуточных множеств связей узлов. {@link NetImpl} использует
+ * {@link #readGraph()} вместо {@link #read()}, если считыватель реализует
+ * этот интерфейс.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public interface GraphReader extends NetReader {
+
+    /**
+     * Считывает структуру сети в уплотненный граф. Узлы графа уже уплотнены,
+     * связывать их между собой нельзя.
+     * 
+     * @return
+     * @throws JercoReaderException
+     */
+    public CsrGraph readGraph() throws JercoReaderException;
+}
@@ -32,10 +32,16 @@ public class Link {
         return b;
     }
 
-   
+    /**
+     * Hash doesn't depend on order of nodes, as {@link #equals(Object)}. Node
+     * hashes are ordered instead of multiplied: product collides for any
+     * factorization of number and is zero for node with id 0.
+     */
     @Override
     public int hashCode() {
-        return a.hashCode()*b.hashCode();
+        int ha = a == null ? 0 : a.hashCode();
+        int hb = b == null ? 0 : b.hashCode();
+        return 31 * Math.min(ha, hb) + Math.max(ha, hb);
     }
 
     /**
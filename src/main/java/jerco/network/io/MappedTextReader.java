@@ -0,0 +1,582 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jerco.network.CsrGraph;
+import jerco.network.Node;
+
+/**
+ * Основа считывателей текстовых списков связей. Файл отображается в память и
+ * делится на части по границам строк, части разбираются параллельно в пуле
+ * {@link ForkJoinPool}.
+ * <p>
+ * Каждая строка данных содержит два узла связи, разделенных пробелами или
+ * табуляцией; остальные поля строки (например, вес) игнорируются. Строка из
+ * одного узла объявляет узел без связей. Строки, начинающиеся с символа
+ * комментария, пропускаются, кроме строк вида
+ *
+ * <pre>
+ * #bound &lt;узел&gt; &lt;номер границы&gt;
+ * </pre>
+ *
+ * (с символом комментария формата вместо #), задающих границу узла.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+abstract class MappedTextReader implements GraphReader {
+    /**
+     * Наибольший размер части файла. Одно отображение не может быть больше 2
+     * ГБ.
+     */
+    private static final long MAX_CHUNK = 1L << 30;
+
+    /**
+     * Наименьший размер части файла, ради которого стоит заводить задачу.
+     */
+    static final long MIN_CHUNK = 1L << 20;
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final byte[] BOUND = "bound".getBytes(StandardCharsets.US_ASCII);
+
+    protected final File file;
+
+    private final byte comment;
+
+    private ForkJoinPool pool;
+
+    private long minChunk = MIN_CHUNK;
+
+    MappedTextReader(File file, char comment) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("File not found " + file.getAbsolutePath());
+        }
+
+        if (!file.canRead()) {
+            throw new IOException("Can't read file " + file.getAbsolutePath());
+        }
+        this.file = file;
+        this.comment = (byte) comment;
+    }
+
+    /**
+     * Устанавливает пул, в котором разбираются части файла. По умолчанию
+     * используется {@link ForkJoinPool#commonPool()}.
+     *
+     * @param pool
+     *            пул или null для общего пула
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /**
+     * Устанавливает наименьший размер части файла. Используется в тестах,
+     * чтобы разбирать по частям небольшие файлы.
+     */
+    void setMinChunk(long minChunk) {
+        this.minChunk = minChunk;
+    }
+
+    /**
+     * Returns nodes of compact graph (see {@link #readGraph()}).
+     */
+    @Override
+    public Set<Node> read() throws JercoReaderException {
+        return readGraph().nodeSet();
+    }
+
+    @Override
+    public CsrGraph readGraph() throws JercoReaderException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            long size = channel.size();
+            long start = readHeader(channel, size);
+
+            long[] bounds = split(channel, start, size);
+            ChunkTask[] tasks = new ChunkTask[bounds.length - 1];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new ChunkTask(channel.map(MapMode.READ_ONLY,
+                        bounds[i], bounds[i + 1] - bounds[i]), bounds[i]);
+            }
+            ForkJoinPool pool = getPool();
+            for (ChunkTask task : tasks) {
+                pool.execute(task);
+            }
+            Chunk[] chunks = new Chunk[tasks.length];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i].join();
+                chunks[i] = tasks[i].chunk;
+            }
+            for (Chunk chunk : chunks) {
+                if (chunk.error != null) {
+                    throw new JercoReaderException(file + ": " + chunk.error);
+                }
+            }
+            return build(chunks);
+        } catch (IOException e) {
+            throw new JercoReaderException("Can't read file " + file, e);
+        } catch (IllegalArgumentException e) {
+            throw new JercoReaderException(file + ": " + e.getMessage(), e);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // файл только читался
+                }
+            }
+        }
+    }
+
+    /**
+     * Разбирает заголовок файла.
+     *
+     * @return смещение начала данных
+     * @throws JercoReaderException
+     *             если заголовок не соответствует формату
+     */
+    protected long readHeader(FileChannel channel, long size)
+            throws IOException, JercoReaderException {
+        return 0;
+    }
+
+    /**
+     * Возвращает индекс узла по его записи в строке [from, to) части.
+     * Вызывается параллельно для разных частей.
+     *
+     * @throws IllegalArgumentException
+     *             если запись не является узлом
+     */
+    protected abstract int node(Chunk chunk, int from, int to);
+
+    /**
+     * Строит граф по разобранным частям, перечисленным в порядке следования в
+     * файле.
+     */
+    protected abstract CsrGraph build(Chunk[] chunks)
+            throws JercoReaderException;
+
+    /**
+     * Делит область [start, size) на части, начинающиеся с новой строки.
+     */
+    private long[] split(FileChannel channel, long start, long size)
+            throws IOException {
+        long length = size - start;
+        int parts = (int) Math.max(
+                Math.min(getPool().getParallelism() * CHUNKS_PER_THREAD,
+                        length / minChunk),
+                (length + MAX_CHUNK / 2 - 1) / (MAX_CHUNK / 2));
+        parts = Math.max(parts, 1);
+
+        long[] bounds = new long[parts + 1];
+        bounds[0] = start;
+        bounds[parts] = size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int i = 1; i < parts; i++) {
+            long position = Math.max(bounds[i - 1], start + length * i / parts);
+            bounds[i] = lineStart(channel, buffer, position, size);
+        }
+        return bounds;
+    }
+
+    /**
+     * Возвращает позицию начала первой строки, начинающейся не раньше
+     * position (позицию после ближайшего перевода строки перед ней).
+     */
+    private static long lineStart(FileChannel channel, ByteBuffer buffer,
+            long position, long size) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        position--;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += Math.max(read, 0);
+            if (read <= 0) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Результат разбора части файла: связи и границы в виде индексов узлов,
+     * а для форматов с произвольными метками - метки узлов части.
+     */
+    static final class Chunk {
+        private final ByteBuffer buffer;
+
+        /**
+         * Смещение части в файле, для сообщений об ошибках.
+         */
+        private final long offset;
+
+        int[] sources = new int[16];
+
+        int[] targets = new int[16];
+
+        int edgesCount;
+
+        int[] boundNodes = new int[4];
+
+        int[] bounds = new int[4];
+
+        int boundsCount;
+
+        /**
+         * Узлы, объявленные строкой без связей.
+         */
+        int[] declared = new int[4];
+
+        int declaredCount;
+
+        /**
+         * Записи узлов части в порядке следования в файле, если формат их
+         * сохраняет (см. {@link #addToken(int)}).
+         */
+        int[] tokens;
+
+        int tokensCount;
+
+        /**
+         * Наибольшее число среди числовых записей узлов или -1.
+         */
+        int maxValue = -1;
+
+        /**
+         * Метки узлов части по локальным индексам, заполняются после разбора,
+         * если использовался {@link #intern(int, int)}.
+         */
+        String[] labels;
+
+        int labelsCount;
+
+        private int[] labelStarts;
+
+        private int[] labelEnds;
+
+        /**
+         * Таблица меток с открытой адресацией: пары (ключ, локальный индекс +
+         * 1), 0 - пустая ячейка. Ключ и индекс лежат рядом, поэтому поиск
+         * короткой метки обходится одним обращением к памяти.
+         */
+        private long[] table;
+
+        private int shift;
+
+        String error;
+
+        Chunk(ByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * Возвращает локальный индекс метки [from, to), добавляя ее при первом
+         * появлении в части. Метки до 7 байт упаковываются в ключ целиком и
+         * сравниваются по ключу, более длинные - по байтам. Строки создаются
+         * только для различных меток.
+         */
+        int intern(int from, int to) {
+            if (table == null) {
+                table = new long[2 * 1024];
+                shift = 64 - 10;
+                labelStarts = new int[256];
+                labelEnds = new int[256];
+            }
+            final long key = key(from, to);
+            final int mask = (table.length >>> 1) - 1;
+            int slot = slot(key);
+            while (table[2 * slot + 1] != 0) {
+                if (table[2 * slot] == key) {
+                    int index = (int) table[2 * slot + 1] - 1;
+                    if (to - from < 8 || sameLabel(index, from, to)) {
+                        return index;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (labelsCount == labelStarts.length) {
+                labelStarts = Arrays.copyOf(labelStarts, labelsCount * 2);
+                labelEnds = Arrays.copyOf(labelEnds, labelsCount * 2);
+            }
+            labelStarts[labelsCount] = from;
+            labelEnds[labelsCount] = to;
+            table[2 * slot] = key;
+            table[2 * slot + 1] = ++labelsCount;
+            if (labelsCount > table.length >>> 2) {
+                rehash();
+            }
+            return labelsCount - 1;
+        }
+
+        /**
+         * Ключ метки: байты и длина для меток до 7 байт, хэш байтов и признак
+         * длинной метки в старшем байте - для остальных.
+         */
+        private long key(int from, int to) {
+            int length = to - from;
+            if (length < 8) {
+                long key = (long) length << 56;
+                for (int i = from; i < to; i++) {
+                    key |= (buffer.get(i) & 0xFFL) << (8 * (i - from));
+                }
+                return key;
+            }
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            return 0xFFL << 56 | (hash & 0xFFFFFFFFL);
+        }
+
+        private int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        private boolean sameLabel(int index, int from, int to) {
+            int start = labelStarts[index];
+            if (labelEnds[index] - start != to - from) {
+                return false;
+            }
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) != buffer.get(start + i - from)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            shift--;
+            final int mask = (table.length >>> 1) - 1;
+            for (int k = 0; k < old.length; k += 2) {
+                if (old[k + 1] == 0) {
+                    continue;
+                }
+                int slot = slot(old[k]);
+                while (table[2 * slot + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[2 * slot] = old[k];
+                table[2 * slot + 1] = old[k + 1];
+            }
+        }
+
+        /**
+         * Разбирает неотрицательное целое число [from, to).
+         *
+         * @throws IllegalArgumentException
+         *             если запись не является числом
+         */
+        int parseInt(int from, int to) {
+            if (to - from > 10) {
+                throw new IllegalArgumentException("too long number "
+                        + text(from, to));
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("not a number "
+                            + text(from, to));
+                }
+                value = value * 10 + digit;
+            }
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("too big number "
+                        + text(from, to));
+            }
+            return (int) value;
+        }
+
+        byte byteAt(int index) {
+            return buffer.get(index);
+        }
+
+        String text(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            for (int i = from; i < to; i++) {
+                bytes[i - from] = buffer.get(i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Запоминает запись узла в порядке следования в файле.
+         */
+        void addToken(int token) {
+            if (tokens == null) {
+                tokens = new int[64];
+            } else if (tokensCount == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokensCount * 2);
+            }
+            tokens[tokensCount++] = token;
+        }
+
+        private void addEdge(int a, int b) {
+            if (edgesCount == sources.length) {
+                sources = Arrays.copyOf(sources, edgesCount * 2);
+                targets = Arrays.copyOf(targets, edgesCount * 2);
+            }
+            sources[edgesCount] = a;
+            targets[edgesCount] = b;
+            edgesCount++;
+        }
+
+        private void addBound(int node, int bound) {
+            if (boundsCount == bounds.length) {
+                boundNodes = Arrays.copyOf(boundNodes, boundsCount * 2);
+                bounds = Arrays.copyOf(bounds, boundsCount * 2);
+            }
+            boundNodes[boundsCount] = node;
+            bounds[boundsCount] = bound;
+            boundsCount++;
+        }
+
+        private void declare(int node) {
+            if (declaredCount == declared.length) {
+                declared = Arrays.copyOf(declared, declaredCount * 2);
+            }
+            declared[declaredCount++] = node;
+        }
+
+        private void makeLabels() {
+            labels = new String[labelsCount];
+            for (int i = 0; i < labelsCount; i++) {
+                labels[i] = text(labelStarts[i], labelEnds[i]);
+            }
+            table = null;
+            labelStarts = null;
+            labelEnds = null;
+        }
+    }
+
+    /**
+     * Разбор одной части файла.
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Chunk chunk;
+
+        private final MappedByteBuffer buffer;
+
+        ChunkTask(MappedByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.chunk = new Chunk(buffer, offset);
+        }
+
+        @Override
+        protected void compute() {
+            final int end = buffer.limit();
+            int position = 0;
+            while (position < end) {
+                int lineEnd = position;
+                while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                try {
+                    parseLine(position, lineEnd);
+                } catch (IllegalArgumentException e) {
+                    chunk.error = "line at offset " + (chunk.offset + position)
+                            + ": " + e.getMessage();
+                    return;
+                }
+                position = lineEnd + 1;
+            }
+            if (chunk.labelStarts != null) {
+                chunk.makeLabels();
+            }
+        }
+
+        private void parseLine(int from, int to) {
+            int start = skipBlanks(from, to);
+            if (start == to) {
+                return;
+            }
+            if (buffer.get(start) == comment) {
+                parseDirective(start + 1, to);
+                return;
+            }
+            int end = tokenEnd(start, to);
+            int a = node(chunk, start, end);
+
+            int next = skipBlanks(end, to);
+            if (next == to) {
+                chunk.declare(a);
+                return;
+            }
+            int b = node(chunk, next, tokenEnd(next, to));
+            chunk.addEdge(a, b);
+        }
+
+        private void parseDirective(int from, int to) {
+            if (to - from <= BOUND.length) {
+                return;
+            }
+            for (int i = 0; i < BOUND.length; i++) {
+                if (buffer.get(from + i) != BOUND[i]) {
+                    return;
+                }
+            }
+            int start = from + BOUND.length;
+            if (skipBlanks(start, to) == start) {
+                return;
+            }
+            start = skipBlanks(start, to);
+            int end = tokenEnd(start, to);
+            int node = node(chunk, start, end);
+            int next = skipBlanks(end, to);
+            if (next == to) {
+                throw new IllegalArgumentException("bound of node "
+                        + chunk.text(start, end) + " isn't set");
+            }
+            chunk.addBound(node, chunk.parseInt(next, tokenEnd(next, to)));
+        }
+
+        private int skipBlanks(int from, int to) {
+            while (from < to && isBlank(buffer.get(from))) {
+                from++;
+            }
+            return from;
+        }
+
+        private int tokenEnd(int from, int to) {
+            while (from < to && !isBlank(buffer.get(from))) {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
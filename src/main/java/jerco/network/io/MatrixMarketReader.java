@@ -0,0 +1,197 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import jerco.network.CsrGraph;
+
+/**
+ * Считыватель матрицы смежности в формате <a
+ * href="https://math.nist.gov/MatrixMarket/formats.html">Matrix Market</a>
+ * (coordinate). Элемент (i, j) матрицы задает связь узлов i и j, значения
+ * элементов и симметрия матрицы не учитываются: сеть неориентированная.
+ * <p>
+ * Узлы имеют метки "1", "2", ... по номерам строк матрицы, узлы без связей
+ * также входят в сеть. Границы узлов задаются строками комментария
+ * {@code %bound <номер узла> <номер границы>}.
+ *
+ * <pre>
+ * %%MatrixMarket matrix coordinate pattern symmetric
+ * %bound 1 0
+ * 6 6 6
+ * 6 1
+ * ...
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class MatrixMarketReader extends MappedTextReader {
+    private static final String BANNER = "%%MatrixMarket";
+
+    /**
+     * Наибольшая длина заголовка с комментариями, которую просматривает
+     * считыватель.
+     */
+    private static final int MAX_HEADER = 1 << 16;
+
+    private int size;
+
+    private long entries;
+
+    /**
+     * Строки границ узлов из комментариев перед строкой размеров.
+     */
+    private final List<String> headerBounds = new ArrayList<String>();
+
+    public MatrixMarketReader(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public MatrixMarketReader(File file) throws IOException {
+        super(file, '%');
+    }
+
+    /**
+     * Разбирает строку-баннер, комментарии и строку размеров. Границы узлов,
+     * заданные в комментариях заголовка, запоминаются и устанавливаются при
+     * построении графа.
+     */
+    @Override
+    protected long readHeader(FileChannel channel, long fileSize)
+            throws IOException, JercoReaderException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(fileSize,
+                MAX_HEADER));
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        byte[] header = buffer.array();
+        int length = buffer.position();
+
+        headerBounds.clear();
+        int position = 0;
+        boolean first = true;
+        while (position < length) {
+            int lineEnd = position;
+            while (lineEnd < length && header[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == length && length < fileSize) {
+                break;
+            }
+            String line = new String(header, position, lineEnd - position,
+                    StandardCharsets.UTF_8).trim();
+            position = lineEnd + 1;
+
+            if (first) {
+                parseBanner(line);
+                first = false;
+            } else if (line.matches("%bound\\s.*")) {
+                headerBounds.add(line);
+            } else if (!line.isEmpty() && !line.startsWith("%")) {
+                parseSizes(line);
+                return Math.min(position, fileSize);
+            }
+        }
+        throw new JercoReaderException(file + ": no size line in first "
+                + MAX_HEADER + " bytes");
+    }
+
+    private void parseBanner(String line) throws JercoReaderException {
+        String[] banner = line.split("\\s+");
+        if (banner.length < 5 || !BANNER.equals(banner[0])) {
+            throw new JercoReaderException(file + ": no " + BANNER + " banner");
+        }
+        if (!"matrix".equalsIgnoreCase(banner[1])
+                || !"coordinate".equalsIgnoreCase(banner[2])) {
+            throw new JercoReaderException(file
+                    + ": only coordinate matrix is supported, got "
+                    + banner[1] + " " + banner[2]);
+        }
+    }
+
+    private void parseSizes(String line) throws JercoReaderException {
+        String[] sizes = line.split("\\s+");
+        try {
+            int rows = Integer.parseInt(sizes[0]);
+            int columns = Integer.parseInt(sizes[1]);
+            entries = Long.parseLong(sizes[2]);
+            if (rows != columns || rows < 0 || entries < 0) {
+                throw new JercoReaderException(String.format(Locale.US,
+                        "%s: adjacency matrix must be square, got %d x %d",
+                        file, rows, columns));
+            }
+            size = rows;
+        } catch (NumberFormatException e) {
+            throw new JercoReaderException(file + ": bad size line " + line, e);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new JercoReaderException(file + ": bad size line " + line, e);
+        }
+    }
+
+    @Override
+    protected int node(Chunk chunk, int from, int to) {
+        int index = chunk.parseInt(from, to);
+        if (index < 1 || index > size) {
+            throw new IllegalArgumentException("node " + index
+                    + " is out of [1, " + size + "]");
+        }
+        return index - 1;
+    }
+
+    @Override
+    protected CsrGraph build(Chunk[] chunks) throws JercoReaderException {
+        long count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.declaredCount > 0) {
+                throw new JercoReaderException(file
+                        + ": entry without column");
+            }
+            count += chunk.edgesCount;
+        }
+        if (count != entries || count > Integer.MAX_VALUE) {
+            throw new JercoReaderException(String.format(
+                    "%s: expected %d entries, got %d", file, entries, count));
+        }
+
+        int[] sources = new int[(int) count];
+        int[] targets = new int[(int) count];
+        int position = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.sources, 0, sources, position,
+                    chunk.edgesCount);
+            System.arraycopy(chunk.targets, 0, targets, position,
+                    chunk.edgesCount);
+            position += chunk.edgesCount;
+        }
+
+        String[] labels = new String[size];
+        for (int i = 0; i < size; i++) {
+            labels[i] = String.valueOf(i + 1);
+        }
+        CsrGraph graph = CsrGraph.fromEdges(labels, sources, targets,
+                (int) count);
+        for (String line : headerBounds) {
+            String[] bound = line.split("\\s+");
+            try {
+                graph.getNode(Integer.parseInt(bound[1]) - 1).setBound(
+                        Integer.parseInt(bound[2]));
+            } catch (RuntimeException e) {
+                throw new JercoReaderException(file + ": bad bound " + line, e);
+            }
+        }
+        for (Chunk chunk : chunks) {
+            for (int k = 0; k < chunk.boundsCount; k++) {
+                graph.getNode(chunk.boundNodes[k]).setBound(chunk.bounds[k]);
+            }
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,68 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import jerco.network.Net;
+import jerco.network.Node;
+
+/**
+ * Базовый класс выгрузки сети без шаблонов. Узлы и связи записываются прямо
+ * при обходе сети через буфер постоянного размера в канал, поэтому
+ * дополнительная память не зависит от размера сети. Каждая связь
+ * записывается один раз - при обходе узла с меньшим идентификатором.
+ * <p>
+ * Для выгрузки по собственным шаблонам используется {@link FreemarkerWriter}.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public abstract class StreamingNetWriter {
+    protected final Net net;
+
+    protected StreamingNetWriter(Net net) {
+        if (net == null) {
+            throw new IllegalArgumentException("net is null");
+        }
+        this.net = net;
+    }
+
+    public void write(String exportName) throws IOException {
+        write(new File(exportName));
+    }
+
+    public void write(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(channel);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Записывает сеть в канал. Канал не закрывается.
+     *
+     * @param channel
+     * @throws IOException
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        ChannelOutput out = new ChannelOutput(channel);
+        write(out);
+        out.flush();
+    }
+
+    abstract void write(ChannelOutput out) throws IOException;
+
+    /**
+     * Возвращает истину, если связь узлов записывается при обходе узла node.
+     */
+    static boolean isForward(Node node, Node linked) {
+        return node.getId() < linked.getId();
+    }
+}
@@ -21,7 +21,7 @@ public class BiggestClusterSizeScenario extends CalculateTableScenario {
         scenario.setExperimentsCount(1);
 
         scenario.setIndicator(ScenarioProgressIndicator.SYSTEM_OUT_INDICATOR);
-        scenario.doScenario();
+        scenario.execute();
         Map<Double, Double> result = scenario.getResult(); 
         for (Map.Entry<Double, Double> entry : result.entrySet()) {
             System.out.printf("{%d,%.5f},\n", entry.getKey(), entry.getValue());
@@ -0,0 +1,261 @@
+package jerco.scenarios;
+
+import java.util.Random;
+
+import jerco.network.ClusterLabeling;
+import jerco.network.NetState;
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.SpanningRule;
+import jerco.utils.RunningStatistics;
+
+/**
+ * Сценарий оценки порога перколяции p<sub>c</sub>(L) решетки заданного
+ * генератора и размера.
+ * <p>
+ * В каждой выборке каждый узел получает случайное число u, и узел заражен
+ * при вероятности p, если u &lt; p. При таком заражении наличие
+ * перколяционного кластера монотонно по p, поэтому порог выборки - наименьшая
+ * p, при которой перколяционный кластер есть, - находится делением отрезка
+ * пополам. Каждая проверка - поиск кластеров объединением множеств с
+ * прекращением, как только перколяционный кластер появился
+ * ({@link ClusterLabeling#percolates(NetState, SpanningRule)}); решетка и
+ * структуры поиска создаются один раз и используются для всех выборок и
+ * вероятностей.
+ * <p>
+ * Результат - среднее порогов выборок со стандартной ошибкой. Выборки
+ * проводятся, пока ошибка не станет меньше {@link #getTargetError()}, но не
+ * меньше {@link #getMinExperimentsCount()} и не больше
+ * {@link #getMaxExperimentsCount()} выборок. Среднее порога конечной решетки
+ * отличается от порога бесконечной решетки на величину порядка
+ * L<sup>-1/&nu;</sup>.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class CriticalThresholdScenario extends Scenario {
+    private static final long serialVersionUID = 1L;
+
+    public static void main(String[] args) {
+        CriticalThresholdScenario scenario = new CriticalThresholdScenario();
+        scenario.setWidth(200);
+        scenario.setHeight(200);
+        scenario.setTargetError(1e-3);
+        scenario.execute();
+        System.out.printf("p_c = %.5f ± %.5f (%d samples, %d checks)%n",
+                scenario.getThreshold(), scenario.getThresholdError(),
+                scenario.getSamplesCount(), scenario.getChecksCount());
+    }
+
+    // Ширина решетки
+    private int width = 100;
+
+    // Высота решетки
+    private int height = 100;
+
+    // Точность определения порога выборки
+    private double precision = 1e-6;
+
+    // Целевая стандартная ошибка порога
+    private double targetError = 1e-3;
+
+    private SpanningRule spanningRule = SpanningRule.ALL;
+
+    private RunningStatistics thresholds = new RunningStatistics();
+
+    // Количество проверок наличия перколяционного кластера
+    private long checksCount;
+
+    /**
+     * Оценивает порог перколяции.
+     */
+    @Override
+    public void doScenario() {
+        thresholds = new RunningStatistics();
+        checksCount = 0;
+
+        RegularLattice net = new RegularLattice(new NetStructureInfo(width,
+                height, getGenerator()));
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph(), net
+                .getBoundary());
+        NetState state = net.getState();
+        float[] levels = new float[net.size()];
+
+        getIndicator().init(getMaxExperimentsCount());
+        for (int sample = 0; sample < getMaxExperimentsCount(); sample++) {
+            if (stop) {
+                break;
+            }
+            Random random = getRandomAlgorithm().stream(getSeed(), width,
+                    height, sample);
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = random.nextFloat();
+            }
+            if (!percolates(labeling, state, levels, 1)) {
+                throw new IllegalStateException(
+                        "Перколяционного кластера нет даже при заражении "
+                                + "всех узлов");
+            }
+
+            double low = 0;
+            double high = 1;
+            while (high - low > precision) {
+                double middle = (low + high) / 2;
+                if (percolates(labeling, state, levels, middle)) {
+                    high = middle;
+                } else {
+                    low = middle;
+                }
+            }
+            thresholds.add((low + high) / 2);
+            getIndicator().progress(sample + 1);
+
+            if (thresholds.getCount() >= getMinExperimentsCount()
+                    && thresholds.getStandardError() <= targetError) {
+                break;
+            }
+        }
+        stop = false;
+        getIndicator().done();
+    }
+
+    /**
+     * Заражает узлы, уровень которых меньше p, и проверяет наличие
+     * перколяционного кластера.
+     */
+    private boolean percolates(ClusterLabeling labeling, NetState state,
+            float[] levels, double p) {
+        checksCount++;
+        final int size = levels.length;
+        for (int word = 0; word < state.words(); word++) {
+            final int base = word << 6;
+            final int limit = Math.min(64, size - base);
+            long bits = 0;
+            for (int bit = 0; bit < limit; bit++) {
+                if (levels[base + bit] < p) {
+                    bits |= 1L << bit;
+                }
+            }
+            state.setInfectedWord(word, bits);
+        }
+        return labeling.percolates(state, spanningRule);
+    }
+
+    /**
+     * Возвращает оценку порога перколяции - среднее порогов выборок.
+     *
+     * @return
+     */
+    public double getThreshold() {
+        return thresholds.getMean();
+    }
+
+    /**
+     * Возвращает стандартную ошибку оценки порога перколяции.
+     *
+     * @return
+     */
+    public double getThresholdError() {
+        return thresholds.getStandardError();
+    }
+
+    /**
+     * Возвращает статистику порогов выборок.
+     *
+     * @return копия накопителя
+     */
+    public RunningStatistics getThresholds() {
+        return new RunningStatistics(thresholds);
+    }
+
+    /**
+     * Возвращает количество проведенных выборок.
+     *
+     * @return
+     */
+    public long getSamplesCount() {
+        return thresholds.getCount();
+    }
+
+    /**
+     * Возвращает количество проверок наличия перколяционного кластера за
+     * последнее выполнение сценария.
+     *
+     * @return
+     */
+    public long getChecksCount() {
+        return checksCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Устанавливает точность определения порога одной выборки.
+     *
+     * @param precision
+     */
+    public void setPrecision(double precision) {
+        if (!(precision > 0)) {
+            throw new IllegalArgumentException("precision = " + precision);
+        }
+        this.precision = precision;
+    }
+
+    public double getTargetError() {
+        return targetError;
+    }
+
+    /**
+     * Устанавливает стандартную ошибку порога, при достижении которой
+     * выборки прекращаются. При значении 0 проводится
+     * {@link #getMaxExperimentsCount()} выборок.
+     *
+     * @param targetError
+     */
+    public void setTargetError(double targetError) {
+        if (!(targetError >= 0)) {
+            throw new IllegalArgumentException("targetError = " + targetError);
+        }
+        this.targetError = targetError;
+    }
+
+    public SpanningRule getSpanningRule() {
+        return spanningRule;
+    }
+
+    /**
+     * Устанавливает правило определения перколяционного кластера.
+     *
+     * @param spanningRule
+     */
+    public void setSpanningRule(SpanningRule spanningRule) {
+        if (spanningRule == null) {
+            throw new IllegalArgumentException("spanningRule is null");
+        }
+        this.spanningRule = spanningRule;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p_c(%d x %d) = %s ± %s", width, height,
+                getThreshold(), getThresholdError());
+    }
+}
@@ -26,7 +26,7 @@ public class DrawNetworkScenario extends Scenario {
         scenario.setWidth(100);
         scenario.setHeight(100);
         scenario.setIndicator(ScenarioProgressIndicator.SYSTEM_OUT_INDICATOR);
-        scenario.doScenario();
+        scenario.execute();
     }
 
     private static final String IMAGE_NAME_TEMPLATE = "%03d %d %d %f.png";
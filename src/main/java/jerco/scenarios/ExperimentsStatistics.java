@@ -2,40 +2,89 @@ package jerco.scenarios;
 
 import static jerco.Constants.DOUBLE_PRECISION;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import jerco.network.Cluster;
 import jerco.network.Net;
 import jerco.utils.Bag;
+import jerco.utils.IntHistogram;
+import jerco.utils.RunningStatistics;
 
 
 /**
  * Реализует класс сбора статистики в эксперименте. Накакапливает информацию о
- * среднем числе кластеров по размеру, на основании которого высчитываются
- * характеристики эксперимента.
+ * размерах кластеров, на основании которой высчитываются характеристики
+ * эксперимента.
+ * <p>
+ * Данные экспериментов не хранятся: каждая характеристика накапливается
+ * потоковым накопителем ({@link RunningStatistics}, {@link IntHistogram}),
+ * память которого не зависит от количества экспериментов; гистограмма
+ * размеров кластеров занимает память по количеству различных размеров.
+ * Зерна экспериментов сценария не хранятся, а восстанавливаются по главному
+ * зерну и номерам экспериментов ({@link #setSeedRange(long, int, int, int)});
+ * хранить зерна, переданные с данными экспериментов, можно включить методом
+ * {@link #setRecordingSeeds(boolean)}.
+ * Статистики, собранные независимо, объединяются методом
+ * {@link #addAll(ExperimentsStatistics)}.
+ * <p>
+ * Статистика сериализуема, чтобы сохранять ее в контрольных точках
+ * сценария.
  * 
  * @author leonidv
  * 
  */
-public class ExperimentsStatistics {
+public class ExperimentsStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     // Вероятность заражения узла в эксперименте
     private double probability;
 
     // Количество экспериментов в сценарии
     private int count = 0;
 
-    // Список зараженных кластеров в результате эксперимента
-    private List<Bag<Integer>> experimentsClustersSizes = new ArrayList<Bag<Integer>>();
+    // Размер максимального кластера в эксперименте
+    private RunningStatistics maximumClusterSize = new RunningStatistics();
+
+    // Количество кластеров в эксперименте
+    private RunningStatistics clustersCount = new RunningStatistics();
+
+    // Размеры кластеров всех экспериментов
+    private IntHistogram clustersSizes = new IntHistogram();
+
+    // Главное зерно сценария и размеры сети, по которым восстанавливаются
+    // зерна экспериментов
+    private long masterSeed;
+    private int width;
+    private int height;
+
+    // Номер первого эксперимента статистики в сценарии
+    private int firstExperiment;
+
+    // Известны ли зерна экспериментов. Ложь по умолчанию, в том числе при
+    // чтении статистики, сохраненной без зерен
+    private boolean seeded;
+
+    // Записанные зерна генераторов случайных чисел экспериментов; null, если
+    // зерна не записываются
+    private List<Long> seeds;
 
-    // Хранит средний максимальный размер кластера
-    private double meanMaxSize = Double.NaN;
-    
     /**
      * Размер сети над которой проводится эксперимент.
      */
     private int size;
-    
+
+    /**
+     * Размер максимального кластера и количество кластеров каждого
+     * эксперимента в порядке добавления; null, если эксперименты сразу
+     * учитываются накопителями.
+     */
+    private long[] records;
+
     /**
      * Создает объект сбора статистики
      * 
@@ -44,19 +93,99 @@ public class ExperimentsStatistics {
      * @param d
      */
     ExperimentsStatistics(int size, double d) {
+        this(size, d, false);
+    }
+
+    /**
+     * Создает объект сбора статистики, который может записывать эксперименты
+     * вместо их учета. Записанные эксперименты учитываются при добавлении
+     * статистики в другую статистику
+     * ({@link #addAll(ExperimentsStatistics)}) в том же порядке, в котором
+     * учитывались бы при добавлении в нее напрямую. Поэтому статистика серии,
+     * собранная по частям в разных потоках, совпадает со статистикой,
+     * собранной одним потоком, до последнего бита. Характеристики
+     * записывающей статистики, кроме гистограммы размеров кластеров и
+     * зерен, не вычисляются.
+     * 
+     * @param size
+     * @param d
+     * @param recording
+     *            записывать ли эксперименты
+     */
+    ExperimentsStatistics(int size, double d, boolean recording) {
         super();
         this.probability = d;
         this.size = size;
-        reset();
+        if (recording) {
+            records = new long[16];
+        }
+    }
+
+    /**
+     * Задает зерна экспериментов: эксперимент статистики с номером i (с нуля)
+     * проведен генератором с зерном
+     * {@link Scenario#experimentSeed(long, int, int, double, int)} для номера
+     * эксперимента firstExperiment + i. Зерна восстанавливаются по запросу
+     * ({@link #getSeeds()}), поэтому память не зависит от количества
+     * экспериментов.
+     * 
+     * @param masterSeed
+     *            главное зерно сценария
+     * @param width
+     *            ширина сети
+     * @param height
+     *            высота сети
+     * @param firstExperiment
+     *            номер первого эксперимента статистики
+     * @throws IllegalArgumentException
+     *             если размеры не соответствуют размеру сети статистики или
+     *             номер отрицательный
+     * @throws IllegalStateException
+     *             если в статистику уже добавлены эксперименты
+     */
+    void setSeedRange(long masterSeed, int width, int height,
+            int firstExperiment) {
+        if ((long) width * height != size || firstExperiment < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "width = %d, height = %d, firstExperiment = %d", width,
+                    height, firstExperiment));
+        }
+        if (count != 0) {
+            throw new IllegalStateException("Statistics already has "
+                    + count + " experiments");
+        }
+        this.masterSeed = masterSeed;
+        this.width = width;
+        this.height = height;
+        this.firstExperiment = firstExperiment;
+        this.seeded = true;
     }
 
     /**
-     * Осуществляет сброс всех закэшированных значений
+     * Возвращает истину, если статистика хранит зерна, переданные с данными
+     * экспериментов.
+     * 
+     * @return
      */
-    private void reset() {
-        meanMaxSize = Double.NaN;
+    public boolean isRecordingSeeds() {
+        return seeds != null;
     }
 
+    /**
+     * Включает хранение зерен, переданных с данными экспериментов. Хранение
+     * требует памяти на каждый эксперимент, поэтому по умолчанию выключено.
+     * 
+     * @param recordingSeeds
+     * @throws IllegalStateException
+     *             если в статистику уже добавлены эксперименты
+     */
+    public void setRecordingSeeds(boolean recordingSeeds) {
+        if (count != 0) {
+            throw new IllegalStateException("Statistics already has "
+                    + count + " experiments");
+        }
+        seeds = recordingSeeds ? new ArrayList<Long>() : null;
+    }
 
     /**
      * Возвращает установленную вероятность зараженния узла, при которой
@@ -89,6 +218,24 @@ public class ExperimentsStatistics {
      *           {@link #getProbability()})
      */
     public void addData(Net net) {
+        addData(net, null);
+    }
+
+    /**
+     * Добавляет данные эксперимента и зерно генератора случайных чисел, по
+     * которому была заражена сеть. Повторное заражение сети генератором с
+     * этим зерном воспроизводит эксперимент. Зерно сохраняется, только если
+     * включено хранение зерен ({@link #setRecordingSeeds(boolean)}).
+     * 
+     * @param net
+     *            зараженная сеть
+     * @param seed
+     *            зерно генератора или null, если оно неизвестно
+     * @throws IllegalArgumentException
+     *             в случае, если один из параметров сети не соотвествует
+     *             условиям эксперимента
+     */
+    public void addData(Net net, Long seed) {
         if ((net.size() != size)) {
             throw new IllegalArgumentException(
                     "Размер сети не соотвествует установленному "
@@ -100,29 +247,222 @@ public class ExperimentsStatistics {
                     "Вероятность заражения не соответствует "
                             + "установленной в эксперименте");
         }
-        reset();
-        
-        experimentsClustersSizes.add(getClustersSizes(net));
+
+        int[] sizes = net.getClustersSizes();
+        long largest = 0;
+        for (int clusterSize : sizes) {
+            clustersSizes.add(clusterSize);
+            largest = Math.max(largest, clusterSize);
+        }
+        addExperiment(sizes.length, largest, seed);
+    }
+
+    /**
+     * Добавляет данные эксперимента, проведенного без построения сети
+     * (например, на {@link jerco.network.StreamingLattice}). Размер сети и
+     * вероятность заражения должны соответствовать условиям эксперимента.
+     * 
+     * @param clustersSizes
+     *            количество кластеров каждого размера
+     */
+    public void addData(Bag<Integer> clustersSizes) {
+        addData(clustersSizes, null);
+    }
+
+    /**
+     * Добавляет данные эксперимента, проведенного без построения сети, и
+     * зерно генератора случайных чисел эксперимента.
+     * 
+     * @param clustersSizes
+     *            количество кластеров каждого размера
+     * @param seed
+     *            зерно генератора или null, если оно неизвестно
+     */
+    public void addData(Bag<Integer> clustersSizes, Long seed) {
+        long clusters = 0;
+        long largest = 0;
+        for (Map.Entry<Integer, Integer> entry : clustersSizes.iterator()) {
+            this.clustersSizes.add(entry.getKey(), entry.getValue());
+            clusters += entry.getValue();
+            largest = Math.max(largest, entry.getKey());
+        }
+        addExperiment(clusters, largest, seed);
+    }
+
+    /**
+     * Добавляет данные эксперимента, размеры кластеров которого уже собраны
+     * в гистограмму.
+     * 
+     * @param clustersSizes
+     *            количество кластеров каждого размера
+     * @param seed
+     *            зерно генератора или null, если оно неизвестно
+     */
+    public void addData(IntHistogram clustersSizes, Long seed) {
+        addData(clustersSizes, clustersSizes.getTotalCount(), clustersSizes
+                .isEmpty() ? 0 : clustersSizes.lastKey(), seed);
+    }
+
+    /**
+     * Добавляет данные эксперимента, часть кластеров которого не помещается в
+     * гистограмму (например, перколяционный кластер
+     * {@link jerco.network.StreamingLattice} размером больше
+     * {@link Integer#MAX_VALUE}). Такие кластеры учитываются только в
+     * количестве кластеров и размере наибольшего кластера.
+     * 
+     * @param clustersSizes
+     *            количество кластеров каждого размера, не превышающего
+     *            {@link Integer#MAX_VALUE}
+     * @param clustersCount
+     *            количество всех кластеров эксперимента
+     * @param largestClusterSize
+     *            размер наибольшего кластера эксперимента
+     * @param seed
+     *            зерно генератора или null, если оно неизвестно
+     * @throws IllegalArgumentException
+     *             если кластеров меньше, чем в гистограмме, или наибольший
+     *             кластер меньше наибольшего кластера гистограммы
+     */
+    public void addData(IntHistogram clustersSizes, long clustersCount,
+            long largestClusterSize, Long seed) {
+        if (clustersCount < clustersSizes.getTotalCount()) {
+            throw new IllegalArgumentException("clustersCount = "
+                    + clustersCount + " < " + clustersSizes.getTotalCount());
+        }
+        if (!clustersSizes.isEmpty()
+                && largestClusterSize < clustersSizes.lastKey()) {
+            throw new IllegalArgumentException("largestClusterSize = "
+                    + largestClusterSize + " < " + clustersSizes.lastKey());
+        }
+        this.clustersSizes.merge(clustersSizes);
+        addExperiment(clustersCount, largestClusterSize, seed);
+    }
+
+    /**
+     * Учитывает характеристики эксперимента, размеры кластеров которого уже
+     * добавлены в гистограмму.
+     */
+    private void addExperiment(long clusters, long largestClusterSize,
+            Long seed) {
+        account(count, clusters, largestClusterSize);
+        if (seeds != null) {
+            seeds.add(seed);
+        }
 
         count++;
     }
 
     /**
-     * Возвращает данные о количестве кластеров различных размеров.
+     * Учитывает эксперимент накопителями либо записывает его.
      * 
-     * @param net
-     * @return
+     * @param index
+     *            номер эксперимента в этой статистике
+     */
+    private void account(int index, long clusters, long largestClusterSize) {
+        if (records == null) {
+            maximumClusterSize.add(largestClusterSize);
+            clustersCount.add(clusters);
+            return;
+        }
+        final int position = 2 * index;
+        if (position + 2 > records.length) {
+            records = Arrays.copyOf(records, 2 * records.length);
+        }
+        records[position] = largestClusterSize;
+        records[position + 1] = clusters;
+    }
+
+    /**
+     * Добавляет данные всех экспериментов другой статистики, собранной при
+     * тех же условиях (например, другим потоком). Эксперименты, записанные
+     * другой статистикой, учитываются по одному, как если бы добавлялись
+     * напрямую.
+     * <p>
+     * Зерна экспериментов остаются известны, если эксперименты другой
+     * статистики продолжают номера экспериментов этой статистики при том же
+     * главном зерне; пустая статистика без зерен принимает зерна другой
+     * статистики. Иначе зерна всех экспериментов становятся неизвестны.
+     * 
+     * @param other
+     * @throws IllegalArgumentException
+     *             если условия экспериментов статистик различаются либо
+     *             эта статистика записывает эксперименты, а другая - нет
      */
-    private Bag<Integer> getClustersSizes(Net net) {
-        Bag<Integer> result = new Bag<Integer>();
-        for (Cluster cluster : net.getClusters()) {
-            result.add(cluster.size());
+    public void addAll(ExperimentsStatistics other) {
+        if (other.size != size
+                || Math.abs(other.probability - probability) > DOUBLE_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Условия экспериментов статистик различаются");
+        }
+        if (other.records != null) {
+            for (int i = 0; i < other.count; i++) {
+                account(count + i, other.records[2 * i + 1],
+                        other.records[2 * i]);
+            }
+        } else if (records != null) {
+            throw new IllegalArgumentException(
+                    "Записывающая статистика не может принять накопленную");
+        } else {
+            maximumClusterSize.merge(other.maximumClusterSize);
+            clustersCount.merge(other.clustersCount);
+        }
+        clustersSizes.merge(other.clustersSizes);
+        if (seeds != null) {
+            seeds.addAll(other.getSeeds());
         }
-        
-        if (result.size() == 0) {
-            result.add(0);
+        if (count == 0 && !seeded) {
+            masterSeed = other.masterSeed;
+            width = other.width;
+            height = other.height;
+            firstExperiment = other.firstExperiment;
+            seeded = other.seeded;
+        } else if (other.count > 0
+                && (!other.seeded
+                        || other.firstExperiment != firstExperiment + count
+                        || other.masterSeed != masterSeed
+                        || other.width != width || other.height != height)) {
+            seeded = false;
         }
-        return result;
+        count += other.count;
+    }
+
+    /**
+     * Возвращает зерна генераторов случайных чисел в порядке добавления
+     * экспериментов. Если зерна записываются, возвращаются записанные зерна;
+     * иначе зерна восстанавливаются по главному зерну, а если оно не задано,
+     * элементы равны null.
+     * 
+     * @return
+     */
+    public List<Long> getSeeds() {
+        if (seeds != null) {
+            return Collections.unmodifiableList(seeds);
+        }
+        final int size = count;
+        final int first = seeded ? firstExperiment : -1;
+        final long master = masterSeed;
+        final int width = this.width;
+        final int height = this.height;
+        final double p = probability;
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("index = " + index
+                            + ", size = " + size);
+                }
+                if (first < 0) {
+                    return null;
+                }
+                return Scenario.experimentSeed(master, width, height, p,
+                        first + index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
@@ -134,37 +474,54 @@ public class ExperimentsStatistics {
         return size;
     }
 
+    /**
+     * Возвращает статистику размера максимального кластера по экспериментам.
+     * 
+     * @return копия накопителя
+     */
+    public RunningStatistics getMaximumClusterSize() {
+        return new RunningStatistics(maximumClusterSize);
+    }
+
+    /**
+     * Возвращает статистику количества кластеров по экспериментам.
+     * 
+     * @return копия накопителя
+     */
+    public RunningStatistics getClustersCount() {
+        return new RunningStatistics(clustersCount);
+    }
+
+    /**
+     * Возвращает количество кластеров каждого размера во всех
+     * экспериментах. Логарифмические интервалы размеров возвращает
+     * {@link IntHistogram#toLogHistogram()}.
+     * 
+     * @return копия гистограммы
+     */
+    public IntHistogram getClustersSizes() {
+        return new IntHistogram(clustersSizes);
+    }
+
     /**
      * Расчитывается средний максимальный размер у всех кластеров (M(L)).
      * <p>
-     * Т.е. в каждом эксперименте находится максимальный кластер, который
-     * добавляется в массив максимальных кластеров. Далее находится среднее
-     * арифметическое данного массива.
+     * Т.е. в каждом эксперименте находится максимальный кластер, а результат
+     * есть среднее арифметическое размеров максимальных кластеров.
      * 
      * @return
      */
     public double getMeanMaximumClusterSize() {
-        // Небольшое кеширование
-        if (!Double.isNaN(meanMaxSize)) {
-            return meanMaxSize;
-        }
-
-        List<Integer> maximums = new ArrayList<Integer>();
-
-        // Составляем массив из размеров максимального кластера в различных
-        // экспериментах
-        for (Bag<Integer> experimentData : experimentsClustersSizes) {
-            maximums.add(experimentData.lastKey());
-        }
+        return maximumClusterSize.getMean();
+    }
 
-        // Подсчиываем среднее арифметическое полученного массива и возвращаем
-        // его как результат
-        double temp = 0;
-        for (int maxSize : maximums) {
-            temp += maxSize;
-        }
-        meanMaxSize = temp / getExperimentsCount();
-        return meanMaxSize;
+    /**
+     * Возвращает стандартную ошибку среднего максимального размера кластера.
+     * 
+     * @return
+     */
+    public double getMeanMaximumClusterSizeError() {
+        return maximumClusterSize.getStandardError();
     }
 
     /**
@@ -177,9 +534,24 @@ public class ExperimentsStatistics {
         return getMeanMaximumClusterSize() / getNetSize();
     }
 
+    /**
+     * Возвращает стандартную ошибку вероятности принадлежности узла
+     * перколяционному кластеру.
+     * 
+     * @return
+     */
+    public double getProbabilityClusterInPercolationError() {
+        return getMeanMaximumClusterSizeError() / getNetSize();
+    }
+
     public void clear() {
         count = 0;
-        experimentsClustersSizes = new ArrayList<Bag<Integer>>();
-        reset();
+        maximumClusterSize.clear();
+        clustersCount.clear();
+        clustersSizes.clear();
+        seeded = false;
+        if (seeds != null) {
+            seeds = new ArrayList<Long>();
+        }
     }
 }
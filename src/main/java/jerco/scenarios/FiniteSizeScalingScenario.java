@@ -0,0 +1,401 @@
+package jerco.scenarios;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import jerco.network.ImplicitLattice;
+import jerco.network.LabelingMethod;
+import jerco.network.Net;
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.utils.RunningStatistics;
+
+/**
+ * Сценарий конечномерного скейлинга: для каждого размера решетки L от
+ * {@link #getStartSize()} до {@link #getEndSize()} и каждой вероятности
+ * заражения из {@link #getProbabilities()} собираются средний размер
+ * максимального кластера M(L), вероятность появления перколяционного
+ * кластера P<sub>span</sub>(L) и восприимчивость (средний размер кластера без
+ * максимального).
+ * <p>
+ * Каждая пара (размер, вероятность) - независимая задача, которая проводит
+ * {@link #getExperimentsCount()} экспериментов на собственной решетке. Задачи
+ * выполняются {@link #getThreads()} потоками, начиная с самых больших
+ * решеток, поэтому малые решетки считаются одновременно с большими, а не
+ * после них. Перед созданием решетки задача резервирует оценку ее памяти из
+ * {@link #getMemoryBudget()}; задачи, которым не хватило памяти, ждут
+ * завершения других. Зерна экспериментов те же, что в
+ * {@link #makeExperiments(int, int, double)}, поэтому результаты не зависят
+ * от количества потоков.
+ * <p>
+ * Таблица результата, как и у {@link BiggestClusterSizeScenario}, содержит
+ * lg(M(L)) для lg(L) при первой вероятности списка.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class FiniteSizeScalingScenario extends CalculateTableScenario {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Оценка памяти решетки {@link RegularLattice} на один узел, в байтах.
+     */
+    static final long REGULAR_BYTES_PER_SITE = 120;
+
+    /**
+     * Оценка памяти решетки {@link ImplicitLattice} на один узел, в байтах.
+     */
+    static final long IMPLICIT_BYTES_PER_SITE = 8;
+
+    /**
+     * Единица резервирования памяти, в байтах.
+     */
+    private static final long MEMORY_UNIT = 1 << 16;
+
+    /**
+     * Характеристики решетки одного размера при одной вероятности заражения.
+     */
+    public static final class Cell {
+        private final int size;
+        private final double probability;
+        private final RunningStatistics maximumClusterSize = new RunningStatistics();
+        private final RunningStatistics spanning = new RunningStatistics();
+        private final RunningStatistics susceptibility = new RunningStatistics();
+
+        Cell(int size, double probability) {
+            this.size = size;
+            this.probability = probability;
+        }
+
+        /**
+         * Возвращает сторону решетки L.
+         *
+         * @return
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public double getProbability() {
+            return probability;
+        }
+
+        /**
+         * Возвращает статистику размера максимального кластера M(L).
+         *
+         * @return копия накопителя
+         */
+        public RunningStatistics getMaximumClusterSize() {
+            return new RunningStatistics(maximumClusterSize);
+        }
+
+        /**
+         * Возвращает статистику наличия перколяционного кластера (1 - есть, 0
+         * - нет); среднее - вероятность P<sub>span</sub>(L).
+         *
+         * @return копия накопителя
+         */
+        public RunningStatistics getSpanning() {
+            return new RunningStatistics(spanning);
+        }
+
+        /**
+         * Возвращает статистику восприимчивости: суммы квадратов размеров
+         * кластеров, кроме максимального, деленной на количество узлов.
+         *
+         * @return копия накопителя
+         */
+        public RunningStatistics getSusceptibility() {
+            return new RunningStatistics(susceptibility);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("L = %d, p = %s: M = %s, P = %s, chi = %s",
+                    size, probability, maximumClusterSize.getMean(), spanning
+                            .getMean(), susceptibility.getMean());
+        }
+    }
+
+    // Начальная сторона решетки
+    private int startSize = 100;
+
+    // Конечная сторона решетки
+    private int endSize = 500;
+
+    // Шаг изменения стороны решетки
+    private int step = 50;
+
+    // Вероятности заражения
+    private double[] probabilities = { 0.593 };
+
+    // Память, доступная решеткам задач
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    // Характеристики по стороне решетки и вероятности
+    private SortedMap<Integer, SortedMap<Double, Cell>> cells = new TreeMap<Integer, SortedMap<Double, Cell>>();
+
+    /**
+     * Выполняет все задачи и заполняет таблицу результата.
+     *
+     * @throws ScenarioExecuteException
+     *             если поток, выполняющий сценарий, был прерван
+     */
+    @Override
+    public void doScenario() {
+        result = new TreeMap<Double, Double>();
+        cells = new TreeMap<Integer, SortedMap<Double, Cell>>();
+
+        List<CellTask> tasks = new ArrayList<CellTask>();
+        for (int size = startSize; size <= endSize; size += step) {
+            for (double p : probabilities) {
+                tasks.add(new CellTask(new Cell(size, p)));
+            }
+        }
+        Collections.sort(tasks, new Comparator<CellTask>() {
+            @Override
+            public int compare(CellTask first, CellTask second) {
+                return second.cell.size - first.cell.size;
+            }
+        });
+
+        getIndicator().init(tasks.size());
+        final Semaphore memory = new Semaphore(units(memoryBudget));
+        for (CellTask task : tasks) {
+            task.memory = memory;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(getThreads(), tasks.size())));
+        CompletionService<Cell> completion = new ExecutorCompletionService<Cell>(
+                executor);
+        try {
+            for (CellTask task : tasks) {
+                completion.submit(task);
+            }
+            for (int done = 1; done <= tasks.size(); done++) {
+                Cell cell = completion.take().get();
+                if (cell.maximumClusterSize.getCount() > 0) {
+                    put(cell);
+                }
+                getIndicator().progress(done);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScenarioExecuteException("Сценарий прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ScenarioExecuteException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        stop = false;
+        getIndicator().done();
+    }
+
+    private void put(Cell cell) {
+        SortedMap<Double, Cell> sizeCells = cells.get(cell.size);
+        if (sizeCells == null) {
+            sizeCells = new TreeMap<Double, Cell>();
+            cells.put(cell.size, sizeCells);
+        }
+        sizeCells.put(cell.probability, cell);
+        if (cell.probability == probabilities[0]) {
+            result.put(Math.log10(cell.size), Math.log10(cell.maximumClusterSize
+                    .getMean()));
+        }
+    }
+
+    /**
+     * Возвращает оценку памяти решетки со стороной size, в байтах.
+     *
+     * @param size
+     * @return
+     */
+    long estimateMemory(int size) {
+        return (long) size * size
+                * (isImplicitLattice() ? IMPLICIT_BYTES_PER_SITE
+                        : REGULAR_BYTES_PER_SITE);
+    }
+
+    private static int units(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bytes
+                + MEMORY_UNIT - 1)
+                / MEMORY_UNIT));
+    }
+
+    /**
+     * Эксперименты для одной пары (размер, вероятность).
+     */
+    private final class CellTask implements Callable<Cell> {
+        private final Cell cell;
+        private Semaphore memory;
+
+        CellTask(Cell cell) {
+            this.cell = cell;
+        }
+
+        @Override
+        public Cell call() throws InterruptedException {
+            if (stop) {
+                return cell;
+            }
+            // Решетка больше бюджета выполняется одна
+            final int units = Math.min(units(estimateMemory(cell.size)),
+                    units(memoryBudget));
+            memory.acquire(units);
+            try {
+                run();
+            } finally {
+                memory.release(units);
+            }
+            return cell;
+        }
+
+        private void run() {
+            final int size = cell.size;
+            final double p = cell.probability;
+            NetStructureInfo structureInfo = new NetStructureInfo(size, size,
+                    getGenerator());
+            Net net;
+            if (isImplicitLattice()) {
+                net = new ImplicitLattice(structureInfo);
+            } else {
+                RegularLattice lattice = new RegularLattice(structureInfo);
+                lattice.setLabelingMethod(LabelingMethod.UNION_FIND);
+                net = lattice;
+            }
+
+            for (int i = 0; i < getExperimentsCount(); i++) {
+                if (stop) {
+                    break;
+                }
+                net.setRandom(getRandomAlgorithm().create(
+                        experimentSeed(size, size, p, i)));
+                net.infect(p);
+
+                int[] sizes = net.getClustersSizes();
+                long largest = sizes.length == 0 ? 0 : sizes[sizes.length - 1];
+                double squares = 0;
+                for (int k = 0; k < sizes.length - 1; k++) {
+                    squares += (double) sizes[k] * sizes[k];
+                }
+                cell.maximumClusterSize.add(largest);
+                cell.spanning.add(net.hasPercolationCluster() ? 1 : 0);
+                cell.susceptibility.add(squares / net.size());
+            }
+        }
+    }
+
+    /**
+     * Возвращает характеристики по стороне решетки и вероятности заражения.
+     *
+     * @return
+     */
+    public SortedMap<Integer, SortedMap<Double, Cell>> getCells() {
+        return Collections.unmodifiableSortedMap(cells);
+    }
+
+    /**
+     * Возвращает характеристики решетки одного размера при одной вероятности
+     * либо null, если они не вычислены.
+     *
+     * @param size
+     * @param probability
+     * @return
+     */
+    public Cell getCell(int size, double probability) {
+        SortedMap<Double, Cell> sizeCells = cells.get(size);
+        return sizeCells == null ? null : sizeCells.get(probability);
+    }
+
+    public int getStartSize() {
+        return startSize;
+    }
+
+    public void setStartSize(int startSize) {
+        this.startSize = startSize;
+    }
+
+    public int getEndSize() {
+        return endSize;
+    }
+
+    public void setEndSize(int endSize) {
+        this.endSize = endSize;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void setStep(int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("step = " + step + " < 1");
+        }
+        this.step = step;
+    }
+
+    public double[] getProbabilities() {
+        return probabilities.clone();
+    }
+
+    /**
+     * Устанавливает вероятности заражения. Таблица результата строится для
+     * первой из них.
+     *
+     * @param probabilities
+     */
+    public void setProbabilities(double... probabilities) {
+        if (probabilities.length == 0) {
+            throw new IllegalArgumentException("probabilities is empty");
+        }
+        this.probabilities = probabilities.clone();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Устанавливает память, которую одновременно могут занимать решетки
+     * задач. По умолчанию - половина максимальной памяти виртуальной машины.
+     *
+     * @param memoryBudget
+     *            память в байтах
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("memoryBudget = "
+                    + memoryBudget + " < 1");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public String getKeyDescription() {
+        return "Lg(L)";
+    }
+
+    @Override
+    public String getValueDescription() {
+        return "Lg(M)";
+    }
+
+    @Override
+    public String getTitle() {
+        return "Конечномерный скейлинг";
+    }
+}
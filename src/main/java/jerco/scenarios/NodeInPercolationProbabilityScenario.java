@@ -3,6 +3,7 @@ package jerco.scenarios;
 import java.util.TreeMap;
 
 import jerco.Constants;
+import jerco.network.MicrocanonicalCurve;
 
 
 /**
@@ -32,6 +33,9 @@ public class NodeInPercolationProbabilityScenario extends CalculateTableScenario
     // Шаг изменения вероятности заражения
     private double step = 0.1;
 
+    // Использовать ли алгоритм Ньюмана-Зиффа
+    private boolean newmanZiff;
+
     /**
      * Создает сценарий со значениями по умолчанию:
      * <ul>
@@ -73,6 +77,11 @@ public class NodeInPercolationProbabilityScenario extends CalculateTableScenario
         getIndicator().init(
                 (int) ((endProbability - startProbability) / step) + 1);
 
+        if (newmanZiff) {
+            doNewmanZiff();
+            return;
+        }
+
         int counter = 1;
         for (double p = startProbability; p <= endProbability
                 + Constants.DOUBLE_PRECISION; p += step) {
@@ -90,6 +99,48 @@ public class NodeInPercolationProbabilityScenario extends CalculateTableScenario
         getIndicator().done();
     }
 
+    /**
+     * Выполняет сценарий алгоритмом Ньюмана-Зиффа. Эксперименты проводятся
+     * один раз, значения для всех вероятностей вычисляются по полученной
+     * микроканонической кривой.
+     */
+    private void doNewmanZiff() {
+        MicrocanonicalCurve curve = makeSweeps(width, height);
+        if (curve != null) {
+            int counter = 1;
+            for (double p = startProbability; p <= endProbability
+                    + Constants.DOUBLE_PRECISION; p += step) {
+                double probability = Math.min(1, Math.max(0, p));
+                result.put(p, curve.getCanonicalLargestClusterSize(probability)
+                        / curve.getSize());
+                getIndicator().progress(counter);
+                counter++;
+            }
+        }
+        stop = false;
+        getIndicator().done();
+    }
+
+    /**
+     * Возвращает истину, если сценарий выполняется алгоритмом Ньюмана-Зиффа.
+     * 
+     * @return
+     */
+    public boolean isNewmanZiff() {
+        return newmanZiff;
+    }
+
+    /**
+     * Устанавливает, выполнять ли сценарий алгоритмом Ньюмана-Зиффа. В этом
+     * случае для всех вероятностей заражения проводится одна серия
+     * экспериментов вместо отдельной серии для каждой вероятности.
+     * 
+     * @param newmanZiff
+     */
+    public void setNewmanZiff(boolean newmanZiff) {
+        this.newmanZiff = newmanZiff;
+    }
+
     /**
      * Возвращает ширину сети в эксперименте
      * 
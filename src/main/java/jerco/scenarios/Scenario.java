@@ -1,16 +1,41 @@
 package jerco.scenarios;
 
+import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import jerco.network.ImplicitLattice;
+import jerco.network.LabelingMethod;
+import jerco.network.MicrocanonicalCurve;
+import jerco.network.Net;
 import jerco.network.NetStructureInfo;
+import jerco.network.NewmanZiff;
+import jerco.network.PercolationMode;
 import jerco.network.RegularLattice;
+import jerco.network.StreamingLattice;
 import jerco.network.generators.NetGenerator;
 import jerco.network.generators.RectGenerator;
+import jerco.utils.IntHistogram;
+import jerco.utils.RandomAlgorithm;
+import jerco.utils.RandomSource;
 
 /**
  * Класс описывает базовые возможности сценария. Каждый сценарий должен
  * реализовать метод doScenario(). При желании, можно воспользоваться
- * вспомогательным методом makeExperiments().
+ * вспомогательным методом makeExperiments(). Сценарий запускается методом
+ * {@link #execute()}, который освобождает ресурсы экспериментов после
+ * выполнения.
  * 
  * @author leonidv
  * 
@@ -18,17 +43,58 @@ import jerco.network.generators.RectGenerator;
 public abstract class Scenario implements Serializable {
 
     protected int experimentsCount = 30;
-    private ScenarioProgressIndicator indicator = ScenarioProgressIndicator.NULL_INDICATOR;
-    protected boolean stop;
+    private volatile ScenarioProgressIndicator indicator = ScenarioProgressIndicator.NULL_INDICATOR;
+    protected volatile boolean stop;
     protected NetGenerator generator = RectGenerator.INSTANCE;
-    private RegularLattice net = new RegularLattice();
+    private boolean implicitLattice;
+    private boolean streamingLattice;
+    private PercolationMode percolationMode = PercolationMode.SITE;
+    private long seed;
+    private boolean seedSet;
+    private RandomAlgorithm randomAlgorithm = RandomAlgorithm.XOSHIRO256;
+    private int threads = 1;
+    private double targetRelativeError;
+    private int minExperimentsCount = 10;
+    private int maxExperimentsCount = 1000;
+    private File checkpointFile;
+    private long checkpointInterval = 10 * 60 * 1000;
+    private transient List<ExperimentNets> nets;
+    private transient ExecutorService executor;
+    private transient ScenarioCheckpoint checkpoint;
+    private transient long lastCheckpoint;
+
+    /**
+     * Количество экспериментов на поток между проверками необходимости
+     * сохранения контрольной точки.
+     */
+    private static final int CHECKPOINT_CHUNK_PER_THREAD = 4;
+
+    /**
+     * Время простоя, после которого завершаются потоки экспериментов, если
+     * сценарий не был завершен методом {@link #execute()}.
+     */
+    private static final long IDLE_THREAD_SECONDS = 30;
 
     public Scenario() {
         super();
+        seed = RandomSource.randomSeed();
     }
 
     public abstract void doScenario();
 
+    /**
+     * Выполняет сценарий ({@link #doScenario()}) и завершает потоки
+     * экспериментов, даже если сценарий завершился исключением. Все серии
+     * экспериментов одного запуска используют один пул потоков.
+     */
+    public final void execute() {
+        try {
+            doScenario();
+        } finally {
+            shutdownExperiments();
+        }
+    }
+
     /**
      * Возвращает количество экспериментов для каждой вероятности заражения
      * 
@@ -47,6 +113,112 @@ public abstract class Scenario implements Serializable {
         this.experimentsCount = experimentsCount;
     }
 
+    /**
+     * Возвращает количество потоков, проводящих эксперименты.
+     * 
+     * @return
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Устанавливает количество потоков, проводящих эксперименты
+     * {@link #makeExperiments(int, int, double)}. Каждый поток проводит
+     * эксперименты на собственной сети, поэтому память на сети растет
+     * пропорционально количеству потоков. Результаты не зависят от
+     * количества потоков.
+     * 
+     * @param threads
+     *            количество потоков, не меньше 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads = " + threads + " < 1");
+        }
+        if (threads != this.threads) {
+            shutdownExperiments();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Возвращает целевую относительную стандартную ошибку среднего
+     * максимального размера кластера. Значение 0 означает, что проводится
+     * {@link #getExperimentsCount()} экспериментов.
+     * 
+     * @return
+     */
+    public double getTargetRelativeError() {
+        return targetRelativeError;
+    }
+
+    /**
+     * Устанавливает целевую относительную стандартную ошибку среднего
+     * максимального размера кластера. Если значение больше 0, количество
+     * экспериментов для каждой точки сценария подбирается от
+     * {@link #getMinExperimentsCount()} до {@link #getMaxExperimentsCount()}
+     * (см. {@link #makeExperiments(int, int, double)}), а
+     * {@link #getExperimentsCount()} не используется.
+     * 
+     * @param targetRelativeError
+     *            ошибка, например 0.01 для 1%, или 0
+     */
+    public void setTargetRelativeError(double targetRelativeError) {
+        if (!(targetRelativeError >= 0)) {
+            throw new IllegalArgumentException("targetRelativeError = "
+                    + targetRelativeError);
+        }
+        this.targetRelativeError = targetRelativeError;
+    }
+
+    /**
+     * Возвращает истину, если количество экспериментов подбирается по
+     * целевой ошибке.
+     * 
+     * @return
+     */
+    public boolean isAdaptive() {
+        return targetRelativeError > 0;
+    }
+
+    public int getMinExperimentsCount() {
+        return minExperimentsCount;
+    }
+
+    /**
+     * Устанавливает количество экспериментов, после которого оценивается
+     * ошибка. Ошибка, оцененная по малому количеству экспериментов, ненадежна,
+     * поэтому значение не должно быть меньше 2.
+     * 
+     * @param minExperimentsCount
+     */
+    public void setMinExperimentsCount(int minExperimentsCount) {
+        if (minExperimentsCount < 2) {
+            throw new IllegalArgumentException("minExperimentsCount = "
+                    + minExperimentsCount + " < 2");
+        }
+        this.minExperimentsCount = minExperimentsCount;
+    }
+
+    public int getMaxExperimentsCount() {
+        return maxExperimentsCount;
+    }
+
+    /**
+     * Устанавливает наибольшее количество экспериментов в точке сценария при
+     * подборе количества экспериментов.
+     * 
+     * @param maxExperimentsCount
+     */
+    public void setMaxExperimentsCount(int maxExperimentsCount) {
+        if (maxExperimentsCount < 1) {
+            throw new IllegalArgumentException("maxExperimentsCount = "
+                    + maxExperimentsCount + " < 1");
+        }
+        this.maxExperimentsCount = maxExperimentsCount;
+    }
+
     /**
      * Возвращает ссылку на индикатор выполнения сценария
      * 
@@ -66,7 +238,9 @@ public abstract class Scenario implements Serializable {
     }
 
     /**
-     * Прекратить выполненение сценария
+     * Прекратить выполненение сценария. Метод можно вызывать из любого
+     * потока; потоки, проводящие эксперименты, прекращают работу после
+     * текущего эксперимента.
      * 
      * @return
      */
@@ -92,8 +266,274 @@ public abstract class Scenario implements Serializable {
         this.generator = generator;
     }
 
+    /**
+     * Возвращает истину, если эксперименты проводятся на решетке с неявной
+     * структурой ({@link ImplicitLattice}).
+     * 
+     * @return
+     */
+    public boolean isImplicitLattice() {
+        return implicitLattice;
+    }
+
+    /**
+     * Устанавливает, проводить ли эксперименты на решетке с неявной
+     * структурой. Такая решетка не генерируется и занимает значительно меньше
+     * памяти, но поддерживает не все генераторы и обертки.
+     * 
+     * @param implicitLattice
+     */
+    public void setImplicitLattice(boolean implicitLattice) {
+        this.implicitLattice = implicitLattice;
+    }
+
+    /**
+     * Возвращает истину, если эксперименты проводятся на решетке, которая
+     * просматривается по одному слою ({@link StreamingLattice}).
+     * 
+     * @return
+     */
+    public boolean isStreamingLattice() {
+        return streamingLattice;
+    }
+
+    /**
+     * Устанавливает, проводить ли эксперименты на решетке, которая
+     * просматривается по одному слою. Память такой решетки пропорциональна
+     * ее ширине, поэтому высота может быть очень большой. Имеет приоритет над
+     * {@link #setImplicitLattice(boolean)}.
+     * 
+     * @param streamingLattice
+     */
+    public void setStreamingLattice(boolean streamingLattice) {
+        this.streamingLattice = streamingLattice;
+    }
+
+    public PercolationMode getPercolationMode() {
+        return percolationMode;
+    }
+
+    /**
+     * Устанавливает вид перколяции в экспериментах. Перколяция по связям
+     * поддерживается только решеткой {@link RegularLattice}.
+     * 
+     * @param percolationMode
+     */
+    public void setPercolationMode(PercolationMode percolationMode) {
+        if (percolationMode == null) {
+            throw new IllegalArgumentException("percolationMode is null");
+        }
+        this.percolationMode = percolationMode;
+    }
+
+    /**
+     * Возвращает главное зерно сценария. Генератор каждого эксперимента
+     * получает собственное зерно, вычисленное по главному зерну, размерам
+     * сети, вероятности заражения и номеру эксперимента.
+     * 
+     * @return
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Устанавливает главное зерно сценария. Повторный запуск сценария с тем
+     * же зерном и алгоритмом дает те же результаты. Если зерно не задано,
+     * сценарий выбирает его случайно, а при загрузке контрольной точки
+     * принимает зерно, с которым она сохранена.
+     * 
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seedSet = true;
+    }
+
+    public RandomAlgorithm getRandomAlgorithm() {
+        return randomAlgorithm;
+    }
+
+    /**
+     * Устанавливает алгоритм генератора случайных чисел экспериментов.
+     * 
+     * @param randomAlgorithm
+     */
+    public void setRandomAlgorithm(RandomAlgorithm randomAlgorithm) {
+        if (randomAlgorithm == null) {
+            throw new IllegalArgumentException("randomAlgorithm is null");
+        }
+        this.randomAlgorithm = randomAlgorithm;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Устанавливает файл контрольной точки. Если файл задан, в него
+     * периодически (см. {@link #setCheckpointInterval(long)}) сохраняются
+     * статистики точек сценария, выполненных
+     * {@link #makeExperiments(int, int, double)}, и статистика выполняемой
+     * точки. Если файл существует, при запуске сценарий загружает его:
+     * завершенные точки не выполняются повторно, а выполняемая точка
+     * продолжается с последнего сохраненного эксперимента. Результаты
+     * совпадают с результатами непрерывного выполнения до последнего бита.
+     * Если зерно сценария не задано явно ({@link #setSeed(long)}),
+     * используется зерно контрольной точки.
+     * <p>
+     * Контрольная точка не сохраняет прогоны алгоритма Ньюмана-Зиффа
+     * ({@link #makeSweeps(int, int)}) и результаты сценариев, которые не
+     * используют {@link #makeExperiments(int, int, double)}.
+     * 
+     * @param checkpointFile
+     *            файл или null, если контрольная точка не нужна
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        this.checkpoint = null;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Устанавливает наименьший интервал между сохранениями контрольной
+     * точки. Контрольная точка сохраняется также после завершения каждой
+     * точки сценария и при остановке сценария.
+     * 
+     * @param checkpointInterval
+     *            интервал в миллисекундах
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("checkpointInterval = "
+                    + checkpointInterval + " < 0");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Возвращает контрольную точку, загружая ее из файла при первом
+     * обращении, либо null, если файл контрольной точки не задан.
+     * 
+     * @throws IllegalStateException
+     *             если контрольная точка сохранена сценарием с другими
+     *             параметрами или другим явно заданным зерном
+     */
+    private ScenarioCheckpoint checkpoint() {
+        if (checkpointFile == null) {
+            return null;
+        }
+        if (checkpoint == null) {
+            if (checkpointFile.exists()) {
+                checkpoint = ScenarioCheckpoint.load(checkpointFile,
+                        checkpointFingerprint(), seedSet ? Long.valueOf(seed)
+                                : null);
+                seed = checkpoint.getSeed();
+            } else {
+                checkpoint = new ScenarioCheckpoint(checkpointFingerprint(),
+                        seed);
+            }
+            lastCheckpoint = System.currentTimeMillis();
+        }
+        return checkpoint;
+    }
+
+    private void saveCheckpoint() {
+        checkpoint.save(checkpointFile);
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Возвращает описание параметров сценария, от которых зависят результаты
+     * экспериментов, кроме зерна (оно сохраняется в контрольной точке
+     * отдельно).
+     */
+    private String checkpointFingerprint() {
+        return getClass().getName() + "; random = "
+                + randomAlgorithm + "; generator = "
+                + generator.getClass().getName() + "; implicit = "
+                + implicitLattice + "; streaming = " + streamingLattice
+                + "; mode = " + percolationMode + "; experiments = "
+                + experimentsCount + "; error = " + targetRelativeError
+                + "; min = " + minExperimentsCount + "; max = "
+                + maxExperimentsCount;
+    }
+
+    /**
+     * Вычисляет зерно эксперимента. Зерно зависит только от параметров
+     * эксперимента, а не от порядка проведения экспериментов.
+     * 
+     * @param width
+     * @param height
+     * @param p
+     * @param experiment
+     *            номер эксперимента
+     * @return
+     */
+    protected long experimentSeed(int width, int height, double p,
+            int experiment) {
+        return experimentSeed(seed, width, height, p, experiment);
+    }
+
+    /**
+     * Вычисляет зерно эксперимента по главному зерну сценария. По этой
+     * формуле статистика восстанавливает зерна экспериментов
+     * ({@link ExperimentsStatistics#getSeeds()}).
+     * 
+     * @param seed
+     *            главное зерно сценария
+     * @param width
+     * @param height
+     * @param p
+     * @param experiment
+     *            номер эксперимента
+     * @return
+     */
+    static long experimentSeed(long seed, int width, int height, double p,
+            int experiment) {
+        return RandomSource.streamSeed(seed, width, height, Double
+                .doubleToLongBits(p), experiment);
+    }
+
+    /**
+     * Проверяет, что выбранная решетка поддерживает вид перколяции.
+     * 
+     * @param supported
+     *            поддерживает ли решетка перколяцию по связям
+     * @throws IllegalStateException
+     *             если выбрана перколяция по связям, а решетка ее не
+     *             поддерживает
+     */
+    private void checkBondMode(boolean supported) {
+        if (percolationMode == PercolationMode.BOND && !supported) {
+            throw new IllegalStateException(
+                    "Перколяция по связям поддерживается только решеткой "
+                            + "RegularLattice без алгоритма Ньюмана-Зиффа");
+        }
+    }
+
     /**
      * Осуществляет эксперимент для заданных параметров.
+     * <p>
+     * Если задано несколько потоков ({@link #setThreads(int)}), эксперименты
+     * делятся между потоками на последовательные отрезки, каждый поток
+     * проводит эксперименты на собственной сети и собирает собственную
+     * статистику. Статистики объединяются в порядке номеров экспериментов,
+     * поэтому результат не зависит от количества потоков.
+     * <p>
+     * Если задана целевая относительная ошибка
+     * ({@link #setTargetRelativeError(double)}), количество экспериментов
+     * подбирается: после {@link #getMinExperimentsCount()} экспериментов по
+     * относительной стандартной ошибке среднего максимального размера
+     * кластера оценивается, сколько экспериментов нужно для целевой ошибки, и
+     * недостающие эксперименты проводятся (за один шаг количество
+     * увеличивается не более чем вдвое). Эксперименты прекращаются, когда
+     * ошибка достигнута или проведено {@link #getMaxExperimentsCount()}
+     * экспериментов. Решение зависит только от результатов экспериментов,
+     * поэтому не зависит от количества потоков.
      * 
      * @param p
      *            верояность заражения узла в сети
@@ -103,27 +543,385 @@ public abstract class Scenario implements Serializable {
      *            ширина сети в эксперименте
      * 
      * @return
+     * @throws ScenarioExecuteException
+     *             если поток, вызвавший метод, был прерван
      */
     protected ExperimentsStatistics makeExperiments(int width, int height,
             double p) {
-        ExperimentsStatistics statistics = new ExperimentsStatistics(width*
-                height, p);
+        checkBondMode(!streamingLattice && !implicitLattice);
+        final String key = ScenarioCheckpoint.key(width, height, p);
+        final ScenarioCheckpoint checkpoint = checkpoint();
+        ExperimentsStatistics statistics = null;
+        int target;
+        if (checkpoint != null) {
+            statistics = checkpoint.getCompleted(key);
+            if (statistics != null) {
+                return statistics;
+            }
+            statistics = checkpoint.getPartial(key);
+        }
+        if (statistics != null) {
+            target = checkpoint.getPartialTarget();
+        } else {
+            statistics = new ExperimentsStatistics(width * height, p);
+            statistics.setSeedRange(seed, width, height, 0);
+            target = isAdaptive() ? Math.min(minExperimentsCount,
+                    maxExperimentsCount) : experimentsCount;
+        }
+
+        while (true) {
+            if (!makeExperiments(statistics, width, height, p, target, key)) {
+                return statistics;
+            }
+            if (!isAdaptive()) {
+                break;
+            }
+            target = nextTarget(statistics);
+            if (target <= statistics.getExperimentsCount()) {
+                break;
+            }
+        }
+        if (checkpoint != null) {
+            checkpoint.complete(key, statistics);
+            saveCheckpoint();
+        }
+        return statistics;
+    }
+
+    /**
+     * Возвращает количество экспериментов, которое должно быть проведено на
+     * следующем шаге подбора, либо текущее количество, если ошибка
+     * достигнута.
+     */
+    private int nextTarget(ExperimentsStatistics statistics) {
+        final int count = statistics.getExperimentsCount();
+        if (count >= maxExperimentsCount) {
+            return count;
+        }
+        double error = statistics.getMeanMaximumClusterSizeError();
+        double mean = statistics.getMeanMaximumClusterSize();
+        if (error == 0 || error <= targetRelativeError * Math.abs(mean)) {
+            return count;
+        }
+        double ratio = error / (targetRelativeError * Math.abs(mean));
+        double required = Math.ceil(count * ratio * ratio);
+        int next = (int) Math.min(Math.min(required, 2.0 * count),
+                maxExperimentsCount);
+        return Math.max(next, count + 1);
+    }
+
+    /**
+     * Проводит эксперименты, пока их количество в статистике не достигнет
+     * target. Если задан файл контрольной точки, эксперименты проводятся
+     * частями, и после части, завершившейся по истечении
+     * {@link #getCheckpointInterval()}, контрольная точка сохраняется.
+     * 
+     * @return истина, если проведены все эксперименты; ложь, если сценарий
+     *         остановлен
+     */
+    private boolean makeExperiments(ExperimentsStatistics statistics,
+            int width, int height, double p, int target, String key) {
+        final long chunk = checkpointFile == null ? Integer.MAX_VALUE
+                : (long) threads * CHECKPOINT_CHUNK_PER_THREAD;
+        while (statistics.getExperimentsCount() < target) {
+            if (stop) {
+                return false;
+            }
+            final int from = statistics.getExperimentsCount();
+            final int to = (int) Math.min(target, from + chunk);
+            makeExperiments(statistics, width, height, p, from, to);
+            if (checkpoint == null) {
+                continue;
+            }
+            if (statistics.getExperimentsCount() != to) {
+                // Часть прервана остановкой, и в ней могли остаться пропуски:
+                // сохраняется состояние до части, а продолжать можно только с
+                // сохраненной контрольной точки
+                saveCheckpoint();
+                checkpoint = null;
+                return false;
+            }
+            checkpoint.setPartial(key, statistics, target);
+            if (stop
+                    || System.currentTimeMillis() - lastCheckpoint >= checkpointInterval) {
+                saveCheckpoint();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проводит эксперименты с номерами из отрезка [from, to), распределяя их
+     * между потоками, и добавляет их в статистику в порядке номеров.
+     * 
+     * @param statistics
+     * @param width
+     * @param height
+     * @param p
+     * @param from
+     * @param to
+     */
+    private void makeExperiments(ExperimentsStatistics statistics, int width,
+            int height, double p, int from, int to) {
+        final int count = to - from;
+        final int workers = Math.max(1, Math.min(threads, count));
+        if (workers == 1) {
+            new Experiments(width, height, p, from, to, nets(0), statistics)
+                    .call();
+            return;
+        }
+
+        List<Experiments> tasks = new ArrayList<Experiments>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            final int workerFrom = from
+                    + (int) ((long) worker * count / workers);
+            ExperimentsStatistics workerStatistics = new ExperimentsStatistics(
+                    width * height, p, true);
+            workerStatistics.setSeedRange(seed, width, height, workerFrom);
+            tasks.add(new Experiments(width, height, p, workerFrom, from
+                    + (int) ((long) (worker + 1) * count / workers),
+                    nets(worker), workerStatistics));
+        }
+        try {
+            for (Future<ExperimentsStatistics> future : executor().invokeAll(
+                    tasks)) {
+                statistics.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScenarioExecuteException("Эксперименты прерваны", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ScenarioExecuteException(e.getCause());
+        }
+    }
+
+    /**
+     * Возвращает пул потоков экспериментов, создавая его при первом
+     * обращении. Пул используется всеми сериями экспериментов до вызова
+     * {@link #shutdownExperiments()}, который вызывает {@link #execute()}.
+     * Потоки пула - демоны и завершаются после
+     * {@value #IDLE_THREAD_SECONDS} секунд простоя, поэтому пул сценария,
+     * запущенного напрямую через {@link #doScenario()}, не удерживает потоки
+     * и не мешает завершению программы.
+     * 
+     * @return
+     */
+    ExecutorService executor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+                    threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger counter = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "experiments-"
+                                    + counter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Завершает потоки экспериментов. Вызывается {@link #execute()} после
+     * выполнения сценария; следующая серия экспериментов создает потоки
+     * заново.
+     */
+    protected void shutdownExperiments() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Возвращает сети потока с заданным номером, создавая их при первом
+     * обращении. Сети потока используются повторно в следующих сериях
+     * экспериментов.
+     * 
+     * @param worker
+     * @return
+     */
+    private ExperimentNets nets(int worker) {
+        if (nets == null) {
+            nets = new ArrayList<ExperimentNets>();
+        }
+        while (nets.size() <= worker) {
+            nets.add(new ExperimentNets());
+        }
+        return nets.get(worker);
+    }
+
+    /**
+     * Осуществляет эксперименты алгоритмом Ньюмана-Зиффа: каждый эксперимент
+     * заражает узлы сети по одному в случайном порядке и дает характеристики
+     * сети для любого количества зараженных узлов. Характеристики для
+     * конкретной вероятности заражения вычисляются по результату методами
+     * {@link MicrocanonicalCurve}, без повторных экспериментов.
+     * 
+     * @param width
+     *            ширина сети в эксперименте
+     * @param height
+     *            высота сети в эксперименте
+     * @return объединенная кривая всех проведенных экспериментов либо null,
+     *         если сценарий был остановлен до первого эксперимента
+     */
+    protected MicrocanonicalCurve makeSweeps(int width, int height) {
+        checkBondMode(false);
+        NetStructureInfo structureInfo = new NetStructureInfo();
+        structureInfo.setGenerator(getGenerator());
+        structureInfo.setWidth(width);
+        structureInfo.setHeight(height);
+
+        NewmanZiff newmanZiff;
+        if (implicitLattice) {
+            newmanZiff = new NewmanZiff(new ImplicitLattice(structureInfo));
+        } else {
+            newmanZiff = new NewmanZiff(new RegularLattice(structureInfo));
+        }
 
+        MicrocanonicalCurve result = null;
         for (int i = 0; i < experimentsCount; i++) {
             if (stop) {
                 break;
             }
+            newmanZiff.setRandom(randomAlgorithm.stream(seed, width, height,
+                    i));
+            MicrocanonicalCurve curve = newmanZiff.run();
+            if (result == null) {
+                result = curve;
+            } else {
+                result.add(curve);
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Проводит эксперимент на решетке, которая просматривается по одному
+     * слою.
+     * 
+     * @param structureInfo
+     * @param p
+     * @param random
+     *            генератор случайных чисел эксперимента
+     * @param statistics
+     *            статистика, в которую добавляется эксперимент
+     * @param seed
+     *            зерно эксперимента
+     */
+    private void streamExperiment(NetStructureInfo structureInfo, double p,
+            Random random, ExperimentsStatistics statistics, long seed) {
+        final IntHistogram clustersSizes = new IntHistogram();
+        StreamingLattice lattice = new StreamingLattice(structureInfo);
+        lattice.setRandom(random);
+        lattice.setListener(new StreamingLattice.ClusterListener() {
+            @Override
+            public void clusterCompleted(long size, int boundsMask) {
+                // Кластер больше Integer.MAX_VALUE (перколяционный на
+                // решетке 10^9 узлов и больше) учитывается только в
+                // количестве кластеров и наибольшем кластере
+                if (size <= Integer.MAX_VALUE) {
+                    clustersSizes.add((int) size);
+                }
+            }
+        });
+        lattice.infect(p);
+        statistics.addData(clustersSizes, lattice.getClustersCount(), lattice
+                .getLargestClusterSize(), seed);
+    }
+
+    /**
+     * Серия экспериментов с номерами из отрезка [from, to), которую проводит
+     * один поток на собственных сетях.
+     */
+    private final class Experiments implements Callable<ExperimentsStatistics> {
+        private final int width;
+        private final int height;
+        private final double p;
+        private final int from;
+        private final int to;
+        private final ExperimentNets nets;
+        private final ExperimentsStatistics statistics;
+
+        Experiments(int width, int height, double p, int from, int to,
+                ExperimentNets nets, ExperimentsStatistics statistics) {
+            this.width = width;
+            this.height = height;
+            this.p = p;
+            this.from = from;
+            this.to = to;
+            this.nets = nets;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public ExperimentsStatistics call() {
             NetStructureInfo structureInfo = new NetStructureInfo();
             structureInfo.setGenerator(getGenerator());
             structureInfo.setWidth(width);
             structureInfo.setHeight(height);
-            net.generate(structureInfo);
-            net.infect(p);
-            statistics.addData(net);
-        }
 
-        return statistics;
+            for (int i = from; i < to; i++) {
+                if (stop) {
+                    break;
+                }
+
+                long experimentSeed = experimentSeed(width, height, p, i);
+                if (streamingLattice) {
+                    streamExperiment(structureInfo, p, randomAlgorithm
+                            .create(experimentSeed), statistics,
+                            experimentSeed);
+                    continue;
+                }
+                Net experimentNet = nets.prepare(structureInfo);
+                experimentNet.setRandom(randomAlgorithm.create(experimentSeed));
+                experimentNet.infect(p);
+                statistics.addData(experimentNet, experimentSeed);
+            }
+            return statistics;
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * Сети, на которых проводит эксперименты один поток.
+     */
+    private final class ExperimentNets {
+        private final RegularLattice net = new RegularLattice();
+        private ImplicitLattice implicitNet;
+
+        ExperimentNets() {
+            net.setLabelingMethod(LabelingMethod.UNION_FIND);
+        }
+
+        /**
+         * Подготавливает сеть с заданной структурой к эксперименту.
+         * 
+         * @param structureInfo
+         * @return
+         */
+        Net prepare(NetStructureInfo structureInfo) {
+            if (!implicitLattice) {
+                net.generate(structureInfo);
+                net.setPercolationMode(percolationMode);
+                return net;
+            }
+
+            if (implicitNet == null
+                    || !implicitNet.getStructureInfo().equals(structureInfo)) {
+                implicitNet = new ImplicitLattice(structureInfo);
+            } else {
+                implicitNet.reset();
+            }
+            return implicitNet;
+        }
+    }
+}
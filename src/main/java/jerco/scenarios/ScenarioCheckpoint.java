@@ -0,0 +1,220 @@
+package jerco.scenarios;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Контрольная точка сценария: статистики завершенных точек сценария и
+ * статистика точки, выполняемой в момент сохранения.
+ * <p>
+ * Зерно каждого эксперимента вычисляется по его номеру
+ * ({@link Scenario#experimentSeed(int, int, double, int)}), поэтому позиции
+ * генераторов случайных чисел сохранять не нужно: продолжение точки с
+ * эксперимента, следующего за последним сохраненным, воспроизводит те же
+ * эксперименты, что и непрерывное выполнение.
+ * <p>
+ * Контрольная точка помечена отпечатком параметров сценария, от которых
+ * зависят результаты экспериментов, и главным зерном сценария; контрольную
+ * точку сценария с другими параметрами загрузить нельзя. Зерно хранится
+ * отдельно от отпечатка, чтобы сценарий без явно заданного зерна мог
+ * продолжить работу с зерном контрольной точки.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+final class ScenarioCheckpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String fingerprint;
+
+    private final long seed;
+
+    // Статистики завершенных точек
+    private final Map<String, ExperimentsStatistics> completed = new HashMap<String, ExperimentsStatistics>();
+
+    // Незавершенная точка
+    private String partialKey;
+
+    private ExperimentsStatistics partial;
+
+    // Количество экспериментов, до которого выполняется незавершенная точка
+    private int partialTarget;
+
+    ScenarioCheckpoint(String fingerprint, long seed) {
+        this.fingerprint = fingerprint;
+        this.seed = seed;
+    }
+
+    /**
+     * Возвращает главное зерно сценария, сохранившего контрольную точку.
+     *
+     * @return
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Возвращает ключ точки сценария.
+     *
+     * @param width
+     * @param height
+     * @param p
+     * @return
+     */
+    static String key(int width, int height, double p) {
+        return width + "x" + height + ":"
+                + Long.toHexString(Double.doubleToLongBits(p));
+    }
+
+    /**
+     * Возвращает статистику завершенной точки либо null.
+     *
+     * @param key
+     * @return
+     */
+    ExperimentsStatistics getCompleted(String key) {
+        ExperimentsStatistics statistics = completed.get(key);
+        return statistics == null ? null : copy(statistics);
+    }
+
+    /**
+     * Возвращает сохраненную статистику незавершенной точки либо null, если
+     * незавершенной является другая точка.
+     *
+     * @param key
+     * @return
+     */
+    ExperimentsStatistics getPartial(String key) {
+        return key.equals(partialKey) ? copy(partial) : null;
+    }
+
+    int getPartialTarget() {
+        return partialTarget;
+    }
+
+    /**
+     * Запоминает копию статистики незавершенной точки.
+     *
+     * @param key
+     * @param statistics
+     * @param target
+     */
+    void setPartial(String key, ExperimentsStatistics statistics, int target) {
+        partialKey = key;
+        partial = copy(statistics);
+        partialTarget = target;
+    }
+
+    /**
+     * Отмечает точку завершенной.
+     *
+     * @param key
+     * @param statistics
+     */
+    void complete(String key, ExperimentsStatistics statistics) {
+        completed.put(key, copy(statistics));
+        if (key.equals(partialKey)) {
+            partialKey = null;
+            partial = null;
+        }
+    }
+
+    int getCompletedCount() {
+        return completed.size();
+    }
+
+    private static ExperimentsStatistics copy(ExperimentsStatistics statistics) {
+        ExperimentsStatistics result = new ExperimentsStatistics(statistics
+                .getNetSize(), statistics.getProbability());
+        result.addAll(statistics);
+        return result;
+    }
+
+    /**
+     * Загружает контрольную точку из файла.
+     *
+     * @param file
+     * @param fingerprint
+     *            отпечаток параметров текущего сценария
+     * @param seed
+     *            главное зерно текущего сценария либо null, если зерно не
+     *            задано явно и принимается из контрольной точки
+     * @return
+     * @throws IllegalStateException
+     *             если контрольная точка сохранена сценарием с другими
+     *             параметрами или другим зерном
+     * @throws ScenarioExecuteException
+     *             если файл не удалось прочитать
+     */
+    static ScenarioCheckpoint load(File file, String fingerprint, Long seed) {
+        ScenarioCheckpoint checkpoint;
+        try {
+            ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
+                    new BufferedInputStream(new FileInputStream(file))));
+            try {
+                checkpoint = (ScenarioCheckpoint) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new ScenarioExecuteException(
+                    "Не удалось прочитать контрольную точку " + file, e);
+        } catch (ClassNotFoundException e) {
+            throw new ScenarioExecuteException(
+                    "Не удалось прочитать контрольную точку " + file, e);
+        }
+        if (!checkpoint.fingerprint.equals(fingerprint)) {
+            throw new IllegalStateException("Контрольная точка " + file
+                    + " сохранена сценарием с другими параметрами: "
+                    + checkpoint.fingerprint);
+        }
+        if (seed != null && seed.longValue() != checkpoint.seed) {
+            throw new IllegalStateException("Контрольная точка " + file
+                    + " сохранена сценарием с зерном " + checkpoint.seed);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Сохраняет контрольную точку. Точка записывается во временный файл,
+     * который затем заменяет файл контрольной точки, поэтому прерывание
+     * записи не портит предыдущую контрольную точку.
+     *
+     * @param file
+     * @throws ScenarioExecuteException
+     *             если файл не удалось записать
+     */
+    void save(File file) {
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new GZIPOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(temporary))));
+            try {
+                out.writeObject(this);
+            } finally {
+                out.close();
+            }
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ScenarioExecuteException(
+                    "Не удалось сохранить контрольную точку " + file, e);
+        }
+    }
+}
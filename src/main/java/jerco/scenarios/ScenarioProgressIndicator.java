@@ -1,5 +1,11 @@
 package jerco.scenarios;
 
+/**
+ * Индикатор выполнения сценария. Методы индикатора вызываются потоком,
+ * выполняющим сценарий, но индикатор может читаться из других потоков
+ * (например, потоком интерфейса), поэтому реализации с состоянием должны быть
+ * потокобезопасны.
+ */
 public interface ScenarioProgressIndicator {
     /**
      * Реализует шаблон нулевого объекта. Определяет пустые методы индикатора.
@@ -26,17 +32,17 @@ public interface ScenarioProgressIndicator {
         private int count;
         
         @Override
-        public void init(int count) {
+        public synchronized void init(int count) {
             this.count = count;
         }
 
         @Override
-        public void progress(int position) {
+        public synchronized void progress(int position) {
             System.out.printf("%03d/%03d\n",position,count);
         }
 
         @Override
-        public void done() {
+        public synchronized void done() {
             System.out.println("data done");
         }
         
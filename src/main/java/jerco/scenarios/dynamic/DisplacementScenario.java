@@ -111,7 +111,7 @@ public class DisplacementScenario extends Scenario {
         }
 
         // Запускаем выполнение сценария
-        scenario.doScenario();
+        scenario.execute();
 
         try {
             // Открываем на запись файлы для вывода данных по фронту
@@ -173,8 +173,12 @@ public class DisplacementScenario extends Scenario {
     // Нулевой фронт, с которого начинается распространение замещения
     private Collection<Node> initialFront = new HashSet<Node>();
 
-    // Генератор случайных чисел
-    private Random random = new Random();
+    // Генератор случайных чисел, установленный явно, либо null, если
+    // генератор создается по главному зерну сценария
+    private Random random;
+
+    // Генератор случайных чисел текущего прогона сценария
+    private Random runRandom;
 
     // Хранит список шагов протекания перколяции
     private List<StepInfo> result;
@@ -231,6 +235,8 @@ public class DisplacementScenario extends Scenario {
                             + "установить сеть (setNet())");
         }
 
+        // Каждый прогон с тем же зерном воспроизводит те же вероятности
+        runRandom = null;
         prepareNet(net);
         getIndicator().init(initInfectableCount);
 
@@ -409,11 +415,23 @@ public class DisplacementScenario extends Scenario {
      *         {@link #getDisplaceMean()}+/-{@link #getDisplaceDeveration()}
      */
     double generateDisplaceProbability() {
-        final double nextDouble = random.nextDouble();
+        final double nextDouble = random().nextDouble();
         double doubleMean = nextDouble * (2 * displaceDeveration);
         return displaceMean + displaceDeveration - doubleMean;
     }
 
+    /**
+     * Возвращает генератор случайных чисел прогона: установленный явно либо
+     * созданный алгоритмом сценария по его главному зерну.
+     */
+    private Random random() {
+        if (runRandom == null) {
+            runRandom = random != null ? random : getRandomAlgorithm().create(
+                    getSeed());
+        }
+        return runRandom;
+    }
+
     /**
      * Возвращает ссылку на сеть, на которой осуществляется сценарий
      * 
@@ -431,6 +449,22 @@ public class DisplacementScenario extends Scenario {
         this.net = net;
     }
 
+    /**
+     * Устанавливает генератор случайных чисел, по которому выбираются
+     * замещаемые узлы. По умолчанию генератор создается по главному зерну
+     * сценария ({@link #getSeed()}), поэтому прогоны с одинаковым зерном
+     * воспроизводимы.
+     * 
+     * @param random
+     */
+    public void setRandom(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        this.random = random;
+        this.runRandom = null;
+    }
+
     /**
      * Возвращает вероятность первичного заражения узла. Вероятность
      * используется при образование кластера
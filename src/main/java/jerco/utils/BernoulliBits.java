@@ -0,0 +1,176 @@
+package jerco.utils;
+
+import java.util.Random;
+
+/**
+ * Последовательность независимых случайных битов, каждый из которых равен
+ * единице с вероятностью p (схема Бернулли). Биты выдаются словами до 64
+ * битов; бит {@code k} слова - k-й по порядку бит последовательности.
+ * <p>
+ * При p, близкой к 0 или 1, случайное число вычисляется не для каждого бита,
+ * а для каждого редкого бита (единицы при малой p, нуля при большой):
+ * расстояние до следующего редкого бита имеет геометрическое распределение и
+ * получается из одного случайного числа. Поэтому заполнение N битов требует
+ * O(min(p, 1 - p) * N) случайных чисел, а распределение битов остается
+ * точным.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class BernoulliBits {
+    /**
+     * Вероятность редкого бита, начиная с которой генерировать каждый бит
+     * отдельно быстрее, чем вычислять логарифм для каждого редкого бита.
+     */
+    public static final double SPARSE_THRESHOLD = 0.1;
+
+    private final Random random;
+
+    private final double p;
+
+    /**
+     * Количество битов последовательности.
+     */
+    private final long size;
+
+    /**
+     * Истина, если биты генерируются пропусками.
+     */
+    private final boolean sparse;
+
+    /**
+     * Истина, если редкий бит - ноль (p > 0.5).
+     */
+    private final boolean inverted;
+
+    /**
+     * Логарифм вероятности того, что бит не редкий.
+     */
+    private final double logCommon;
+
+    /**
+     * Номер следующего бита последовательности.
+     */
+    private long position;
+
+    /**
+     * Номер следующего редкого бита.
+     */
+    private long nextRare;
+
+    /**
+     * Создает последовательность заданной длины.
+     *
+     * @param random
+     *            генератор случайных чисел
+     * @param p
+     *            вероятность единичного бита; значения за пределами [0, 1]
+     *            приводятся к границам отрезка
+     * @param size
+     *            количество битов
+     */
+    public BernoulliBits(Random random, double p, long size) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("size = " + size + " < 0");
+        }
+        this.random = random;
+        this.p = Math.min(1, Math.max(0, p));
+        this.size = size;
+        this.inverted = this.p > 0.5;
+        double rare = inverted ? 1 - this.p : this.p;
+        this.sparse = rare < SPARSE_THRESHOLD;
+        this.logCommon = Math.log1p(-rare);
+        if (sparse) {
+            nextRare = skip(0);
+        }
+    }
+
+    /**
+     * Возвращает истину, если биты генерируются пропусками.
+     *
+     * @return
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Возвращает количество еще не выданных битов.
+     *
+     * @return
+     */
+    public long remaining() {
+        return size - position;
+    }
+
+    /**
+     * Возвращает следующие 64 бита последовательности. Биты за концом
+     * последовательности равны нулю.
+     *
+     * @return
+     */
+    public long nextWord() {
+        return next((int) Math.min(64, Math.max(0, remaining())));
+    }
+
+    /**
+     * Возвращает следующие count битов последовательности в младших битах
+     * слова.
+     *
+     * @param count
+     *            количество битов, от 0 до 64
+     * @return
+     * @throws IllegalArgumentException
+     *             если count вне допустимых границ или превышает количество
+     *             оставшихся битов
+     */
+    public long next(int count) {
+        if (count < 0 || count > 64 || count > remaining()) {
+            throw new IllegalArgumentException("count = " + count
+                    + ", remaining = " + remaining());
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long mask = count == 64 ? -1L : (1L << count) - 1;
+        long bits = 0;
+        if (sparse) {
+            final long end = position + count;
+            while (nextRare < end) {
+                bits |= 1L << (nextRare - position);
+                nextRare = skip(nextRare + 1);
+            }
+            if (inverted) {
+                bits = ~bits & mask;
+            }
+        } else {
+            for (int bit = 0; bit < count; bit++) {
+                if (random.nextDouble() < p) {
+                    bits |= 1L << bit;
+                }
+            }
+        }
+        position += count;
+        return bits;
+    }
+
+    /**
+     * Возвращает номер следующего редкого бита, начиная с бита from. Если
+     * редких битов больше нет, возвращает размер последовательности.
+     */
+    private long skip(long from) {
+        if (logCommon == 0) {
+            // Редких битов нет: p равна 0 или 1
+            return size;
+        }
+        // 1 - U лежит в (0, 1], поэтому логарифм конечен
+        double gap = Math.floor(Math.log(1 - random.nextDouble()) / logCommon);
+        if (gap >= size - from) {
+            return size;
+        }
+        return from + (long) gap;
+    }
+}
@@ -0,0 +1,306 @@
+package jerco.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Гистограмма неотрицательных целых ключей: сопоставляет ключу количество его
+ * вхождений. В отличие от {@link Bag}, ключи и количества хранятся в массивах
+ * примитивов: малые ключи (меньше {@link #DENSE_LIMIT}) - в массиве,
+ * индексированном ключом, остальные - в хеш-таблице с открытой адресацией.
+ * Добавление выполняется без создания объектов за одно обращение к массиву
+ * или за одну последовательность проб.
+ * <p>
+ * Ключи в порядке возрастания возвращает {@link #keys()}. Гистограммы
+ * объединяются методом {@link #merge(IntHistogram)} и переводятся в
+ * логарифмические интервалы методом {@link #toLogHistogram()}.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class IntHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Ключи меньше этого значения хранятся в массиве, индексированном ключом.
+     */
+    public static final int DENSE_LIMIT = 1024;
+
+    /**
+     * Пустая ячейка хеш-таблицы.
+     */
+    private static final int EMPTY = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long[] dense = new long[DENSE_LIMIT];
+
+    private int[] hashKeys;
+
+    private long[] hashCounts;
+
+    /**
+     * Количество ключей в хеш-таблице.
+     */
+    private int hashSize;
+
+    /**
+     * Количество различных ключей.
+     */
+    private int size;
+
+    private long totalCount;
+
+    private int firstKey = Integer.MAX_VALUE;
+
+    private int lastKey = -1;
+
+    public IntHistogram() {
+    }
+
+    /**
+     * Создает копию гистограммы.
+     *
+     * @param other
+     */
+    public IntHistogram(IntHistogram other) {
+        merge(other);
+    }
+
+    public void add(int key) {
+        add(key, 1);
+    }
+
+    /**
+     * Увеличивает количество вхождений ключа.
+     *
+     * @param key
+     *            неотрицательный ключ
+     * @param count
+     *            неотрицательное приращение
+     */
+    public void add(int key, long count) {
+        if (key < 0) {
+            throw new IllegalArgumentException("key = " + key + " < 0");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("count = " + count + " < 0");
+        }
+        if (count == 0) {
+            return;
+        }
+        if (key < DENSE_LIMIT) {
+            if (dense[key] == 0) {
+                size++;
+            }
+            dense[key] += count;
+        } else {
+            addHashed(key, count);
+        }
+        totalCount += count;
+        if (key < firstKey) {
+            firstKey = key;
+        }
+        if (key > lastKey) {
+            lastKey = key;
+        }
+    }
+
+    private void addHashed(int key, long count) {
+        if (hashKeys == null) {
+            hashKeys = new int[INITIAL_CAPACITY];
+            Arrays.fill(hashKeys, EMPTY);
+            hashCounts = new long[INITIAL_CAPACITY];
+        }
+        int slot = slot(key, hashKeys);
+        if (hashKeys[slot] == EMPTY) {
+            hashKeys[slot] = key;
+            hashSize++;
+            size++;
+            if (2 * hashSize > hashKeys.length) {
+                hashCounts[slot] = count;
+                grow();
+                return;
+            }
+        }
+        hashCounts[slot] += count;
+    }
+
+    /**
+     * Возвращает ячейку ключа либо пустую ячейку, в которую его нужно
+     * поместить.
+     */
+    private static int slot(int key, int[] keys) {
+        final int mask = keys.length - 1;
+        final int hash = key * 0x9e3779b9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = hashKeys;
+        long[] oldCounts = hashCounts;
+        hashKeys = new int[oldKeys.length * 2];
+        Arrays.fill(hashKeys, EMPTY);
+        hashCounts = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i], hashKeys);
+                hashKeys[slot] = oldKeys[i];
+                hashCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Возвращает количество вхождений ключа.
+     *
+     * @param key
+     * @return
+     */
+    public long getCount(int key) {
+        if (key < 0) {
+            return 0;
+        }
+        if (key < DENSE_LIMIT) {
+            return dense[key];
+        }
+        if (hashKeys == null) {
+            return 0;
+        }
+        int slot = slot(key, hashKeys);
+        return hashKeys[slot] == EMPTY ? 0 : hashCounts[slot];
+    }
+
+    /**
+     * Возвращает количество различных ключей.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает сумму количеств всех ключей.
+     *
+     * @return
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Возвращает наименьший ключ.
+     *
+     * @return
+     * @throws NoSuchElementException
+     *             если гистограмма пуста
+     */
+    public int firstKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return firstKey;
+    }
+
+    /**
+     * Возвращает наибольший ключ.
+     *
+     * @return
+     * @throws NoSuchElementException
+     *             если гистограмма пуста
+     */
+    public int lastKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return lastKey;
+    }
+
+    /**
+     * Возвращает ключи в порядке возрастания.
+     *
+     * @return новый массив
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int index = 0;
+        final int denseEnd = Math.min(DENSE_LIMIT, lastKey + 1);
+        for (int key = Math.min(firstKey, denseEnd); key < denseEnd; key++) {
+            if (dense[key] != 0) {
+                result[index++] = key;
+            }
+        }
+        if (hashKeys != null) {
+            final int hashStart = index;
+            for (int key : hashKeys) {
+                if (key != EMPTY) {
+                    result[index++] = key;
+                }
+            }
+            Arrays.sort(result, hashStart, index);
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет все ключи другой гистограммы.
+     *
+     * @param other
+     */
+    public void merge(IntHistogram other) {
+        if (other.isEmpty()) {
+            return;
+        }
+        final int denseEnd = Math.min(DENSE_LIMIT, other.lastKey + 1);
+        for (int key = Math.min(other.firstKey, denseEnd); key < denseEnd; key++) {
+            if (other.dense[key] != 0) {
+                add(key, other.dense[key]);
+            }
+        }
+        if (other.hashKeys != null) {
+            for (int i = 0; i < other.hashKeys.length; i++) {
+                if (other.hashKeys[i] != EMPTY) {
+                    add(other.hashKeys[i], other.hashCounts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает гистограмму с логарифмическими интервалами по ключам этой
+     * гистограммы.
+     *
+     * @return
+     */
+    public LogHistogram toLogHistogram() {
+        LogHistogram result = new LogHistogram();
+        for (int key : keys()) {
+            result.add(key, getCount(key));
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет все ключи.
+     */
+    public void clear() {
+        Arrays.fill(dense, 0);
+        hashKeys = null;
+        hashCounts = null;
+        hashSize = 0;
+        size = 0;
+        totalCount = 0;
+        firstKey = Integer.MAX_VALUE;
+        lastKey = -1;
+    }
+}
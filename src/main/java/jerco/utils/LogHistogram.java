@@ -0,0 +1,170 @@
+package jerco.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Гистограмма неотрицательных целых значений с логарифмическими интервалами:
+ * интервал с номером {@code k > 0} содержит значения от 2<sup>k-1</sup> до
+ * 2<sup>k</sup> - 1, интервал 0 - только значение 0. Количество интервалов
+ * постоянно (64), поэтому гистограмма занимает O(1) памяти при любом
+ * количестве и разбросе значений, в отличие от {@link Bag}.
+ * <p>
+ * Гистограммы, собранные независимо, объединяются методом
+ * {@link #merge(LogHistogram)}.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class LogHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Количество интервалов.
+     */
+    public static final int BINS = 64;
+
+    private final long[] counts = new long[BINS];
+
+    private long totalCount;
+
+    /**
+     * Сумма всех значений с учетом количества.
+     */
+    private double sum;
+
+    public LogHistogram() {
+    }
+
+    /**
+     * Создает копию гистограммы.
+     *
+     * @param other
+     */
+    public LogHistogram(LogHistogram other) {
+        System.arraycopy(other.counts, 0, counts, 0, BINS);
+        totalCount = other.totalCount;
+        sum = other.sum;
+    }
+
+    /**
+     * Возвращает номер интервала, в который попадает значение.
+     *
+     * @param value
+     * @return
+     */
+    public static int bin(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value = " + value + " < 0");
+        }
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Возвращает наименьшее значение интервала.
+     *
+     * @param bin
+     * @return
+     */
+    public static long lowerBound(int bin) {
+        return bin == 0 ? 0 : 1L << (bin - 1);
+    }
+
+    /**
+     * Возвращает наибольшее значение интервала.
+     *
+     * @param bin
+     * @return
+     */
+    public static long upperBound(int bin) {
+        return (1L << bin) - 1;
+    }
+
+    public void add(long value) {
+        add(value, 1);
+    }
+
+    /**
+     * Добавляет значение заданное количество раз.
+     *
+     * @param value
+     * @param count
+     */
+    public void add(long value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count = " + count + " < 0");
+        }
+        counts[bin(value)] += count;
+        totalCount += count;
+        sum += (double) value * count;
+    }
+
+    /**
+     * Добавляет все значения другой гистограммы.
+     *
+     * @param other
+     */
+    public void merge(LogHistogram other) {
+        for (int bin = 0; bin < BINS; bin++) {
+            counts[bin] += other.counts[bin];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+    }
+
+    /**
+     * Удаляет все значения.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+    }
+
+    /**
+     * Возвращает количество значений в интервале.
+     *
+     * @param bin
+     * @return
+     */
+    public long getCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Возвращает количество всех значений.
+     *
+     * @return
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Возвращает среднее значение или NaN, если значений нет.
+     *
+     * @return
+     */
+    public double getMean() {
+        return totalCount == 0 ? Double.NaN : sum / totalCount;
+    }
+
+    /**
+     * Возвращает номер последнего непустого интервала или -1, если значений
+     * нет.
+     *
+     * @return
+     */
+    public int getLastBin() {
+        for (int bin = BINS - 1; bin >= 0; bin--) {
+            if (counts[bin] != 0) {
+                return bin;
+            }
+        }
+        return -1;
+    }
+}
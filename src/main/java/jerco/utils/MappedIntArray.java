@@ -0,0 +1,120 @@
+package jerco.utils;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Массив int, отображенный в память из области файла. Элементы хранятся в
+ * порядке little-endian. Одно отображение {@link MappedByteBuffer} не может
+ * быть больше 2 ГБ, поэтому область делится на сегменты по
+ * 2<sup>{@value #SEGMENT_SHIFT}</sup> элементов, а индекс элемента - long.
+ * <p>
+ * Страницы массива подгружает и вытесняет операционная система, поэтому
+ * массив может быть больше доступной памяти и не занимает кучу. Отображение
+ * освобождается сборщиком мусора, а не при закрытии канала.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class MappedIntArray {
+    /**
+     * Двоичный логарифм количества элементов в сегменте (1 ГБ).
+     */
+    public static final int SEGMENT_SHIFT = 28;
+
+    private final MappedByteBuffer[] buffers;
+
+    private final IntBuffer[] segments;
+
+    private final int shift;
+
+    private final long mask;
+
+    private final long length;
+
+    private MappedIntArray(MappedByteBuffer[] buffers, int shift, long length) {
+        this.buffers = buffers;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.length = length;
+        segments = new IntBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            segments[i] = buffers[i].order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+        }
+    }
+
+    /**
+     * Отображает в память область файла.
+     *
+     * @param channel
+     *            канал файла; для режимов {@link MapMode#READ_WRITE} и
+     *            {@link MapMode#PRIVATE} - открытый для чтения и записи
+     * @param mode
+     *            режим отображения; в режиме {@link MapMode#PRIVATE}
+     *            изменения массива не записываются в файл
+     * @param position
+     *            смещение области в файле, в байтах
+     * @param length
+     *            количество элементов
+     * @return
+     * @throws IOException
+     */
+    public static MappedIntArray map(FileChannel channel, MapMode mode,
+            long position, long length) throws IOException {
+        return map(channel, mode, position, length, SEGMENT_SHIFT);
+    }
+
+    static MappedIntArray map(FileChannel channel, MapMode mode,
+            long position, long length, int shift) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("length = " + length + " < 0");
+        }
+        final long segmentLength = 1L << shift;
+        MappedByteBuffer[] buffers = new MappedByteBuffer[(int) ((length
+                + segmentLength - 1) >>> shift)];
+        for (int i = 0; i < buffers.length; i++) {
+            long count = Math.min(segmentLength, length - (long) i
+                    * segmentLength);
+            buffers[i] = channel.map(mode, position + (long) i
+                    * segmentLength * 4, count * 4);
+        }
+        return new MappedIntArray(buffers, shift, length);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int get(long index) {
+        return segments[(int) (index >>> shift)].get((int) (index & mask));
+    }
+
+    public void set(long index, int value) {
+        segments[(int) (index >>> shift)].put((int) (index & mask), value);
+    }
+
+    /**
+     * Заполняет массив значением.
+     *
+     * @param value
+     */
+    public void fill(int value) {
+        for (long i = 0; i < length; i++) {
+            set(i, value);
+        }
+    }
+
+    /**
+     * Записывает измененные страницы в файл.
+     */
+    public void force() {
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package jerco.utils;
+
+/**
+ * Алгоритм генератора случайных чисел {@link RandomSource}.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public enum RandomAlgorithm {
+    /**
+     * xoshiro256**, {@link Xoshiro256StarStar}. Алгоритм по умолчанию.
+     */
+    XOSHIRO256 {
+        @Override
+        public RandomSource create(long seed) {
+            return new Xoshiro256StarStar(seed);
+        }
+    },
+
+    /**
+     * SplitMix64, {@link SplittableRandomSource}.
+     */
+    SPLITTABLE {
+        @Override
+        public RandomSource create(long seed) {
+            return new SplittableRandomSource(seed);
+        }
+    };
+
+    /**
+     * Создает генератор с заданным зерном.
+     * 
+     * @param seed
+     * @return
+     */
+    public abstract RandomSource create(long seed);
+
+    /**
+     * Создает генератор со случайным зерном.
+     * 
+     * @return
+     */
+    public RandomSource create() {
+        return create(RandomSource.randomSeed());
+    }
+
+    /**
+     * Создает генератор потока с заданными номерами (см.
+     * {@link RandomSource#streamSeed(long, long...)}).
+     * 
+     * @param masterSeed
+     *            главное зерно
+     * @param indexes
+     *            номера потока
+     * @return
+     */
+    public RandomSource stream(long masterSeed, long... indexes) {
+        return create(RandomSource.streamSeed(masterSeed, indexes));
+    }
+}
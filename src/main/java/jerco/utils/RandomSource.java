@@ -0,0 +1,152 @@
+package jerco.utils;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Быстрый несинхронизированный генератор случайных чисел.
+ * <p>
+ * В отличие от {@link Random} и {@link Math#random()}, состояние генератора
+ * не защищено от одновременного доступа: каждый поток или эксперимент должен
+ * иметь собственный генератор. Независимые генераторы создаются методом
+ * {@link #split()} либо по главному зерну и номеру потока
+ * ({@link RandomAlgorithm#stream(long, long...)}), поэтому результаты не
+ * зависят от количества потоков.
+ * <p>
+ * Класс наследует {@link Random}, чтобы генератор можно было передать
+ * существующему коду. Все методы {@link Random} выражены через
+ * {@link #nextLong()}; задать зерно после создания нельзя.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public abstract class RandomSource extends Random {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Приращение SplitMix64 (дробная часть золотого сечения).
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Счетчик, отличающий случайные зерна, полученные одновременно.
+     */
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(
+            System.currentTimeMillis());
+
+    /**
+     * Истина после завершения конструктора {@link Random}, который вызывает
+     * {@link #setSeed(long)}.
+     */
+    private final boolean constructed;
+
+    /**
+     * Зерно, по которому создан генератор.
+     */
+    private final long seed;
+
+    protected RandomSource(long seed) {
+        super(0);
+        this.seed = seed;
+        this.constructed = true;
+    }
+
+    /**
+     * Возвращает зерно, по которому создан генератор.
+     * 
+     * @return
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public abstract long nextLong();
+
+    /**
+     * Создает новый генератор, последовательность которого не зависит от
+     * последовательности этого генератора. Состояние этого генератора
+     * изменяется.
+     * 
+     * @return
+     */
+    public abstract RandomSource split();
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Использует старшие 53 бита {@link #nextLong()}.
+     */
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Не поддерживается: зерно задается при создании генератора.
+     * 
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (constructed) {
+            throw new UnsupportedOperationException(
+                    "Зерно задается при создании генератора");
+        }
+    }
+
+    /**
+     * Перемешивающая функция SplitMix64: переводит близкие значения в
+     * далекие.
+     * 
+     * @param z
+     * @return
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Вычисляет зерно потока по главному зерну и номерам потока (например,
+     * номеру шага сценария и номеру эксперимента). Одинаковые аргументы дают
+     * одинаковое зерно, различающиеся - независимые зерна.
+     * 
+     * @param masterSeed
+     * @param indexes
+     * @return
+     */
+    public static long streamSeed(long masterSeed, long... indexes) {
+        long result = mix64(masterSeed);
+        for (long index : indexes) {
+            result = mix64(result + GOLDEN_GAMMA * (index + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает случайное зерно для генераторов, которым зерно не задано.
+     * 
+     * @return
+     */
+    public static long randomSeed() {
+        return mix64(System.nanoTime())
+                ^ mix64(SEED_UNIQUIFIER.getAndAdd(GOLDEN_GAMMA));
+    }
+}
@@ -0,0 +1,180 @@
+package jerco.utils;
+
+import java.io.Serializable;
+
+/**
+ * Накапливает количество, среднее, дисперсию, минимум и максимум
+ * последовательности значений, не храня сами значения. Дисперсия
+ * обновляется по алгоритму Уэлфорда, который не теряет точность при большом
+ * количестве близких значений.
+ * <p>
+ * Накопители, собранные независимо (например, в разных потоках или
+ * процессах), объединяются методом {@link #merge(RunningStatistics)}; результат
+ * совпадает с накопителем, которому переданы значения обоих. Среднее
+ * вычисляется по сумме значений, поэтому для целых значений (с суммой меньше
+ * 2<sup>53</sup>) оно точно и не зависит от порядка добавления и
+ * объединения.
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public final class RunningStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+
+    private double mean;
+
+    private double sum;
+
+    /**
+     * Сумма квадратов отклонений от среднего.
+     */
+    private double m2;
+
+    private double min = Double.NaN;
+
+    private double max = Double.NaN;
+
+    public RunningStatistics() {
+    }
+
+    /**
+     * Создает копию накопителя.
+     *
+     * @param other
+     */
+    public RunningStatistics(RunningStatistics other) {
+        this.count = other.count;
+        this.mean = other.mean;
+        this.sum = other.sum;
+        this.m2 = other.m2;
+        this.min = other.min;
+        this.max = other.max;
+    }
+
+    /**
+     * Добавляет значение.
+     *
+     * @param value
+     */
+    public void add(double value) {
+        count++;
+        sum += value;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (count == 1) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    /**
+     * Добавляет все значения другого накопителя (формула Чана).
+     *
+     * @param other
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            sum = other.sum;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        sum += other.sum;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Удаляет все значения.
+     */
+    public void clear() {
+        count = 0;
+        mean = 0;
+        sum = 0;
+        m2 = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Возвращает среднее значение или NaN, если значений нет.
+     *
+     * @return
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Возвращает несмещенную оценку дисперсии или NaN, если значений меньше
+     * двух.
+     *
+     * @return
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Возвращает стандартную ошибку среднего: среднеквадратичное отклонение,
+     * деленное на корень из количества значений.
+     *
+     * @return
+     */
+    public double getStandardError() {
+        return Math.sqrt(getVariance() / count);
+    }
+
+    /**
+     * Возвращает минимальное значение или NaN, если значений нет.
+     *
+     * @return
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Возвращает максимальное значение или NaN, если значений нет.
+     *
+     * @return
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s ± %s (n = %d, min = %s, max = %s)",
+                getMean(), getStandardError(), count, min, max);
+    }
+}
@@ -0,0 +1,44 @@
+package jerco.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Генератор на основе {@link SplittableRandom} (SplitMix64).
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class SplittableRandomSource extends RandomSource {
+    private static final long serialVersionUID = 1L;
+
+    private final SplittableRandom random;
+
+    public SplittableRandomSource(long seed) {
+        this(seed, new SplittableRandom(seed));
+    }
+
+    private SplittableRandomSource(long seed, SplittableRandom random) {
+        super(seed);
+        this.random = random;
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public RandomSource split() {
+        return new SplittableRandomSource(getSeed(), random.split());
+    }
+}
@@ -0,0 +1,93 @@
+package jerco.utils;
+
+/**
+ * Генератор xoshiro256** (Blackman, Vigna). Состояние - 256 бит, период
+ * 2^256 - 1. Состояние заполняется по зерну генератором SplitMix64, как
+ * рекомендуют авторы алгоритма.
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public final class Xoshiro256StarStar extends RandomSource {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Многочлен перехода на 2^128 шагов вперед.
+     */
+    private static final long[] JUMP = { 0x180ec6d33cfd0abaL,
+            0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL };
+
+    private long s0;
+
+    private long s1;
+
+    private long s2;
+
+    private long s3;
+
+    public Xoshiro256StarStar(long seed) {
+        super(seed);
+        long z = seed;
+        s0 = mix64(z += 0x9e3779b97f4a7c15L);
+        s1 = mix64(z += 0x9e3779b97f4a7c15L);
+        s2 = mix64(z += 0x9e3779b97f4a7c15L);
+        s3 = mix64(z + 0x9e3779b97f4a7c15L);
+    }
+
+    private Xoshiro256StarStar(Xoshiro256StarStar source) {
+        super(source.getSeed());
+        s0 = source.s0;
+        s1 = source.s1;
+        s2 = source.s2;
+        s3 = source.s3;
+    }
+
+    @Override
+    public long nextLong() {
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Новый генератор продолжает последовательность этого генератора, а
+     * этот генератор переходит на 2^128 шагов вперед, поэтому
+     * последовательности не пересекаются.
+     */
+    @Override
+    public RandomSource split() {
+        Xoshiro256StarStar result = new Xoshiro256StarStar(this);
+        jump();
+        return result;
+    }
+
+    private void jump() {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (long word : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((word & (1L << bit)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+}
@@ -0,0 +1,55 @@
+package jerco.network;
+
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Сравнение скорости цикла "заражение - поиск кластеров - сбор размеров
+ * кластеров", который выполняет каждый сценарий, для обхода в ширину и
+ * объединения множеств.
+ * <p>
+ * Запуск (размер стороны квадратной решетки задается аргументом):
+ * 
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.ClusterLabelingBenchmark 1000
+ * </pre>
+ * 
+ * @author Leonid Vygovskiy
+ * 
+ */
+public class ClusterLabelingBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double p = args.length > 1 ? Double.parseDouble(args[1]) : 0.593;
+
+        RegularLattice net = new RegularLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        System.out.printf("sites = %d, p = %.3f%n", net.size(), p);
+        for (LabelingMethod method : LabelingMethod.values()) {
+            net.setLabelingMethod(method);
+            System.out.printf("%-13s infect + findClusters %.1f ms%n", method,
+                    measure(net, p));
+        }
+    }
+
+    private static double measure(Net net, double p) {
+        long total = 0;
+        long checksum = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            net.infect(p);
+            checksum += net.getClustersSizes().length;
+            // Первый проход прогревочный
+            if (round > 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return total / 1e6 / ROUNDS;
+    }
+}
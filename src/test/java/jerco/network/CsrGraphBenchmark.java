@@ -0,0 +1,108 @@
+package jerco.network;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Сравнение объема памяти и скорости поиска кластеров для сети из отдельных
+ * объектов (множество связей в каждом узле) и уплотненного графа
+ * {@link CsrGraph}.
+ * <p>
+ * Запуск (размер стороны квадратной решетки задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes:... \
+ *     jerco.network.CsrGraphBenchmark 1000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class CsrGraphBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double p = args.length > 1 ? Double.parseDouble(args[1]) : 0.593;
+
+        long base = usedMemory();
+        List<Layer> layers = RectGenerator.INSTANCE.generate(side, side);
+        List<Node> nodes = new ArrayList<Node>(side * side);
+        for (Layer layer : layers) {
+            for (Node node : layer) {
+                nodes.add(node);
+            }
+        }
+        long objectGraph = usedMemory() - base;
+
+        infect(nodes, p);
+        double objectTime = measure(nodes, null, null);
+
+        CsrGraph graph = CsrGraph.build(nodes, nodes.size());
+        NetState state = new NetState(graph.size());
+        for (int i = 0; i < graph.size(); i++) {
+            graph.getNode(i).bind(state, i);
+        }
+        long compactGraph = usedMemory() - base;
+        double compactTime = measure(nodes, graph, state);
+
+        System.out.printf("sites = %d, p = %.3f%n", nodes.size(), p);
+        System.out.printf("object graph: %,d MB, findClusters %.1f ms%n",
+                objectGraph >> 20, objectTime);
+        System.out.printf("csr graph:    %,d MB, findClusters %.1f ms%n",
+                compactGraph >> 20, compactTime);
+    }
+
+    private static void infect(List<Node> nodes, double p) {
+        Random random = new Random(1);
+        for (Node node : nodes) {
+            node.setInfected(random.nextDouble() < p);
+        }
+    }
+
+    /**
+     * Возвращает среднее время поиска кластеров в миллисекундах. Если граф не
+     * задан, кластеры строятся методом {@link Cluster#build()}.
+     */
+    @SuppressWarnings("deprecation")
+    private static double measure(final List<Node> sites, CsrGraph graph,
+            NetState state) {
+        NetImpl net = new NetImpl() {
+            @Override
+            public Iterator<Node> iterator() {
+                return sites.iterator();
+            }
+
+            @Override
+            public int size() {
+                return sites.size();
+            }
+        };
+        net.graph = graph;
+        net.state = state;
+
+        long total = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            net.findClusters();
+            // Первый проход прогревочный
+            if (round > 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        return total / 1e6 / ROUNDS;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
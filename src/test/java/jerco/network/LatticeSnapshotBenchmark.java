@@ -0,0 +1,118 @@
+package jerco.network;
+
+import java.io.File;
+
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Сравнивает сохранение и загрузку решетки в текстовом формате
+ * ({@link RegularLattice#save(File)}) и в формате снимка
+ * ({@link RegularLattice#saveSnapshot(File, boolean)}). Отдельно измеряется
+ * чтение снимка без построения решетки ({@link LatticeSnapshot#read(File)}).
+ * <p>
+ * С аргументом implicit измеряется сохранение и загрузка решетки с неявной
+ * структурой ({@link ImplicitLattice#load(File)}): с сохраненными метками
+ * кластеров и с поиском кластеров после загрузки. Так можно проверить
+ * решетки размером 10^8 узлов, для которых узлы построить нельзя.
+ * <p>
+ * Запуск (сторона решетки задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.LatticeSnapshotBenchmark 1000
+ * java -Xmx2g -cp target/classes:target/test-classes:... \
+ *     jerco.network.LatticeSnapshotBenchmark 10000 implicit
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class LatticeSnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        if (args.length > 1 && "implicit".equals(args[1])) {
+            implicit(side);
+            return;
+        }
+        File text = File.createTempFile("lattice", ".txt");
+        File snapshot = File.createTempFile("lattice", ".bin");
+        text.deleteOnExit();
+        snapshot.deleteOnExit();
+
+        RegularLattice net = new RegularLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        net.infect(0.6);
+        RegularLattice loaded = new RegularLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        System.out.printf("sites = %d%n", net.size());
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            net.save(text);
+            double textSave = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            loaded.load(text);
+            double textLoad = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            net.saveSnapshot(snapshot, false);
+            double binarySave = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            loaded.load(snapshot);
+            double binaryLoad = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            LatticeSnapshot.read(snapshot);
+            double binaryRead = (System.nanoTime() - start) / 1e6;
+
+            long binaryLength = snapshot.length();
+            net.saveSnapshot(snapshot, true);
+            start = System.nanoTime();
+            loaded.load(snapshot);
+            double labeledLoad = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("text: save %8.1f ms, load %8.1f ms, %9d bytes%n"
+                    + "snapshot: save %8.1f ms, load %8.1f ms "
+                    + "(read %6.2f ms, with labels %8.1f ms), %9d bytes%n",
+                    textSave, textLoad, text.length(), binarySave, binaryLoad,
+                    binaryRead, labeledLoad, binaryLength);
+        }
+    }
+
+    private static void implicit(int side) throws Exception {
+        File labeled = File.createTempFile("lattice", ".bin");
+        File unlabeled = File.createTempFile("lattice", ".bin");
+        labeled.deleteOnExit();
+        unlabeled.deleteOnExit();
+
+        ImplicitLattice net = new ImplicitLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        net.infect(0.6);
+        System.out.printf("sites = %d, clusters = %d%n", net.size(), net
+                .getClustersSizes().length);
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            net.saveSnapshot(labeled, true);
+            double labeledSave = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            ImplicitLattice.load(labeled);
+            double labeledLoad = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            net.saveSnapshot(unlabeled, false);
+            double unlabeledSave = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            ImplicitLattice.load(unlabeled);
+            double unlabeledLoad = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("labels: save %8.1f ms, load %8.1f ms, "
+                    + "%10d bytes%n"
+                    + "no labels: save %8.1f ms, load %8.1f ms, "
+                    + "%10d bytes%n", labeledSave, labeledLoad, labeled
+                    .length(), unlabeledSave, unlabeledLoad, unlabeled
+                    .length());
+        }
+    }
+}
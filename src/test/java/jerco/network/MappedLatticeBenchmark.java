@@ -0,0 +1,78 @@
+package jerco.network;
+
+import java.io.File;
+
+import jerco.network.generators.RectGenerator;
+import jerco.utils.RandomAlgorithm;
+
+/**
+ * Сравнивает заражение и поиск кластеров на решетке в отображенных в память
+ * файлах ({@link MappedLattice}) и на неявной решетке в куче
+ * ({@link ImplicitLattice}), а также сохранение и открытие снимка
+ * отображенной решетки.
+ * <p>
+ * Запуск (сторона решетки и каталог временных файлов задаются аргументами):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.MappedLatticeBenchmark 5000 /tmp
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class MappedLatticeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        File directory = new File(args.length > 1 ? args[1] : System
+                .getProperty("java.io.tmpdir"));
+        NetStructureInfo structureInfo = new NetStructureInfo(side, side,
+                RectGenerator.INSTANCE);
+        System.out.printf("sites = %d%n", (long) side * side);
+
+        MappedLattice mapped = new MappedLattice(structureInfo, directory);
+        File snapshot = File.createTempFile("snapshot", ".bin", directory);
+        snapshot.deleteOnExit();
+        try {
+            for (int round = 0; round < 2; round++) {
+                mapped.setRandom(RandomAlgorithm.XOSHIRO256.create(round));
+                long start = System.nanoTime();
+                mapped.infect(0.5927);
+                double infect = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                int clusters = mapped.getClustersSizes().length;
+                double sizes = (System.nanoTime() - start) / 1e6;
+                System.out.printf("mapped: infect + label %8.1f ms, "
+                        + "sizes %8.1f ms, clusters %d%n", infect, sizes,
+                        clusters);
+            }
+            long start = System.nanoTime();
+            mapped.save(snapshot, true);
+            double save = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            MappedLattice opened = MappedLattice.open(snapshot, directory);
+            double open = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            boolean percolates = opened.hasPercolationCluster();
+            double percolation = (System.nanoTime() - start) / 1e6;
+            opened.close();
+            System.out.printf("snapshot: save %8.1f ms (%d bytes), open "
+                    + "%6.1f ms, percolation check %6.1f ms (%s)%n", save,
+                    snapshot.length(), open, percolation, percolates);
+        } finally {
+            mapped.close();
+        }
+
+        ImplicitLattice implicit = new ImplicitLattice(structureInfo);
+        for (int round = 0; round < 2; round++) {
+            implicit.setRandom(RandomAlgorithm.XOSHIRO256.create(round));
+            long start = System.nanoTime();
+            implicit.infect(0.5927);
+            double infect = (System.nanoTime() - start) / 1e6;
+            System.out.printf("implicit: infect + label %8.1f ms, "
+                    + "clusters %d%n", infect, implicit.getClustersSizes().length);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package jerco.network;
+
+import java.util.concurrent.ForkJoinPool;
+
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Масштабирование параллельного поиска кластеров по полосам в зависимости от
+ * количества потоков. Для сравнения выводится время последовательного
+ * объединения множеств.
+ * <p>
+ * Запуск (размер стороны квадратной решетки и максимальное количество потоков
+ * задаются аргументами):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.ParallelLabelingBenchmark 2000 8
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class ParallelLabelingBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+                .getRuntime().availableProcessors();
+        double p = args.length > 2 ? Double.parseDouble(args[2]) : 0.593;
+
+        RegularLattice net = new RegularLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        net.infect(p);
+        System.out.printf("sites = %d, p = %.3f, cpus = %d%n", net.size(), p,
+                Runtime.getRuntime().availableProcessors());
+
+        net.setLabelingMethod(LabelingMethod.UNION_FIND);
+        double sequential = measure(net);
+        System.out.printf("%-20s %8.1f ms%n", "UNION_FIND", sequential);
+
+        net.setLabelingMethod(LabelingMethod.PARALLEL_UNION_FIND);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            net.setLabelingPool(pool);
+            double time = measure(net);
+            System.out.printf("%-20s %8.1f ms  speedup %.2f%n", threads
+                    + " thread(s)", time, sequential / time);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Измеряет только поиск кластеров: заражение одно и то же.
+     */
+    private static double measure(Net net) {
+        long total = 0;
+        long checksum = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += net.findClusters();
+            // Первый проход прогревочный
+            if (round > 0) {
+                total += System.nanoTime() - start;
+            }
+        }
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+        return total / 1e6 / ROUNDS;
+    }
+}
@@ -0,0 +1,161 @@
+package jerco.network;
+
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import jerco.network.generators.KagomeGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+import jerco.network.io.GraphMLReader;
+
+import org.junit.Test;
+
+public class TestBondPercolation extends TestBase {
+
+    /**
+     * Каждая связь получает один номер с обеих сторон.
+     */
+    @Test
+    public void testEdgeIds() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(5, 4,
+                RectGenerator.INSTANCE));
+        CsrGraph graph = net.getGraph();
+        assertEquals(4 * 4 + 5 * 3, graph.getEdgesCount());
+
+        int[] offsets = graph.getOffsets();
+        int[] neighbors = graph.getNeighbors();
+        int[] edgeIds = graph.getEdgeIds();
+        int[] uses = new int[graph.getEdgesCount()];
+        for (int i = 0; i < graph.size(); i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                uses[edgeIds[k]]++;
+                int j = neighbors[k];
+                boolean found = false;
+                for (int m = offsets[j]; m < offsets[j + 1]; m++) {
+                    if (neighbors[m] == i) {
+                        assertEquals(edgeIds[k], edgeIds[m]);
+                        found = true;
+                    }
+                }
+                assertTrue(found);
+            }
+        }
+        for (int count : uses) {
+            assertEquals(2, count);
+        }
+    }
+
+    @Test
+    public void testAllOrNothing() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(6, 6,
+                new KagomeGenerator()));
+        net.setPercolationMode(PercolationMode.BOND);
+
+        net.infect(1);
+        assertArrayEquals(new int[] { net.size() }, net.getClustersSizes());
+        assertTrue(net.hasPercolationCluster());
+        assertEquals(net.getBonds().size(), net.getBonds().openCount());
+
+        net.infect(0);
+        int[] singletons = new int[net.size()];
+        Arrays.fill(singletons, 1);
+        assertArrayEquals(singletons, net.getClustersSizes());
+        assertFalse(net.hasPercolationCluster());
+        for (Node node : net) {
+            assertTrue(node.isInfected());
+            assertTrue(node.isInCluster());
+        }
+    }
+
+    /**
+     * Кластеры совпадают с компонентами связности графа из открытых связей,
+     * найденными обходом в глубину.
+     */
+    @Test
+    public void testSameAsTraversal() {
+        NetStructureInfo structureInfo = new NetStructureInfo(20, 15,
+                NetGenerators.Triangle.getGenerator());
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice net = new RegularLattice(structureInfo);
+        net.setPercolationMode(PercolationMode.BOND);
+        CsrGraph graph = net.getGraph();
+        BondState bonds = net.getBonds();
+        Random random = new Random(3);
+        for (int i = 0; i < net.size(); i++) {
+            net.getState().setInfected(i, true);
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (int edge = 0; edge < bonds.size(); edge++) {
+                bonds.setOpen(edge, random.nextDouble() < 0.35);
+            }
+            net.findClusters();
+            assertArrayEquals(components(graph, bonds), net.getClustersSizes());
+
+            boolean percolation = net.hasPercolationCluster();
+            ClusterLabeling labeling = new ClusterLabeling(graph,
+                    net.getBoundary());
+            assertEquals(percolation, labeling.percolates(net.getState(),
+                    bonds, net.getSpanningRule()));
+        }
+    }
+
+    private static int[] components(CsrGraph graph, BondState bonds) {
+        int[] offsets = graph.getOffsets();
+        int[] neighbors = graph.getNeighbors();
+        int[] edgeIds = graph.getEdgeIds();
+        boolean[] visited = new boolean[graph.size()];
+        int[] stack = new int[graph.size()];
+        int[] sizes = new int[graph.size()];
+        int count = 0;
+        for (int start = 0; start < graph.size(); start++) {
+            if (visited[start]) {
+                continue;
+            }
+            int top = 0;
+            int size = 0;
+            stack[top++] = start;
+            visited[start] = true;
+            while (top > 0) {
+                int current = stack[--top];
+                size++;
+                for (int k = offsets[current]; k < offsets[current + 1]; k++) {
+                    int linked = neighbors[k];
+                    if (!visited[linked] && bonds.isOpen(edgeIds[k])) {
+                        visited[linked] = true;
+                        stack[top++] = linked;
+                    }
+                }
+            }
+            sizes[count++] = size;
+        }
+        int[] result = Arrays.copyOf(sizes, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testGraphML() throws Exception {
+        NetImpl net = new NetImpl(new GraphMLReader(
+                loadTestFile("star.graphml")));
+        net.setPercolationMode(PercolationMode.BOND);
+        assertEquals(6, net.getGraph().getEdgesCount());
+
+        net.infect(1);
+        assertTrue(net.hasPercolationCluster());
+        assertTrue(net.percolates(1));
+        assertFalse(net.percolates(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotCompacted() {
+        new RegularLattice().setPercolationMode(PercolationMode.BOND);
+    }
+}
@@ -0,0 +1,216 @@
+package jerco.network;
+
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import jerco.network.generators.CylinderGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerators;
+
+import org.junit.Test;
+
+public class TestClusterLabeling extends TestBase {
+
+    /**
+     * Объединение множеств находит те же кластеры, что и обход в ширину.
+     */
+    @Test
+    public void testSameAsBreadthFirst() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            RegularLattice net = new RegularLattice();
+            net.load(loadTestFile(String.format("cluster 5x5 test0%d.txt", i)));
+
+            net.setLabelingMethod(LabelingMethod.BREADTH_FIRST);
+            int expectedCount = net.findClusters();
+            int[] expectedSizes = net.getClustersSizes();
+            boolean expectedPercolation = net.hasPercolationCluster();
+            int[] expectedPercolationSizes = sizes(net.getPercolationClusters());
+
+            net.setLabelingMethod(LabelingMethod.UNION_FIND);
+            assertEquals(expectedCount, net.findClusters());
+            assertArrayEquals(expectedSizes, net.getClustersSizes());
+            assertArrayEquals(expectedSizes, sizes(net.getClusters()));
+            assertEquals(expectedPercolation, net.hasPercolationCluster());
+            assertArrayEquals(expectedPercolationSizes,
+                    sizes(net.getPercolationClusters()));
+        }
+    }
+
+    /**
+     * Метки узлов одного кластера совпадают, узлы разных кластеров имеют
+     * разные метки.
+     */
+    @Test
+    public void testLabelsMatchClusters() {
+        NetStructureInfo structureInfo = new NetStructureInfo(40, 30,
+                NetGenerators.Triangle.getGenerator());
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice net = new RegularLattice(structureInfo);
+        Random random = new Random(7);
+        for (Node node : net) {
+            node.setInfected(random.nextDouble() < 0.45);
+        }
+        net.findClusters();
+
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph());
+        int count = labeling.label(net.getState());
+        assertEquals(net.getClusters().size(), count);
+
+        boolean[] usedRoots = new boolean[net.size()];
+        for (Cluster cluster : net.getClusters()) {
+            int root = labeling.getLabel(cluster.getNodes().get(0).getIndex());
+            assertFalse(usedRoots[root]);
+            usedRoots[root] = true;
+            assertEquals(cluster.size(), labeling.getSizes()[root]);
+            for (Node node : cluster) {
+                assertEquals(root, labeling.getLabel(node.getIndex()));
+            }
+        }
+        for (Node node : net) {
+            if (!node.isInfected()) {
+                assertEquals(ClusterLabeling.EMPTY,
+                        labeling.getLabel(node.getIndex()));
+            }
+        }
+    }
+
+    @Test
+    public void testPercolationNodesMarked() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(10, 10,
+                new CylinderGenerator()));
+        net.setLabelingMethod(LabelingMethod.UNION_FIND);
+        net.infect(1);
+        assertEquals(1, net.getClustersSizes().length);
+        assertTrue(net.hasPercolationCluster());
+        for (Node node : net) {
+            assertTrue(node.isInCluster());
+            assertTrue(node.isInPercolationCluster());
+        }
+
+        net.infect(0);
+        assertEquals(0, net.getClustersSizes().length);
+        assertFalse(net.hasPercolationCluster());
+        assertTrue(net.getPercolationClusters().isEmpty());
+    }
+
+    /**
+     * Параллельный поиск по полосам дает те же кластеры и те же касания
+     * границ, что и последовательный, при любом разбиении на полосы.
+     */
+    @Test
+    public void testParallelSameAsSequential() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            NetStructureInfo triangle = new NetStructureInfo(31, 23,
+                    NetGenerators.Triangle.getGenerator());
+            triangle.addWrapper(new LeftRightBoundsWrapper());
+            NetStructureInfo cylinder = new NetStructureInfo(17, 40,
+                    new CylinderGenerator());
+            Random random = new Random(5);
+            for (NetStructureInfo structureInfo : new NetStructureInfo[] {
+                    triangle, cylinder }) {
+                RegularLattice net = new RegularLattice(structureInfo);
+                ClusterLabeling sequential = new ClusterLabeling(
+                        net.getGraph(), net.getBoundary());
+                ClusterLabeling parallel = new ClusterLabeling(net.getGraph(),
+                        net.getBoundary());
+                for (int strips : new int[] { 1, 2, 5, 23, 40 }) {
+                    for (int i = 0; i < net.size(); i++) {
+                        net.getState().setInfected(i,
+                                random.nextDouble() < 0.55);
+                    }
+                    int count = sequential.label(net.getState());
+                    assertEquals(count, parallel.label(net.getState(),
+                            net.stripStarts(strips), pool));
+                    assertSameClusters(sequential, parallel);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelMethod() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int i = 1; i <= 6; i++) {
+                RegularLattice net = new RegularLattice();
+                net.load(loadTestFile(String.format(
+                        "cluster 5x5 test0%d.txt", i)));
+
+                net.setLabelingMethod(LabelingMethod.UNION_FIND);
+                int expectedCount = net.findClusters();
+                int[] expectedSizes = net.getClustersSizes();
+                boolean expectedPercolation = net.hasPercolationCluster();
+
+                net.setLabelingMethod(LabelingMethod.PARALLEL_UNION_FIND);
+                net.setLabelingPool(pool);
+                assertEquals(expectedCount, net.findClusters());
+                assertArrayEquals(expectedSizes, net.getClustersSizes());
+                assertArrayEquals(expectedSizes, sizes(net.getClusters()));
+                assertEquals(expectedPercolation, net.hasPercolationCluster());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadStrips() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(5, 5,
+                new CylinderGenerator()));
+        new ClusterLabeling(net.getGraph()).label(net.getState(), new int[] {
+                0, 10, 10 }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Проверяет, что разбиения узлов на кластеры совпадают, а кластеры имеют
+     * одинаковые маски границ.
+     */
+    private static void assertSameClusters(ClusterLabeling expected,
+            ClusterLabeling actual) {
+        int[] expectedLabels = expected.getLabels();
+        int[] actualLabels = actual.getLabels();
+        Map<Integer, Integer> roots = new HashMap<Integer, Integer>();
+        for (int i = 0; i < expectedLabels.length; i++) {
+            if (expectedLabels[i] == ClusterLabeling.EMPTY) {
+                assertEquals(ClusterLabeling.EMPTY, actualLabels[i]);
+                continue;
+            }
+            Integer root = roots.get(expectedLabels[i]);
+            if (root == null) {
+                roots.put(expectedLabels[i], actualLabels[i]);
+            } else {
+                assertEquals(root.intValue(), actualLabels[i]);
+            }
+            assertEquals(expected.getBoundsMask(i), actual.getBoundsMask(i));
+        }
+        assertEquals(roots.size(), new HashSet<Integer>(roots.values()).size());
+        assertArrayEquals(expected.getClustersSizes(),
+                actual.getClustersSizes());
+    }
+
+    private static int[] sizes(Iterable<Cluster> clusters) {
+        int count = 0;
+        for (@SuppressWarnings("unused")
+        Cluster cluster : clusters) {
+            count++;
+        }
+        int[] result = new int[count];
+        count = 0;
+        for (Cluster cluster : clusters) {
+            result[count++] = cluster.size();
+        }
+        return result;
+    }
+}
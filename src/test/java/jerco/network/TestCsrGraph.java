@@ -0,0 +1,148 @@
+package jerco.network;
+
+import static jerco.TestUtils.checkNode;
+import static jerco.TestUtils.checkNodes;
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestCsrGraph extends TestBase {
+
+    /**
+     * Решетка 3x3 после генерации уплотнена, связи узлов не изменились.
+     *
+     * <pre>
+     * 0 1 2
+     * 3 4 5
+     * 6 7 8
+     * </pre>
+     */
+    @Test
+    public void testRectangle3x3() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(3, 3,
+                RectGenerator.INSTANCE));
+        CsrGraph graph = net.getGraph();
+
+        assertEquals(9, graph.size());
+        assertArrayEquals(new int[] { 0, 2, 5, 7, 10, 14, 17, 19, 22, 24 },
+                graph.getOffsets());
+
+        for (int i = 0; i < graph.size(); i++) {
+            Node node = graph.getNode(i);
+            assertTrue(node.isCompacted());
+            assertEquals(i, node.getIndex());
+        }
+
+        checkNode(graph.getNode(0), 0, 1, 3);
+        checkNode(graph.getNode(4), 4, 1, 3, 5, 7);
+        checkNode(graph.getNode(8), 8, 5, 7);
+
+        Node center = graph.getNode(4);
+        assertEquals(4, center.getLinkedNodes().size());
+        assertTrue(center.getLinkedNodes().contains(graph.getNode(1)));
+        assertFalse(center.getLinkedNodes().contains(graph.getNode(0)));
+    }
+
+    /**
+     * Порядок соседей совпадает с порядком множества связей до уплотнения.
+     */
+    @Test
+    public void testNeighborsOrder() {
+        Node a = new Node(5);
+        Node b = new Node(2);
+        Node c = new Node(9);
+        Node.linkNodes(a, c);
+        Node.linkNodes(a, b);
+
+        CsrGraph graph = CsrGraph.build(Arrays.asList(a, b, c), 3);
+        assertArrayEquals(new int[] { 1, 2, 0, 0 }, graph.getNeighbors());
+        checkNodes(a, 2, 9);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLinkCompacted() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(2, 2,
+                RectGenerator.INSTANCE));
+        Node.linkNodes(net.getGraph().getNode(0), net.getGraph().getNode(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLinkOutsideNet() {
+        Node a = new Node();
+        Node b = new Node();
+        Node.linkNodes(a, b);
+        CsrGraph.build(Arrays.asList(a), 1);
+    }
+
+    /**
+     * Поиск кластеров по уплотненному графу дает те же кластеры, что и
+     * построение кластеров по отдельным узлам.
+     */
+    @Test
+    public void testClustersSameAsNodeBuild() throws Exception {
+        RegularLattice net = new RegularLattice();
+        net.load(loadTestFile(FILE_CLUSTER_5X5));
+        assertSame(4, net.findClusters());
+
+        for (Cluster cluster : net.getClusters()) {
+            Node first = cluster.getNodes().get(0);
+            net.resetClusters();
+            Cluster expected = new Cluster(first);
+            expected.build();
+
+            assertEquals(expected.getNodes(), cluster.getNodes());
+            assertEquals(expected.getBounds(), cluster.getBounds());
+        }
+    }
+
+    /**
+     * Повторные и обратные связи, а также связи узла с самим собой
+     * отбрасываются; соседи идут по возрастанию индекса.
+     *
+     * <pre>
+     * 0 ‒‒ 1 ‒‒ 2   3
+     *  ╲_______╱
+     * </pre>
+     */
+    @Test
+    public void testFromEdges() {
+        int first = Node.getIdCounter();
+        CsrGraph graph = CsrGraph.fromEdges(new String[] { "a", "b", "c",
+                "d" }, new int[] { 2, 1, 0, 1, 0, 2, 1 }, new int[] { 1, 0,
+                1, 2, 2, 0, 1 }, 7);
+
+        assertEquals(4, graph.size());
+        assertEquals(3, graph.getEdgesCount());
+        assertArrayEquals(new int[] { 0, 2, 4, 6, 6 }, graph.getOffsets());
+        assertArrayEquals(new int[] { 1, 2, 0, 2, 0, 1 }, graph.getNeighbors());
+
+        for (int i = 0; i < graph.size(); i++) {
+            Node node = graph.getNode(i);
+            assertTrue(node.isCompacted());
+            assertEquals(i, node.getIndex());
+            assertEquals(first + i, node.getId());
+        }
+        assertEquals("c", graph.getNode(2).getLabel());
+        checkNode(graph.getNode(1), first + 1, first, first + 2);
+        assertEquals(0, graph.getNode(3).getLinkedNodes().size());
+
+        assertEquals(4, graph.nodeSet().size());
+        assertTrue(graph.nodeSet().contains(graph.getNode(3)));
+        assertFalse(graph.nodeSet().contains(new Node()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromEdgesOutside() {
+        CsrGraph.fromEdges(new String[] { "a" }, new int[] { 0 },
+                new int[] { 1 }, 1);
+    }
+}
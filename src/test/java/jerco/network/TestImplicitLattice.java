@@ -0,0 +1,162 @@
+package jerco.network;
+
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jerco.network.generators.CylinderGenerator;
+import jerco.network.generators.KagomeGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestImplicitLattice extends TestBase {
+
+    @Test
+    public void testRectangle() {
+        checkSameAsGenerated(RectGenerator.INSTANCE, 1, 1, false);
+        checkSameAsGenerated(RectGenerator.INSTANCE, 4, 3, false);
+        checkSameAsGenerated(RectGenerator.INSTANCE, 5, 5, true);
+    }
+
+    @Test
+    public void testTriangle() {
+        NetGenerator generator = NetGenerators.Triangle.getGenerator();
+        checkSameAsGenerated(generator, 3, 4, false);
+        checkSameAsGenerated(generator, 5, 5, true);
+    }
+
+    @Test
+    public void testKagome() {
+        checkSameAsGenerated(new KagomeGenerator(), 3, 5, false);
+        checkSameAsGenerated(new KagomeGenerator(), 5, 9, true);
+        checkSameAsGenerated(new KagomeGenerator(), 6, 8, false);
+    }
+
+    @Test
+    public void testCylinder() {
+        checkSameAsGenerated(new CylinderGenerator(), 2, 3, false);
+        checkSameAsGenerated(new CylinderGenerator(), 5, 4, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedWrapper() {
+        NetStructureInfo structureInfo = new NetStructureInfo(3, 3,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new jerco.network.generators.RegularWrapper() {
+            @Override
+            public void wrap(List<Layer> layers) {
+            }
+        });
+        new ImplicitLattice(structureInfo);
+    }
+
+    /**
+     * Кластеры и перколяция на неявной решетке совпадают с результатами
+     * обычной решетки.
+     */
+    @Test
+    public void testClustersSameAsRegular() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            Node.resetIdCounter();
+            RegularLattice net = new RegularLattice();
+            net.load(loadTestFile(String.format("cluster 5x5 test0%d.txt", i)));
+            net.findClusters();
+
+            ImplicitLattice lattice = new ImplicitLattice(new NetStructureInfo(
+                    5, 5, RectGenerator.INSTANCE));
+            int index = 0;
+            for (Node node : net) {
+                lattice.getNode(index++).setInfected(node.isInfected());
+            }
+
+            assertEquals(net.findClusters(), lattice.findClusters());
+            assertEquals(clusterSizes(net), clusterSizes(lattice));
+            assertEquals(net.hasPercolationCluster(),
+                    lattice.hasPercolationCluster());
+            assertEquals(clusterSizes(net.getPercolationClusters()),
+                    clusterSizes(lattice.getPercolationClusters()));
+            for (Cluster cluster : lattice.getPercolationClusters()) {
+                for (Node node : cluster) {
+                    assertTrue(node.isInPercolationCluster());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInfect() {
+        ImplicitLattice lattice = new ImplicitLattice(new NetStructureInfo(10,
+                10, RectGenerator.INSTANCE));
+        lattice.infect(1);
+        assertEquals(1, lattice.getClusters().size());
+        assertEquals(100, lattice.getClusters().get(0).size());
+        assertTrue(lattice.hasPercolationCluster());
+
+        lattice.infect(0);
+        assertTrue(lattice.getClusters().isEmpty());
+        assertFalse(lattice.hasPercolationCluster());
+
+        for (Node node : lattice) {
+            assertFalse(node.isInfected());
+        }
+    }
+
+    private void checkSameAsGenerated(NetGenerator generator, int width,
+            int height, boolean leftRight) {
+        NetStructureInfo structureInfo = new NetStructureInfo(width, height,
+                generator);
+        if (leftRight) {
+            structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        }
+
+        Node.resetIdCounter();
+        RegularLattice net = new RegularLattice(structureInfo);
+        ImplicitLattice lattice = new ImplicitLattice(structureInfo);
+        CsrGraph graph = net.getGraph();
+        StencilTopology topology = lattice.getTopology();
+
+        assertEquals(graph.size(), lattice.size());
+        assertEquals(net.boundsCounts(), lattice.boundsCounts());
+
+        int[] expected = new int[graph.maxDegree()];
+        int[] actual = new int[topology.maxDegree()];
+        for (int i = 0; i < graph.size(); i++) {
+            int count = graph.neighbors(i, expected);
+            assertEquals(count, topology.neighbors(i, actual));
+            int[] sorted = Arrays.copyOf(expected, count);
+            Arrays.sort(sorted);
+            assertArrayEquals("node " + i, sorted, Arrays.copyOf(actual, count));
+
+            Node node = graph.getNode(i);
+            Node site = lattice.getNode(i);
+            assertEquals(node.isInBound(), site.isInBound());
+            if (node.isInBound()) {
+                assertEquals(node.getBound(), site.getBound());
+            }
+            assertEquals(node.getLinkedNodes().size(), site.getLinkedNodes()
+                    .size());
+        }
+    }
+
+    private static List<Integer> clusterSizes(Net net) {
+        return clusterSizes(net.getClusters());
+    }
+
+    private static List<Integer> clusterSizes(List<Cluster> clusters) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (Cluster cluster : clusters) {
+            sizes.add(cluster.size());
+        }
+        return sizes;
+    }
+}
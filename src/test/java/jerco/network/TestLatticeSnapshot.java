@@ -0,0 +1,334 @@
+package jerco.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import jerco.TestUtils;
+import jerco.network.RegularLattice.BadNetFileFormatException;
+import jerco.network.generators.CylinderGenerator;
+import jerco.network.generators.KagomeGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RegularWrapper;
+import jerco.network.generators.RectGenerator;
+import jerco.utils.RandomAlgorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLatticeSnapshot extends TestBase {
+    private File file;
+
+    @Before
+    public void createDirectory() {
+        new File(TestUtils.TEST_TEMP_DIR).mkdirs();
+        file = new File(TestUtils.TEST_TEMP_DIR + "/snapshot.bin");
+    }
+
+    private static RegularLattice infected(NetGenerator generator, int width,
+            int height, double p) {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(width,
+                height, generator));
+        net.setRandom(RandomAlgorithm.XOSHIRO256.create(42));
+        net.infect(p);
+        return net;
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        NetGenerator[] generators = { RectGenerator.INSTANCE,
+                NetGenerators.Triangle.getGenerator(), new KagomeGenerator(),
+                new CylinderGenerator() };
+        for (NetGenerator generator : generators) {
+            RegularLattice a = infected(generator, 37, 23, 0.6);
+            a.saveSnapshot(file, false);
+            RegularLattice b = new RegularLattice();
+            b.load(file);
+            assertEquals(a, b);
+            assertArrayEquals(a.getClustersSizes(), b.getClustersSizes());
+        }
+    }
+
+    /**
+     * Файл занимает около бита на узел.
+     */
+    @Test
+    public void testCompact() throws IOException {
+        RegularLattice net = infected(RectGenerator.INSTANCE, 200, 100, 0.5);
+        net.saveSnapshot(file, false);
+        assertTrue(file.length() < 20000 / 8 + 100);
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        NetStructureInfo structureInfo = new NetStructureInfo(12, 9,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice net = new RegularLattice(structureInfo);
+        net.setRandom(RandomAlgorithm.SPLITTABLE.create(2011));
+        net.infect(0.7);
+        net.saveSnapshot(file, true);
+
+        assertTrue(LatticeSnapshot.isSnapshot(file));
+        LatticeSnapshot snapshot = LatticeSnapshot.read(file);
+        assertEquals(structureInfo, snapshot.getStructureInfo());
+        assertEquals(1, snapshot.getStructureInfo().getWrapper().size());
+        assertEquals(Long.valueOf(2011), snapshot.getSeed());
+        assertEquals(108, snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(net.getState().isInfected(i), snapshot.isInfected(i));
+        }
+    }
+
+    /**
+     * Метки узлов одного кластера совпадают, а метки разных кластеров
+     * различаются.
+     */
+    @Test
+    public void testLabels() throws Exception {
+        RegularLattice net = infected(RectGenerator.INSTANCE, 30, 30, 0.55);
+        net.saveSnapshot(file, true);
+        int[] labels = LatticeSnapshot.read(file).getLabels();
+        assertEquals(net.size(), labels.length);
+
+        CsrGraph graph = net.getGraph();
+        Map<Node, Integer> index = new IdentityHashMap<Node, Integer>();
+        for (int i = 0; i < graph.size(); i++) {
+            index.put(graph.getNode(i), i);
+        }
+        Set<Integer> clusterLabels = new HashSet<Integer>();
+        for (Cluster cluster : net.getClusters()) {
+            int label = labels[index.get(cluster.iterator().next())];
+            for (Node node : cluster) {
+                assertEquals(label, labels[index.get(node)]);
+            }
+            assertTrue(clusterLabels.add(label));
+        }
+        int empty = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (!net.getState().isInfected(i)) {
+                assertEquals(ClusterLabeling.EMPTY, labels[i]);
+                empty++;
+            }
+        }
+        assertTrue(empty > 0);
+
+        net.setRandom(new Random(1));
+        net.saveSnapshot(file, false);
+        LatticeSnapshot snapshot = LatticeSnapshot.read(file);
+        assertNull(snapshot.getLabels());
+        assertNull(snapshot.getSeed());
+    }
+
+    /**
+     * Сохраненные метки устанавливаются при загрузке, кластеры совпадают с
+     * найденными в исходной решетке.
+     */
+    @Test
+    public void testLoadLabels() throws Exception {
+        NetStructureInfo structureInfo = new NetStructureInfo(40, 30,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice a = new RegularLattice(structureInfo);
+        a.setRandom(RandomAlgorithm.XOSHIRO256.create(7));
+        a.infect(0.6);
+        a.saveSnapshot(file, true);
+        int[] labels = LatticeSnapshot.read(file).getLabels();
+
+        RegularLattice b = new RegularLattice(structureInfo);
+        b.load(file);
+        assertEquals(a, b);
+        assertArrayEquals(labels, b.clusterLabels());
+        assertArrayEquals(a.getClustersSizes(), b.getClustersSizes());
+        assertEquals(a.getClusters().size(), b.getClusters().size());
+        assertEquals(a.hasPercolationCluster(), b.hasPercolationCluster());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.getGraph().getNode(i).isInCluster(), b.getGraph()
+                    .getNode(i).isInCluster());
+        }
+    }
+
+    /**
+     * Решетка с неявной структурой сохраняется и загружается без построения
+     * узлов, в том числе из снимка обычной решетки.
+     */
+    @Test
+    public void testImplicitLattice() throws Exception {
+        NetStructureInfo structureInfo = new NetStructureInfo(50, 40,
+                RectGenerator.INSTANCE);
+        ImplicitLattice a = new ImplicitLattice(structureInfo);
+        a.setRandom(RandomAlgorithm.XOSHIRO256.create(3));
+        a.infect(0.59);
+        for (boolean clusterLabels : new boolean[] { true, false }) {
+            a.saveSnapshot(file, clusterLabels);
+            ImplicitLattice b = ImplicitLattice.load(file);
+            assertEquals(structureInfo, b.getStructureInfo());
+            for (int i = 0; i < a.size(); i++) {
+                assertEquals(a.getState().isInfected(i), b.getState()
+                        .isInfected(i));
+            }
+            assertArrayEquals(a.getClustersSizes(), b.getClustersSizes());
+            assertEquals(a.hasPercolationCluster(), b.hasPercolationCluster());
+            assertEquals(a.getPercolationClusters().size(), b
+                    .getPercolationClusters().size());
+        }
+
+        RegularLattice net = infected(RectGenerator.INSTANCE, 50, 40, 0.6);
+        net.saveSnapshot(file, true);
+        ImplicitLattice c = ImplicitLattice.load(file);
+        assertArrayEquals(net.getClustersSizes(), c.getClustersSizes());
+        ImplicitLattice d = new ImplicitLattice(structureInfo);
+        LatticeSnapshot.read(file).apply(d);
+        assertArrayEquals(net.getClustersSizes(), d.getClustersSizes());
+    }
+
+    /**
+     * Метка, указывающая не на корень кластера, отвергается.
+     */
+    @Test
+    public void testBadLabels() throws Exception {
+        RegularLattice net = infected(RectGenerator.INSTANCE, 20, 20, 0.6);
+        net.saveSnapshot(file, true);
+        int site = 0;
+        while (!net.getState().isInfected(site)) {
+            site++;
+        }
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        long position;
+        try {
+            position = LatticeSnapshot.readHeader(file, channel)
+                    .labelsPosition();
+        } finally {
+            channel.close();
+        }
+        RandomAccessFile corrupted = new RandomAccessFile(file, "rw");
+        try {
+            corrupted.seek(position + 4L * site);
+            corrupted.writeInt(Integer.reverseBytes(net.size()));
+        } finally {
+            corrupted.close();
+        }
+        try {
+            ImplicitLattice.load(file);
+            fail();
+        } catch (BadNetFileFormatException e) {
+        }
+        try {
+            new RegularLattice().load(file);
+            fail();
+        } catch (BadNetFileFormatException e) {
+        }
+    }
+
+    /**
+     * Текстовый формат по-прежнему загружается.
+     */
+    @Test
+    public void testTextFallback() throws Exception {
+        RegularLattice a = infected(RectGenerator.INSTANCE, 20, 10, 0.6);
+        a.save(file);
+        assertFalse(LatticeSnapshot.isSnapshot(file));
+        RegularLattice b = new RegularLattice();
+        b.load(file);
+        assertEquals(a, b);
+    }
+
+    /**
+     * Обертка, имя класса которой подменяется в снимке.
+     */
+    public static class Wrapping implements RegularWrapper {
+        @Override
+        public void wrap(List<Layer> layers) {
+        }
+    }
+
+    private static boolean tripped;
+
+    /**
+     * Класс, который не является оберткой и не должен инициализироваться
+     * при чтении снимка.
+     */
+    public static class Tripwire {
+        static {
+            tripped = true;
+        }
+    }
+
+    private void replace(String from, String to) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] pattern = from.getBytes(StandardCharsets.US_ASCII);
+        int position = 0;
+        while (!Arrays.equals(pattern, Arrays.copyOfRange(bytes, position,
+                position + pattern.length))) {
+            position++;
+        }
+        System.arraycopy(to.getBytes(StandardCharsets.US_ASCII), 0, bytes,
+                position, pattern.length);
+        Files.write(file.toPath(), bytes);
+    }
+
+    @Test
+    public void testWrapperClass() throws Exception {
+        NetStructureInfo structureInfo = new NetStructureInfo(5, 5,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new Wrapping());
+        new RegularLattice(structureInfo).saveSnapshot(file, false);
+        assertEquals(Wrapping.class, LatticeSnapshot.read(file)
+                .getStructureInfo().getWrapper().get(0).getClass());
+
+        replace("$Wrapping", "$Tripwire");
+        try {
+            LatticeSnapshot.read(file);
+            fail();
+        } catch (BadNetFileFormatException e) {
+        }
+        assertFalse(tripped);
+    }
+
+    @Test(expected = BadNetFileFormatException.class)
+    public void testBadVersion() throws Exception {
+        infected(RectGenerator.INSTANCE, 5, 5, 0.5).saveSnapshot(file, false);
+        RandomAccessFile corrupted = new RandomAccessFile(file, "rw");
+        try {
+            corrupted.seek(4);
+            corrupted.writeInt(0);
+        } finally {
+            corrupted.close();
+        }
+        LatticeSnapshot.read(file);
+    }
+
+    @Test(expected = BadNetFileFormatException.class)
+    public void testTruncated() throws Exception {
+        infected(RectGenerator.INSTANCE, 100, 100, 0.6).saveSnapshot(file,
+                false);
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        try {
+            truncated.setLength(file.length() - 10);
+        } finally {
+            truncated.close();
+        }
+        new RegularLattice().load(file);
+    }
+}
@@ -0,0 +1,203 @@
+package jerco.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import jerco.TestUtils;
+import jerco.network.generators.KagomeGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+import jerco.utils.RandomAlgorithm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMappedLattice extends TestBase {
+    private File directory;
+    private File file;
+
+    @Before
+    public void createDirectory() {
+        directory = new File(TestUtils.TEST_TEMP_DIR);
+        directory.mkdirs();
+        file = new File(directory, "mapped.bin");
+    }
+
+    @After
+    public void deleteFile() {
+        file.setWritable(true);
+        file.delete();
+    }
+
+    private static NetStructureInfo structure(NetGenerator generator,
+            int width, int height) {
+        NetStructureInfo structureInfo = new NetStructureInfo(width, height,
+                generator);
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        return structureInfo;
+    }
+
+    /**
+     * Кластеры и перколяция совпадают с результатами неявной решетки.
+     */
+    @Test
+    public void testSameAsImplicit() throws IOException {
+        NetGenerator[] generators = { RectGenerator.INSTANCE,
+                NetGenerators.Triangle.getGenerator(), new KagomeGenerator() };
+        for (NetGenerator generator : generators) {
+            for (double p : new double[] { 0, 0.3, 0.5, 0.6, 0.7, 1 }) {
+                NetStructureInfo structureInfo = structure(generator, 41, 33);
+                ImplicitLattice expected = new ImplicitLattice(structureInfo);
+                expected.setRandom(RandomAlgorithm.XOSHIRO256.create(9));
+                expected.infect(p);
+
+                MappedLattice actual = new MappedLattice(structureInfo,
+                        directory);
+                try {
+                    actual.setRandom(RandomAlgorithm.XOSHIRO256.create(9));
+                    actual.infect(p);
+                    assertArrayEquals(expected.getClustersSizes(), actual
+                            .getClustersSizes());
+                    assertArrayEquals(expected.getClustersSizes(), actual
+                            .getClustersSizes());
+                    assertEquals(expected.hasPercolationCluster(), actual
+                            .hasPercolationCluster());
+                    if (actual.hasPercolationCluster()) {
+                        assertEquals(expected.getPercolationClusters(), actual
+                                .getPercolationClusters());
+                    }
+                } finally {
+                    actual.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Снимок решетки загружается обычной решеткой и снова открывается без
+     * поиска кластеров.
+     */
+    @Test
+    public void testSaveAndOpen() throws Exception {
+        NetStructureInfo structureInfo = structure(RectGenerator.INSTANCE, 30,
+                20);
+        MappedLattice lattice = new MappedLattice(structureInfo, directory);
+        int[] sizes;
+        try {
+            lattice.setRandom(RandomAlgorithm.XOSHIRO256.create(4));
+            lattice.infect(0.58);
+            sizes = lattice.getClustersSizes();
+            lattice.save(file, true);
+        } finally {
+            lattice.close();
+        }
+
+        RegularLattice regular = new RegularLattice();
+        regular.load(file);
+        assertArrayEquals(sizes, regular.getClustersSizes());
+        assertEquals(Long.valueOf(4), LatticeSnapshot.read(file).getSeed());
+
+        long length = file.length();
+        MappedLattice opened = MappedLattice.open(file, directory);
+        try {
+            assertArrayEquals(sizes, opened.getClustersSizes());
+            assertEquals(regular.hasPercolationCluster(), opened
+                    .hasPercolationCluster());
+
+            // Изменения решетки не попадают в снимок
+            opened.infect(0.1);
+            assertFalse(sizes.length == opened.getClustersSizes().length);
+        } finally {
+            opened.close();
+        }
+        assertEquals(length, file.length());
+        RegularLattice reloaded = new RegularLattice();
+        reloaded.load(file);
+        assertEquals(regular, reloaded);
+    }
+
+    /**
+     * Метки снимка обычной решетки, корни которых не обязательно имеют
+     * наименьший индекс, дают те же размеры кластеров.
+     */
+    @Test
+    public void testOpenRegularSnapshot() throws Exception {
+        RegularLattice regular = new RegularLattice(structure(
+                RectGenerator.INSTANCE, 25, 25));
+        regular.setLabelingMethod(LabelingMethod.UNION_FIND);
+        regular.infect(0.6);
+        regular.saveSnapshot(file, true);
+
+        MappedLattice opened = MappedLattice.open(file, directory);
+        try {
+            assertArrayEquals(regular.getClustersSizes(), opened
+                    .getClustersSizes());
+            assertEquals(regular.hasPercolationCluster(), opened
+                    .hasPercolationCluster());
+        } finally {
+            opened.close();
+        }
+
+        regular.saveSnapshot(file, false);
+        opened = MappedLattice.open(file, directory);
+        try {
+            assertEquals(0, opened.getClustersSizes().length);
+            opened.findClusters();
+            assertArrayEquals(regular.getClustersSizes(), opened
+                    .getClustersSizes());
+        } finally {
+            opened.close();
+        }
+    }
+
+    private static long sum(int[] values) {
+        long sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Снимок, доступный только для чтения, открывается, а изменения решетки
+     * (в том числе отдельных узлов) не меняют его содержимого.
+     */
+    @Test
+    public void testOpenReadOnlySnapshot() throws Exception {
+        RegularLattice regular = new RegularLattice(structure(
+                RectGenerator.INSTANCE, 20, 20));
+        regular.infect(0.6);
+        regular.saveSnapshot(file, true);
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertTrue(file.setReadOnly());
+
+        MappedLattice opened = MappedLattice.open(file, directory);
+        try {
+            assertArrayEquals(regular.getClustersSizes(), opened
+                    .getClustersSizes());
+            int site = 0;
+            while (opened.isInfected(site)) {
+                site++;
+            }
+            opened.setInfected(site, true);
+            opened.findClusters();
+            assertTrue(opened.isInfected(site));
+            assertEquals(sum(regular.getClustersSizes()) + 1, sum(opened
+                    .getClustersSizes()));
+            opened.reset();
+            assertFalse(opened.isInfected(site));
+        } finally {
+            opened.close();
+        }
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,179 @@
+package jerco.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestNetState extends TestBase {
+
+    @Test
+    public void testDefaults() {
+        NetState state = new NetState(70);
+        assertEquals(70, state.size());
+        assertEquals(2, state.words());
+        for (int i = 0; i < state.size(); i++) {
+            assertFalse(state.isInfected(i));
+            assertFalse(state.isVisited(i));
+            assertFalse(state.isInBound(i));
+            assertEquals(Node.NONE, state.getSubstance(i));
+            assertEquals(0, state.getProbability(i), 0);
+        }
+    }
+
+    @Test
+    public void testInfectedCascade() {
+        NetState state = new NetState(100);
+        state.setInfected(65, true);
+        state.setInCluster(65, true);
+        state.setInPercolationCluster(65, true);
+        state.setSubstance(65, Node.WATER);
+
+        state.setInfected(65, false);
+        assertFalse(state.isInCluster(65));
+        assertFalse(state.isInPercolationCluster(65));
+        assertEquals(Node.NONE, state.getSubstance(65));
+    }
+
+    @Test
+    public void testInfectedWord() {
+        NetState state = new NetState(128);
+        state.setInfected(64, true);
+        state.setInfected(66, true);
+        state.setInCluster(64, true);
+        state.setInCluster(66, true);
+        state.setSubstance(64, Node.OXYGEN);
+        state.setSubstance(66, Node.OXYGEN);
+
+        state.setInfectedWord(1, 0x4L | 0x8L);
+        assertFalse(state.isInfected(64));
+        assertFalse(state.isInCluster(64));
+        assertEquals(Node.NONE, state.getSubstance(64));
+        assertTrue(state.isInfected(66));
+        assertTrue(state.isInCluster(66));
+        assertEquals(Node.OXYGEN, state.getSubstance(66));
+        assertTrue(state.isInfected(67));
+        assertEquals(0x4L | 0x8L, state.getInfectedWord(1));
+    }
+
+    /**
+     * Как и снятие заражения с каждого узла, заражение слова удаляет вещество
+     * из всех незараженных узлов, а не только из потерявших заражение.
+     */
+    @Test
+    public void testInfectedWordClearsSubstance() {
+        NetState state = new NetState(70);
+        state.setSubstance(65, Node.WATER);
+        state.setInfectedWord(1, 0L);
+        assertEquals(Node.NONE, state.getSubstance(65));
+
+        state.setSubstance(1, Node.WATER);
+        state.setSubstance(2, Node.WATER);
+        state.setInfectedWord(0, 0x2L);
+        assertEquals(Node.WATER, state.getSubstance(1));
+        assertEquals(Node.NONE, state.getSubstance(2));
+    }
+
+    /**
+     * Узел вне сети хранит состояние в своих полях и переносит его в
+     * хранилище при привязке, не затирая значения по умолчанию.
+     */
+    @Test
+    public void testBindDetachedNode() {
+        Node node = new Node();
+        node.setInfected(true);
+        node.setInCluster(true);
+        node.setBound(3);
+        node.setSubstance(Node.WATER);
+        node.setProbability(0.5);
+
+        NetState state = new NetState(4);
+        state.setVisited(2, true);
+        node.bind(state, 2);
+        assertTrue(state.isInfected(2));
+        assertTrue(state.isInCluster(2));
+        assertTrue(state.isInBound(2));
+        assertEquals(3, state.getBound(2));
+        assertEquals(Node.WATER, state.getSubstance(2));
+        assertEquals(0.5, state.getProbability(2), 0);
+        assertTrue(state.isVisited(2));
+
+        node.removeFromBound();
+        assertFalse(state.isInBound(2));
+        assertFalse(new Node().isInBound());
+    }
+
+    /**
+     * Узел вне сети хранит состояние сам до привязки к хранилищу сети.
+     */
+    @Test
+    public void testDetachedNode() {
+        Node node = new Node();
+        node.setInfected(false);
+        node.setVisited(false);
+        assertFalse(node.isInfected());
+        assertEquals(Node.NONE, node.getSubstance());
+        assertEquals(0, node.getProbability(), 0);
+
+        node.setInfected(true);
+        node.setSubstance(Node.OXYGEN);
+        node.setProbability(0.25);
+        node.setVisited(true);
+        assertTrue(node.isInfected());
+        assertTrue(node.isVisited());
+        assertEquals(Node.OXYGEN, node.getSubstance());
+        assertEquals(0.25, node.getProbability(), 0);
+
+        node.setInfected(false);
+        assertEquals(Node.NONE, node.getSubstance());
+        assertTrue(node.isVisited());
+    }
+
+    @Test
+    public void testResetInfected() {
+        NetState state = new NetState(10);
+        state.setInfected(3, true);
+        state.setInCluster(3, true);
+        state.setVisited(3, true);
+        state.setSubstance(3, Node.WATER);
+
+        state.resetInfected();
+        assertFalse(state.isInfected(3));
+        assertFalse(state.isInCluster(3));
+        assertEquals(Node.NONE, state.getSubstance(3));
+        assertTrue(state.isVisited(3));
+    }
+
+    /**
+     * После уплотнения состояние узлов переносится в общее хранилище сети.
+     */
+    @Test
+    public void testNodesBoundToNet() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(3, 3,
+                RectGenerator.INSTANCE));
+        NetState state = net.getState();
+        assertEquals(9, state.size());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(state.isInBound(i));
+            assertEquals(NetGenerator.TOP_BOUNDS, state.getBound(i));
+            assertEquals(NetGenerator.BOTTOM_BOUNDS, state.getBound(i + 6));
+        }
+        assertFalse(state.isInBound(4));
+
+        Node center = net.getGraph().getNode(4);
+        center.setInfected(true);
+        center.setProbability(0.25);
+        assertTrue(state.isInfected(4));
+        assertEquals(0.25, state.getProbability(4), 0);
+
+        net.resetInfected();
+        assertFalse(center.isInfected());
+        assertSame(state, net.getState());
+    }
+}
@@ -0,0 +1,100 @@
+package jerco.network;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestNewmanZiff extends TestBase {
+
+    @Test
+    public void testBounds() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(10, 10,
+                RectGenerator.INSTANCE));
+        MicrocanonicalCurve curve = new NewmanZiff(net).run();
+
+        assertEquals(100, curve.getSize());
+        assertEquals(1, curve.getSamples());
+        assertEquals(0, curve.getLargestClusterSize(0), 0);
+        assertEquals(1, curve.getLargestClusterSize(1), 0);
+        assertEquals(100, curve.getLargestClusterSize(100), 0);
+        assertEquals(100, curve.getMeanClusterSize(100), 0);
+        assertEquals(0, curve.getSpanningProbability(0), 0);
+        assertEquals(1, curve.getSpanningProbability(100), 0);
+        assertEquals(100, curve.getCanonicalLargestClusterSize(1), 0);
+        assertEquals(0, curve.getCanonicalSpanningProbability(0), 0);
+    }
+
+    /**
+     * Значения кривой совпадают с результатами поиска кластеров в сети, где
+     * заражены первые n узлов порядка заражения.
+     */
+    @Test
+    public void testSameAsLabeling() {
+        NetStructureInfo structureInfo = new NetStructureInfo(12, 9,
+                NetGenerators.Triangle.getGenerator());
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice net = new RegularLattice(structureInfo);
+
+        NewmanZiff newmanZiff = new NewmanZiff(net);
+        newmanZiff.setRandom(new Random(3));
+        MicrocanonicalCurve curve = newmanZiff.run();
+        int[] order = newmanZiff.getOrder().clone();
+
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph(),
+                net.getBoundary());
+        NetState state = new NetState(net.size());
+        for (int n = 1; n <= net.size(); n++) {
+            state.setInfected(order[n - 1], true);
+            labeling.label(state);
+
+            int largest = 0;
+            long squares = 0;
+            for (int size : labeling.getClustersSizes()) {
+                largest = Math.max(largest, size);
+                squares += (long) size * size;
+            }
+            boolean spanning = !labeling.getSpanningRoots(SpanningRule.ALL)
+                    .isEmpty();
+
+            assertEquals(largest, curve.getLargestClusterSize(n), 0);
+            assertEquals((double) squares / n, curve.getMeanClusterSize(n),
+                    1e-9);
+            assertEquals(spanning ? 1 : 0, curve.getSpanningProbability(n), 0);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        ImplicitLattice lattice = new ImplicitLattice(new NetStructureInfo(8,
+                8, RectGenerator.INSTANCE));
+        NewmanZiff newmanZiff = new NewmanZiff(lattice);
+        MicrocanonicalCurve first = newmanZiff.run();
+        MicrocanonicalCurve second = newmanZiff.run();
+        double expected = (first.getLargestClusterSize(30) + second
+                .getLargestClusterSize(30)) / 2;
+
+        first.add(second);
+        assertEquals(2, first.getSamples());
+        assertEquals(expected, first.getLargestClusterSize(30), 1e-9);
+    }
+
+    @Test
+    public void testBinomial() {
+        MicrocanonicalCurve curve = new MicrocanonicalCurve(100000);
+        double[] weights = curve.binomial(0.3);
+        double sum = 0;
+        double mean = 0;
+        for (int n = 0; n < weights.length; n++) {
+            sum += weights[n];
+            mean += n * weights[n];
+        }
+        assertEquals(1, sum, 1e-9);
+        assertEquals(30000, mean, 1e-6);
+    }
+}
@@ -0,0 +1,202 @@
+package jerco.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerator;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestSpanningRule extends TestBase {
+    private static final int SIZE = 7;
+
+    private static RegularLattice lattice(boolean leftRight) {
+        NetStructureInfo structureInfo = new NetStructureInfo(SIZE, SIZE,
+                RectGenerator.INSTANCE);
+        if (leftRight) {
+            structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        }
+        RegularLattice net = new RegularLattice(structureInfo);
+        net.setLabelingMethod(LabelingMethod.UNION_FIND);
+        return net;
+    }
+
+    /**
+     * Заражает столбец решетки, не касающийся левой и правой границ.
+     */
+    private static void infectColumn(RegularLattice net) {
+        for (Layer layer : net.getLayers()) {
+            layer.getNode(SIZE / 2).setInfected(true);
+        }
+    }
+
+    /**
+     * Заражает средний слой решетки.
+     */
+    private static void infectRow(RegularLattice net) {
+        for (Node node : net.getLayers().get(SIZE / 2)) {
+            node.setInfected(true);
+        }
+    }
+
+    private static boolean spans(RegularLattice net, SpanningRule rule) {
+        net.setSpanningRule(rule);
+        net.findClusters();
+        boolean unionFind = net.hasPercolationCluster();
+
+        net.setLabelingMethod(LabelingMethod.BREADTH_FIRST);
+        net.findClusters();
+        assertEquals(unionFind, net.hasPercolationCluster());
+        net.setLabelingMethod(LabelingMethod.UNION_FIND);
+        return unionFind;
+    }
+
+    @Test
+    public void testColumn() {
+        RegularLattice net = lattice(true);
+        infectColumn(net);
+        assertTrue(spans(net, SpanningRule.TOP_BOTTOM));
+        assertFalse(spans(net, SpanningRule.LEFT_RIGHT));
+        assertTrue(spans(net, SpanningRule.ANY_PAIR));
+        assertFalse(spans(net, SpanningRule.ALL));
+    }
+
+    @Test
+    public void testRow() {
+        RegularLattice net = lattice(true);
+        infectRow(net);
+        assertFalse(spans(net, SpanningRule.TOP_BOTTOM));
+        assertTrue(spans(net, SpanningRule.LEFT_RIGHT));
+        assertTrue(spans(net, SpanningRule.ANY_PAIR));
+        assertFalse(spans(net, SpanningRule.ALL));
+    }
+
+    @Test
+    public void testCross() {
+        RegularLattice net = lattice(true);
+        infectColumn(net);
+        infectRow(net);
+        for (SpanningRule rule : SpanningRule.values()) {
+            assertTrue(rule.name(), spans(net, rule));
+        }
+        net.findClusters();
+        assertTrue(net.hasPercolationCluster());
+        assertEquals(SIZE * 2 - 1, net.getPercolationClusters().get(0)
+                .size());
+    }
+
+    /**
+     * Без {@link LeftRightBoundsWrapper} решетка имеет только верхнюю и нижнюю
+     * границы.
+     */
+    @Test
+    public void testWithoutLeftRightBounds() {
+        RegularLattice net = lattice(false);
+        infectColumn(net);
+        assertTrue(spans(net, SpanningRule.ALL));
+        assertTrue(spans(net, SpanningRule.ANY_PAIR));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissingBounds() {
+        RegularLattice net = lattice(false);
+        infectRow(net);
+        net.setSpanningRule(SpanningRule.LEFT_RIGHT);
+        net.findClusters();
+        net.hasPercolationCluster();
+    }
+
+    /**
+     * Маска границ корня объединяет маски всех узлов кластера.
+     */
+    @Test
+    public void testBoundsMask() {
+        RegularLattice net = lattice(true);
+        infectColumn(net);
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph(),
+                net.getBoundary());
+        labeling.label(net.getState());
+
+        BoundarySites boundary = net.getBoundary();
+        int expected = boundary.mask(NetGenerator.TOP_BOUNDS)
+                | boundary.mask(NetGenerator.BOTTOM_BOUNDS);
+        for (int i = 0; i < net.size(); i++) {
+            if (net.getState().isInfected(i)) {
+                assertEquals(expected, labeling.getBoundsMask(i));
+            } else {
+                assertEquals(0, labeling.getBoundsMask(i));
+            }
+        }
+    }
+
+    /**
+     * Досрочная проверка перколяции дает тот же ответ, что и полный поиск
+     * кластеров.
+     */
+    @Test
+    public void testPercolates() {
+        NetStructureInfo structureInfo = new NetStructureInfo(30, 30,
+                NetGenerators.Triangle.getGenerator());
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        RegularLattice net = new RegularLattice(structureInfo);
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph(),
+                net.getBoundary());
+        Random random = new Random(11);
+        for (SpanningRule rule : SpanningRule.values()) {
+            for (int k = 0; k < 20; k++) {
+                for (int i = 0; i < net.size(); i++) {
+                    net.getState().setInfected(i, random.nextDouble() < 0.5);
+                }
+                boolean early = labeling.percolates(net.getState(), rule);
+                labeling.label(net.getState());
+                assertEquals(!labeling.getSpanningRoots(rule).isEmpty(),
+                        early);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLabelsAfterPercolates() {
+        RegularLattice net = lattice(true);
+        infectColumn(net);
+        ClusterLabeling labeling = new ClusterLabeling(net.getGraph(),
+                net.getBoundary());
+        assertTrue(labeling.percolates(net.getState(), SpanningRule.TOP_BOTTOM));
+        labeling.getClustersSizes();
+    }
+
+    @Test
+    public void testNetPercolates() {
+        RegularLattice net = lattice(true);
+        net.setSpanningRule(SpanningRule.ANY_PAIR);
+        assertTrue(net.percolates(1));
+        assertFalse(net.percolates(0));
+
+        net.setLabelingMethod(LabelingMethod.BREADTH_FIRST);
+        assertTrue(net.percolates(1));
+        assertFalse(net.percolates(0));
+    }
+
+    @Test
+    public void testImplicitLattice() {
+        NetStructureInfo structureInfo = new NetStructureInfo(SIZE, SIZE,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        ImplicitLattice lattice = new ImplicitLattice(structureInfo);
+        for (int row = 0; row < SIZE; row++) {
+            lattice.getNode(row * SIZE + SIZE / 2).setInfected(true);
+        }
+        lattice.findClusters();
+
+        lattice.setSpanningRule(SpanningRule.TOP_BOTTOM);
+        assertTrue(lattice.hasPercolationCluster());
+        lattice.setSpanningRule(SpanningRule.ALL);
+        assertFalse(lattice.hasPercolationCluster());
+    }
+}
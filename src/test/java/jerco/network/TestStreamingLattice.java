@@ -0,0 +1,150 @@
+package jerco.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import jerco.network.generators.CylinderGenerator;
+import jerco.network.generators.KagomeGenerator;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.NetGenerators;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestStreamingLattice extends TestBase {
+
+    /**
+     * Заражение слоев по готовой решетке.
+     */
+    private static StreamingLattice.RowSource source(final RegularLattice net) {
+        return new StreamingLattice.RowSource() {
+            @Override
+            public void fill(int row, boolean[] infected, int rowWidth) {
+                Layer layer = net.getLayers().get(row);
+                assertEquals(layer.size(), rowWidth);
+                for (int column = 0; column < rowWidth; column++) {
+                    infected[column] = layer.getNode(column).isInfected();
+                }
+            }
+        };
+    }
+
+    /**
+     * Кластеры и их границы совпадают с кластерами решетки, построенной
+     * целиком.
+     */
+    @Test
+    public void testSameAsRegularLattice() {
+        NetStructureInfo triangle = new NetStructureInfo(23, 31,
+                NetGenerators.Triangle.getGenerator());
+        triangle.addWrapper(new LeftRightBoundsWrapper());
+        NetStructureInfo rect = new NetStructureInfo(20, 20,
+                RectGenerator.INSTANCE);
+        rect.addWrapper(new LeftRightBoundsWrapper());
+        NetStructureInfo[] structures = {
+                triangle,
+                rect,
+                new NetStructureInfo(17, 40, new CylinderGenerator()),
+                new NetStructureInfo(21, 24, new KagomeGenerator()),
+                new NetStructureInfo(9, 1, RectGenerator.INSTANCE) };
+
+        Random random = new Random(17);
+        for (NetStructureInfo structureInfo : structures) {
+            RegularLattice net = new RegularLattice(structureInfo);
+            StreamingLattice lattice = new StreamingLattice(structureInfo);
+            assertEquals(net.size(), lattice.size());
+            assertEquals(net.getBoundary().getBounds(), lattice.getBounds());
+
+            for (double p : new double[] { 0.3, 0.55, 0.7 }) {
+                for (Node node : net) {
+                    node.setInfected(random.nextDouble() < p);
+                }
+                net.findClusters();
+
+                final List<String> streamed = new ArrayList<String>();
+                lattice.setListener(new StreamingLattice.ClusterListener() {
+                    @Override
+                    public void clusterCompleted(long size, int boundsMask) {
+                        streamed.add(size + " "
+                                + StreamingLattice.bounds(boundsMask));
+                    }
+                });
+                lattice.run(source(net));
+
+                List<String> expected = new ArrayList<String>();
+                int infected = 0;
+                for (Cluster cluster : net.getClusters()) {
+                    expected.add(cluster.size() + " " + cluster.getBounds());
+                    infected += cluster.size();
+                }
+                Collections.sort(expected);
+                Collections.sort(streamed);
+                assertEquals(expected, streamed);
+                assertEquals(net.getClusters().size(),
+                        lattice.getClustersCount());
+                assertEquals(infected, lattice.getInfectedCount());
+
+                int[] sizes = net.getClustersSizes();
+                assertEquals(sizes.length == 0 ? 0 : sizes[sizes.length - 1],
+                        lattice.getLargestClusterSize());
+
+                for (SpanningRule rule : SpanningRule.values()) {
+                    if (!structureInfo.getWrapper().isEmpty()
+                            || rule == SpanningRule.ALL) {
+                        net.setSpanningRule(rule);
+                        lattice.setSpanningRule(rule);
+                        lattice.run(source(net));
+                        assertEquals(net.hasPercolationCluster(),
+                                lattice.hasPercolationCluster());
+                    }
+                }
+                lattice.setSpanningRule(SpanningRule.ALL);
+            }
+        }
+    }
+
+    /**
+     * Количество меток зависит от ширины решетки, а не от ее высоты.
+     */
+    @Test
+    public void testLabelsRecycled() {
+        StreamingLattice lattice = new StreamingLattice(new NetStructureInfo(
+                10, 200000, RectGenerator.INSTANCE));
+        lattice.setRandom(new Random(1));
+        final long[] sites = new long[1];
+        lattice.setListener(new StreamingLattice.ClusterListener() {
+            @Override
+            public void clusterCompleted(long size, int boundsMask) {
+                sites[0] += size;
+            }
+        });
+        lattice.infect(0.5);
+
+        assertEquals(0.5, lattice.getInfectProbability(), 0);
+        assertEquals(lattice.getInfectedCount(), sites[0]);
+        assertTrue(lattice.getClustersCount() > 100000);
+        assertTrue(lattice.getLabelsCount() <= 2 * 10);
+    }
+
+    @Test
+    public void testFullyInfected() {
+        StreamingLattice lattice = new StreamingLattice(new NetStructureInfo(
+                5, 1000, new CylinderGenerator()));
+        lattice.infect(1);
+        assertEquals(1, lattice.getClustersCount());
+        assertEquals(5000, lattice.getLargestClusterSize());
+        assertTrue(lattice.hasPercolationCluster());
+    }
+
+    @Test
+    public void testBoundsMask() {
+        assertArrayEquals(new Object[] { 0, 3 }, StreamingLattice
+                .bounds(0x9).toArray());
+    }
+}
@@ -0,0 +1,82 @@
+package jerco.network.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import jerco.network.CsrGraph;
+import jerco.network.NetImpl;
+
+/**
+ * Сравнивает загрузку одного и того же случайного графа из текстового списка
+ * связей ({@link EdgeListReader}), из Matrix Market
+ * ({@link MatrixMarketReader}) и из двоичного списка связей
+ * ({@link BinaryEdgeListReader}).
+ * <p>
+ * Запуск (количество связей задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.io.EdgeListReaderBenchmark 5000000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class EdgeListReaderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int nodes = Math.max(2, edges / 4);
+        File text = File.createTempFile("graph", ".edges");
+        File matrix = File.createTempFile("graph", ".mtx");
+        File binary = File.createTempFile("graph", ".jedg");
+        text.deleteOnExit();
+        matrix.deleteOnExit();
+        binary.deleteOnExit();
+
+        Random random = new Random(1);
+        Writer edgeList = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(text), StandardCharsets.UTF_8));
+        Writer matrixMarket = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(matrix), StandardCharsets.UTF_8));
+        try {
+            matrixMarket.write("%%MatrixMarket matrix coordinate pattern "
+                    + "general\n" + nodes + " " + nodes + " " + edges + "\n");
+            for (int i = 0; i < edges; i++) {
+                int a = random.nextInt(nodes) + 1;
+                int b = random.nextInt(nodes) + 1;
+                edgeList.write(a + "\t" + b + "\n");
+                matrixMarket.write(a + " " + b + "\n");
+            }
+        } finally {
+            edgeList.close();
+            matrixMarket.close();
+        }
+        BinaryEdgeListReader.write(new MatrixMarketReader(matrix).readGraph(),
+                binary);
+        System.out.printf("nodes = %d, edges = %d%n", nodes, edges);
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            CsrGraph graph = new EdgeListReader(text).readGraph();
+            double textLoad = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            new MatrixMarketReader(matrix).readGraph();
+            double matrixLoad = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            NetImpl net = new NetImpl(new BinaryEdgeListReader(binary));
+            double binaryLoad = (System.nanoTime() - start) / 1e6;
+            System.out.printf("edge list %8.1f ms (%d bytes), matrix market "
+                    + "%8.1f ms (%d bytes), binary %8.1f ms (%d bytes), "
+                    + "unique edges %d / %d%n", textLoad, text.length(),
+                    matrixLoad, matrix.length(), binaryLoad, binary.length(),
+                    graph.getEdgesCount(), net.getGraph().getEdgesCount());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package jerco.network.io;
+
+import java.io.File;
+import java.util.Random;
+
+import jerco.network.NetImpl;
+import jxl.Workbook;
+import jxl.write.Label;
+import jxl.write.WritableSheet;
+import jxl.write.WritableWorkbook;
+
+/**
+ * Сравнивает чтение книг Excel: матрицу инцидентности предельного для xls
+ * размера (255 узлов) в отдельные узлы ({@link ExcelReader#read()}) и в
+ * компактный граф ({@link ExcelReader#readGraph()}), а также загрузку большой сети,
+ * заданной списком смежности. Книги генерируются: случайные связи, в среднем
+ * по 4 на узел.
+ * <p>
+ * Запуск (количество узлов списка смежности задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.io.ExcelReaderBenchmark 20000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class ExcelReaderBenchmark {
+    private static final int MATRIX_NODES = 255;
+
+    private static final int DEGREE = 4;
+
+    public static void main(String[] args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(1);
+
+        File matrix = File.createTempFile("matrix", ".xls");
+        matrix.deleteOnExit();
+        WritableWorkbook book = Workbook.createWorkbook(matrix);
+        WritableSheet sheet = book.createSheet("Структура", 0);
+        for (int i = 1; i <= MATRIX_NODES; i++) {
+            sheet.addCell(new Label(i, 0, String.valueOf(i)));
+            sheet.addCell(new Label(0, i, String.valueOf(i)));
+        }
+        for (int k = 0; k < MATRIX_NODES * DEGREE / 2; k++) {
+            int a = 1 + random.nextInt(MATRIX_NODES);
+            int b = 1 + random.nextInt(MATRIX_NODES);
+            sheet.addCell(new Label(a, b, "1"));
+            sheet.addCell(new Label(b, a, "1"));
+        }
+        book.createSheet("Ключевые узлы", 1);
+        book.write();
+        book.close();
+        System.out.printf("matrix: nodes = %d, file = %d bytes%n",
+                MATRIX_NODES, matrix.length());
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            new ExcelReader(matrix).read();
+            double detached = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            new ExcelReader(matrix).readGraph();
+            double sparse = (System.nanoTime() - start) / 1e6;
+            System.out.printf("matrix: read %8.1f ms, readGraph %8.1f ms%n",
+                    detached, sparse);
+        }
+
+        File list = File.createTempFile("adjacency", ".xls");
+        list.deleteOnExit();
+        book = Workbook.createWorkbook(list);
+        sheet = book.createSheet("Список смежности", 0);
+        sheet.addCell(new Label(0, 0, "Узел"));
+        sheet.addCell(new Label(1, 0, "Связи"));
+        for (int i = 0; i < nodes; i++) {
+            sheet.addCell(new Label(0, i + 1, "n" + i));
+            for (int k = 1; k <= DEGREE / 2; k++) {
+                sheet.addCell(new Label(k, i + 1, "n" + random.nextInt(nodes)));
+            }
+        }
+        book.write();
+        book.close();
+        System.out.printf("adjacency list: nodes = %d, file = %d bytes%n",
+                nodes, list.length());
+
+        Runtime runtime = Runtime.getRuntime();
+        for (int round = 0; round < 3; round++) {
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            NetImpl net = new NetImpl(new ExcelReader(list));
+            double load = (System.nanoTime() - start) / 1e6;
+            System.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory() - before;
+            System.out.printf("adjacency list: load %8.1f ms, net %6.1f MB, "
+                    + "unique edges %d%n", load, used / 1e6, net.getGraph()
+                    .getEdgesCount());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package jerco.network.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import jerco.network.NetImpl;
+
+/**
+ * Измеряет время и память загрузки сети из большого файла graphml, а также
+ * загрузку через {@link CachingNetReader}. Файл генерируется: случайный граф
+ * с заданным количеством связей на 1/4 этого количества узлов.
+ * <p>
+ * Запуск (количество связей задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.io.GraphMLReaderBenchmark 1000000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class GraphMLReaderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int edges = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int nodes = Math.max(2, edges / 4);
+        File file = File.createTempFile("graph", ".graphml");
+        file.deleteOnExit();
+
+        Random random = new Random(1);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+                    + "<graph edgedefault=\"undirected\">\n");
+            for (int i = 0; i < nodes; i++) {
+                writer.write("<node id=\"n" + i + "\"/>\n");
+            }
+            for (int i = 0; i < edges; i++) {
+                writer.write("<edge source=\"n" + random.nextInt(nodes)
+                        + "\" target=\"n" + random.nextInt(nodes) + "\"/>\n");
+            }
+            writer.write("</graph>\n</graphml>\n");
+        } finally {
+            writer.close();
+        }
+        System.out.printf("nodes = %d, edges = %d, file = %d bytes%n", nodes,
+                edges, file.length());
+
+        Runtime runtime = Runtime.getRuntime();
+        for (int round = 0; round < 3; round++) {
+            System.gc();
+            long before = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            NetImpl net = new NetImpl(new GraphMLReader(file));
+            double load = (System.nanoTime() - start) / 1e6;
+            System.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory() - before;
+            System.out.printf("load %8.1f ms, net %6.1f MB, unique edges %d%n",
+                    load, used / 1e6, net.getGraph().getEdgesCount());
+        }
+
+        File cache = new File(file.getPath() + CachingNetReader.CACHE_EXTENSION);
+        cache.deleteOnExit();
+        for (int round = 0; round < 3; round++) {
+            CachingNetReader reader = new CachingNetReader(file,
+                    new GraphMLReader(file));
+            long start = System.nanoTime();
+            new NetImpl(reader);
+            double load = (System.nanoTime() - start) / 1e6;
+            System.out.printf("cached: load %8.1f ms (cache hit %s, %d bytes)%n",
+                    load, reader.isCacheHit(), cache.length());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package jerco.network.io;
+
+import java.io.File;
+
+import jerco.TestUtils;
+import jerco.network.ImplicitLattice;
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Сравнивает выгрузку квадратной решетки в DOT шаблоном FreeMarker
+ * (graphviz.ftl из тестовых ресурсов) и {@link DotWriter}, а также время
+ * потоковой выгрузки в GraphML и список связей. Потоковые форматы выгружают
+ * {@link ImplicitLattice}, узлы которой не хранятся в памяти.
+ * <p>
+ * Запуск (сторона решетки задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.network.io.NetWritersBenchmark 1000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class NetWritersBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        NetStructureInfo structureInfo = new NetStructureInfo(side, side,
+                RectGenerator.INSTANCE);
+        File file = File.createTempFile("net", ".export");
+        file.deleteOnExit();
+
+        RegularLattice lattice = new RegularLattice(structureInfo);
+        lattice.infect(0.6);
+        lattice.findClusters();
+        for (int round = 0; round < 3; round++) {
+            FreemarkerWriter freemarker = new FreemarkerWriter(lattice);
+            freemarker.loadTemplate(TestUtils.TEST_FILES_FOLDER
+                    + "/graphviz.ftl");
+            long start = System.nanoTime();
+            freemarker.write(file.getPath());
+            double template = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            new DotWriter(lattice).write(file);
+            double streaming = (System.nanoTime() - start) / 1e6;
+            System.out.printf("nodes = %d: freemarker %8.1f ms, "
+                    + "DotWriter %8.1f ms (%d bytes)%n", lattice.size(),
+                    template, streaming, file.length());
+        }
+        lattice = null;
+
+        ImplicitLattice implicit = new ImplicitLattice(structureInfo);
+        implicit.infect(0.6);
+        implicit.findClusters();
+        StreamingNetWriter[] writers = { new DotWriter(implicit),
+                new GraphMLWriter(implicit), new EdgeListWriter(implicit) };
+        for (int round = 0; round < 3; round++) {
+            for (StreamingNetWriter writer : writers) {
+                long start = System.nanoTime();
+                writer.write(file);
+                double time = (System.nanoTime() - start) / 1e6;
+                System.out.printf("implicit: %-14s %8.1f ms (%d bytes)%n",
+                        writer.getClass().getSimpleName(), time,
+                        file.length());
+            }
+        }
+    }
+}
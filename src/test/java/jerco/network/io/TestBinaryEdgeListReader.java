@@ -0,0 +1,81 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListReader.write;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import jerco.TestUtils;
+import jerco.network.CsrGraph;
+import jerco.network.Node;
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestBinaryEdgeListReader extends TestReaders {
+
+    private static File file() {
+        new File(TestUtils.TEST_TEMP_DIR).mkdirs();
+        return new File(TestUtils.TEST_TEMP_DIR + "/graph.jedg");
+    }
+
+    @Test
+    public void testStar() throws Exception {
+        File file = file();
+        BinaryEdgeListReader.write(
+                new GraphMLReader(loadTestFile("star.graphml")).readGraph(),
+                file);
+        assertEquals(20 + 8 * 6 + 8 * 2, file.length());
+
+        initNodeCounter();
+        new Node(); // This set up node counter to 1, as is excepted to tests
+        testStar(new BinaryEdgeListReader(file));
+    }
+
+    /**
+     * Граф решетки сохраняется без изменений.
+     */
+    @Test
+    public void testLattice() throws Exception {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(20, 15,
+                RectGenerator.INSTANCE));
+        CsrGraph expected = net.getGraph();
+        File file = file();
+        BinaryEdgeListReader.write(expected, file);
+
+        CsrGraph actual = new BinaryEdgeListReader(file).readGraph();
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+        assertArrayEquals(expected.getNeighbors(), actual.getNeighbors());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getNode(i).isInBound(), actual.getNode(i)
+                    .isInBound());
+        }
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testTruncated() throws Exception {
+        File file = file();
+        BinaryEdgeListReader.write(
+                new GraphMLReader(loadTestFile("star.graphml")).readGraph(),
+                file);
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        try {
+            truncated.setLength(file.length() - 4);
+        } finally {
+            truncated.close();
+        }
+        new BinaryEdgeListReader(file).read();
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testNotBinary() throws Exception {
+        new BinaryEdgeListReader(write("text.jedg", "1 2\n3 4\n5 6\n7 8\n"
+                + "9 10\n")).read();
+    }
+}
@@ -0,0 +1,139 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListReader.assertSameGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import jerco.TestUtils;
+import jerco.network.CsrGraph;
+import jerco.network.NetImpl;
+import jerco.network.Node;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCachingNetReader extends TestReaders {
+    private File directory;
+
+    @Before
+    public void createDirectory() {
+        directory = new File(TestUtils.TEST_TEMP_DIR + "/cache");
+        directory.mkdirs();
+    }
+
+    /**
+     * Копирует тестовый файл во временный каталог, чтобы кэш создавался рядом
+     * с копией. Прежний кэш удаляется.
+     */
+    private File copy(String name) throws Exception {
+        File file = new File(directory, name);
+        Files.copy(loadTestFile(name).toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        new File(file.getPath() + CachingNetReader.CACHE_EXTENSION).delete();
+        return file;
+    }
+
+    private static CachingNetReader graphml(File file) throws Exception {
+        return new CachingNetReader(file, new GraphMLReader(file));
+    }
+
+    @Test
+    public void testGraphML() throws Exception {
+        File file = copy("star.graphml");
+        CachingNetReader reader = graphml(file);
+        CsrGraph parsed = reader.readGraph();
+        assertFalse(reader.isCacheHit());
+        assertTrue(reader.getCache().isFile());
+
+        reader = graphml(file);
+        CsrGraph cached = reader.readGraph();
+        assertTrue(reader.isCacheHit());
+        assertSameGraph(parsed, cached);
+        assertEquals(parsed.getNode(5).getId() + 1, cached.getNode(0).getId());
+
+        initNodeCounter();
+        new Node(); // This set up node counter to 1, as is excepted to tests
+        reader = graphml(file);
+        testStar(reader);
+        assertTrue(reader.isCacheHit());
+    }
+
+    /**
+     * Узлы считывателя без уплотненного графа сохраняют свои идентификаторы.
+     */
+    @Test
+    public void testExcel() throws Exception {
+        File file = copy("star.xls");
+        CachingNetReader reader = new CachingNetReader(file, new ExcelReader(
+                file));
+        testStar(reader);
+        assertFalse(reader.isCacheHit());
+
+        testStar(reader);
+        assertTrue(reader.isCacheHit());
+
+        NetImpl net = new NetImpl(reader);
+        assertEquals(6, net.size());
+        assertEquals(2, net.boundsCounts());
+    }
+
+    /**
+     * Изменение содержимого делает кэш недействительным, а изменение только
+     * времени - нет.
+     */
+    @Test
+    public void testInvalidation() throws Exception {
+        File file = copy("star.graphml");
+        graphml(file).readGraph();
+
+        assertTrue(file.setLastModified(file.lastModified() - 60000));
+        CachingNetReader reader = graphml(file);
+        reader.readGraph();
+        assertTrue(reader.isCacheHit());
+        reader.readGraph();
+        assertTrue(reader.isCacheHit());
+
+        // заменяем связь 5 - 6 связью 5 - 1 без изменения размера файла
+        String text = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        Files.write(file.toPath(), text.replace(
+                "source=\"5\" target=\"6\"", "source=\"5\" target=\"1\"")
+                .getBytes("UTF-8"));
+        assertTrue(file.setLastModified(file.lastModified() - 120000));
+        reader = graphml(file);
+        CsrGraph graph = reader.readGraph();
+        assertFalse(reader.isCacheHit());
+        assertEquals(2, graph.degree(0));
+
+        reader = graphml(file);
+        assertEquals(2, reader.readGraph().degree(0));
+        assertTrue(reader.isCacheHit());
+    }
+
+    @Test
+    public void testBrokenCache() throws Exception {
+        File file = copy("star.graphml");
+        CachingNetReader reader = graphml(file);
+        CsrGraph parsed = reader.readGraph();
+
+        RandomAccessFile cache = new RandomAccessFile(reader.getCache(), "rw");
+        try {
+            cache.setLength(cache.length() - 3);
+        } finally {
+            cache.close();
+        }
+        reader = graphml(file);
+        assertSameGraph(parsed, reader.readGraph());
+        assertFalse(reader.isCacheHit());
+
+        reader = graphml(file);
+        reader.readGraph();
+        assertTrue(reader.isCacheHit());
+    }
+}
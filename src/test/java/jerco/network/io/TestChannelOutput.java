@@ -0,0 +1,47 @@
+package jerco.network.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestChannelOutput {
+
+    @Test
+    public void testNumbers() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes));
+        out.append(0).append(' ').append(-17).append(' ')
+                .append(Integer.MAX_VALUE).append(' ')
+                .append(Integer.MIN_VALUE).append(' ').append(true);
+        out.flush();
+
+        assertEquals("0 -17 2147483647 -2147483648 true", new String(
+                bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Текст с многобайтовыми символами пишется через границы буфера без
+     * потерь.
+     */
+    @Test
+    public void testLongText() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes));
+        for (int i = 0; i < 50000; i++) {
+            String text = i % 3 == 0 ? "узел " : "node ";
+            expected.append(text).append(i).append('\n');
+            out.append(text).append(i).append('\n');
+        }
+        expected.append("\uD83D\uDE00");
+        out.append("\uD83D\uDE00");
+        out.flush();
+
+        assertEquals(expected.toString(), new String(bytes.toByteArray(),
+                StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListWriter.exportFile;
+import static jerco.network.io.TestGraphMLWriter.count;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import jerco.network.ImplicitLattice;
+import jerco.network.NetImpl;
+import jerco.network.Node;
+
+import org.junit.Test;
+
+public class TestDotWriter extends TestReaders {
+
+    private static String export(DotWriter writer, String name)
+            throws Exception {
+        File file = exportFile(name);
+        writer.write(file);
+        return new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStar() throws Exception {
+        new Node();
+        NetImpl net = new NetImpl(new ExcelReader(loadTestFile("star.xls")));
+        String text = export(new DotWriter(net), "star export.dot");
+
+        assertTrue(text, text.startsWith("graph G {"));
+        assertEquals(net.getGraph().getEdgesCount(), count(text, " -- "));
+        assertTrue(text, text.contains("\t1 -- 6;\n"));
+        assertTrue(text, text.contains("\t3 -- 4;\n"));
+        assertTrue(text, text.contains(
+                "\t1 [label = \"1\", bound = 0, shape = \"doublecircle\"];\n"));
+    }
+
+    @Test
+    public void testState() throws Exception {
+        ImplicitLattice lattice = TestEdgeListWriter.percolatedLattice();
+        String text = export(new DotWriter(lattice), "lattice.dot");
+
+        int size = TestEdgeListWriter.SIZE;
+        assertEquals(2 * size * (size - 1), count(text, " -- "));
+        assertEquals(size, count(text, "fillcolor = \""
+                + DotWriter.PERCOLATION_COLOR + "\""));
+    }
+
+    @Test
+    public void testEscape() throws Exception {
+        assertEquals("a \\\"b\\\" \\\\", DotWriter.escape("a \"b\" \\"));
+        assertEquals("узел", DotWriter.escape("узел"));
+    }
+}
@@ -0,0 +1,134 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import jerco.TestUtils;
+import jerco.network.CsrGraph;
+import jerco.network.NetImpl;
+import jerco.network.Node;
+
+import org.junit.Test;
+
+public class TestEdgeListReader extends TestReaders {
+
+    static File write(String name, String text) throws IOException {
+        new File(TestUtils.TEST_TEMP_DIR).mkdirs();
+        File file = new File(TestUtils.TEST_TEMP_DIR + "/" + name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Графы совпадают по структуре, меткам и границам узлов.
+     */
+    static void assertSameGraph(CsrGraph expected, CsrGraph actual) {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+        assertArrayEquals(expected.getNeighbors(), actual.getNeighbors());
+        for (int i = 0; i < expected.size(); i++) {
+            Node a = expected.getNode(i);
+            Node b = actual.getNode(i);
+            assertEquals(a.getLabel(), b.getLabel());
+            assertEquals(a.isInBound(), b.isInBound());
+            if (a.isInBound()) {
+                assertEquals(a.getBound(), b.getBound());
+            }
+        }
+    }
+
+    @Test
+    public void test2nodes() throws Exception {
+        new Node(); // This set up node counter to 1, as is excepted to tests
+        test2Nodes(new EdgeListReader(loadTestFile("2nodes.edges")));
+    }
+
+    @Test
+    public void testStar() throws Exception {
+        new Node();
+        testStar(new EdgeListReader(loadTestFile("star.edges")));
+    }
+
+    @Test
+    public void testNet() throws Exception {
+        NetImpl net = new NetImpl(new EdgeListReader(
+                loadTestFile("star.edges")));
+        assertEquals(6, net.size());
+        assertEquals(2, net.boundsCounts());
+        assertEquals(6, net.getGraph().getEdgesCount());
+    }
+
+    /**
+     * Разбор по частям в нескольких потоках дает тот же граф, что и разбор
+     * одной частью: метки, встречающиеся в разных частях, сводятся к одному
+     * узлу, порядок узлов - порядок первого появления в файле.
+     */
+    @Test
+    public void testChunks() throws Exception {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder("# random graph\r\n");
+        for (int i = 0; i < 5000; i++) {
+            if (i % 100 == 0) {
+                text.append("#bound node").append(random.nextInt(300))
+                        .append(' ').append(i % 3).append('\n');
+            }
+            // числовые и строковые метки сводятся разными способами
+            text.append(i % 3 == 0 ? "node" : "").append(random.nextInt(1000))
+                    .append('\t').append(i % 5 == 0 ? "node" : "")
+                    .append(random.nextInt(1000))
+                    .append(i % 2 == 0 ? "\r\n" : " 0.5\n");
+        }
+        File file = write("random.edges", text.toString());
+
+        CsrGraph single = new EdgeListReader(file).readGraph();
+
+        EdgeListReader reader = new EdgeListReader(file);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            reader.setPool(pool);
+            reader.setMinChunk(100);
+            CsrGraph parallel = reader.readGraph();
+            assertSameGraph(single, parallel);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(single.size() > 1500);
+    }
+
+    /**
+     * Метки с ведущими нулями не совпадают с числовыми.
+     */
+    @Test
+    public void testNumericLabels() throws Exception {
+        CsrGraph graph = new EdgeListReader(write("numeric.edges",
+                "7 007\n7 x\n2147483648 7\n")).readGraph();
+        assertEquals(4, graph.size());
+        assertEquals("7", graph.getNode(0).getLabel());
+        assertEquals("007", graph.getNode(1).getLabel());
+        assertEquals("x", graph.getNode(2).getLabel());
+        assertEquals("2147483648", graph.getNode(3).getLabel());
+        assertEquals(3, graph.degree(0));
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testBadBound() throws Exception {
+        new EdgeListReader(write("bad.edges", "a b\n#bound a x\n")).read();
+    }
+}
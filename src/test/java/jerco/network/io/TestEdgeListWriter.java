@@ -0,0 +1,130 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jerco.TestUtils;
+import jerco.network.CsrGraph;
+import jerco.network.ImplicitLattice;
+import jerco.network.Net;
+import jerco.network.NetImpl;
+import jerco.network.NetStructureInfo;
+import jerco.network.Node;
+import jerco.network.SpanningRule;
+import jerco.network.generators.LeftRightBoundsWrapper;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestEdgeListWriter extends TestReaders {
+    static final int SIZE = 5;
+
+    /**
+     * Решетка с границами слева и справа, зараженный средний столбец которой
+     * образует перколяционный кластер сверху вниз.
+     */
+    static ImplicitLattice percolatedLattice() {
+        NetStructureInfo structureInfo = new NetStructureInfo(SIZE, SIZE,
+                RectGenerator.INSTANCE);
+        structureInfo.addWrapper(new LeftRightBoundsWrapper());
+        ImplicitLattice lattice = new ImplicitLattice(structureInfo);
+        for (int row = 0; row < SIZE; row++) {
+            lattice.getNode(row * SIZE + SIZE / 2).setInfected(true);
+        }
+        lattice.setSpanningRule(SpanningRule.TOP_BOTTOM);
+        lattice.findClusters();
+        assertTrue(lattice.hasPercolationCluster());
+        return lattice;
+    }
+
+    /**
+     * Считанный граф совпадает с сетью: метки узлов графа - идентификаторы
+     * узлов сети.
+     */
+    static void assertSameNet(Net expected, CsrGraph actual) {
+        assertEquals(expected.size(), actual.size());
+        Map<String, Node> copies = new HashMap<String, Node>();
+        for (Node node : actual.nodeSet()) {
+            copies.put(node.getLabel(), node);
+        }
+        for (Node node : expected) {
+            Node copy = copies.get(String.valueOf(node.getId()));
+            assertNotNull("node " + node.getId(), copy);
+            assertEquals(node.isInBound(), copy.isInBound());
+            if (node.isInBound()) {
+                assertEquals(node.getBound(), copy.getBound());
+            }
+            Set<String> linked = new HashSet<String>();
+            for (Node other : node) {
+                linked.add(String.valueOf(other.getId()));
+            }
+            Set<String> copyLinked = new HashSet<String>();
+            for (Node other : copy) {
+                copyLinked.add(other.getLabel());
+            }
+            assertEquals(linked, copyLinked);
+        }
+    }
+
+    static File exportFile(String name) {
+        new File(TestUtils.TEST_TEMP_DIR).mkdirs();
+        return new File(TestUtils.TEST_TEMP_DIR + "/" + name);
+    }
+
+    @Test
+    public void testStar() throws Exception {
+        new Node();
+        NetImpl net = new NetImpl(new ExcelReader(loadTestFile("star.xls")));
+        File file = exportFile("star export.edges");
+        new EdgeListWriter(net).write(file);
+
+        assertSameNet(net, new EdgeListReader(file).readGraph());
+    }
+
+    @Test
+    public void testIsolatedNode() throws Exception {
+        BasicNetGenerator generator = new BasicNetGenerator();
+        Node a = new Node();
+        Node b = new Node();
+        Node.linkNodes(a, b);
+        generator.add(a, b, new Node());
+        NetImpl net = new NetImpl(generator);
+        File file = exportFile("isolated.edges");
+        new EdgeListWriter(net).write(file);
+
+        assertSameNet(net, new EdgeListReader(file).readGraph());
+    }
+
+    @Test
+    public void testState() throws Exception {
+        ImplicitLattice lattice = percolatedLattice();
+        File file = exportFile("lattice.edges");
+        new EdgeListWriter(lattice).write(file);
+
+        assertSameNet(lattice, new EdgeListReader(file).readGraph());
+        int infected = 0;
+        int percolation = 0;
+        List<String> lines = Files.readAllLines(file.toPath(),
+                StandardCharsets.UTF_8);
+        for (String line : lines) {
+            if (line.startsWith("#infected ")) {
+                infected++;
+            } else if (line.startsWith("#percolation ")) {
+                percolation++;
+            }
+        }
+        assertEquals(SIZE, infected);
+        assertEquals(SIZE, percolation);
+    }
+}
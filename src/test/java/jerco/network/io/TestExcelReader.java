@@ -1,11 +1,67 @@
 package jerco.network.io;
 
 import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListReader.assertSameGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import jerco.TestUtils;
+import jerco.network.CsrGraph;
+import jxl.Workbook;
+import jxl.write.Label;
+import jxl.write.WritableSheet;
+import jxl.write.WritableWorkbook;
 
 import org.junit.Test;
 
 public class TestExcelReader extends TestReaders {
 
+    /**
+     * Записывает книгу во временный каталог. Каждый лист задается именем и
+     * строками ячеек.
+     */
+    static File write(String name, Object... sheets) throws Exception {
+        new File(TestUtils.TEST_TEMP_DIR).mkdirs();
+        File file = new File(TestUtils.TEST_TEMP_DIR + "/" + name);
+        WritableWorkbook book = Workbook.createWorkbook(file);
+        for (int s = 0; s < sheets.length; s += 2) {
+            WritableSheet sheet = book.createSheet((String) sheets[s], s / 2);
+            String[][] rows = (String[][]) sheets[s + 1];
+            for (int j = 0; j < rows.length; j++) {
+                for (int i = 0; i < rows[j].length; i++) {
+                    if (rows[j][i] != null) {
+                        sheet.addCell(new Label(i, j, rows[j][i]));
+                    }
+                }
+            }
+        }
+        book.write();
+        book.close();
+        return file;
+    }
+
+    /**
+     * Звезда из {@link #testStar(NetReader)}, заданная списком смежности.
+     */
+    private static File writeStarAdjacency(String name) throws Exception {
+        return write(name, "Список смежности", new String[][] {
+                { "Узел", "Связи" },
+                { "1" },
+                { "2" },
+                { "3", "4" },
+                { "4" },
+                { "5" },
+                { "6", "1", "2", "3" },
+                { "6", null, "4", "5" } },
+                "Ключевые узлы", new String[][] {
+                        { "Граница", "Узлы" },
+                        { "0", "1" },
+                        { "1", "3" } });
+    }
+
     @Test
     public void test2node() throws Exception {
         ExcelReader reader = new ExcelReader(loadTestFile("2nodes.xls"));
@@ -19,4 +75,52 @@ public class TestExcelReader extends TestReaders {
         testStar(reader);
 
     }
+
+    @Test
+    public void testAdjacencyList() throws Exception {
+        ExcelReader reader = new ExcelReader(writeStarAdjacency("star adjacency.xls"));
+        assertEquals(ExcelReader.Layout.AUTO, reader.getLayout());
+        testStar(reader);
+    }
+
+    /**
+     * Матрица и список смежности одной сети дают одинаковые графы.
+     */
+    @Test
+    public void testLayoutsEquals() throws Exception {
+        CsrGraph matrix = new ExcelReader(loadTestFile("star.xls")).readGraph();
+        CsrGraph list = new ExcelReader(writeStarAdjacency("star adjacency.xls"))
+                .readGraph();
+        assertTrue(matrix.hasExplicitIds());
+        assertSameGraph(matrix, list);
+    }
+
+    /**
+     * Явно заданный формат читает первый лист без поиска по имени.
+     */
+    @Test
+    public void testExplicitLayout() throws Exception {
+        File file = write("2nodes adjacency.xls", "Лист1", new String[][] {
+                { "Узел", "Связи" },
+                { "1", "2" } });
+        ExcelReader reader = new ExcelReader(file);
+        reader.setLayout(ExcelReader.Layout.ADJACENCY_LIST);
+        test2Nodes(reader);
+
+        reader.setLayout(ExcelReader.Layout.MATRIX);
+        assertEquals(1, reader.readGraph().size());
+    }
+
+    @Test
+    public void testUnknownBoundNode() throws Exception {
+        File file = write("unknown bound.xls", "Список смежности",
+                new String[][] { { "Узел" }, { "1", "2" } }, "Ключевые узлы",
+                new String[][] { { "Граница" }, { "0", "3" } });
+        try {
+            new ExcelReader(file).readGraph();
+            fail("Unknown node in bound must be rejected");
+        } catch (JercoReaderException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("3"));
+        }
+    }
 }
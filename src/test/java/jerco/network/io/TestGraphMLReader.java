@@ -1,12 +1,29 @@
 package jerco.network.io;
 
+import static jerco.TestUtils.checkNode;
 import static jerco.TestUtils.loadTestFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import jerco.network.CsrGraph;
+import jerco.network.NetImpl;
 import jerco.network.Node;
 
 import org.junit.Test;
 
 public class TestGraphMLReader extends TestReaders{
 
+    private static InputStream graphml(String graph) {
+        return new ByteArrayInputStream(("<?xml version=\"1.0\"?>"
+                + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">"
+                + "<graph edgedefault=\"undirected\">" + graph
+                + "</graph></graphml>").getBytes(StandardCharsets.UTF_8));
+    }
+
     @Test
     public void test2nodes() throws Exception {
         new Node(); // This set up node counter to 1, as is excepted to tests
@@ -20,4 +37,54 @@ public class TestGraphMLReader extends TestReaders{
         GraphMLReader reader = new GraphMLReader(loadTestFile("star.graphml"));
         testStar(reader);
     }
+
+    /**
+     * Сеть строится непосредственно по уплотненному графу.
+     */
+    @Test
+    public void testNet() throws Exception {
+        NetImpl net = new NetImpl(new GraphMLReader(
+                loadTestFile("star.graphml")));
+        assertEquals(6, net.size());
+        assertEquals(2, net.boundsCounts());
+        assertEquals(6, net.getGraph().getEdgesCount());
+
+        net.infect(1);
+        assertEquals(1, net.findClusters());
+        assertTrue(net.hasPercolationCluster());
+    }
+
+    /**
+     * Повторные связи отбрасываются, узлы без связей входят в граф, узлы
+     * индексируются в порядке объявления.
+     */
+    @Test
+    public void testDuplicatesAndIsolated() throws Exception {
+        new Node();
+        CsrGraph graph = new GraphMLReader(graphml("<node id=\"x\"/>"
+                + "<node id=\"y\"><data key=\"bound\"> 3 </data></node>"
+                + "<node id=\"z\"/><edge source=\"x\" target=\"y\"/>"
+                + "<edge source=\"y\" target=\"x\"/>"
+                + "<edge source=\"x\" target=\"y\"/>"
+                + "<edge source=\"y\" target=\"y\"/>")).readGraph();
+
+        assertEquals(3, graph.size());
+        assertEquals(1, graph.getEdgesCount());
+        checkNode(graph.getNode(0), 1, 2);
+        checkNode(graph.getNode(1), 2, 1);
+        checkNode(graph.getNode(2), 3);
+        assertEquals("y", graph.getNode(1).getLabel());
+        assertEquals(3, graph.getNode(1).getBound());
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testUndefinedNode() throws Exception {
+        new GraphMLReader(graphml("<node id=\"1\"/>"
+                + "<edge source=\"1\" target=\"2\"/>")).read();
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testBrokenXml() throws Exception {
+        new GraphMLReader(graphml("<node id=\"1\">")).read();
+    }
 }
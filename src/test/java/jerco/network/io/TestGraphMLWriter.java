@@ -0,0 +1,67 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListWriter.assertSameNet;
+import static jerco.network.io.TestEdgeListWriter.exportFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import jerco.network.ImplicitLattice;
+import jerco.network.NetImpl;
+import jerco.network.Node;
+
+import org.junit.Test;
+
+public class TestGraphMLWriter extends TestReaders {
+
+    @Test
+    public void testStar() throws Exception {
+        new Node();
+        NetImpl net = new NetImpl(new GraphMLReader(loadTestFile("star.graphml")));
+        File file = exportFile("star export.graphml");
+        new GraphMLWriter(net).write(file);
+
+        assertSameNet(net, new GraphMLReader(file).readGraph());
+    }
+
+    @Test
+    public void testState() throws Exception {
+        ImplicitLattice lattice = TestEdgeListWriter.percolatedLattice();
+        File file = exportFile("lattice.graphml");
+        new GraphMLWriter(lattice).write(file);
+
+        assertSameNet(lattice, new GraphMLReader(file).readGraph());
+        String text = new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+        assertEquals(TestEdgeListWriter.SIZE,
+                count(text, "<data key=\"percolation\">true</data>"));
+    }
+
+    @Test
+    public void testEscape() throws Exception {
+        BasicNetGenerator generator = new BasicNetGenerator();
+        generator.add(new Node("узел <a & \"b\">"));
+        File file = exportFile("escape.graphml");
+        new GraphMLWriter(new NetImpl(generator)).write(file);
+
+        String text = new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+        assertTrue(text, text.contains(
+                "<data key=\"label\">узел &lt;a &amp; &quot;b&quot;&gt;</data>"));
+        assertEquals(1, new GraphMLReader(file).readGraph().size());
+    }
+
+    static int count(String text, String pattern) {
+        int count = 0;
+        int from = text.indexOf(pattern);
+        while (from >= 0) {
+            count++;
+            from = text.indexOf(pattern, from + pattern.length());
+        }
+        return count;
+    }
+}
@@ -36,4 +36,18 @@ public class TestLink {
         assertFalse(ac.equals(ab));
         assertFalse(ac.hashCode() == ab.hashCode());
     }
+
+    /**
+     * Связи с одинаковым произведением идентификаторов узлов имеют разные хэши.
+     */
+    @Test
+    public void testHashCollisions() {
+        Link a = new Link(new Node(2), new Node(6));
+        Link b = new Link(new Node(3), new Node(4));
+        Link c = new Link(new Node(0), new Node(5));
+        Link d = new Link(new Node(0), new Node(7));
+
+        assertFalse(a.hashCode() == b.hashCode());
+        assertFalse(c.hashCode() == d.hashCode());
+    }
 }
@@ -0,0 +1,99 @@
+package jerco.network.io;
+
+import static jerco.TestUtils.loadTestFile;
+import static jerco.network.io.TestEdgeListReader.assertSameGraph;
+import static jerco.network.io.TestEdgeListReader.write;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import jerco.network.CsrGraph;
+import jerco.network.Node;
+
+import org.junit.Test;
+
+public class TestMatrixMarketReader extends TestReaders {
+
+    @Test
+    public void test2nodes() throws Exception {
+        new Node(); // This set up node counter to 1, as is excepted to tests
+        test2Nodes(new MatrixMarketReader(loadTestFile("2nodes.mtx")));
+    }
+
+    @Test
+    public void testStar() throws Exception {
+        new Node();
+        testStar(new MatrixMarketReader(loadTestFile("star.mtx")));
+    }
+
+    /**
+     * Узлы без связей входят в граф, элементы на диагонали и повторы
+     * отбрасываются.
+     */
+    @Test
+    public void testIsolated() throws Exception {
+        CsrGraph graph = new MatrixMarketReader(write("isolated.mtx",
+                "%%MatrixMarket matrix coordinate integer general\n"
+                        + "4 4 4\n1 2 5\n2 1 5\n3 3 1\n1 2 7\n"))
+                .readGraph();
+        assertEquals(4, graph.size());
+        assertEquals(1, graph.getEdgesCount());
+        assertEquals("4", graph.getNode(3).getLabel());
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        Random random = new Random(11);
+        StringBuilder text = new StringBuilder(
+                "%%MatrixMarket matrix coordinate pattern general\n"
+                        + "% comment\n500 500 4000\n");
+        for (int i = 0; i < 4000; i++) {
+            if (i % 100 == 0) {
+                text.append("%bound ").append(1 + random.nextInt(500))
+                        .append(' ').append(i % 2).append('\n');
+            }
+            text.append(1 + random.nextInt(500)).append(' ')
+                    .append(1 + random.nextInt(500)).append('\n');
+        }
+        File file = write("random.mtx", text.toString());
+
+        CsrGraph single = new MatrixMarketReader(file).readGraph();
+        MatrixMarketReader reader = new MatrixMarketReader(file);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            reader.setPool(pool);
+            reader.setMinChunk(64);
+            assertSameGraph(single, reader.readGraph());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testNoBanner() throws Exception {
+        new MatrixMarketReader(write("nobanner.mtx", "2 2 1\n1 2\n")).read();
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testArrayFormat() throws Exception {
+        new MatrixMarketReader(write("array.mtx",
+                "%%MatrixMarket matrix array real general\n2 2\n1\n0\n0\n1\n"))
+                .read();
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testOutOfRange() throws Exception {
+        new MatrixMarketReader(write("range.mtx",
+                "%%MatrixMarket matrix coordinate pattern general\n"
+                        + "2 2 1\n1 3\n")).read();
+    }
+
+    @Test(expected = JercoReaderException.class)
+    public void testEntriesCount() throws Exception {
+        new MatrixMarketReader(write("count.mtx",
+                "%%MatrixMarket matrix coordinate pattern general\n"
+                        + "2 2 2\n1 2\n")).read();
+    }
+}
@@ -0,0 +1,84 @@
+package jerco.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.TestBase;
+
+import org.junit.Test;
+
+public class TestAdaptiveExperiments extends TestBase {
+
+    private static Scenario scenario(double targetRelativeError) {
+        Scenario scenario = new Scenario() {
+            @Override
+            public void doScenario() {
+            }
+        };
+        scenario.setSeed(13);
+        scenario.setTargetRelativeError(targetRelativeError);
+        scenario.setMinExperimentsCount(8);
+        scenario.setMaxExperimentsCount(400);
+        return scenario;
+    }
+
+    /**
+     * Ошибка достигается, и вблизи порога перколяции требуется больше
+     * экспериментов, чем вдали от него.
+     */
+    @Test
+    public void testConverges() {
+        Scenario scenario = scenario(0.02);
+        ExperimentsStatistics far = scenario.makeExperiments(30, 30, 0.8);
+        ExperimentsStatistics near = scenario.makeExperiments(30, 30, 0.59);
+
+        assertTrue(far.getMeanMaximumClusterSizeError() <= 0.02 * far
+                .getMeanMaximumClusterSize());
+        assertTrue(near.getMeanMaximumClusterSizeError() <= 0.02 * near
+                .getMeanMaximumClusterSize());
+        assertEquals(8, far.getExperimentsCount());
+        assertTrue(near.getExperimentsCount() > 4 * far.getExperimentsCount());
+        assertTrue(near.getExperimentsCount() <= 400);
+    }
+
+    @Test
+    public void testMaxExperiments() {
+        Scenario scenario = scenario(1e-6);
+        scenario.setMaxExperimentsCount(50);
+        assertEquals(50, scenario.makeExperiments(20, 20, 0.55)
+                .getExperimentsCount());
+    }
+
+    /**
+     * При нулевой дисперсии достаточно минимального количества
+     * экспериментов.
+     */
+    @Test
+    public void testNoVariance() {
+        assertEquals(8, scenario(0.01).makeExperiments(10, 10, 1)
+                .getExperimentsCount());
+    }
+
+    @Test
+    public void testSameForAnyThreads() {
+        ExperimentsStatistics sequential = scenario(0.03).makeExperiments(25,
+                25, 0.6);
+        Scenario parallel = scenario(0.03);
+        parallel.setThreads(3);
+        ExperimentsStatistics statistics = parallel.makeExperiments(25, 25,
+                0.6);
+        assertEquals(sequential.getSeeds(), statistics.getSeeds());
+        assertEquals(sequential.getMeanMaximumClusterSize(), statistics
+                .getMeanMaximumClusterSize(), 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        Scenario scenario = scenario(0);
+        assertFalse(scenario.isAdaptive());
+        scenario.setExperimentsCount(3);
+        assertEquals(3, scenario.makeExperiments(10, 10, 0.5)
+                .getExperimentsCount());
+    }
+}
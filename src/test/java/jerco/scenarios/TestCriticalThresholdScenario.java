@@ -0,0 +1,68 @@
+package jerco.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.TestBase;
+import jerco.network.generators.NetGenerators;
+
+import org.junit.Test;
+
+public class TestCriticalThresholdScenario extends TestBase {
+
+    private static CriticalThresholdScenario scenario(int size) {
+        CriticalThresholdScenario scenario = new CriticalThresholdScenario();
+        scenario.setSeed(3);
+        scenario.setWidth(size);
+        scenario.setHeight(size);
+        scenario.setPrecision(1e-5);
+        scenario.setTargetError(2e-3);
+        scenario.setMinExperimentsCount(20);
+        scenario.setMaxExperimentsCount(2000);
+        return scenario;
+    }
+
+    /**
+     * Порог квадратной решетки по узлам - 0.5927.
+     */
+    @Test
+    public void testSquare() {
+        CriticalThresholdScenario scenario = scenario(64);
+        scenario.doScenario();
+        assertTrue(scenario.getThresholdError() <= 2e-3);
+        assertEquals(0.5927, scenario.getThreshold(), 4 * 2e-3 + 0.005);
+        // 17 делений отрезка и проверка полного заражения на выборку
+        assertEquals(18 * scenario.getSamplesCount(), scenario
+                .getChecksCount());
+    }
+
+    /**
+     * Порог треугольной решетки по узлам - 1/2.
+     */
+    @Test
+    public void testTriangle() {
+        CriticalThresholdScenario scenario = scenario(48);
+        scenario.setGenerator(NetGenerators.Triangle.getGenerator());
+        scenario.doScenario();
+        assertEquals(0.5, scenario.getThreshold(), 4 * 2e-3 + 0.005);
+    }
+
+    @Test
+    public void testReproducible() {
+        CriticalThresholdScenario first = scenario(20);
+        CriticalThresholdScenario second = scenario(20);
+        first.doScenario();
+        second.doScenario();
+        assertEquals(first.getSamplesCount(), second.getSamplesCount());
+        assertEquals(first.getThreshold(), second.getThreshold(), 0);
+    }
+
+    @Test
+    public void testMaxSamples() {
+        CriticalThresholdScenario scenario = scenario(10);
+        scenario.setTargetError(0);
+        scenario.setMaxExperimentsCount(7);
+        scenario.doScenario();
+        assertEquals(7, scenario.getSamplesCount());
+    }
+}
@@ -1,8 +1,13 @@
 package jerco.scenarios;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.HashSet;
 import static jerco.TestUtils.*;
 import jerco.Constants;
 import jerco.network.Net;
@@ -11,6 +16,7 @@ import jerco.network.RegularLattice;
 import jerco.network.TestBase;
 import jerco.network.RegularLattice.BadNetFileFormatException;
 import jerco.network.generators.RectGenerator;
+import jerco.utils.IntHistogram;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -131,4 +137,128 @@ public class TestExperimentsStatistics extends TestBase {
                 Constants.DOUBLE_PRECISION);
     }
 
+    /**
+     * Эксперименты сценария с одним зерном воспроизводимы, зерна
+     * экспериментов записываются в статистику.
+     */
+    @Test
+    public void testReproducibleExperiments() {
+        Scenario scenario = new Scenario() {
+            @Override
+            public void doScenario() {
+            }
+        };
+        scenario.setSeed(2011);
+        scenario.setExperimentsCount(5);
+        ExperimentsStatistics first = scenario.makeExperiments(20, 20, 0.55);
+        ExperimentsStatistics second = scenario.makeExperiments(20, 20, 0.55);
+
+        assertEquals(5, first.getSeeds().size());
+        assertEquals(first.getSeeds(), second.getSeeds());
+        assertEquals(5, new HashSet<Long>(first.getSeeds()).size());
+        assertEquals(first.getMeanMaximumClusterSize(), second
+                .getMeanMaximumClusterSize(), 0);
+        assertEquals(first.getProbabilityClusterInPercolation(), second
+                .getProbabilityClusterInPercolation(), 0);
+
+        scenario.setStreamingLattice(true);
+        ExperimentsStatistics streamed = scenario.makeExperiments(20, 20, 0.55);
+        assertEquals(first.getSeeds(), streamed.getSeeds());
+    }
+
+    @Test
+    public void testSeedsWithoutSeed() {
+        assertEquals(1, statistics.getSeeds().size());
+        assertNull(statistics.getSeeds().get(0));
+    }
+
+    /**
+     * Зерна восстанавливаются по главному зерну и номерам экспериментов, в
+     * том числе после объединения статистик, продолжающих друг друга.
+     */
+    @Test
+    public void testSeedRange() {
+        ExperimentsStatistics first = new ExperimentsStatistics(5 * 5, 0.6);
+        first.setSeedRange(42, 5, 5, 0);
+        first.addData(loadNet5x5(), 1L);
+        ExperimentsStatistics second = new ExperimentsStatistics(5 * 5, 0.6);
+        second.setSeedRange(42, 5, 5, 1);
+        second.addData(loadNet5x5(), 2L);
+        second.addData(loadNet5x5(), 3L);
+        first.addAll(second);
+
+        assertFalse(first.isRecordingSeeds());
+        assertEquals(3, first.getSeeds().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Long.valueOf(Scenario.experimentSeed(42, 5, 5, 0.6,
+                    i)), first.getSeeds().get(i));
+        }
+
+        // Пропуск в номерах экспериментов делает зерна неизвестными
+        ExperimentsStatistics gap = new ExperimentsStatistics(5 * 5, 0.6);
+        gap.setSeedRange(42, 5, 5, 7);
+        gap.addData(loadNet5x5());
+        first.addAll(gap);
+        assertEquals(4, first.getSeeds().size());
+        assertNull(first.getSeeds().get(0));
+    }
+
+    @Test
+    public void testRecordingSeeds() {
+        ExperimentsStatistics recording = new ExperimentsStatistics(5 * 5, 0.6);
+        recording.setRecordingSeeds(true);
+        recording.addData(loadNet5x5(), 11L);
+        recording.addAll(statistics);
+
+        assertEquals(Arrays.asList(11L, null), recording.getSeeds());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRecordingSeedsAfterData() {
+        statistics.setRecordingSeeds(true);
+    }
+
+    @Test
+    public void testStandardError() {
+        assertEquals(0, statistics2.getMeanMaximumClusterSizeError(), 0);
+        assertTrue(statistics3.getMeanMaximumClusterSizeError() > 0);
+        assertEquals(statistics3.getMeanMaximumClusterSizeError() / 25,
+                statistics3.getProbabilityClusterInPercolationError(),
+                Constants.DOUBLE_PRECISION);
+    }
+
+    /**
+     * Кластер больше Integer.MAX_VALUE учитывается в количестве кластеров и
+     * наибольшем кластере, но не в гистограмме.
+     */
+    @Test
+    public void testHugeCluster() {
+        long huge = 3L * Integer.MAX_VALUE;
+        ExperimentsStatistics huges = new ExperimentsStatistics(100, 0.6);
+        IntHistogram sizes = new IntHistogram();
+        sizes.add(1, 5);
+        sizes.add(7);
+        huges.addData(sizes, 7, huge, null);
+        assertEquals(1, huges.getExperimentsCount());
+        assertEquals(huge, huges.getMeanMaximumClusterSize(), 0);
+        assertEquals(7, huges.getClustersCount().getMean(), 0);
+        assertEquals(6, huges.getClustersSizes().getTotalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHugeClusterTooSmall() {
+        IntHistogram sizes = new IntHistogram();
+        sizes.add(7);
+        statistics.addData(sizes, 1, 5, null);
+    }
+
+    @Test
+    public void testAddAll() {
+        statistics.addAll(statistics3);
+        assertEquals(6, statistics.getExperimentsCount());
+        assertEquals(6, statistics.getMaximumClusterSize().getCount());
+        assertEquals(statistics2.getClustersSizes().getTotalCount() / 10
+                + statistics3.getClustersSizes().getTotalCount(), statistics
+                .getClustersSizes().getTotalCount());
+    }
 }
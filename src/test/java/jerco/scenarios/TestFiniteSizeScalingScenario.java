@@ -0,0 +1,81 @@
+package jerco.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.TestBase;
+
+import org.junit.Test;
+
+public class TestFiniteSizeScalingScenario extends TestBase {
+
+    private static FiniteSizeScalingScenario scenario(int threads) {
+        FiniteSizeScalingScenario scenario = new FiniteSizeScalingScenario();
+        scenario.setSeed(21);
+        scenario.setStartSize(10);
+        scenario.setEndSize(40);
+        scenario.setStep(10);
+        scenario.setProbabilities(0.593, 0.8);
+        scenario.setExperimentsCount(6);
+        scenario.setThreads(threads);
+        return scenario;
+    }
+
+    @Test
+    public void testCells() {
+        FiniteSizeScalingScenario scenario = scenario(1);
+        scenario.doScenario();
+
+        assertEquals(4, scenario.getCells().size());
+        assertEquals(4, scenario.getResult().size());
+        for (int size = 10; size <= 40; size += 10) {
+            FiniteSizeScalingScenario.Cell cell = scenario.getCell(size, 0.593);
+            assertEquals(6, cell.getMaximumClusterSize().getCount());
+            assertEquals(Math.log10(cell.getMaximumClusterSize().getMean()),
+                    scenario.getResult().get(Math.log10(size)), 0);
+
+            FiniteSizeScalingScenario.Cell dense = scenario.getCell(size, 0.8);
+            assertEquals(1, dense.getSpanning().getMean(), 0);
+            assertTrue(dense.getSusceptibility().getMean() < cell
+                    .getSusceptibility().getMean());
+        }
+    }
+
+    /**
+     * M(L) совпадает с сериями экспериментов {@link Scenario}, проведенными
+     * с тем же зерном.
+     */
+    @Test
+    public void testSameAsMakeExperiments() {
+        FiniteSizeScalingScenario scenario = scenario(1);
+        scenario.doScenario();
+        ExperimentsStatistics statistics = scenario.makeExperiments(30, 30,
+                0.593);
+        assertEquals(statistics.getMeanMaximumClusterSize(), scenario
+                .getCell(30, 0.593).getMaximumClusterSize().getMean(), 0);
+    }
+
+    /**
+     * Результат не зависит от количества потоков и бюджета памяти.
+     */
+    @Test
+    public void testParallel() {
+        FiniteSizeScalingScenario sequential = scenario(1);
+        sequential.doScenario();
+        FiniteSizeScalingScenario parallel = scenario(3);
+        parallel.setMemoryBudget(parallel.estimateMemory(40));
+        parallel.doScenario();
+        assertEquals(sequential.getResult(), parallel.getResult());
+        assertEquals(sequential.getCell(20, 0.8).getSusceptibility()
+                .getMean(), parallel.getCell(20, 0.8).getSusceptibility()
+                .getMean(), 0);
+    }
+
+    @Test
+    public void testStop() {
+        FiniteSizeScalingScenario scenario = scenario(2);
+        scenario.stop();
+        scenario.doScenario();
+        assertTrue(scenario.getCells().isEmpty());
+    }
+}
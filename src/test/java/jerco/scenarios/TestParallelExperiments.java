@@ -0,0 +1,143 @@
+package jerco.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+
+import jerco.network.TestBase;
+
+import org.junit.Test;
+
+public class TestParallelExperiments extends TestBase {
+
+    private static Scenario scenario(int threads) {
+        Scenario scenario = new Scenario() {
+            @Override
+            public void doScenario() {
+            }
+        };
+        scenario.setSeed(77);
+        scenario.setExperimentsCount(7);
+        scenario.setThreads(threads);
+        return scenario;
+    }
+
+    /**
+     * Результат не зависит от количества потоков.
+     */
+    @Test
+    public void testSameAsSequential() {
+        ExperimentsStatistics sequential = scenario(1).makeExperiments(30, 20,
+                0.6);
+        for (int threads : new int[] { 2, 3, 7, 16 }) {
+            ExperimentsStatistics parallel = scenario(threads).makeExperiments(
+                    30, 20, 0.6);
+            assertEquals(7, parallel.getExperimentsCount());
+            assertEquals(sequential.getSeeds(), parallel.getSeeds());
+            assertEquals(sequential.getMeanMaximumClusterSize(), parallel
+                    .getMeanMaximumClusterSize(), 0);
+        }
+
+        Scenario implicit = scenario(3);
+        implicit.setImplicitLattice(true);
+        assertEquals(sequential.getMeanMaximumClusterSize(), implicit
+                .makeExperiments(30, 20, 0.6).getMeanMaximumClusterSize(), 0);
+    }
+
+    @Test
+    public void testTableScenarios() {
+        NodeInPercolationProbabilityScenario first = new NodeInPercolationProbabilityScenario(
+                0.3, 0.8, 0.1);
+        NodeInPercolationProbabilityScenario second = new NodeInPercolationProbabilityScenario(
+                0.3, 0.8, 0.1);
+        first.setSeed(5);
+        second.setSeed(5);
+        first.setWidth(25);
+        first.setHeight(25);
+        second.setWidth(25);
+        second.setHeight(25);
+        second.setThreads(4);
+        first.execute();
+        second.execute();
+        assertEquals(first.getResult(), second.getResult());
+
+        BiggestClusterSizeScenario biggest = new BiggestClusterSizeScenario(10,
+                30, 10);
+        BiggestClusterSizeScenario parallelBiggest = new BiggestClusterSizeScenario(
+                10, 30, 10);
+        biggest.setSeed(6);
+        parallelBiggest.setSeed(6);
+        parallelBiggest.setThreads(3);
+        biggest.execute();
+        parallelBiggest.execute();
+        assertEquals(biggest.getResult(), parallelBiggest.getResult());
+    }
+
+    /**
+     * Остановленный сценарий не проводит новых экспериментов ни в одном
+     * потоке.
+     */
+    @Test
+    public void testStop() {
+        Scenario scenario = scenario(4);
+        scenario.stop();
+        ExperimentsStatistics statistics = scenario.makeExperiments(10, 10,
+                0.5);
+        assertEquals(0, statistics.getExperimentsCount());
+        assertTrue(statistics.getSeeds().isEmpty());
+    }
+
+    /**
+     * Серии экспериментов используют один пул потоков до завершения
+     * сценария.
+     */
+    @Test
+    public void testExecutorReused() {
+        Scenario scenario = scenario(3);
+        scenario.makeExperiments(10, 10, 0.5);
+        ExecutorService executor = scenario.executor();
+        scenario.makeExperiments(10, 10, 0.6);
+        assertSame(executor, scenario.executor());
+
+        scenario.shutdownExperiments();
+        assertTrue(executor.isShutdown());
+        assertEquals(7, scenario.makeExperiments(10, 10, 0.7)
+                .getExperimentsCount());
+        assertNotSame(executor, scenario.executor());
+        scenario.shutdownExperiments();
+    }
+
+    /**
+     * Запуск сценария завершает пул потоков, даже если сценарий завершился
+     * исключением.
+     */
+    @Test
+    public void testExecuteShutsDownExecutor() {
+        final ExecutorService[] used = new ExecutorService[1];
+        Scenario scenario = new Scenario() {
+            @Override
+            public void doScenario() {
+                makeExperiments(10, 10, 0.5);
+                used[0] = executor();
+                throw new IllegalStateException("stop");
+            }
+        };
+        scenario.setThreads(2);
+        try {
+            scenario.execute();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        assertTrue(used[0].isShutdown());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadThreads() {
+        scenario(0);
+    }
+}
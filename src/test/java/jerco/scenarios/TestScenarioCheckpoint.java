@@ -0,0 +1,208 @@
+package jerco.scenarios;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import jerco.network.TestBase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestScenarioCheckpoint extends TestBase {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("checkpoint", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * Сценарий, который останавливается перед экспериментом с номером
+     * stopAt и считает проведенные эксперименты.
+     */
+    private static class StoppingScenario extends Scenario {
+        private static final long serialVersionUID = 1L;
+        private final int stopAt;
+        private int experiments;
+
+        StoppingScenario(int stopAt, int threads) {
+            this(stopAt, threads, true);
+        }
+
+        StoppingScenario(int stopAt, int threads, boolean seeded) {
+            this.stopAt = stopAt;
+            if (seeded) {
+                setSeed(21);
+            }
+            setExperimentsCount(30);
+            setThreads(threads);
+            setCheckpointInterval(0);
+        }
+
+        @Override
+        protected synchronized long experimentSeed(int width, int height,
+                double p, int experiment) {
+            if (experiment == stopAt) {
+                stop();
+            }
+            experiments++;
+            return super.experimentSeed(width, height, p, experiment);
+        }
+
+        @Override
+        public void doScenario() {
+        }
+    }
+
+    private static void assertSame(ExperimentsStatistics expected,
+            ExperimentsStatistics actual) {
+        assertEquals(expected.getExperimentsCount(), actual
+                .getExperimentsCount());
+        assertEquals(expected.getSeeds(), actual.getSeeds());
+        assertEquals(expected.getMeanMaximumClusterSize(), actual
+                .getMeanMaximumClusterSize(), 0);
+        assertEquals(expected.getMeanMaximumClusterSizeError(), actual
+                .getMeanMaximumClusterSizeError(), 0);
+        assertEquals(expected.getClustersCount().getVariance(), actual
+                .getClustersCount().getVariance(), 0);
+    }
+
+    /**
+     * Прерванная и продолженная точка совпадает с непрерывно выполненной.
+     */
+    @Test
+    public void testResume() {
+        for (int threads : new int[] { 1, 3 }) {
+            file.delete();
+            ExperimentsStatistics expected = new StoppingScenario(-1, threads)
+                    .makeExperiments(20, 20, 0.6);
+
+            StoppingScenario interrupted = new StoppingScenario(14, threads);
+            interrupted.setCheckpointFile(file);
+            ExperimentsStatistics partial = interrupted.makeExperiments(20,
+                    20, 0.6);
+            assertTrue(partial.getExperimentsCount() < 30);
+            assertTrue(file.exists());
+
+            StoppingScenario resumed = new StoppingScenario(-1, threads);
+            resumed.setCheckpointFile(file);
+            ExperimentsStatistics actual = resumed.makeExperiments(20, 20, 0.6);
+            assertSame(expected, actual);
+            assertTrue(resumed.experiments < 30);
+        }
+    }
+
+    /**
+     * Новый экземпляр сценария без явно заданного зерна продолжает работу с
+     * зерном контрольной точки.
+     */
+    @Test
+    public void testResumeWithoutSeed() {
+        StoppingScenario interrupted = new StoppingScenario(14, 1, false);
+        interrupted.setCheckpointFile(file);
+        interrupted.makeExperiments(20, 20, 0.6);
+
+        StoppingScenario uninterrupted = new StoppingScenario(-1, 1, false);
+        uninterrupted.setSeed(interrupted.getSeed());
+        ExperimentsStatistics expected = uninterrupted.makeExperiments(20,
+                20, 0.6);
+
+        StoppingScenario resumed = new StoppingScenario(-1, 1, false);
+        assertTrue(resumed.getSeed() != interrupted.getSeed());
+        resumed.setCheckpointFile(file);
+        ExperimentsStatistics actual = resumed.makeExperiments(20, 20, 0.6);
+        assertEquals(interrupted.getSeed(), resumed.getSeed());
+        assertSame(expected, actual);
+        assertTrue(resumed.experiments < 30);
+    }
+
+    /**
+     * Подбор количества экспериментов продолжается с того же шага.
+     */
+    @Test
+    public void testResumeAdaptive() {
+        StoppingScenario uninterrupted = new StoppingScenario(-1, 2);
+        uninterrupted.setTargetRelativeError(0.01);
+        uninterrupted.setMaxExperimentsCount(300);
+        ExperimentsStatistics expected = uninterrupted.makeExperiments(20, 20,
+                0.59);
+
+        StoppingScenario interrupted = new StoppingScenario(40, 2);
+        interrupted.setTargetRelativeError(0.01);
+        interrupted.setMaxExperimentsCount(300);
+        interrupted.setCheckpointFile(file);
+        interrupted.makeExperiments(20, 20, 0.59);
+
+        StoppingScenario resumed = new StoppingScenario(-1, 2);
+        resumed.setTargetRelativeError(0.01);
+        resumed.setMaxExperimentsCount(300);
+        resumed.setCheckpointFile(file);
+        assertSame(expected, resumed.makeExperiments(20, 20, 0.59));
+    }
+
+    /**
+     * Завершенные точки не выполняются повторно.
+     */
+    @Test
+    public void testSkipCompleted() {
+        StoppingScenario first = new StoppingScenario(-1, 1);
+        first.setCheckpointFile(file);
+        ExperimentsStatistics expected = first.makeExperiments(15, 15, 0.5);
+        first.makeExperiments(15, 15, 0.7);
+        assertEquals(60, first.experiments);
+
+        StoppingScenario second = new StoppingScenario(-1, 1);
+        second.setCheckpointFile(file);
+        assertSame(expected, second.makeExperiments(15, 15, 0.5));
+        second.makeExperiments(15, 15, 0.7);
+        assertEquals(0, second.experiments);
+        second.makeExperiments(15, 15, 0.8);
+        assertEquals(30, second.experiments);
+    }
+
+    /**
+     * Результаты таблицы восстанавливаются по сохраненным точкам.
+     */
+    @Test
+    public void testTableScenario() {
+        NodeInPercolationProbabilityScenario expected = new NodeInPercolationProbabilityScenario(
+                0.4, 0.8, 0.1);
+        expected.setSeed(3);
+        expected.setWidth(20);
+        expected.setHeight(20);
+        expected.doScenario();
+
+        NodeInPercolationProbabilityScenario resumed = new NodeInPercolationProbabilityScenario(
+                0.4, 0.8, 0.1);
+        resumed.setSeed(3);
+        resumed.setWidth(20);
+        resumed.setHeight(20);
+        resumed.setCheckpointFile(file);
+        resumed.doScenario();
+        resumed.setCheckpointFile(file);
+        resumed.doScenario();
+        assertEquals(expected.getResult(), resumed.getResult());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOtherParameters() {
+        StoppingScenario first = new StoppingScenario(-1, 1);
+        first.setCheckpointFile(file);
+        first.makeExperiments(10, 10, 0.5);
+
+        StoppingScenario second = new StoppingScenario(-1, 1);
+        second.setSeed(22);
+        second.setCheckpointFile(file);
+        second.makeExperiments(10, 10, 0.5);
+    }
+}
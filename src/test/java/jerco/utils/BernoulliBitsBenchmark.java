@@ -0,0 +1,75 @@
+package jerco.utils;
+
+import java.util.Random;
+
+/**
+ * Сравнивает заполнение битов схемы Бернулли пропусками
+ * ({@link BernoulliBits}) с вычислением случайного числа для каждого бита при
+ * разных вероятностях.
+ * <p>
+ * Запуск (количество битов задается аргументом):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.utils.BernoulliBitsBenchmark 100000000
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class BernoulliBitsBenchmark {
+    private static final double[] PROBABILITIES = { 0.001, 0.01, 0.05, 0.1,
+            0.2, 0.5, 0.9, 0.99 };
+
+    public static void main(String[] args) {
+        long size = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        Random random = RandomAlgorithm.XOSHIRO256.create(1);
+        System.out.printf("bits = %d%n", size);
+        // Прогрев
+        dense(random, 0.5, size / 10);
+        sparse(random, 0.01, size / 10);
+        for (double p : PROBABILITIES) {
+            long start = System.nanoTime();
+            long denseCount = dense(random, p, size);
+            double denseTime = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            long sparseCount = sparse(random, p, size);
+            double sparseTime = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("p = %-6s dense %8.1f ms  bits %8.1f ms  "
+                    + "speedup %6.2f  (%.5f / %.5f)%n", p, denseTime,
+                    sparseTime, denseTime / sparseTime, (double) denseCount
+                            / size, (double) sparseCount / size);
+        }
+    }
+
+    /**
+     * Случайное число для каждого бита, как до появления
+     * {@link BernoulliBits}.
+     */
+    private static long dense(Random random, double p, long size) {
+        long count = 0;
+        for (long word = 0; word < size; word += 64) {
+            final long limit = Math.min(64, size - word);
+            long bits = 0;
+            for (int bit = 0; bit < limit; bit++) {
+                if (random.nextDouble() < p) {
+                    bits |= 1L << bit;
+                }
+            }
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    private static long sparse(Random random, double p, long size) {
+        BernoulliBits bits = new BernoulliBits(random, p, size);
+        long count = 0;
+        while (bits.remaining() > 0) {
+            count += Long.bitCount(bits.nextWord());
+        }
+        return count;
+    }
+}
@@ -0,0 +1,80 @@
+package jerco.utils;
+
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.generators.RectGenerator;
+
+/**
+ * Сравнивает накопление размеров кластеров в {@link Bag} и в
+ * {@link IntHistogram}. Размеры кластеров берутся из реальной решетки,
+ * зараженной с заданной вероятностью, и добавляются многократно, как при
+ * сборе статистики серии экспериментов.
+ * <p>
+ * Запуск (сторона квадратной решетки и вероятность задаются аргументами):
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:... \
+ *     jerco.utils.IntHistogramBenchmark 1000 0.55
+ * </pre>
+ *
+ * @author Leonid Vygovskiy
+ *
+ */
+public class IntHistogramBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double p = args.length > 1 ? Double.parseDouble(args[1]) : 0.55;
+
+        RegularLattice net = new RegularLattice(new NetStructureInfo(side,
+                side, RectGenerator.INSTANCE));
+        net.setRandom(RandomAlgorithm.XOSHIRO256.create(1));
+        net.infect(p);
+        int[] sizes = net.getClustersSizes();
+        System.out.printf("clusters = %d, p = %.3f%n", sizes.length, p);
+
+        // Прогрев
+        for (int i = 0; i < 3; i++) {
+            bag(sizes);
+            histogram(sizes);
+        }
+
+        long bagTime = 0;
+        long histogramTime = 0;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += bag(sizes);
+            bagTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum += histogram(sizes);
+            histogramTime += System.nanoTime() - start;
+        }
+        System.out.printf("%-14s %8.2f ms%n", "Bag", bagTime / 1e6 / ROUNDS);
+        System.out.printf("%-14s %8.2f ms  speedup %.1f%n", "IntHistogram",
+                histogramTime / 1e6 / ROUNDS, (double) bagTime
+                        / histogramTime);
+        if (checksum == 42) {
+            System.out.println(checksum);
+        }
+    }
+
+    private static long bag(int[] sizes) {
+        Bag<Integer> bag = new Bag<Integer>();
+        for (int size : sizes) {
+            bag.add(size);
+        }
+        return bag.size() + bag.lastKey();
+    }
+
+    private static long histogram(int[] sizes) {
+        IntHistogram histogram = new IntHistogram();
+        for (int size : sizes) {
+            histogram.add(size);
+        }
+        return histogram.size() + histogram.lastKey();
+    }
+}
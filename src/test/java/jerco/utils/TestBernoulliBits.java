@@ -0,0 +1,115 @@
+package jerco.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestBernoulliBits {
+
+    /**
+     * Доля единиц и средняя длина серии нулей (при малой p) или единиц (при
+     * большой p) соответствуют схеме Бернулли.
+     */
+    @Test
+    public void testDistribution() {
+        final int size = 2000000;
+        for (double p : new double[] { 0.003, 0.05, 0.3, 0.7, 0.97 }) {
+            BernoulliBits bits = new BernoulliBits(RandomAlgorithm.XOSHIRO256
+                    .create(3), p, size);
+            assertEquals(p < 0.1 || p > 0.9, bits.isSparse());
+
+            long ones = 0;
+            long runs = 0;
+            boolean previous = false;
+            int[] positions = new int[64];
+            int word = 0;
+            while (bits.remaining() > 0) {
+                long value = bits.nextWord();
+                ones += Long.bitCount(value);
+                for (int bit = 0; bit < 64; bit++) {
+                    boolean current = (value & (1L << bit)) != 0;
+                    if (current) {
+                        positions[bit]++;
+                    }
+                    if (current != previous) {
+                        runs++;
+                        previous = current;
+                    }
+                }
+                word++;
+            }
+            double sigma = Math.sqrt(p * (1 - p) / size);
+            assertEquals(p, (double) ones / size, 5 * sigma);
+            // Количество смен значения: 2 p (1 - p) на бит
+            assertEquals(2 * p * (1 - p), (double) runs / size, 0.1 * 2 * p
+                    * (1 - p));
+            // Позиция бита в слове не влияет на вероятность
+            for (int bit = 0; bit < 64; bit++) {
+                assertEquals(p, (double) positions[bit] / word, 6 * Math
+                        .sqrt(p * (1 - p) / word));
+            }
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        BernoulliBits zero = new BernoulliBits(RandomAlgorithm.XOSHIRO256
+                .create(), -0.5, 100);
+        BernoulliBits one = new BernoulliBits(RandomAlgorithm.XOSHIRO256
+                .create(), 1, 100);
+        assertEquals(0L, zero.nextWord());
+        assertEquals(-1L, one.nextWord());
+        assertEquals(0L, zero.next(36));
+        assertEquals((1L << 36) - 1, one.next(36));
+        assertEquals(0, one.remaining());
+        assertEquals(0L, one.nextWord());
+    }
+
+    /**
+     * Слова, запрошенные по частям, совпадают со словами, запрошенными
+     * целиком.
+     */
+    @Test
+    public void testPartialWords() {
+        BernoulliBits whole = new BernoulliBits(RandomAlgorithm.XOSHIRO256
+                .create(9), 0.02, 640);
+        BernoulliBits parts = new BernoulliBits(RandomAlgorithm.XOSHIRO256
+                .create(9), 0.02, 640);
+        for (int word = 0; word < 10; word++) {
+            long low = parts.next(20);
+            long high = parts.next(44);
+            assertEquals(whole.nextWord(), low | (high << 20));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBits() {
+        new BernoulliBits(RandomAlgorithm.XOSHIRO256.create(), 0.5, 10)
+                .next(11);
+    }
+
+    @Test
+    public void testSparseLattice() {
+        RegularLattice net = new RegularLattice(new NetStructureInfo(200,
+                200, RectGenerator.INSTANCE));
+        net.setRandom(RandomAlgorithm.XOSHIRO256.create(5));
+        net.infect(0.01);
+        int infected = 0;
+        for (int i = 0; i < net.size(); i++) {
+            if (net.getState().isInfected(i)) {
+                infected++;
+            }
+        }
+        assertEquals(400, infected, 5 * Math.sqrt(400));
+        assertFalse(net.hasPercolationCluster());
+
+        net.infect(0.995);
+        assertTrue(net.hasPercolationCluster());
+    }
+}
@@ -0,0 +1,97 @@
+package jerco.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TestIntHistogram {
+
+    /**
+     * Совпадает с {@link TreeMap} для малых и больших ключей.
+     */
+    @Test
+    public void testSameAsTreeMap() {
+        Random random = new Random(5);
+        IntHistogram histogram = new IntHistogram();
+        TreeMap<Integer, Long> expected = new TreeMap<Integer, Long>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(2000) : random
+                    .nextInt(Integer.MAX_VALUE);
+            long count = 1 + random.nextInt(3);
+            histogram.add(key, count);
+            Long old = expected.get(key);
+            expected.put(key, old == null ? count : old + count);
+        }
+
+        assertEquals(expected.size(), histogram.size());
+        assertEquals(expected.firstKey().intValue(), histogram.firstKey());
+        assertEquals(expected.lastKey().intValue(), histogram.lastKey());
+        int[] keys = histogram.keys();
+        int index = 0;
+        long total = 0;
+        for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().intValue(), keys[index++]);
+            assertEquals(entry.getValue().longValue(), histogram.getCount(entry
+                    .getKey()));
+            total += entry.getValue();
+        }
+        assertEquals(total, histogram.getTotalCount());
+        assertEquals(0, histogram.getCount(-1));
+    }
+
+    @Test
+    public void testMerge() {
+        IntHistogram first = new IntHistogram();
+        first.add(3);
+        first.add(5000, 2);
+        IntHistogram second = new IntHistogram();
+        second.add(3, 4);
+        second.add(1);
+        second.add(70000);
+        first.merge(second);
+
+        assertArrayEquals(new int[] { 1, 3, 5000, 70000 }, first.keys());
+        assertEquals(5, first.getCount(3));
+        assertEquals(9, first.getTotalCount());
+        assertEquals(1, first.firstKey());
+        assertEquals(70000, first.lastKey());
+
+        IntHistogram copy = new IntHistogram(first);
+        assertArrayEquals(first.keys(), copy.keys());
+        first.clear();
+        assertTrue(first.isEmpty());
+        assertEquals(0, first.keys().length);
+        assertEquals(9, copy.getTotalCount());
+    }
+
+    @Test
+    public void testLogHistogram() {
+        IntHistogram histogram = new IntHistogram();
+        histogram.add(1, 2);
+        histogram.add(6);
+        histogram.add(7, 3);
+        histogram.add(4096);
+        LogHistogram log = histogram.toLogHistogram();
+        assertEquals(2, log.getCount(1));
+        assertEquals(4, log.getCount(3));
+        assertEquals(1, log.getCount(13));
+        assertEquals(histogram.getTotalCount(), log.getTotalCount());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testEmptyLastKey() {
+        new IntHistogram().lastKey();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeKey() {
+        new IntHistogram().add(-2);
+    }
+}
@@ -0,0 +1,83 @@
+package jerco.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMappedArrays {
+    private File file;
+    private FileChannel channel;
+
+    @Before
+    public void open() throws IOException {
+        file = File.createTempFile("mapped", ".bin");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    @After
+    public void close() throws IOException {
+        channel.close();
+        file.delete();
+    }
+
+    /**
+     * Элементы на границах сегментов читаются и записываются верно.
+     */
+    @Test
+    public void testSegments() throws IOException {
+        MappedLongArray longs = MappedLongArray.map(channel,
+                MapMode.READ_WRITE, 0, 1000, 4);
+        MappedIntArray ints = MappedIntArray.map(channel, MapMode.READ_WRITE,
+                8000, 999, 5);
+        assertEquals(1000, longs.length());
+        for (int i = 0; i < 1000; i++) {
+            longs.set(i, i * 1000003L);
+        }
+        for (int i = 0; i < 999; i++) {
+            ints.set(i, -i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 1000003L, longs.get(i));
+        }
+        for (int i = 0; i < 999; i++) {
+            assertEquals(-i, ints.get(i));
+        }
+        assertEquals(8000 + 999 * 4, channel.size());
+    }
+
+    /**
+     * Массив отображает область файла в порядке little-endian, а изменения в
+     * режиме PRIVATE не попадают в файл.
+     */
+    @Test
+    public void testFileLayout() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + 16).order(
+                ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[3]).putLong(5).putLong(-7).flip();
+        channel.write(buffer);
+
+        MappedLongArray longs = MappedLongArray.map(channel, MapMode.PRIVATE,
+                3, 2, 1);
+        assertEquals(5, longs.get(0));
+        assertEquals(-7, longs.get(1));
+        longs.set(0, 11);
+        longs.fill(3);
+        assertEquals(3, longs.get(1));
+
+        MappedLongArray original = MappedLongArray.map(channel,
+                MapMode.READ_ONLY, 3, 2);
+        assertEquals(5, original.get(0));
+        assertEquals(-7, original.get(1));
+    }
+}
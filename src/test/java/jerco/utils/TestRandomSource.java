@@ -0,0 +1,112 @@
+package jerco.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import jerco.network.NetStructureInfo;
+import jerco.network.RegularLattice;
+import jerco.network.generators.RectGenerator;
+
+import org.junit.Test;
+
+public class TestRandomSource {
+
+    @Test
+    public void testSameSeed() {
+        for (RandomAlgorithm algorithm : RandomAlgorithm.values()) {
+            RandomSource first = algorithm.create(42);
+            RandomSource second = algorithm.create(42);
+            assertEquals(42, first.getSeed());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(first.nextLong(), second.nextLong());
+            }
+            assertNotEquals(algorithm.create(43).nextLong(), algorithm
+                    .create(42).nextLong());
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        for (RandomAlgorithm algorithm : RandomAlgorithm.values()) {
+            RandomSource random = algorithm.create(7);
+            RandomSource child = random.split();
+            int equal = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (random.nextLong() == child.nextLong()) {
+                    equal++;
+                }
+            }
+            assertEquals(0, equal);
+
+            // Разделение воспроизводимо
+            RandomSource again = algorithm.create(7).split();
+            assertEquals(algorithm.create(7).split().nextLong(), again
+                    .nextLong());
+        }
+    }
+
+    @Test
+    public void testDoubleRange() {
+        RandomSource random = RandomAlgorithm.XOSHIRO256.create(1);
+        double sum = 0;
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            double value = random.nextDouble();
+            assertTrue(value >= 0 && value < 1);
+            sum += value;
+        }
+        assertEquals(0.5, sum / n, 0.01);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetSeed() {
+        RandomAlgorithm.SPLITTABLE.create(1).setSeed(2);
+    }
+
+    @Test
+    public void testStreamSeed() {
+        assertEquals(RandomSource.streamSeed(5, 1, 2), RandomSource
+                .streamSeed(5, 1, 2));
+        assertNotEquals(RandomSource.streamSeed(5, 1, 2), RandomSource
+                .streamSeed(5, 2, 1));
+        assertNotEquals(RandomSource.streamSeed(5, 1), RandomSource
+                .streamSeed(6, 1));
+        assertEquals(RandomSource.streamSeed(5, 3), RandomAlgorithm.XOSHIRO256
+                .stream(5, 3).getSeed());
+    }
+
+    /**
+     * Сети, зараженные генераторами с одинаковым зерном, совпадают.
+     */
+    @Test
+    public void testReproducibleInfection() {
+        NetStructureInfo structureInfo = new NetStructureInfo(30, 30,
+                RectGenerator.INSTANCE);
+        RegularLattice first = new RegularLattice(structureInfo);
+        RegularLattice second = new RegularLattice(structureInfo);
+        first.setRandom(RandomAlgorithm.XOSHIRO256.create(11));
+        second.setRandom(RandomAlgorithm.XOSHIRO256.create(11));
+        first.infect(0.5);
+        second.infect(0.5);
+
+        boolean[] firstInfected = new boolean[first.size()];
+        boolean[] secondInfected = new boolean[second.size()];
+        for (int i = 0; i < first.size(); i++) {
+            firstInfected[i] = first.getState().isInfected(i);
+            secondInfected[i] = second.getState().isInfected(i);
+        }
+        assertArrayEquals(firstInfected, secondInfected);
+        assertArrayEquals(first.getClustersSizes(), second.getClustersSizes());
+
+        second.setRandom(RandomAlgorithm.XOSHIRO256.create(12));
+        second.infect(0.5);
+        boolean same = true;
+        for (int i = 0; i < first.size(); i++) {
+            same &= firstInfected[i] == second.getState().isInfected(i);
+        }
+        assertFalse(same);
+    }
+}
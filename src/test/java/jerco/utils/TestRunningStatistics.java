@@ -0,0 +1,94 @@
+package jerco.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestRunningStatistics {
+    private static final double PRECISION = 1e-9;
+
+    @Test
+    public void testMoments() {
+        RunningStatistics statistics = new RunningStatistics();
+        assertTrue(Double.isNaN(statistics.getMean()));
+        for (double value : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 }) {
+            statistics.add(value);
+        }
+        assertEquals(8, statistics.getCount());
+        assertEquals(5, statistics.getMean(), PRECISION);
+        assertEquals(32.0 / 7, statistics.getVariance(), PRECISION);
+        assertEquals(Math.sqrt(32.0 / 7 / 8), statistics.getStandardError(),
+                PRECISION);
+        assertEquals(2, statistics.getMin(), 0);
+        assertEquals(9, statistics.getMax(), 0);
+    }
+
+    /**
+     * Большое смещение не приводит к потере точности дисперсии.
+     */
+    @Test
+    public void testLargeOffset() {
+        RunningStatistics statistics = new RunningStatistics();
+        for (int i = 0; i < 1000; i++) {
+            statistics.add(1e9 + (i % 2));
+        }
+        assertEquals(0.25 * 1000 / 999, statistics.getVariance(), 1e-6);
+    }
+
+    /**
+     * Объединение частей совпадает с накоплением всех значений.
+     */
+    @Test
+    public void testMerge() {
+        Random random = new Random(1);
+        RunningStatistics all = new RunningStatistics();
+        RunningStatistics[] parts = new RunningStatistics[4];
+        for (int part = 0; part < parts.length; part++) {
+            parts[part] = new RunningStatistics();
+        }
+        for (int i = 0; i < 10000; i++) {
+            int value = random.nextInt(1000);
+            all.add(value);
+            parts[i % parts.length].add(value);
+        }
+        RunningStatistics merged = new RunningStatistics();
+        for (RunningStatistics part : parts) {
+            merged.merge(part);
+        }
+        merged.merge(new RunningStatistics());
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 0);
+        assertEquals(all.getVariance(), merged.getVariance(), 1e-6);
+        assertEquals(all.getMin(), merged.getMin(), 0);
+        assertEquals(all.getMax(), merged.getMax(), 0);
+    }
+
+    @Test
+    public void testLogHistogram() {
+        assertEquals(0, LogHistogram.bin(0));
+        assertEquals(1, LogHistogram.bin(1));
+        assertEquals(2, LogHistogram.bin(3));
+        assertEquals(11, LogHistogram.bin(1024));
+        assertEquals(63, LogHistogram.bin(Long.MAX_VALUE));
+        for (int bin = 0; bin < LogHistogram.BINS; bin++) {
+            assertEquals(bin, LogHistogram.bin(LogHistogram.lowerBound(bin)));
+            assertEquals(bin, LogHistogram.bin(LogHistogram.upperBound(bin)));
+        }
+
+        LogHistogram histogram = new LogHistogram();
+        histogram.add(5, 3);
+        histogram.add(7);
+        histogram.add(100);
+        LogHistogram other = new LogHistogram();
+        other.add(1);
+        histogram.merge(other);
+        assertEquals(4, histogram.getCount(3));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(6, histogram.getTotalCount());
+        assertEquals(123.0 / 6, histogram.getMean(), PRECISION);
+        assertEquals(7, histogram.getLastBin());
+    }
+}